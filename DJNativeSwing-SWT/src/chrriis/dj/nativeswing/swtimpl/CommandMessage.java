@@ -7,6 +7,8 @@
  */
 package chrriis.dj.nativeswing.swtimpl;
 
+import java.util.concurrent.CompletableFuture;
+
 import chrriis.dj.nativeswing.common.Utils;
 
 /**
@@ -34,6 +36,10 @@ public abstract class CommandMessage extends Message {
     this.args = args;
   }
 
+  Object[] getArgs() {
+    return args;
+  }
+
   /**
    * Execute that message asynchronously with the given arguments.
    * @param isTargetNativeSide true if the target is the native side, false otherwise.
@@ -55,6 +61,18 @@ public abstract class CommandMessage extends Message {
     return syncSend(isTargetNativeSide);
   }
 
+  /**
+   * Execute that message asynchronously with the given arguments, and get the result when it is available.<br/>
+   * The calling thread does not wait, which allows several calls to be in flight at the same time. The result is delivered in a thread that is neither the UI thread nor the thread that receives the messages.
+   * @param isTargetNativeSide true if the target is the native side, false otherwise.
+   * @param args the arguments, which must be serializable.
+   * @return the future result of the execution, which completes exceptionally if the execution failed or is cancelled if the other side died.
+   */
+  public CompletableFuture<Object> execAsync(boolean isTargetNativeSide, Object... args) {
+    setArgs(args);
+    return NativeInterface.execAsync(isTargetNativeSide, this);
+  }
+
   private static final Object[] EMPTY_ARGS = new Object[0];
 
   protected Object runCommand() throws Exception {
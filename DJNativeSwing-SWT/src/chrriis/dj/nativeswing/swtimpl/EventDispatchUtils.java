@@ -7,8 +7,6 @@
  */
 package chrriis.dj.nativeswing.swtimpl;
 
-import javax.swing.SwingUtilities;
-
 /**
  * A utility class for event dispatching processes.
  * @author Christopher Deckers
@@ -39,22 +37,17 @@ public class EventDispatchUtils {
    * @param timeout The maximum time this processing should take.
    */
   public static void sleepWithEventDispatch(Condition condition, int timeout) {
-    boolean isEventDispatchThread = SwingUtilities.isEventDispatchThread();
-    long time = System.currentTimeMillis();
-    while(true) {
-      if(condition.getValue() || System.currentTimeMillis() - time > timeout) {
-        return;
-      }
-      if(isEventDispatchThread) {
-        new Message().syncSend(true);
-        if(condition.getValue() || System.currentTimeMillis() - time > timeout) {
-          return;
-        }
-      }
-      try {
-        Thread.sleep(50);
-      } catch(Exception e) {}
-    }
+    waitWithEventDispatch(condition, timeout);
+  }
+
+  /**
+   * Wait until the condition becomes true or the timeout is reached. When called from a user interface thread, the messages that are received from the other side are dispatched while waiting, and the condition is checked as soon as a message arrives, which does not add latency to the calls that wait for a command of the other side.
+   * @param condition The condition that indicates whether to stop.
+   * @param timeout The maximum time this processing should take.
+   * @return true if the condition became true, false if the timeout was reached.
+   */
+  public static boolean waitWithEventDispatch(Condition condition, int timeout) {
+    return NativeInterface.waitWithMessageDispatch(condition, timeout);
   }
 
 }
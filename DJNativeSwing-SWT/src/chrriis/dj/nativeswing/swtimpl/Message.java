@@ -8,6 +8,7 @@
 package chrriis.dj.nativeswing.swtimpl;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The superclass of all the messages that are exchanged at the native interface.
@@ -15,7 +16,7 @@ import java.io.Serializable;
  */
 public class Message implements Serializable {
 
-  private static int nextID = 1;
+  private static final AtomicInteger nextID = new AtomicInteger(1);
 
   private int id;
   private boolean isSyncExec;
@@ -39,6 +40,10 @@ public class Message implements Serializable {
     return id;
   }
 
+  void setID(int id) {
+    this.id = id;
+  }
+
   void setSyncExec(boolean isSyncExec) {
     this.isSyncExec = isSyncExec;
   }
@@ -68,10 +73,11 @@ public class Message implements Serializable {
     if(id != 0) {
       return;
     }
+    // Messages are sent from many threads and the ID of a message sent from a non-UI thread identifies its pending call, so IDs must be unique.
     if(isTargetNativeSide) {
-      id = nextID++;
+      id = nextID.getAndIncrement();
     } else {
-      id = -nextID++;
+      id = -nextID.getAndIncrement();
     }
   }
 
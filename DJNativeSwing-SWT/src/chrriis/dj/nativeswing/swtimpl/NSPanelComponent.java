@@ -44,6 +44,25 @@ public abstract class NSPanelComponent extends JPanel implements NSComponent {
     return NSComponentOptions.constrainVisibility();
   }
 
+  static final String PEER_VM_OPTION_KEY = "Peer VM";
+
+  /**
+   * Create an option to host the native component in a given peer VM, when the native interface is configured to use several peer VMs.
+   * @param peerVMIndex the index of the peer VM, starting from 0. If it is not lower than the number of peer VMs, the index modulo that number is used.
+   * @return the option to select the peer VM.
+   */
+  public static NSOption usePeerVM(final int peerVMIndex) {
+    if(peerVMIndex < 0) {
+      throw new IllegalArgumentException("The index of the peer VM cannot be negative!");
+    }
+    return new NSOption(PEER_VM_OPTION_KEY) {
+      @Override
+      public Object getOptionValue() {
+        return peerVMIndex;
+      }
+    };
+  }
+
   private NativeComponent nativeComponent;
 
   /**
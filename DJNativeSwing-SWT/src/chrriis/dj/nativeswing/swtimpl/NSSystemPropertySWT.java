@@ -141,6 +141,94 @@ public enum NSSystemPropertySWT {
    */
   INTERFACE_OUTPROCESS_COMMUNICATION("nativeswing.interface.outProcess.communication", Type.READ_WRITE),
 
+  /**
+   * nativeswing.interface.outProcess.messageCodec
+   * = serialization/binary (default: serialization)<br/>
+   * Set how messages are encoded on the out-process communication channel. The
+   * binary codec uses a compact tagged format for the messages and their common
+   * argument types, and falls back to serialization for the other types. A peer
+   * VM that is launched separately must use the same value.
+   */
+  INTERFACE_OUTPROCESS_MESSAGECODEC("nativeswing.interface.outProcess.messageCodec", Type.READ_WRITE),
+
+  /**
+   * nativeswing.interface.outProcess.batching
+   * = true/false (default: false)<br/>
+   * Set whether messages are written to the out-process communication channel by
+   * a sender thread, which groups the pending messages with a single flush and
+   * drops pending state updates (like resizing) that newer ones supersede.
+   */
+  INTERFACE_OUTPROCESS_BATCHING("nativeswing.interface.outProcess.batching", Type.READ_WRITE),
+
+  /**
+   * nativeswing.interface.outProcess.batching.delay
+   * = &lt;integer&gt; (default: 0)<br/>
+   * The time in milliseconds that asynchronous messages can wait to be grouped
+   * with the next ones when batching is active. Synchronous calls and their
+   * results are never delayed.
+   */
+  INTERFACE_OUTPROCESS_BATCHING_DELAY("nativeswing.interface.outProcess.batching.delay", Type.READ_WRITE),
+
+  /**
+   * nativeswing.interface.outProcess.batching.maxSize
+   * = &lt;integer&gt; (default: 100)<br/>
+   * The maximum number of messages that are written with a single flush when
+   * batching is active.
+   */
+  INTERFACE_OUTPROCESS_BATCHING_MAXSIZE("nativeswing.interface.outProcess.batching.maxSize", Type.READ_WRITE),
+
+  /**
+   * nativeswing.interface.nonUISyncExec.timeout
+   * = &lt;long&gt; (default: 0)<br/>
+   * The maximum time in milliseconds that a synchronous call from a non-UI thread
+   * waits for its result, or 0 to wait until the result is received or the other
+   * side dies. A call that times out throws an IllegalStateException.
+   */
+  INTERFACE_NONUISYNCEXEC_TIMEOUT("nativeswing.interface.nonUISyncExec.timeout", Type.READ_WRITE),
+
+  /**
+   * nativeswing.interface.messageQueue.capacity
+   * = &lt;integer&gt; (default: 10000)<br/>
+   * The number of messages that a queue of received messages (and of sent
+   * messages in in-process mode) holds before slowing down the threads that add
+   * messages, or 0 for unbounded queues.
+   */
+  INTERFACE_MESSAGEQUEUE_CAPACITY("nativeswing.interface.messageQueue.capacity", Type.READ_WRITE),
+
+  /**
+   * nativeswing.interface.nonUIExecutor.maxThreads
+   * = &lt;integer&gt; (default: 16)<br/>
+   * The maximum number of pooled threads that run the messages received with the
+   * non-UI flag. When all threads are busy and the queue is full, a message runs
+   * in a thread of its own and this is counted as a rejection.
+   */
+  INTERFACE_NONUIEXECUTOR_MAXTHREADS("nativeswing.interface.nonUIExecutor.maxThreads", Type.READ_WRITE),
+
+  /**
+   * nativeswing.interface.nonUIExecutor.queueSize
+   * = &lt;integer&gt; (default: 0)<br/>
+   * The number of non-UI messages that can wait for a pooled thread. Non-UI
+   * messages may wait for the other side, so a queue should only be used when
+   * they are known not to block.
+   */
+  INTERFACE_NONUIEXECUTOR_QUEUESIZE("nativeswing.interface.nonUIExecutor.queueSize", Type.READ_WRITE),
+
+  /**
+   * nativeswing.interface.nonUIExecutor.componentOrdering
+   * = true/false (default: false)<br/>
+   * Set whether the non-UI messages that target the same component run one after
+   * the other, in the order they were received.
+   */
+  INTERFACE_NONUIEXECUTOR_COMPONENTORDERING("nativeswing.interface.nonUIExecutor.componentOrdering", Type.READ_WRITE),
+
+  /**
+   * nativeswing.interface.nonUIExecutor.virtualThreads
+   * = true/false (default: false)<br/>
+   * Set whether non-UI messages run in virtual threads, when the JDK supports them.
+   * The thread and queue limits do not apply in that case.
+   */
+  INTERFACE_NONUIEXECUTOR_VIRTUALTHREADS("nativeswing.interface.nonUIExecutor.virtualThreads", Type.READ_WRITE),
+
   /**
    * nativeswing.interface.outProcess.connectionTimeout
    * = &lt;integer&gt; (default: 10000)<br/>
@@ -153,7 +241,8 @@ public enum NSSystemPropertySWT {
    * nativeswing.interface.inProcess.printNonSerializableMessages
    * = true/false (default: false)<br/>
    * When in-process, set whether messages should be artificially serialized to
-   * check whether they would be compatible with the out-process mode.
+   * check whether they would be compatible with the out-process mode. The first
+   * message of each class is checked, in a background thread.
    */
   INTERFACE_INPROCESS_PRINTNONSERIALIZABLEMESSAGES("nativeswing.interface.inProcess.printNonSerializableMessages", Type.READ_WRITE),
 
@@ -183,6 +272,44 @@ public enum NSSystemPropertySWT {
    */
   PEERVM_FORCEPROXYCLASSLOADER("nativeswing.peervm.forceProxyClassLoader", Type.READ_WRITE),
 
+  /**
+   * nativeswing.peervm.classArchive
+   * = true/false (default: true)<br/>
+   * Set whether the proxy class loader of the peer VM loads the classes that peer
+   * VMs needed in previous runs from a single archive, which is cached in the
+   * ".djnativeswing" directory of the user home until the classes change, instead
+   * of requesting each class.
+   */
+  PEERVM_CLASSARCHIVE("nativeswing.peervm.classArchive", Type.READ_WRITE),
+
+  /**
+   * nativeswing.peervm.classArchive.sharedClassData
+   * = true/false (default: false)<br/>
+   * Set whether a peer VM that uses the class archive also maps its classes to a
+   * class data sharing archive, which is created by the first peer VM to speed up
+   * the start of the next ones. This requires Java 19 or later.
+   */
+  PEERVM_CLASSARCHIVE_SHAREDCLASSDATA("nativeswing.peervm.classArchive.sharedClassData", Type.READ_WRITE),
+
+  /**
+   * nativeswing.peervm.pool.size
+   * = &lt;integer&gt; (default: 0)<br/>
+   * Set the number of peer VMs that are spawned in advance, from the first spawn
+   * when the native interface is opened, so that the other peer VMs and the
+   * respawned ones take over a peer VM that is already connected. The pooled peer
+   * VMs are discarded when the native interface is closed, as its configuration
+   * may change before it is opened again. 0 disables the pool.
+   */
+  PEERVM_POOL_SIZE("nativeswing.peervm.pool.size", Type.READ_WRITE),
+
+  /**
+   * nativeswing.peervm.pool.preloadBrowser
+   * = true/false (default: true)<br/>
+   * Set whether the peer VMs of the pool load the web browser runtime before they
+   * are ready, so that the first web browser is created faster.
+   */
+  PEERVM_POOL_PRELOADBROWSER("nativeswing.peervm.pool.preloadBrowser", Type.READ_WRITE),
+
   /**
    * nativeswing.peervm.debug.printStartMessage
    * = true/false (default: false)<br/>
@@ -240,6 +367,35 @@ public enum NSSystemPropertySWT {
    */
   COMPONENTS_SWALLOWRUNTIMEEXCEPTIONS("nativeswing.components.swallowRuntimeExceptions", Type.READ_WRITE),
 
+  /**
+   * nativeswing.components.imageTransfer
+   * = sockets/sharedmemory (default: sockets)<br/>
+   * Set how the native side transfers the pixels when painting a component to an
+   * image (e.g. for back buffers). The shared memory transfer uses a memory-mapped
+   * temporary file and falls back to sockets if the file cannot be mapped.
+   */
+  COMPONENTS_IMAGETRANSFER("nativeswing.components.imageTransfer", Type.READ_WRITE),
+
+  /**
+   * nativeswing.components.imageTransfer.delta
+   * = true/false (default: false)<br/>
+   * Set whether the native side keeps the last captured frame of a component to
+   * only transfer the tiles that changed when the same image is painted again
+   * (e.g. back buffer refreshes). This assumes that the image is not modified in
+   * the painted areas between two captures.
+   */
+  COMPONENTS_IMAGETRANSFER_DELTA("nativeswing.components.imageTransfer.delta", Type.READ_WRITE),
+
+  /**
+   * nativeswing.components.imageTransfer.timeout
+   * = &lt;integer&gt; (default: 5000)<br/>
+   * Set the maximum time in milliseconds to wait for the native side to send an
+   * image through the sockets. When it does not answer in time, or cannot connect,
+   * the images of the component are transferred with the messages instead. A
+   * value of 0 waits until the native side answers.
+   */
+  COMPONENTS_IMAGETRANSFER_TIMEOUT("nativeswing.components.imageTransfer.timeout", Type.READ_WRITE),
+
 
   /**
    * nativeswing.webbrowser.runtime
@@ -14,6 +14,7 @@ import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import chrriis.dj.nativeswing.common.ObjectRegistry;
 
@@ -46,6 +47,15 @@ public abstract class NativeComponent extends Canvas {
    */
   public abstract void runAsync(CommandMessage commandMessage, Object... args);
 
+  /**
+   * Run the given command if the control is created, or store it to run it when the creation occurs, without waiting for its result.
+   * If the component is disposed before the command has a chance to run, the result is null.
+   * @param commandMessage the command message to run.
+   * @param args the arguments to pass to the command message.
+   * @return the future result of running the message, which is delivered in a thread that is not the UI thread.
+   */
+  public abstract CompletableFuture<Object> runAsyncWithResult(CommandMessage commandMessage, Object... args);
+
   private static ObjectRegistry nativeComponentRegistry;
   private static ObjectRegistry controlRegistry;
 
@@ -141,6 +151,16 @@ public abstract class NativeComponent extends Canvas {
    */
   protected abstract Component createEmbeddableComponent(Map<Object, Object> optionMap);
 
+  /**
+   * Get the peer VM that the options of a component select.
+   * @param optionMap the options of the component.
+   * @return the index of the peer VM, or -1 if the options do not select one.
+   */
+  protected static int getPeerVMOption(Map<Object, Object> optionMap) {
+    Object peerVMIndex = optionMap.get(NSPanelComponent.PEER_VM_OPTION_KEY);
+    return peerVMIndex == null? -1: (Integer)peerVMIndex;
+  }
+
   /**
    * Paint the native component including its native peer in an image. This method can be called from a non-UI thread.
    * @param image the image to paint to.
@@ -9,6 +9,7 @@ package chrriis.dj.nativeswing.swtimpl;
 
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.util.concurrent.CompletableFuture;
 
 import chrriis.dj.nativeswing.swtimpl.internal.ISWTNativeInterface;
 import chrriis.dj.nativeswing.swtimpl.internal.NativeCoreObjectFactory;
@@ -108,6 +109,14 @@ public abstract class NativeInterface {
     swtNativeInterface.asyncSend_(isTargetNativeSide, message);
   }
 
+  static CompletableFuture<Object> execAsync(boolean isTargetNativeSide, Message message) {
+    return swtNativeInterface.execAsync_(isTargetNativeSide, message);
+  }
+
+  static boolean waitWithMessageDispatch(EventDispatchUtils.Condition condition, int timeout) {
+    return swtNativeInterface.waitWithMessageDispatch_(condition, timeout);
+  }
+
   /**
    * Indicate if the current thread is the user interface thread.
    * @return true if the current thread is the user interface thread.
@@ -196,6 +205,10 @@ public abstract class NativeInterface {
     return message.getID();
   }
 
+  protected static void setMessageID(Message message, int id) {
+    message.setID(id);
+  }
+
   protected static boolean isMessageValid(Message message) {
     return message.isValid();
   }
@@ -204,6 +217,10 @@ public abstract class NativeInterface {
     message.setArgs(args);
   }
 
+  protected static Object[] getMessageArgs(CommandMessage message) {
+    return message.getArgs();
+  }
+
   protected static void computeMessageID(Message message, boolean isTargetNativeSide) {
     message.computeID(isTargetNativeSide);
   }
@@ -20,11 +20,22 @@ public class NativeInterfaceConfiguration {
   NativeInterfaceConfiguration() {
   }
 
+  /**
+   * A representation of the policies that assign native components to peer VMs, when several peer VMs are used.
+   * @author Christopher Deckers
+   */
+  public static enum PeerVMPlacementPolicy {
+    ROUND_ROBIN,
+    LEAST_LOADED,
+  }
+
   private boolean isNativeSideRespawnedOnError = true;
   private List<Class<?>> nativeClassPathReferenceClassList = new ArrayList<Class<?>>();
   private List<String> nativeClassPathReferenceResourceList = new ArrayList<String>();
   private String[] peerVMParams;
   private PeerVMProcessFactory peerVMProcessFactory;
+  private int peerVMCount = 1;
+  private PeerVMPlacementPolicy peerVMPlacementPolicy = PeerVMPlacementPolicy.LEAST_LOADED;
 
   /**
    * Set the peer VM process factory which allows to override the default peer VM creation mechanism.
@@ -43,6 +54,46 @@ public class NativeInterfaceConfiguration {
     return peerVMProcessFactory;
   }
 
+  /**
+   * Set the number of peer VMs that host the native components, which allows components to not stall or crash each other. The default is 1.
+   * The first peer VM also runs the commands that are not related to a component, like the ones of the file dialogs, while the commands that change a global state, like the cookies of the web browsers, are run by every peer VM. If it crashes, the whole native side is considered dead, while the crash of another peer VM only affects the components that it hosts.
+   * This value is only considered when the native interface is opened, and is ignored when the native side runs in process.
+   * @param peerVMCount the number of peer VMs, which must be at least 1.
+   */
+  public void setPeerVMCount(int peerVMCount) {
+    if(peerVMCount < 1) {
+      throw new IllegalArgumentException("The number of peer VMs must be at least 1!");
+    }
+    this.peerVMCount = peerVMCount;
+  }
+
+  /**
+   * Get the number of peer VMs that host the native components.
+   * @return the number of peer VMs.
+   */
+  public int getPeerVMCount() {
+    return peerVMCount;
+  }
+
+  /**
+   * Set the policy that assigns a peer VM to a native component when several peer VMs are used and the component does not specify one in its options. The default is to choose the peer VM that hosts the fewest components.
+   * @param peerVMPlacementPolicy the placement policy.
+   */
+  public void setPeerVMPlacementPolicy(PeerVMPlacementPolicy peerVMPlacementPolicy) {
+    if(peerVMPlacementPolicy == null) {
+      throw new IllegalArgumentException("The placement policy cannot be null!");
+    }
+    this.peerVMPlacementPolicy = peerVMPlacementPolicy;
+  }
+
+  /**
+   * Get the policy that assigns a peer VM to a native component when several peer VMs are used.
+   * @return the placement policy.
+   */
+  public PeerVMPlacementPolicy getPeerVMPlacementPolicy() {
+    return peerVMPlacementPolicy;
+  }
+
   /**
    * Set whether the native side respawns on error. The default is true.
    * @param isNativeSideRespawnedOnError true if the native side should respawn in case of error, false otherwise.
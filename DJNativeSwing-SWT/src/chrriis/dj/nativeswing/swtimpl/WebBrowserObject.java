@@ -105,7 +105,7 @@ public abstract class WebBrowserObject {
       public Object run(Object[] args) {
         InitializationListener initializationListener = (InitializationListener)args[0];
         final AtomicBoolean result = (AtomicBoolean)args[1];
-        EventDispatchUtils.sleepWithEventDispatch(new EventDispatchUtils.Condition() {
+        EventDispatchUtils.waitWithEventDispatch(new EventDispatchUtils.Condition() {
           public boolean getValue() {
             return result.get();
           }
@@ -465,6 +465,19 @@ public abstract class WebBrowserObject {
     return webBrowser.executeJavascriptWithResult("return getEmbeddedObject()." + property);
   }
 
+  /**
+   * Get the values of several properties of the object in a single execution, which is faster than getting them one by one.
+   * @param properties the properties, like "audio.volume", or function calls with a result, like "GetVariable('name')".
+   * @return The values, potentially Strings, Numbers, booleans, in the order of the properties. A value is null if it could not be read.
+   */
+  public Object[] getObjectProperties(String... properties) {
+    String[] expressions = new String[properties.length];
+    for(int i=0; i<properties.length; i++) {
+      expressions[i] = "getEmbeddedObject()." + properties[i];
+    }
+    return webBrowser.executeJavascriptWithResults(expressions);
+  }
+
   /**
    * Invoke a function on the object, with optional arguments (Strings, numbers, booleans, or array).
    */
@@ -8,19 +8,39 @@
 package chrriis.dj.nativeswing.swtimpl.common;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
- * A class loader that loads classes from a given codebase.
+ * A class loader that loads classes from a given codebase.<br/>
+ * When a class archive is specified with system properties, the classes and resources it contains are loaded from it instead of one request per class. The archive is cached in a directory of the user under the SHA-1 hash of the archive file, so that the next peer VMs do not download it again. The cached archive is only used if its content has that hash.<br/>
+ * This class is copied alone to the class path of the peer VM, so it must not have inner classes nor use other classes of the library.
  * @author Christopher Deckers
  */
 public class NetworkURLClassLoader extends ClassLoader {
 
+  /** The system property that has the URL of the class archive. */
+  public static final String CLASS_ARCHIVE_URL_PROPERTY = "nativeswing.peervm.classArchive.url";
+  /** The system property that has the SHA-1 hash of the class archive file, which names its cached copy. */
+  public static final String CLASS_ARCHIVE_HASH_PROPERTY = "nativeswing.peervm.classArchive.hash";
+
+  private static final int BUFFER_SIZE = 8192;
+
   private final URL codebaseURL;
+  private ZipFile classArchiveZipFile;
+  private String classArchiveURLPrefix;
 
   /**
    * Construct a network URL classloader, that will load resources from the given codebase.
@@ -28,11 +48,132 @@ public class NetworkURLClassLoader extends ClassLoader {
    */
   public NetworkURLClassLoader(String codebase) throws MalformedURLException {
     codebaseURL = new URL(codebase);
+    String classArchiveURL = System.getProperty(CLASS_ARCHIVE_URL_PROPERTY);
+    String classArchiveHash = System.getProperty(CLASS_ARCHIVE_HASH_PROPERTY);
+    if(classArchiveURL != null && classArchiveHash != null) {
+      try {
+        openClassArchive(classArchiveURL, classArchiveHash);
+      } catch(Exception e) {
+        // The classes are loaded one by one from the codebase.
+        e.printStackTrace();
+      }
+    }
+  }
+
+  private void openClassArchive(String classArchiveURL, String classArchiveHash) throws IOException {
+    File classArchiveDir = getClassArchiveDirectory();
+    File classArchiveFile = new File(classArchiveDir, classArchiveHash + ".jar");
+    if(classArchiveFile.exists() && !classArchiveHash.equals(computeSHA1(classArchiveFile))) {
+      // The archive was altered, so it is downloaded again.
+      classArchiveFile.delete();
+    }
+    if(!classArchiveFile.exists()) {
+      createClassArchiveDirectory(classArchiveDir);
+      // The archive is downloaded to a temporary file and then renamed, so that another peer VM never sees a partial archive.
+      File tmpFile = File.createTempFile(classArchiveHash, ".tmp", classArchiveDir);
+      try {
+        URLConnection connection = new URL(classArchiveURL).openConnection();
+        connection.setReadTimeout(4000);
+        InputStream in = connection.getInputStream();
+        try {
+          OutputStream out = new FileOutputStream(tmpFile);
+          try {
+            copy(in, out);
+          } finally {
+            out.close();
+          }
+        } finally {
+          in.close();
+        }
+        if(!classArchiveHash.equals(computeSHA1(tmpFile))) {
+          throw new IOException("The downloaded class archive does not match its hash " + classArchiveHash);
+        }
+        if(!tmpFile.renameTo(classArchiveFile) && !classArchiveFile.exists()) {
+          throw new IOException("Could not create the class archive " + classArchiveFile);
+        }
+      } finally {
+        tmpFile.delete();
+      }
+    }
+    try {
+      classArchiveZipFile = new ZipFile(classArchiveFile);
+    } catch(IOException e) {
+      // A corrupted archive is removed so that the next peer VM downloads it again.
+      classArchiveFile.delete();
+      throw e;
+    }
+    classArchiveURLPrefix = "jar:" + classArchiveFile.toURI().toURL().toExternalForm() + "!/";
+  }
+
+  /**
+   * Get the directory of the cached class archives, which belongs to the current user: the archives of other users are never loaded.
+   */
+  public static File getClassArchiveDirectory() {
+    return new File(System.getProperty("user.home"), ".djnativeswing/classarchive");
+  }
+
+  /**
+   * Create the directory of the cached class archives if needed, and make it accessible to its owner only.
+   */
+  public static void createClassArchiveDirectory(File classArchiveDir) throws IOException {
+    if(!classArchiveDir.isDirectory() && !classArchiveDir.mkdirs() && !classArchiveDir.isDirectory()) {
+      throw new IOException("Could not create the class archive directory " + classArchiveDir);
+    }
+    for(File file: new File[] {classArchiveDir.getParentFile(), classArchiveDir}) {
+      file.setReadable(false, false);
+      file.setReadable(true, true);
+      file.setWritable(false, false);
+      file.setWritable(true, true);
+      file.setExecutable(false, false);
+      file.setExecutable(true, true);
+    }
+  }
+
+  /**
+   * Compute the SHA-1 hash of the content of a file.
+   * @return the hash in hexadecimal form.
+   */
+  public static String computeSHA1(File file) throws IOException {
+    MessageDigest messageDigest;
+    try {
+      messageDigest = MessageDigest.getInstance("SHA-1");
+    } catch(NoSuchAlgorithmException e) {
+      throw new IOException("SHA-1 is not available: " + e.getMessage());
+    }
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] bytes = new byte[BUFFER_SIZE];
+      for(int n; (n=in.read(bytes)) != -1; messageDigest.update(bytes, 0, n)) {
+      }
+    } finally {
+      in.close();
+    }
+    return toHexString(messageDigest.digest());
+  }
+
+  /**
+   * Get the hexadecimal form of a hash.
+   */
+  public static String toHexString(byte[] hash) {
+    StringBuilder sb = new StringBuilder();
+    for(byte b: hash) {
+      sb.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+    }
+    return sb.toString();
+  }
+
+  private static void copy(InputStream in, OutputStream out) throws IOException {
+    byte[] bytes = new byte[BUFFER_SIZE];
+    for(int n; (n=in.read(bytes)) != -1; out.write(bytes, 0, n)) {
+    }
   }
 
   @Override
   protected URL findResource(String name) {
     try {
+      if(classArchiveZipFile != null && classArchiveZipFile.getEntry(name) != null) {
+        return new URL(classArchiveURLPrefix + name);
+      }
       return new URL(codebaseURL, name);
     } catch(MalformedURLException e) {
       e.printStackTrace();
@@ -42,24 +183,40 @@ public class NetworkURLClassLoader extends ClassLoader {
 
   @Override
   protected Class<?> findClass(String name) throws ClassNotFoundException {
+    String path = name.replace('.', '/') + ".class";
+    if(classArchiveZipFile != null) {
+      ZipEntry entry = classArchiveZipFile.getEntry(path);
+      if(entry != null) {
+        try {
+          InputStream in = classArchiveZipFile.getInputStream(entry);
+          ByteArrayOutputStream baos = new ByteArrayOutputStream((int)Math.max(entry.getSize(), 32));
+          try {
+            copy(in, baos);
+          } finally {
+            in.close();
+          }
+          byte[] bytes = baos.toByteArray();
+          return defineClass(name, bytes, 0, bytes.length);
+        } catch(IOException e) {
+          // Let's try the codebase.
+          e.printStackTrace();
+        }
+      }
+    }
     Exception exception = null;
     // Let's retry twice
     for(int i=0; i<2; i++) {
-      String path = name.replace('.', '/') + ".class";
-      URL resourceURL = getResource(path);
       InputStream in = null;
       Class<?> clazz = null;
       exception = null;
       try {
-        URLConnection connection = resourceURL.openConnection();
+        URLConnection connection = new URL(codebaseURL, path).openConnection();
         connection.setReadTimeout(4000);
         in = connection.getInputStream();
 //      InputStream in = new BufferedInputStream(getResourceAsStream(path));
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        byte[] bytes = new byte[1024];
-        for(int n; (n=in.read(bytes)) != -1; baos.write(bytes, 0, n)) {
-        }
-        bytes = baos.toByteArray();
+        copy(in, baos);
+        byte[] bytes = baos.toByteArray();
         clazz = defineClass(name, bytes, 0, bytes.length);
       } catch(Exception e) {
         exception = e;
@@ -27,7 +27,6 @@ import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
-import javax.swing.SwingUtilities;
 import javax.swing.border.BevelBorder;
 import javax.swing.border.Border;
 import javax.swing.event.ChangeEvent;
@@ -65,7 +64,7 @@ public class DefaultVLCPlayerDecorator extends VLCPlayerDecorator {
     private JButton stopButton;
     private JSlider seekBarSlider;
     private volatile boolean isAdjustingSeekBar;
-    private volatile Thread updateThread;
+    private VLCStatusListener vlcStatusListener;
     private JLabel timeLabel;
     private JButton volumeButton;
     private JSlider volumeSlider;
@@ -160,7 +159,6 @@ public class DefaultVLCPlayerDecorator extends VLCPlayerDecorator {
       buttonBarPanel.add(volumePanel);
       add(buttonBarPanel, BorderLayout.CENTER);
       adjustButtonState();
-      updateControlBar();
       webBrowserListener = new WebBrowserAdapter() {
         @Override
         public void locationChanged(WebBrowserNavigationEvent e) {
@@ -173,7 +171,7 @@ public class DefaultVLCPlayerDecorator extends VLCPlayerDecorator {
     }
 
     void disconnect() {
-      stopUpdateThread();
+      stopStatusUpdates();
       vlcPlayer.getWebBrowser().removeWebBrowserListener(webBrowserListener);
     }
 
@@ -186,18 +184,17 @@ public class DefaultVLCPlayerDecorator extends VLCPlayerDecorator {
       volumeButton.setEnabled(isEnabled);
       volumeSlider.setEnabled(isEnabled);
       if(isEnabled) {
-        adjustVolumePanel();
-        startUpdateThread();
+        // The volume is known when the first status is received.
+        volumeButton.setEnabled(false);
+        volumeSlider.setEnabled(false);
+        startStatusUpdates();
       }
     }
 
     private boolean isMute;
     private int volume = -2; // this will trigger proper computation of states
 
-    void adjustVolumePanel() {
-      VLCAudio vlcAudio = vlcPlayer.getVLCAudio();
-      boolean isMute = vlcAudio.isMute();
-      int volume = vlcAudio.getVolume();
+    void adjustVolumePanel(boolean isMute, int volume) {
       volumeButton.setEnabled(true);
       volumeSlider.setEnabled(!isMute);
       if(isMute == this.isMute && this.volume == volume) {
@@ -234,7 +231,7 @@ public class DefaultVLCPlayerDecorator extends VLCPlayerDecorator {
 
     @Override
     public void removeNotify() {
-      stopUpdateThread();
+      stopStatusUpdates();
       super.removeNotify();
     }
 
@@ -244,54 +241,37 @@ public class DefaultVLCPlayerDecorator extends VLCPlayerDecorator {
       adjustButtonState();
     }
 
-    private void stopUpdateThread() {
-      updateThread = null;
+    private void stopStatusUpdates() {
+      if(vlcStatusListener != null) {
+        vlcPlayer.removeVLCStatusListener(vlcStatusListener);
+        vlcStatusListener = null;
+      }
     }
 
-    private void startUpdateThread() {
-      if(updateThread != null) {
+    private void startStatusUpdates() {
+      if(vlcStatusListener != null) {
         return;
       }
       if(vlcPlayer.isNativePeerDisposed()) {
         return;
       }
-      updateThread = new Thread("NativeSwing - VLC Player control bar update") {
-        @Override
-        public void run() {
-          final Thread currentThread = this;
-          while(currentThread == updateThread) {
-            if(vlcPlayer.isNativePeerDisposed()) {
-              stopUpdateThread();
-              return;
-            }
-            try {
-              sleep(1000);
-            } catch(Exception e) {}
-            SwingUtilities.invokeLater(new Runnable() {
-              public void run() {
-                if(currentThread != updateThread) {
-                  return;
-                }
-                if(!vlcPlayer.isNativePeerValid()) {
-                  return;
-                }
-                updateControlBar();
-              }
-            });
+      vlcStatusListener = new VLCStatusListener() {
+        public void statusUpdated(VLCStatusEvent e) {
+          if(!vlcPlayer.isNativePeerValid()) {
+            return;
           }
+          updateControlBar(e);
         }
       };
-      updateThread.setDaemon(true);
-      updateThread.start();
+      vlcPlayer.addVLCStatusListener(vlcStatusListener);
     }
 
-    private void updateControlBar() {
-      VLCInput vlcInput = vlcPlayer.getVLCInput();
-      VLCMediaState state = vlcInput.getMediaState();
+    private void updateControlBar(VLCStatusEvent e) {
+      VLCMediaState state = e.getMediaState();
       boolean isValid = state == VLCMediaState.OPENING || state == VLCMediaState.BUFFERING || state == VLCMediaState.PLAYING || state == VLCMediaState.PAUSED || state == VLCMediaState.STOPPING;
       if(isValid) {
-        int time = vlcInput.getAbsolutePosition();
-        int length = vlcInput.getDuration();
+        int time = e.getAbsolutePosition();
+        int length = e.getDuration();
         isValid = time >= 0 && length > 0;
         if(isValid) {
           isAdjustingSeekBar = true;
@@ -304,7 +284,7 @@ public class DefaultVLCPlayerDecorator extends VLCPlayerDecorator {
         timeLabel.setText("");
       }
       seekBarSlider.setVisible(isValid);
-      adjustVolumePanel();
+      adjustVolumePanel(e.isMute(), e.getVolume());
     }
 
   }
@@ -363,6 +363,21 @@ public class JFlashPlayer extends NSPanelComponent {
     return webBrowserObject.invokeObjectFunctionWithResult("GetVariable", name);
   }
 
+  /**
+   * Get the values of several variables at once, which is faster than getting them one by one. The same restrictions as for getting a single variable apply.
+   * @return the values, potentially Strings, Numbers, Booleans, in the order of the names.
+   */
+  public Object[] getVariables(String... names) {
+    if(!webBrowserObject.hasContent()) {
+      return new Object[names.length];
+    }
+    String[] functionCalls = new String[names.length];
+    for(int i=0; i<names.length; i++) {
+      functionCalls[i] = JWebBrowser.createJavascriptFunctionCall("GetVariable", names[i]);
+    }
+    return webBrowserObject.getObjectProperties(functionCalls);
+  }
+
   /**
    * Invoke a function on the Flash object, with optional arguments (Strings, numbers, booleans).
    * @param functionName the name of the function to invoke.
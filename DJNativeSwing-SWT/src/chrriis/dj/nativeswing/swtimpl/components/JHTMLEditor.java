@@ -222,7 +222,7 @@ public class JHTMLEditor extends NSPanelComponent {
       public Object run(Object[] args) {
         InitializationListener initializationListener = (InitializationListener)args[0];
         final AtomicBoolean result = (AtomicBoolean)args[1];
-        EventDispatchUtils.sleepWithEventDispatch(new EventDispatchUtils.Condition() {
+        EventDispatchUtils.waitWithEventDispatch(new EventDispatchUtils.Condition() {
           public boolean getValue() {
             return result.get();
           }
@@ -342,21 +342,12 @@ class JHTMLEditorCKeditor implements JHTMLEditorImplementation {
     tempResult = this;
     webBrowser.executeJavascript("JH_sendData();");
     int timeout = Integer.parseInt(NSSystemPropertySWT.HTMLEDITOR_GETHTMLCONTENT_TIMEOUT.get("1500"));
-    long start = System.currentTimeMillis();
-    while(true) {
-      EventDispatchUtils.sleepWithEventDispatch(new EventDispatchUtils.Condition() {
-        public boolean getValue() {
-          return tempResult != JHTMLEditorCKeditor.this;
-        }
-      }, 50);
-      if(tempResult != this) {
-        return (String)tempResult;
-      }
-      if(System.currentTimeMillis() - start > timeout) {
-        break;
+    boolean isReceived = EventDispatchUtils.waitWithEventDispatch(new EventDispatchUtils.Condition() {
+      public boolean getValue() {
+        return tempResult != JHTMLEditorCKeditor.this;
       }
-    }
-    return null;
+    }, timeout);
+    return isReceived? (String)tempResult: null;
   }
 
   public void setHTMLContent(String html) {
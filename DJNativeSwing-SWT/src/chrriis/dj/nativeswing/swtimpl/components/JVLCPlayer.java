@@ -74,6 +74,9 @@ public class JVLCPlayer extends NSPanelComponent {
 
   private JWebBrowser webBrowser;
 
+  private static final String LS = Utils.LINE_SEPARATOR;
+  private static final String STATUS_COMMAND = "[Chrriis]VLC_status";
+
   private static class NWebBrowserObject extends WebBrowserObject {
 
     private final JVLCPlayer vlcPlayer;
@@ -101,6 +104,37 @@ public class JVLCPlayer extends NSPanelComponent {
       return objectHTMLConfiguration;
     }
 
+    @Override
+    protected String getJavascriptDefinitions() {
+      return
+        "      var nsStatusTimer = null;" + LS +
+        "      function nsStartStatusUpdates(interval) {" + LS +
+        "        nsStopStatusUpdates();" + LS +
+        "        nsStatusTimer = setInterval(nsSendStatus, interval);" + LS +
+        "        nsSendStatus();" + LS +
+        "      }" + LS +
+        "      function nsStopStatusUpdates() {" + LS +
+        "        if(nsStatusTimer != null) {" + LS +
+        "          clearInterval(nsStatusTimer);" + LS +
+        "          nsStatusTimer = null;" + LS +
+        "        }" + LS +
+        "      }" + LS +
+        "      function nsSendStatus() {" + LS +
+        "        var state = -1, time = -1, length = -1, volume = -1, mute = false;" + LS +
+        "        var embeddedObject = getEmbeddedObject();" + LS +
+        "        try {" + LS +
+        "          state = embeddedObject.input.state;" + LS +
+        "          time = embeddedObject.input.time;" + LS +
+        "          length = embeddedObject.input.length;" + LS +
+        "        } catch(e) {}" + LS +
+        "        try {" + LS +
+        "          volume = embeddedObject.audio.volume;" + LS +
+        "          mute = embeddedObject.audio.mute;" + LS +
+        "        } catch(e) {}" + LS +
+        "        sendCommand('" + STATUS_COMMAND + "', state, time, length, volume, mute);" + LS +
+        "      }";
+    }
+
     @Override
     public String getLocalFileURL(File localFile) {
       String absolutePath = localFile.getAbsolutePath();
@@ -172,6 +206,17 @@ public class JVLCPlayer extends NSPanelComponent {
     webBrowser = new JWebBrowser(options);
     initialize(webBrowser.getNativeComponent());
     webBrowserObject = new NWebBrowserObject(this);
+    webBrowser.addWebBrowserListener(new WebBrowserAdapter() {
+      @Override
+      public void commandReceived(WebBrowserCommandEvent e) {
+        String command = e.getCommand();
+        if("[Chrriis]WB_setLoaded".equals(command)) {
+          adjustStatusUpdates();
+        } else if(STATUS_COMMAND.equals(command)) {
+          fireStatusUpdated(e.getParameters());
+        }
+      }
+    });
     vlcAudio = new VLCAudio(this);
     vlcInput = new VLCInput(this);
     vlcPlaylist = new VLCPlaylist(this);
@@ -322,6 +367,116 @@ public class JVLCPlayer extends NSPanelComponent {
     return vlcVideo;
   }
 
+  private volatile int statusUpdateInterval = 500;
+
+  /**
+   * Set the interval at which the player sends its status to the status listeners.
+   * @param statusUpdateInterval the interval in milliseconds.
+   */
+  public void setStatusUpdateInterval(int statusUpdateInterval) {
+    if(statusUpdateInterval <= 0) {
+      throw new IllegalArgumentException("The status update interval must be strictly positive!");
+    }
+    this.statusUpdateInterval = statusUpdateInterval;
+    adjustStatusUpdates();
+  }
+
+  /**
+   * Get the interval at which the player sends its status to the status listeners.
+   * @return the interval in milliseconds.
+   */
+  public int getStatusUpdateInterval() {
+    return statusUpdateInterval;
+  }
+
+  /**
+   * Add a status listener. As long as there is at least one listener, the player sends its status at the status update interval, which avoids querying its values one by one.
+   * @param listener The status listener to add.
+   */
+  public void addVLCStatusListener(VLCStatusListener listener) {
+    boolean isFirst = getVLCStatusListeners().length == 0;
+    listenerList.add(VLCStatusListener.class, listener);
+    if(isFirst) {
+      adjustStatusUpdates();
+    }
+  }
+
+  /**
+   * Remove a status listener.
+   * @param listener the status listener to remove.
+   */
+  public void removeVLCStatusListener(VLCStatusListener listener) {
+    int count = getVLCStatusListeners().length;
+    listenerList.remove(VLCStatusListener.class, listener);
+    if(count > 0 && getVLCStatusListeners().length == 0) {
+      adjustStatusUpdates();
+    }
+  }
+
+  /**
+   * Get the status listeners.
+   * @return the status listeners.
+   */
+  public VLCStatusListener[] getVLCStatusListeners() {
+    return listenerList.getListeners(VLCStatusListener.class);
+  }
+
+  /**
+   * Start or stop the status updates of the page, which is needed when the listeners change or when a page is loaded.
+   */
+  private void adjustStatusUpdates() {
+    if(!webBrowserObject.hasContent() || webBrowser.isNativePeerDisposed()) {
+      return;
+    }
+    if(getVLCStatusListeners().length > 0) {
+      webBrowser.executeJavascript("if(window.nsStartStatusUpdates) {nsStartStatusUpdates(" + statusUpdateInterval + ");}");
+    } else {
+      webBrowser.executeJavascript("if(window.nsStopStatusUpdates) {nsStopStatusUpdates();}");
+    }
+  }
+
+  /**
+   * Get the status of the player, which is read in a single round trip instead of one per value. Listening to the status updates avoids the round trip altogether.
+   * @return the status.
+   */
+  public VLCStatusEvent getStatus() {
+    return createStatusEvent(webBrowserObject.getObjectProperties("input.state", "input.time", "input.length", "audio.volume", "audio.mute"));
+  }
+
+  /**
+   * Create the status from the values of the state, time, length, volume and mute flag of the plugin, in that order.
+   */
+  private VLCStatusEvent createStatusEvent(Object[] values) {
+    int pluginVolume = getIntParameter(values[3]);
+    boolean isMute = Boolean.TRUE.equals(values[4]) || "true".equals(values[4]);
+    return new VLCStatusEvent(this, VLCInput.getMediaState(getIntParameter(values[0])), getIntParameter(values[1]), getIntParameter(values[2]), pluginVolume < 0? -1: VLCAudio.convertPluginVolume(pluginVolume), isMute);
+  }
+
+  private void fireStatusUpdated(Object[] parameters) {
+    VLCStatusListener[] listeners = getVLCStatusListeners();
+    if(listeners.length == 0 || parameters.length < 5) {
+      return;
+    }
+    VLCStatusEvent e = createStatusEvent(parameters);
+    for(int i=listeners.length-1; i>=0; i--) {
+      listeners[i].statusUpdated(e);
+    }
+  }
+
+  /**
+   * Get the value of a command parameter, which is a number, or a string when the command comes through the location.
+   */
+  private static int getIntParameter(Object parameter) {
+    if(parameter instanceof Number) {
+      return ((Number)parameter).intValue();
+    }
+    try {
+      return (int)Double.parseDouble(String.valueOf(parameter));
+    } catch(NumberFormatException e) {
+      return -1;
+    }
+  }
+
   private List<ClassLoader> referenceClassLoaderList = new ArrayList<ClassLoader>(1);
 
   void addReferenceClassLoader(ClassLoader referenceClassLoader) {
@@ -15,7 +15,16 @@ import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import javax.swing.SwingUtilities;
 
@@ -297,6 +306,14 @@ public class JWebBrowser extends NSPanelComponent {
     return nativeWebBrowser.getHTMLContent();
   }
 
+  /**
+   * Get the HTML content without waiting for the native side.
+   * @return the future HTML content, which is delivered in a thread that is not the event dispatch thread.
+   */
+  public CompletableFuture<String> getHTMLContentAsync() {
+    return nativeWebBrowser.getHTMLContentAsync();
+  }
+
   /**
    * Set the HTML content.
    * @param html the HTML content.
@@ -306,13 +323,30 @@ public class JWebBrowser extends NSPanelComponent {
   }
 
   /**
-   * Get the location of the resource currently displayed.
+   * Get the location of the resource currently displayed, as last sent by the native side when the location changed.
    * @return the location.
    */
   public String getResourceLocation() {
     return nativeWebBrowser.getResourceLocation();
   }
 
+  /**
+   * Get the location of the resource currently displayed.
+   * @param isFresh true to ask the native side, false to use the location that the native side sent when it changed, which avoids a round trip.
+   * @return the location.
+   */
+  public String getResourceLocation(boolean isFresh) {
+    return nativeWebBrowser.getResourceLocation(isFresh);
+  }
+
+  /**
+   * Get the location of the resource currently displayed without waiting for the native side.
+   * @return the future location, which is delivered in a thread that is not the event dispatch thread.
+   */
+  public CompletableFuture<String> getResourceLocationAsync() {
+    return nativeWebBrowser.getResourceLocationAsync();
+  }
+
   /**
    * Navigate to a resource, with its location specified as a URL or path.
    * @param resourceLocation the URL or path.
@@ -340,6 +374,15 @@ public class JWebBrowser extends NSPanelComponent {
     return nativeWebBrowser.isBackNavigationEnabled();
   }
 
+  /**
+   * Indicate if the web browser Back functionality is enabled.
+   * @param isFresh true to ask the native side, false to use the state that the native side sent when it changed, which avoids a round trip.
+   * @return true if the web browser Back functionality is enabled.
+   */
+  public boolean isBackNavigationEnabled(boolean isFresh) {
+    return nativeWebBrowser.isBackNavigationEnabled(isFresh);
+  }
+
   /**
    * Invoke the web browser Back functionality.
    */
@@ -355,6 +398,15 @@ public class JWebBrowser extends NSPanelComponent {
     return nativeWebBrowser.isForwardNavigationEnabled();
   }
 
+  /**
+   * Indicate if the web browser Forward functionality is enabled.
+   * @param isFresh true to ask the native side, false to use the state that the native side sent when it changed, which avoids a round trip.
+   * @return true if the web browser Forward functionality is enabled.
+   */
+  public boolean isForwardNavigationEnabled(boolean isFresh) {
+    return nativeWebBrowser.isForwardNavigationEnabled(isFresh);
+  }
+
   /**
    * Invoke the web browser Forward functionality.
    */
@@ -437,6 +489,106 @@ public class JWebBrowser extends NSPanelComponent {
     return result.length == 0? null: result[0];
   }
 
+  /**
+   * Evaluate several javascript expressions in a single execution, and wait for their values. This costs one round trip instead of one per expression.
+   * @param javascriptExpressions the expressions to evaluate, like "document.title", which are not statements and thus have no return statement.
+   * @return the values, potentially Strings, Numbers, Booleans, in the order of the expressions. The value of an expression that fails to evaluate is null, and all the values are null if the script could not be executed.
+   */
+  public Object[] executeJavascriptWithResults(String... javascriptExpressions) {
+    Object[] values = new Object[javascriptExpressions.length];
+    if(javascriptExpressions.length == 0) {
+      return values;
+    }
+    StringBuilder sb = new StringBuilder();
+    StringBuilder argsSB = new StringBuilder();
+    for(int i=0; i<javascriptExpressions.length; i++) {
+      // Each expression has its own error handling, so that a failing expression does not prevent getting the other values.
+      sb.append("var v").append(i).append(" = null;");
+      sb.append("try {v").append(i).append(" = (").append(javascriptExpressions[i]).append(");} catch(exxxxx) {}");
+      argsSB.append(", v").append(i);
+    }
+    sb.append(COMMAND_FUNCTION).append("('[[getScriptResults]]'").append(argsSB).append(");");
+    Object[] result = executeJavascriptWithCommandResult("[[getScriptResults]]", "(function() {" + sb + "})();");
+    if(result != null) {
+      System.arraycopy(result, 0, values, 0, Math.min(result.length, values.length));
+    }
+    return values;
+  }
+
+  private static final AtomicInteger nextScriptResultID = new AtomicInteger(1);
+
+  private static ScheduledExecutorService scriptResultTimeoutExecutor;
+
+  private static synchronized ScheduledExecutorService getScriptResultTimeoutExecutor() {
+    if(scriptResultTimeoutExecutor == null) {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "Web Browser Script Result Timeout");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      // The timeouts are cancelled when the results arrive, which is the common case: they must not stay in the queue.
+      executor.setRemoveOnCancelPolicy(true);
+      scriptResultTimeoutExecutor = executor;
+    }
+    return scriptResultTimeoutExecutor;
+  }
+
+  /**
+   * Execute some javascript without waiting, and get the result coming from the return statements when it is available. Several executions can be in flight at the same time.<br/>
+   * The result may be delivered in the event dispatch thread, so the future must not be waited for in that thread.
+   * @param javascript the javascript to execute which must contain explicit return statements.
+   * @return the future value, potentially a String, Number, Boolean.
+   */
+  public CompletableFuture<Object> executeJavascriptWithResultAsync(String javascript) {
+    if(!javascript.endsWith(";")) {
+      javascript = javascript + ";";
+    }
+    if(!((NativeComponent)nativeWebBrowser).isNativePeerInitialized()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    // Each execution has its own command, so that the results of concurrent executions do not get mixed.
+    String command = "[[getScriptResult" + nextScriptResultID.getAndIncrement() + "]]";
+    final CompletableFuture<Object[]> result = new CompletableFuture<Object[]>();
+    final WebBrowserAdapter webBrowserListener = new NCommandFutureListener(command, result);
+    nativeWebBrowser.addWebBrowserListener(webBrowserListener);
+    result.whenComplete(new BiConsumer<Object[], Throwable>() {
+      public void accept(Object[] parameters, Throwable t) {
+        nativeWebBrowser.removeWebBrowserListener(webBrowserListener);
+      }
+    });
+    nativeWebBrowser.executeJavascriptAndWaitAsync(
+        "try {" +
+        "  " + COMMAND_FUNCTION + "('" + command + "', (function() {" + javascript + "})());" +
+        "} catch(exxxxx) {" +
+        "  " + COMMAND_FUNCTION + "('" + command + "');" +
+        "}").whenComplete(new BiConsumer<Boolean, Throwable>() {
+      public void accept(Boolean isExecuted, Throwable t) {
+        if(t == null && Boolean.TRUE.equals(isExecuted)) {
+          // Like the synchronous execution, we wait for the command for one second.
+          final ScheduledFuture<?> timeoutFuture = getScriptResultTimeoutExecutor().schedule(new Runnable() {
+            public void run() {
+              result.complete(null);
+            }
+          }, 1, TimeUnit.SECONDS);
+          result.whenComplete(new BiConsumer<Object[], Throwable>() {
+            public void accept(Object[] parameters, Throwable t) {
+              timeoutFuture.cancel(false);
+            }
+          });
+        } else {
+          result.complete(null);
+        }
+      }
+    });
+    return result.thenApply(new Function<Object[], Object>() {
+      public Object apply(Object[] parameters) {
+        return parameters == null || parameters.length == 0? null: parameters[0];
+      }
+    });
+  }
+
   /**
    * Create the Javascript function call using the function name and Java objects as arguments. Note that it does not contain a semi-colon at the end of the statement, to allow call chaining.
    * @param functionName the name of the Javascript funtion.
@@ -526,6 +678,21 @@ public class JWebBrowser extends NSPanelComponent {
     }
   }
 
+  private static class NCommandFutureListener extends WebBrowserAdapter {
+    private String command;
+    private CompletableFuture<Object[]> result;
+    private NCommandFutureListener(String command, CompletableFuture<Object[]> result) {
+      this.command = command;
+      this.result = result;
+    }
+    @Override
+    public void commandReceived(WebBrowserCommandEvent e) {
+      if(command.equals(e.getCommand())) {
+        result.complete(e.getParameters());
+      }
+    }
+  }
+
   private Object[] executeJavascriptWithCommandResult(final String command, String script) {
     if(!((NativeComponent)nativeWebBrowser).isNativePeerInitialized()) {
       return null;
@@ -534,13 +701,11 @@ public class JWebBrowser extends NSPanelComponent {
     WebBrowserAdapter webBrowserListener = new NCommandListener(command, result);
     nativeWebBrowser.addWebBrowserListener(webBrowserListener);
     if(nativeWebBrowser.executeJavascriptAndWait(script)) {
-      for(int i=0; i<20; i++) {
-        EventDispatchUtils.sleepWithEventDispatch(new EventDispatchUtils.Condition() {
-          public boolean getValue() {
-            return result.get() != null;
-          }
-        }, 50);
-      }
+      EventDispatchUtils.waitWithEventDispatch(new EventDispatchUtils.Condition() {
+        public boolean getValue() {
+          return result.get() != null;
+        }
+      }, 1000);
     }
     nativeWebBrowser.removeWebBrowserListener(webBrowserListener);
     return result.get();
@@ -10,7 +10,8 @@ package chrriis.dj.nativeswing.swtimpl.components;
 import chrriis.dj.nativeswing.swtimpl.WebBrowserObject;
 
 /**
- * A VLC object responsible for audio-related actions.
+ * A VLC object responsible for audio-related actions.<br/>
+ * Each getter reads its value in a synchronous round trip to the player, while {@link #getSnapshot()} reads all of them in a single one.
  * @author Christopher Deckers
  */
 public class VLCAudio {
@@ -53,8 +54,18 @@ public class VLCAudio {
    * @return the volume, or -1 in case of failure.
    */
   public int getVolume() {
-    Object value = webBrowserObject.getObjectProperty("audio.volume");
-    return value == null? -1: Math.max(0, (int)Math.round((((Number)value).intValue() - 1) / 1.99));
+    return getVolume(webBrowserObject.getObjectProperty("audio.volume"));
+  }
+
+  private static int getVolume(Object value) {
+    return value instanceof Number? convertPluginVolume(((Number)value).intValue()): -1;
+  }
+
+  /**
+   * Convert a volume of the plugin, which is between 0 and 200, to a volume between 0 and 100.
+   */
+  static int convertPluginVolume(int pluginVolume) {
+    return Math.max(0, (int)Math.round((pluginVolume - 1) / 1.99));
   }
 
   /**
@@ -70,8 +81,7 @@ public class VLCAudio {
    * @return the audio track, or -1 in case of failure.
    */
   public int getTrack() {
-    Object value = webBrowserObject.getObjectProperty("audio.track");
-    return value == null? -1: ((Number)value).intValue();
+    return VLCInput.getIntValue(webBrowserObject.getObjectProperty("audio.track"));
   }
 
   /**
@@ -104,8 +114,11 @@ public class VLCAudio {
    * @return the audio channel, or null in case of failure.
    */
   public VLCChannel getChannel() {
-    Object value = webBrowserObject.getObjectProperty("audio.channel");
-    if(value == null) {
+    return getChannel(webBrowserObject.getObjectProperty("audio.channel"));
+  }
+
+  private static VLCChannel getChannel(Object value) {
+    if(!(value instanceof Number)) {
       return null;
     }
     switch(((Number)value).intValue()) {
@@ -125,4 +138,57 @@ public class VLCAudio {
     webBrowserObject.invokeObjectFunction("audio.toggleMute");
   }
 
-}
\ No newline at end of file
+  /**
+   * The values of the audio of a player, which are read together.
+   * @author Christopher Deckers
+   */
+  public static class VLCAudioSnapshot {
+
+    private boolean isMute;
+    private int volume;
+    private int track;
+    private VLCChannel channel;
+
+    VLCAudioSnapshot(Object[] values) {
+      isMute = Boolean.TRUE.equals(values[0]);
+      volume = VLCAudio.getVolume(values[1]);
+      track = VLCInput.getIntValue(values[2]);
+      channel = VLCAudio.getChannel(values[3]);
+    }
+
+    public boolean isMute() {
+      return isMute;
+    }
+
+    /**
+     * @return the volume, between 0 and 100, or -1 if it is not available.
+     */
+    public int getVolume() {
+      return volume;
+    }
+
+    /**
+     * @return the audio track, 0 if disabled, or -1 if it is not available.
+     */
+    public int getTrack() {
+      return track;
+    }
+
+    /**
+     * @return the audio channel, or null if it is not available.
+     */
+    public VLCChannel getChannel() {
+      return channel;
+    }
+
+  }
+
+  /**
+   * Get all the values of the audio in a single round trip to the player, instead of calling the getters one by one.
+   * @return the values of the audio.
+   */
+  public VLCAudioSnapshot getSnapshot() {
+    return new VLCAudioSnapshot(webBrowserObject.getObjectProperties("audio.mute", "audio.volume", "audio.track", "audio.channel"));
+  }
+
+}
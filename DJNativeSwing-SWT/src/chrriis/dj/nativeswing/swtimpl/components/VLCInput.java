@@ -10,7 +10,8 @@ package chrriis.dj.nativeswing.swtimpl.components;
 import chrriis.dj.nativeswing.swtimpl.WebBrowserObject;
 
 /**
- * A VLC object responsible for input-related actions.
+ * A VLC object responsible for input-related actions.<br/>
+ * Each getter reads its value in a synchronous round trip to the player, while {@link #getSnapshot()} reads all of them in a single one.
  * @author Christopher Deckers
  */
 public class VLCInput {
@@ -26,8 +27,7 @@ public class VLCInput {
    * @return the duration in milliseconds, or -1 in case of failure.
    */
   public int getDuration() {
-    Object value = webBrowserObject.getObjectProperty("input.length");
-    return value == null? -1: ((Number)value).intValue();
+    return getIntValue(webBrowserObject.getObjectProperty("input.length"));
   }
 
   /**
@@ -35,8 +35,7 @@ public class VLCInput {
    * @return the number of frames per second, or NaN in case of failure.
    */
   public float getFrameRate() {
-    Object value = webBrowserObject.getObjectProperty("input.fps");
-    return value == null? Float.NaN: ((Number)value).floatValue();
+    return getFloatValue(webBrowserObject.getObjectProperty("input.fps"));
   }
 
   /**
@@ -64,8 +63,7 @@ public class VLCInput {
    * @return the current relative position, or Float.NaN if not available.
    */
   public float getRelativePosition() {
-    Object value = webBrowserObject.getObjectProperty("input.position");
-    return value == null? Float.NaN: ((Number)value).floatValue();
+    return getFloatValue(webBrowserObject.getObjectProperty("input.position"));
   }
 
   /**
@@ -81,8 +79,7 @@ public class VLCInput {
    * @return the current position in milliseconds, or -1 in case of failure.
    */
   public int getAbsolutePosition() {
-    Object value = webBrowserObject.getObjectProperty("input.time");
-    return value == null? -1: ((Number)value).intValue();
+    return getIntValue(webBrowserObject.getObjectProperty("input.time"));
   }
 
   /**
@@ -98,8 +95,11 @@ public class VLCInput {
    * @return the state, or null in case of failure.
    */
   public VLCMediaState getMediaState() {
-    Object value = webBrowserObject.getObjectProperty("input.state");
-    if(value == null) {
+    return getMediaState(webBrowserObject.getObjectProperty("input.state"));
+  }
+
+  static VLCMediaState getMediaState(Object value) {
+    if(!(value instanceof Number)) {
       return null;
     }
     switch(((Number)value).intValue()) {
@@ -127,8 +127,95 @@ public class VLCInput {
    * @return the speed factor, or NaN in case of failure.
    */
   public float getPlaySpeedFactor() {
-    Object value = webBrowserObject.getObjectProperty("input.rate");
-    return value == null? Float.NaN: ((Number)value).floatValue();
+    return getFloatValue(webBrowserObject.getObjectProperty("input.rate"));
+  }
+
+  static int getIntValue(Object value) {
+    return value instanceof Number? ((Number)value).intValue(): -1;
+  }
+
+  static float getFloatValue(Object value) {
+    return value instanceof Number? ((Number)value).floatValue(): Float.NaN;
+  }
+
+  /**
+   * The values of the input of a player, which are read together.
+   * @author Christopher Deckers
+   */
+  public static class VLCInputSnapshot {
+
+    private int duration;
+    private float frameRate;
+    private boolean isVideoDisplayed;
+    private float relativePosition;
+    private int absolutePosition;
+    private VLCMediaState mediaState;
+    private float playSpeedFactor;
+
+    VLCInputSnapshot(Object[] values) {
+      duration = getIntValue(values[0]);
+      frameRate = getFloatValue(values[1]);
+      isVideoDisplayed = Boolean.TRUE.equals(values[2]);
+      relativePosition = getFloatValue(values[3]);
+      absolutePosition = getIntValue(values[4]);
+      mediaState = VLCInput.getMediaState(values[5]);
+      playSpeedFactor = getFloatValue(values[6]);
+    }
+
+    /**
+     * @return the duration in milliseconds of the current media, or -1 if it is not available.
+     */
+    public int getDuration() {
+      return duration;
+    }
+
+    /**
+     * @return the number of frames per second, or NaN if it is not available.
+     */
+    public float getFrameRate() {
+      return frameRate;
+    }
+
+    public boolean isVideoDisplayed() {
+      return isVideoDisplayed;
+    }
+
+    /**
+     * @return the current relative position, between 0 and 1, or NaN if it is not available.
+     */
+    public float getRelativePosition() {
+      return relativePosition;
+    }
+
+    /**
+     * @return the current position in milliseconds, or -1 if it is not available.
+     */
+    public int getAbsolutePosition() {
+      return absolutePosition;
+    }
+
+    /**
+     * @return the state, or null if it is not available.
+     */
+    public VLCMediaState getMediaState() {
+      return mediaState;
+    }
+
+    /**
+     * @return the speed factor, or NaN if it is not available.
+     */
+    public float getPlaySpeedFactor() {
+      return playSpeedFactor;
+    }
+
+  }
+
+  /**
+   * Get all the values of the input in a single round trip to the player, instead of calling the getters one by one.
+   * @return the values of the input.
+   */
+  public VLCInputSnapshot getSnapshot() {
+    return new VLCInputSnapshot(webBrowserObject.getObjectProperties("input.length", "input.fps", "input.isVout", "input.position", "input.time", "input.state", "input.rate"));
   }
 
-}
\ No newline at end of file
+}
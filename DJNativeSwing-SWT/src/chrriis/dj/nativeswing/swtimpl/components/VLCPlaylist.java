@@ -9,8 +9,6 @@ package chrriis.dj.nativeswing.swtimpl.components;
 
 import java.io.File;
 
-import javax.swing.SwingUtilities;
-
 import chrriis.dj.nativeswing.common.Utils;
 import chrriis.dj.nativeswing.common.WebServer;
 import chrriis.dj.nativeswing.swtimpl.NSSystemPropertySWT;
@@ -18,7 +16,8 @@ import chrriis.dj.nativeswing.swtimpl.WebBrowserObject;
 import chrriis.dj.nativeswing.swtimpl.components.VLCInput.VLCMediaState;
 
 /**
- * A VLC object responsible for playlist-related actions.
+ * A VLC object responsible for playlist-related actions.<br/>
+ * Each getter reads its value in a synchronous round trip to the player, while {@link #getSnapshot()} reads all of them in a single one.
  * @author Christopher Deckers
  */
 public class VLCPlaylist {
@@ -36,8 +35,7 @@ public class VLCPlaylist {
    * @return the item count, or -1 in case of failure.
    */
   public int getItemCount() {
-    Object value = webBrowserObject.getObjectProperty("playlist.items.count");
-    return value == null? -1: ((Number)value).intValue();
+    return VLCInput.getIntValue(webBrowserObject.getObjectProperty("playlist.items.count"));
   }
 
   /**
@@ -48,6 +46,41 @@ public class VLCPlaylist {
     return Boolean.TRUE.equals(webBrowserObject.getObjectProperty("playlist.isPlaying"));
   }
 
+  /**
+   * The values of the playlist of a player, which are read together.
+   * @author Christopher Deckers
+   */
+  public static class VLCPlaylistSnapshot {
+
+    private int itemCount;
+    private boolean isPlaying;
+
+    VLCPlaylistSnapshot(Object[] values) {
+      itemCount = VLCInput.getIntValue(values[0]);
+      isPlaying = Boolean.TRUE.equals(values[1]);
+    }
+
+    /**
+     * @return the item count, or -1 if it is not available.
+     */
+    public int getItemCount() {
+      return itemCount;
+    }
+
+    public boolean isPlaying() {
+      return isPlaying;
+    }
+
+  }
+
+  /**
+   * Get all the values of the playlist in a single round trip to the player, instead of calling the getters one by one.
+   * @return the values of the playlist.
+   */
+  public VLCPlaylistSnapshot getSnapshot() {
+    return new VLCPlaylistSnapshot(webBrowserObject.getObjectProperties("playlist.items.count", "playlist.isPlaying"));
+  }
+
   /**
    * Add an item from the classpath to the playlist.
    * @param clazz the reference clazz of the file to load.
@@ -161,53 +194,41 @@ public class VLCPlaylist {
     webBrowserObject.invokeObjectFunction("playlist.items.removeItem", index);
   }
 
-  private volatile Thread playlistFixThread;
+  private VLCStatusListener playlistFixListener;
 
   /**
    * VLC seems to have a bug: it does queue items but does not auto play the next one when the current one has finished playing.
    */
   private void setPlaylistFixActive(boolean isActive) {
-    if(playlistFixThread != null == isActive) {
+    if(playlistFixListener != null == isActive) {
       return;
     }
     if(isActive) {
       if(!Boolean.parseBoolean(NSSystemPropertySWT.VLCPLAYER_FIXPLAYLISTAUTOPLAYNEXT.get("true"))) {
         return;
       }
-      playlistFixThread = new Thread("NativeSwing - VLC Player playlist fix") {
-        @Override
-        public void run() {
-          final Thread currentThread = this;
-          boolean isFirst = true;
-          while(currentThread == playlistFixThread) {
-            if(vlcPlayer.isNativePeerDisposed()) {
-              setPlaylistFixActive(false);
-              return;
-            }
-            try {
-              sleep(isFirst? 3000: 500);
-              isFirst = false;
-            } catch(Exception e) {}
-            SwingUtilities.invokeLater(new Runnable() {
-              public void run() {
-                if(currentThread != playlistFixThread) {
-                  return;
-                }
-                if(!vlcPlayer.isNativePeerValid()) {
-                  return;
-                }
-                if(vlcPlayer.getVLCInput().getMediaState() == VLCMediaState.ERROR) {
-                  goNext();
-                }
-              }
-            });
+      if(vlcPlayer.isNativePeerDisposed()) {
+        return;
+      }
+      // The state is pushed by the player: the first seconds are ignored to let the item start.
+      final long activationTime = System.currentTimeMillis();
+      playlistFixListener = new VLCStatusListener() {
+        public void statusUpdated(VLCStatusEvent e) {
+          if(playlistFixListener != this || System.currentTimeMillis() - activationTime < 3000) {
+            return;
+          }
+          if(!vlcPlayer.isNativePeerValid()) {
+            return;
+          }
+          if(e.getMediaState() == VLCMediaState.ERROR) {
+            goNext();
           }
         }
       };
-      playlistFixThread.setDaemon(true);
-      playlistFixThread.start();
+      vlcPlayer.addVLCStatusListener(playlistFixListener);
     } else {
-      playlistFixThread = null;
+      vlcPlayer.removeVLCStatusListener(playlistFixListener);
+      playlistFixListener = null;
     }
   }
 
@@ -0,0 +1,73 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.components;
+
+import java.util.EventObject;
+
+import chrriis.dj.nativeswing.swtimpl.components.VLCInput.VLCMediaState;
+
+/**
+ * A snapshot of the status of a VLC player, which is sent by the player without having to query its values one by one.
+ * @author Christopher Deckers
+ */
+public class VLCStatusEvent extends EventObject {
+
+  private JVLCPlayer vlcPlayer;
+  private VLCMediaState mediaState;
+  private int absolutePosition;
+  private int duration;
+  private int volume;
+  private boolean isMute;
+
+  public VLCStatusEvent(JVLCPlayer vlcPlayer, VLCMediaState mediaState, int absolutePosition, int duration, int volume, boolean isMute) {
+    super(vlcPlayer);
+    this.vlcPlayer = vlcPlayer;
+    this.mediaState = mediaState;
+    this.absolutePosition = absolutePosition;
+    this.duration = duration;
+    this.volume = volume;
+    this.isMute = isMute;
+  }
+
+  public JVLCPlayer getVLCPlayer() {
+    return vlcPlayer;
+  }
+
+  /**
+   * @return the state, or null if it is not available.
+   */
+  public VLCMediaState getMediaState() {
+    return mediaState;
+  }
+
+  /**
+   * @return the current position in milliseconds, or -1 if it is not available.
+   */
+  public int getAbsolutePosition() {
+    return absolutePosition;
+  }
+
+  /**
+   * @return the duration in milliseconds of the current media, or -1 if it is not available.
+   */
+  public int getDuration() {
+    return duration;
+  }
+
+  /**
+   * @return the volume, or -1 if it is not available.
+   */
+  public int getVolume() {
+    return volume;
+  }
+
+  public boolean isMute() {
+    return isMute;
+  }
+
+}
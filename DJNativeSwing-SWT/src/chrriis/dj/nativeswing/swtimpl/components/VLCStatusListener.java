@@ -0,0 +1,22 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.components;
+
+import java.util.EventListener;
+
+/**
+ * @author Christopher Deckers
+ */
+public interface VLCStatusListener extends EventListener {
+
+  /**
+   * The status of the VLC player is sent by the player at the status update interval, as long as there is at least one listener.
+   */
+  public void statusUpdated(VLCStatusEvent e);
+
+}
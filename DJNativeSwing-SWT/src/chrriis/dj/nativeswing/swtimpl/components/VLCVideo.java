@@ -7,6 +7,8 @@
  */
 package chrriis.dj.nativeswing.swtimpl.components;
 
+import java.awt.Dimension;
+
 import chrriis.dj.nativeswing.swtimpl.WebBrowserObject;
 
 /**
@@ -39,6 +41,18 @@ public class VLCVideo {
     return value == null? -1: ((Number)value).intValue();
   }
 
+  /**
+   * Get the size of the video, which is read in a single round trip instead of getting the width and height separately.
+   * @return the size, or null in case of failure.
+   */
+  public Dimension getSize() {
+    Object[] values = webBrowserObject.getObjectProperties("video.width", "video.height");
+    if(!(values[0] instanceof Number) || !(values[1] instanceof Number)) {
+      return null;
+    }
+    return new Dimension(((Number)values[0]).intValue(), ((Number)values[1]).intValue());
+  }
+
   /**
    * Set whether the video is playing in full screen mode.
    * @param isFullScreen true if the full screen mode should be active, false otherwise.
@@ -9,6 +9,7 @@ package chrriis.dj.nativeswing.swtimpl.components.internal;
 
 import java.awt.Component;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import chrriis.dj.nativeswing.swtimpl.components.WebBrowserAuthenticationHandler;
 import chrriis.dj.nativeswing.swtimpl.components.WebBrowserFunction;
@@ -38,10 +39,16 @@ public interface INativeWebBrowser {
 
   public String getResourceLocation();
 
+  public String getResourceLocation(boolean isFresh);
+
+  public CompletableFuture<String> getResourceLocationAsync();
+
   public boolean navigate(String resourceLocation, WebBrowserNavigationParameters parameters);
 
   public String getHTMLContent();
 
+  public CompletableFuture<String> getHTMLContentAsync();
+
   public boolean setHTMLContent(String html);
 
   public boolean isJavascriptEnabled();
@@ -50,20 +57,28 @@ public interface INativeWebBrowser {
 
   public boolean executeJavascriptAndWait(String script);
 
+  public CompletableFuture<Boolean> executeJavascriptAndWaitAsync(String script);
+
   public void executeJavascript(String script);
 
   public Object executeJavascriptWithResult(String script);
 
+  public CompletableFuture<Object> executeJavascriptWithResultAsync(String script);
+
   public void stopLoading();
 
   public void reloadPage();
 
   public boolean isBackNavigationEnabled();
 
+  public boolean isBackNavigationEnabled(boolean isFresh);
+
   public void navigateBack();
 
   public boolean isForwardNavigationEnabled();
 
+  public boolean isForwardNavigationEnabled(boolean isFresh);
+
   public void navigateForward();
 
   public void setDefaultPopupMenuRegistered(boolean isDefaultPopupMenuRegistered);
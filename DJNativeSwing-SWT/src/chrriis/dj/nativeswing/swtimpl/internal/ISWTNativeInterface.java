@@ -9,8 +9,10 @@ package chrriis.dj.nativeswing.swtimpl.internal;
 
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.util.concurrent.CompletableFuture;
 
 import chrriis.dj.nativeswing.swtimpl.ApplicationMessageHandler;
+import chrriis.dj.nativeswing.swtimpl.EventDispatchUtils.Condition;
 import chrriis.dj.nativeswing.swtimpl.Message;
 import chrriis.dj.nativeswing.swtimpl.NativeInterfaceConfiguration;
 import chrriis.dj.nativeswing.swtimpl.NativeInterfaceListener;
@@ -45,6 +47,14 @@ public interface ISWTNativeInterface {
 
   public void asyncSend_(boolean isTargetNativeSide, final Message message);
 
+  public CompletableFuture<Object> execAsync_(boolean isTargetNativeSide, Message message);
+
+  /**
+   * Wait until the condition is met or the timeout is reached. A user interface thread runs the messages it receives while it waits, and checks the condition as soon as a message arrives.
+   * @return true if the condition is met, false if the timeout was reached.
+   */
+  public boolean waitWithMessageDispatch_(Condition condition, int timeout);
+
   public boolean isOutProcessNativeSide_();
 
   /**
@@ -0,0 +1,235 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.common;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the computation of the visible area of a native component that is covered by many lightweight overlays, like the one of the visibility-constrained proxy panels: the overlays are subtracted one at a time and the result is clipped by the bounds of the ancestors.<br/>
+ * The "legacy" benchmark uses a copy of the rectangle list subtraction that was used before the region, so that both can be compared.
+ * @author Christopher Deckers
+ */
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class RegionBenchmark {
+
+  private static final int WIDTH = 1200;
+  private static final int HEIGHT = 800;
+  private static final int ANCESTOR_COUNT = 5;
+
+  @Param({"10", "100", "500"})
+  public int overlayCount;
+
+  /** "grid" places the overlays like the cells of a form, "random" lets them overlap. */
+  @Param({"grid", "random"})
+  public String layout;
+
+  private Rectangle[] overlays;
+  private Rectangle[] ancestorBounds;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    overlays = new Rectangle[overlayCount];
+    if("grid".equals(layout)) {
+      int columnCount = (int)Math.ceil(Math.sqrt(overlayCount));
+      int cellWidth = WIDTH / columnCount;
+      int cellHeight = HEIGHT / columnCount;
+      for(int i=0; i<overlayCount; i++) {
+        overlays[i] = new Rectangle((i % columnCount) * cellWidth + 2, (i / columnCount) * cellHeight + 2, cellWidth - 4, cellHeight - 4);
+      }
+    } else if("random".equals(layout)) {
+      for(int i=0; i<overlayCount; i++) {
+        overlays[i] = new Rectangle(random.nextInt(WIDTH), random.nextInt(HEIGHT), 10 + random.nextInt(110), 10 + random.nextInt(60));
+      }
+    } else {
+      throw new IllegalArgumentException("Unknown layout: " + layout);
+    }
+    // Ancestors like scroll panes and internal frames, which clip the component a bit more each time.
+    ancestorBounds = new Rectangle[ANCESTOR_COUNT];
+    for(int i=0; i<ANCESTOR_COUNT; i++) {
+      ancestorBounds[i] = new Rectangle(-10 + i * 7, -10 + i * 5, WIDTH - i * 9, HEIGHT - i * 6);
+    }
+    // Fail early if both computations do not give the same area.
+    long legacyArea = getArea(computeLegacyVisibleArea());
+    long regionArea = getArea(computeRegionVisibleArea().toRectangles());
+    if(legacyArea != regionArea) {
+      throw new IllegalStateException("The areas differ: " + legacyArea + " != " + regionArea);
+    }
+  }
+
+  private static long getArea(Rectangle[] rectangles) {
+    long area = 0;
+    for(Rectangle rectangle: rectangles) {
+      area += (long)rectangle.width * rectangle.height;
+    }
+    return area;
+  }
+
+  @Benchmark
+  public Rectangle[] legacy() {
+    return computeLegacyVisibleArea();
+  }
+
+  @Benchmark
+  public Region region() {
+    return computeRegionVisibleArea();
+  }
+
+  @Benchmark
+  public Rectangle[] regionToRectangles() {
+    return computeRegionVisibleArea().toRectangles();
+  }
+
+  private Region computeRegionVisibleArea() {
+    Region shape = new Region(0, 0, WIDTH, HEIGHT);
+    for(int i=0; i<overlays.length && !shape.isEmpty(); i++) {
+      shape.subtract(overlays[i]);
+    }
+    for(Rectangle bounds: ancestorBounds) {
+      shape.intersect(bounds);
+    }
+    return shape;
+  }
+
+  private Rectangle[] computeLegacyVisibleArea() {
+    Rectangle[] shape = new Rectangle[] {new Rectangle(WIDTH, HEIGHT)};
+    for(Rectangle overlay: overlays) {
+      shape = legacySubtract(shape, new Rectangle[] {overlay});
+    }
+    for(Rectangle bounds: ancestorBounds) {
+      List<Rectangle> newRectangleList = new ArrayList<Rectangle>();
+      for(Rectangle rectangle: shape) {
+        Rectangle r = rectangle.intersection(bounds);
+        if(!r.isEmpty()) {
+          newRectangleList.add(r);
+        }
+      }
+      shape = newRectangleList.toArray(new Rectangle[0]);
+    }
+    return shape;
+  }
+
+  private static Rectangle[] legacySubtract(Rectangle[] rects1, Rectangle[] rects2) {
+    List<Rectangle> rectangleList = new ArrayList<Rectangle>(Arrays.asList(rects1));
+    List<Rectangle> newRectangleList = new ArrayList<Rectangle>();
+    for(int i=0; i<rects2.length; i++) {
+      Rectangle r2 = rects2[i];
+      for(Rectangle r1: rectangleList) {
+        if(r1.intersects(r2)) {
+          legacySubtract(r1, r2, newRectangleList);
+        } else {
+          newRectangleList.add((Rectangle)r1.clone());
+        }
+      }
+      rectangleList.clear();
+      if(newRectangleList.isEmpty()) {
+        break;
+      }
+      rectangleList.addAll(newRectangleList);
+      newRectangleList.clear();
+    }
+    return rectangleList.toArray(new Rectangle[0]);
+  }
+
+  private static void legacySubtract(Rectangle r1, Rectangle r2, List<Rectangle> resultList) {
+    boolean left = r2.x <= r1.x && r2.x + r2.width > r1.x;
+    boolean right = r2.x < r1.x + r1.width && r2.x + r2.width >= r1.x + r1.width;
+    boolean top = r2.y <= r1.y && r2.y + r2.height > r1.y;
+    boolean bottom = r2.y < r1.y + r1.height && r2.y + r2.height >= r1.y + r1.height;
+    if(left && right && top && bottom) {
+    } else if(left && right && top) {
+      int y = r2.y + r2.height;
+      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
+    } else if(left && right && bottom) {
+      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
+    } else if(top && bottom && left) {
+      int x = r2.x + r2.width;
+      resultList.add(new Rectangle(x, r1.y, r1.x + r1.width - x, r1.height));
+    } else if(top && bottom && right) {
+      resultList.add(new Rectangle(r1.x, r1.y, r2.x - r1.x, r1.height));
+    } else if(left && top) {
+      int x = r2.x + r2.width;
+      int y = r2.y + r2.height;
+      resultList.add(new Rectangle(x, r1.y, r1.x + r1.width - x, y - r1.y));
+      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
+    } else if(left && bottom) {
+      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
+      int x = r2.x + r2.width;
+      resultList.add(new Rectangle(x, r2.y, r1.x + r1.width - x, r1.y + r1.height - r2.y));
+    } else if(right && top) {
+      int y = r2.y + r2.height;
+      resultList.add(new Rectangle(r1.x, r1.y, r2.x - r1.x, y - r1.y));
+      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
+    } else if(right && bottom) {
+      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
+      resultList.add(new Rectangle(r1.x, r2.y, r2.x - r1.x, r1.y + r1.height - r2.y));
+    } else if(left && right) {
+      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
+      int y = r2.y + r2.height;
+      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
+    } else if(top && bottom) {
+      resultList.add(new Rectangle(r1.x, r1.y, r2.x - r1.x, r1.height));
+      int x = r2.x + r2.width;
+      resultList.add(new Rectangle(x, r1.y, r1.x + r1.width - x, r1.height));
+    } else if(left) {
+      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
+      int y = r2.y + r2.height;
+      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
+      int x = r2.x + r2.width;
+      resultList.add(new Rectangle(x, r2.y, r1.x + r1.width - x, r2.height));
+    } else if(right) {
+      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
+      int y = r2.y + r2.height;
+      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
+      resultList.add(new Rectangle(r1.x, r2.y, r2.x - r1.x, r2.height));
+    } else if(top) {
+      resultList.add(new Rectangle(r1.x, r1.y, r2.x - r1.x, r1.height));
+      int x = r2.x + r2.width;
+      resultList.add(new Rectangle(x, r1.y, r1.x + r1.width - x, r1.height));
+      int y = r2.y + r2.height;
+      resultList.add(new Rectangle(r2.x, y, r2.width, r1.y + r1.height - y));
+    } else if(bottom) {
+      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
+      int height = r1.y + r1.height - r2.y;
+      resultList.add(new Rectangle(r1.x, r2.y, r2.x - r1.x, height));
+      int x = r2.x + r2.width;
+      resultList.add(new Rectangle(x, r2.y, r1.x + r1.width - x, height));
+    } else {
+      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
+      int y = r2.y + r2.height;
+      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
+      resultList.add(new Rectangle(r1.x, r2.y, r2.x - r1.x, r2.height));
+      int x = r2.x + r2.width;
+      resultList.add(new Rectangle(x, r2.y, r1.x + r1.width - x, r2.height));
+    }
+  }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import chrriis.dj.nativeswing.swtimpl.CommandMessage;
+
+/**
+ * Both sides of a messaging channel in this VM, so that the messaging layer can be benchmarked without a display and without a peer VM.<br/>
+ * The native side is a stub peer: it runs the messages it receives, with a plain thread standing for its UI thread.
+ * @author Christopher Deckers
+ */
+class BenchmarkChannel {
+
+  static final String IN_PROCESS = "inProcess";
+  static final String SOCKETS = "sockets";
+
+  /**
+   * A command that returns its first argument.
+   */
+  static class CMN_echo extends CommandMessage {
+    @Override
+    public Object run(Object[] args) {
+      return args.length == 0? null: args[0];
+    }
+  }
+
+  /**
+   * The queue of the runnables of a UI thread. The thread is either started by the queue, or it is the thread that attached to the queue, in which case that thread has to pump the queue.
+   */
+  static class BenchmarkUIThread {
+
+    private final LinkedBlockingQueue<Runnable> runnableQueue = new LinkedBlockingQueue<Runnable>();
+    private volatile Thread thread;
+
+    public void start(String name) {
+      thread = new Thread(name) {
+        @Override
+        public void run() {
+          while(true) {
+            Runnable runnable;
+            try {
+              runnable = runnableQueue.take();
+            } catch(InterruptedException e) {
+              return;
+            }
+            try {
+              runnable.run();
+            } catch(Throwable t) {
+              t.printStackTrace();
+            }
+          }
+        }
+      };
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    /**
+     * Make the current thread the UI thread. It has to call pump() regularly, like between two calls of a benchmark.
+     */
+    public void attach() {
+      thread = Thread.currentThread();
+    }
+
+    public void pump() {
+      for(Runnable runnable; (runnable = runnableQueue.poll()) != null; ) {
+        runnable.run();
+      }
+    }
+
+    public void asyncExec(Runnable runnable) {
+      runnableQueue.add(runnable);
+    }
+
+    public boolean isCurrentThread() {
+      return Thread.currentThread() == thread;
+    }
+
+    public void stop() {
+      Thread thread = this.thread;
+      if(thread != null && thread != Thread.currentThread()) {
+        thread.interrupt();
+      }
+    }
+
+  }
+
+  private static class BenchmarkInProcessMessagingInterface extends InProcessMessagingInterface {
+
+    private final BenchmarkUIThread uiThread;
+
+    public BenchmarkInProcessMessagingInterface(boolean isNativeSide, BenchmarkUIThread uiThread) {
+      super(isNativeSide, 0);
+      this.uiThread = uiThread;
+    }
+
+    public void connect(InProcessMessagingInterface mirrorMessagingInterface) {
+      setMirrorMessagingInterface(mirrorMessagingInterface);
+    }
+
+    public void start() {
+      initialize(false);
+    }
+
+    @Override
+    protected void asyncUIExec(Runnable runnable) {
+      uiThread.asyncExec(runnable);
+    }
+
+    @Override
+    public boolean isUIThread() {
+      return uiThread.isCurrentThread();
+    }
+
+  }
+
+  private static class BenchmarkSocketsMessagingInterface extends OutProcessSocketsMessagingInterface {
+
+    private final BenchmarkUIThread uiThread;
+
+    public BenchmarkSocketsMessagingInterface(boolean isNativeSide, Socket socket, BenchmarkUIThread uiThread) {
+      super(isNativeSide, socket, false, 0);
+      this.uiThread = uiThread;
+    }
+
+    @Override
+    protected void asyncUIExec(Runnable runnable) {
+      uiThread.asyncExec(runnable);
+    }
+
+    @Override
+    public boolean isUIThread() {
+      return uiThread.isCurrentThread();
+    }
+
+  }
+
+  private final BenchmarkUIThread swingUIThread = new BenchmarkUIThread();
+  private final BenchmarkUIThread nativeUIThread = new BenchmarkUIThread();
+  private MessagingInterface swingMessagingInterface;
+  private MessagingInterface nativeMessagingInterface;
+
+  /**
+   * Create a channel and make it the channel of the native interface.
+   * @param type the type of channel, either IN_PROCESS or SOCKETS.
+   * @param isSwingUIThreadAttached true if the calling thread is the Swing UI thread, which it must pump, false to have a thread started for it.
+   */
+  public BenchmarkChannel(String type, boolean isSwingUIThreadAttached) throws IOException {
+    if(isSwingUIThreadAttached) {
+      swingUIThread.attach();
+    } else {
+      swingUIThread.start("Benchmark Swing UI");
+    }
+    nativeUIThread.start("Benchmark SWT UI");
+    if(IN_PROCESS.equals(type)) {
+      BenchmarkInProcessMessagingInterface swingMessagingInterface = new BenchmarkInProcessMessagingInterface(false, swingUIThread);
+      BenchmarkInProcessMessagingInterface nativeMessagingInterface = new BenchmarkInProcessMessagingInterface(true, nativeUIThread);
+      swingMessagingInterface.connect(nativeMessagingInterface);
+      nativeMessagingInterface.connect(swingMessagingInterface);
+      swingMessagingInterface.start();
+      nativeMessagingInterface.start();
+      this.swingMessagingInterface = swingMessagingInterface;
+      this.nativeMessagingInterface = nativeMessagingInterface;
+    } else if(SOCKETS.equals(type)) {
+      ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+      try {
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        // Both sides exchange the headers of the codec when they are created, so the native side has to be created concurrently.
+        final MessagingInterface[] nativeMessagingInterfaces = new MessagingInterface[1];
+        Thread nativeSideCreationThread = new Thread("Benchmark Native Side Creation") {
+          @Override
+          public void run() {
+            nativeMessagingInterfaces[0] = new BenchmarkSocketsMessagingInterface(true, socket, nativeUIThread);
+          }
+        };
+        nativeSideCreationThread.start();
+        swingMessagingInterface = new BenchmarkSocketsMessagingInterface(false, serverSocket.accept(), swingUIThread);
+        try {
+          nativeSideCreationThread.join();
+        } catch(InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        nativeMessagingInterface = nativeMessagingInterfaces[0];
+      } finally {
+        serverSocket.close();
+      }
+    } else {
+      throw new IllegalArgumentException("Unknown channel type: " + type);
+    }
+    SWTNativeInterface.setInterfaceState(true, swingMessagingInterface, swingMessagingInterface, nativeMessagingInterface);
+  }
+
+  /**
+   * Pump the Swing UI thread, which is only needed when the calling thread is attached to it.
+   */
+  public void pumpSwingUIThread() {
+    swingUIThread.pump();
+  }
+
+  public void close() {
+    SWTNativeInterface.setInterfaceState(false, null);
+    // Both sides are marked as dead first, so that the end of the stream is not taken for a crash of the peer.
+    swingMessagingInterface.setAlive(false);
+    nativeMessagingInterface.setAlive(false);
+    swingMessagingInterface.destroy();
+    nativeMessagingInterface.destroy();
+    swingUIThread.stop();
+    nativeUIThread.stop();
+  }
+
+}
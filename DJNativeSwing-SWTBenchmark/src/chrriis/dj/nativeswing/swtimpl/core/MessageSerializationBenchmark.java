@@ -0,0 +1,165 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chrriis.dj.nativeswing.swtimpl.Message;
+import chrriis.dj.nativeswing.swtimpl.core.BenchmarkChannel.CMN_echo;
+import chrriis.dj.nativeswing.swtimpl.core.MessagingInterface.CommandResultMessage;
+
+/**
+ * Benchmarks of the cost of encoding and decoding a message with each codec of the out-process interface, per type of message.
+ * @author Christopher Deckers
+ */
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MessageSerializationBenchmark {
+
+  static class CMN_echoControl extends ControlCommandMessage {
+    @Override
+    public Object run(Object[] args) {
+      return args.length == 0? null: args[0];
+    }
+  }
+
+  /**
+   * A stream of bytes that are read by the thread that wrote them, which lets a codec decode what it encoded.
+   */
+  private static class LoopbackBuffer {
+
+    private byte[] bytes = new byte[8192];
+    private int readIndex;
+    private int writeIndex;
+
+    final OutputStream outputStream = new OutputStream() {
+      @Override
+      public void write(int b) {
+        write(new byte[] {(byte)b}, 0, 1);
+      }
+      @Override
+      public void write(byte[] b, int off, int len) {
+        if(readIndex == writeIndex) {
+          readIndex = 0;
+          writeIndex = 0;
+        }
+        if(writeIndex + len > bytes.length) {
+          byte[] newBytes = new byte[Math.max(bytes.length * 2, writeIndex + len)];
+          System.arraycopy(bytes, 0, newBytes, 0, writeIndex);
+          bytes = newBytes;
+        }
+        System.arraycopy(b, off, bytes, writeIndex, len);
+        writeIndex += len;
+      }
+    };
+
+    final InputStream inputStream = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        if(readIndex == writeIndex) {
+          throw new IOException("Reading more bytes than were written!");
+        }
+        return bytes[readIndex++] & 0xFF;
+      }
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+          return 0;
+        }
+        int count = Math.min(len, writeIndex - readIndex);
+        if(count == 0) {
+          throw new IOException("Reading more bytes than were written!");
+        }
+        System.arraycopy(bytes, readIndex, b, off, count);
+        readIndex += count;
+        return count;
+      }
+      @Override
+      public int available() {
+        return writeIndex - readIndex;
+      }
+    };
+
+  }
+
+  @Param({MessageCodec.SERIALIZATION, MessageCodec.BINARY})
+  public String codecType;
+
+  @Param({"command", "controlCommand", "commandResult", "largeArguments"})
+  public String messageType;
+
+  private MessageCodec messageCodec;
+  private byte[] largeBytes = new byte[64 * 1024];
+  private int[] largeInts = new int[1024];
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    LoopbackBuffer loopbackBuffer = new LoopbackBuffer();
+    if(MessageCodec.BINARY.equals(codecType)) {
+      messageCodec = new BinaryMessageCodec(loopbackBuffer.inputStream, loopbackBuffer.outputStream);
+    } else {
+      messageCodec = new ObjectStreamMessageCodec(loopbackBuffer.inputStream, loopbackBuffer.outputStream);
+    }
+    // Fail early on a wrong parameter.
+    createMessage();
+  }
+
+  /**
+   * Create a new message for each call: the object stream would only write a reference to a message it already wrote.
+   */
+  private Message createMessage() {
+    Message message;
+    if("command".equals(messageType)) {
+      CMN_echo commandMessage = new CMN_echo();
+      SWTNativeInterface.setMessageArgs(commandMessage, 42, "text");
+      message = commandMessage;
+    } else if("controlCommand".equals(messageType)) {
+      CMN_echoControl controlCommandMessage = new CMN_echoControl();
+      controlCommandMessage.setComponentID(1);
+      SWTNativeInterface.setMessageArgs(controlCommandMessage, 42, "text");
+      message = controlCommandMessage;
+    } else if("commandResult".equals(messageType)) {
+      message = new CommandResultMessage(1, "result", null);
+    } else if("largeArguments".equals(messageType)) {
+      CMN_echo commandMessage = new CMN_echo();
+      SWTNativeInterface.setMessageArgs(commandMessage, largeBytes.clone(), largeInts.clone());
+      message = commandMessage;
+    } else {
+      throw new IllegalArgumentException("Unknown message type: " + messageType);
+    }
+    SWTNativeInterface.computeMessageID(message, true);
+    return message;
+  }
+
+  @Benchmark
+  public Message writeAndReadMessage() throws IOException, ClassNotFoundException {
+    messageCodec.writeMessage(createMessage());
+    return messageCodec.readMessage();
+  }
+
+}
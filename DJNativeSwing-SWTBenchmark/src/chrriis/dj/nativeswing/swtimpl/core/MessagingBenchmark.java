@@ -0,0 +1,136 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chrriis.dj.nativeswing.swtimpl.core.BenchmarkChannel.CMN_echo;
+
+/**
+ * Benchmarks of the round trips of command messages, over an in-process channel and over a socket channel.
+ * @author Christopher Deckers
+ */
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessagingBenchmark {
+
+  private static final int ASYNC_BATCH_SIZE = 100;
+
+  /**
+   * A channel that is shared by all the threads of a benchmark, which are non-UI threads.
+   */
+  @State(Scope.Benchmark)
+  public static class SharedChannel {
+
+    @Param({BenchmarkChannel.IN_PROCESS, BenchmarkChannel.SOCKETS})
+    public String channelType;
+
+    BenchmarkChannel channel;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      channel = new BenchmarkChannel(channelType, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      channel.close();
+    }
+
+  }
+
+  /**
+   * A channel where the benchmark thread is the Swing UI thread, so there can only be one benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class UIThreadChannel {
+
+    @Param({BenchmarkChannel.IN_PROCESS, BenchmarkChannel.SOCKETS})
+    public String channelType;
+
+    BenchmarkChannel channel;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      channel = new BenchmarkChannel(channelType, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      channel.close();
+    }
+
+  }
+
+  /**
+   * Asynchronous messages sent to the native side. A synchronous call ends each batch, so that the messages do not pile up faster than the peer runs them.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(ASYNC_BATCH_SIZE)
+  public Object asyncThroughput(SharedChannel sharedChannel) {
+    for(int i=1; i<ASYNC_BATCH_SIZE; i++) {
+      new CMN_echo().asyncExec(true, i);
+    }
+    return new CMN_echo().syncExec(true, ASYNC_BATCH_SIZE);
+  }
+
+  /**
+   * Synchronous calls from the Swing UI thread, which run in the UI thread of the native side.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Threads(1)
+  public Object syncSendLatency(UIThreadChannel uiThreadChannel) {
+    uiThreadChannel.channel.pumpSwingUIThread();
+    return new CMN_echo().syncExec(true, "ping");
+  }
+
+  /**
+   * Synchronous calls from a single non-UI thread, which go through the pending call table.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Threads(1)
+  public Object nonUISyncExecLatency(SharedChannel sharedChannel) {
+    return new CMN_echo().syncExec(true, "ping");
+  }
+
+  /**
+   * Synchronous calls from concurrent non-UI threads.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Threads(16)
+  public Object nonUISyncExecLatencyUnderContention(SharedChannel sharedChannel) {
+    return new CMN_echo().syncExec(true, "ping");
+  }
+
+}
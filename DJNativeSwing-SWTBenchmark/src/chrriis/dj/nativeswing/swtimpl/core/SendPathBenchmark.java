@@ -0,0 +1,140 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chrriis.dj.nativeswing.swtimpl.Message;
+
+/**
+ * A benchmark of the send path of the native interface: messages are sent from 1, 4 and 16 threads through NativeInterface to a messaging interface that discards them, so that the cost of finding the messaging interface and of the send call is what gets measured.<br/>
+ * Usage: SendPathBenchmark [duration in ms per run (default: 2000)]
+ * @author Christopher Deckers
+ */
+public class SendPathBenchmark {
+
+  private static final int[] THREAD_COUNTS = new int[] {1, 4, 16};
+
+  /**
+   * A messaging interface without a channel: written messages are counted and nothing is ever read.
+   */
+  private static class DiscardingMessagingInterface extends MessagingInterface {
+
+    private final AtomicLong writtenMessageCount = new AtomicLong();
+    private final Object READ_LOCK = new Object();
+
+    public DiscardingMessagingInterface() {
+      super(false, 0);
+      initialize(false);
+    }
+
+    @Override
+    public void destroy() {
+      setAlive(false);
+      synchronized(READ_LOCK) {
+        READ_LOCK.notifyAll();
+      }
+    }
+
+    @Override
+    public boolean isUIThread() {
+      return false;
+    }
+
+    @Override
+    protected void asyncUIExec(Runnable runnable) {
+      runnable.run();
+    }
+
+    @Override
+    protected void openChannel() {
+    }
+
+    @Override
+    protected void closeChannel() {
+    }
+
+    @Override
+    protected void writeMessageToChannel(Message message) throws IOException {
+      writtenMessageCount.incrementAndGet();
+    }
+
+    @Override
+    protected Message readMessageFromChannel() throws IOException, ClassNotFoundException {
+      synchronized(READ_LOCK) {
+        while(isAlive()) {
+          try {
+            READ_LOCK.wait();
+          } catch(InterruptedException e) {
+          }
+        }
+      }
+      return null;
+    }
+
+    public long getWrittenMessageCount() {
+      return writtenMessageCount.get();
+    }
+
+  }
+
+  public static void main(String[] args) throws Exception {
+    long duration = args.length > 0? Long.parseLong(args[0]): 2000;
+    DiscardingMessagingInterface messagingInterface = new DiscardingMessagingInterface();
+    SWTNativeInterface.setInterfaceState(true, messagingInterface);
+    try {
+      // Warm up, so that the first run is not penalized by compilation.
+      runSends(THREAD_COUNTS[THREAD_COUNTS.length - 1], duration / 2);
+      System.out.println("Threads\tMessages/s\tMessages/s per thread");
+      for(int threadCount: THREAD_COUNTS) {
+        long count = runSends(threadCount, duration);
+        long throughput = count * 1000 / duration;
+        System.out.println(threadCount + "\t" + throughput + "\t" + throughput / threadCount);
+      }
+      System.out.println("Messages written to the channel: " + messagingInterface.getWrittenMessageCount());
+    } finally {
+      SWTNativeInterface.setInterfaceState(false, null);
+      messagingInterface.destroy();
+    }
+  }
+
+  private static long runSends(int threadCount, final long duration) throws InterruptedException {
+    final AtomicLong messageCount = new AtomicLong();
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    Thread[] threads = new Thread[threadCount];
+    for(int i=0; i<threadCount; i++) {
+      threads[i] = new Thread("SendPathBenchmark Sender " + (i + 1)) {
+        @Override
+        public void run() {
+          try {
+            startLatch.await();
+          } catch(InterruptedException e) {
+            return;
+          }
+          long count = 0;
+          long endTime = System.currentTimeMillis() + duration;
+          // Checking the time is cheap compared to a send, but it is still done every few messages only.
+          while((count & 0xFF) != 0 || System.currentTimeMillis() < endTime) {
+            new Message().asyncSend(true);
+            count++;
+          }
+          messageCount.addAndGet(count);
+        }
+      };
+      threads[i].start();
+    }
+    startLatch.countDown();
+    for(Thread thread: threads) {
+      thread.join();
+    }
+    return messageCount.get();
+  }
+
+}
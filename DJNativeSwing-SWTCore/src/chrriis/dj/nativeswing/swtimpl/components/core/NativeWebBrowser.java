@@ -15,11 +15,14 @@ import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 import javax.swing.MenuSelectionManager;
@@ -57,7 +60,6 @@ import org.eclipse.swt.widgets.MenuItem;
 import org.eclipse.swt.widgets.Shell;
 
 import chrriis.dj.nativeswing.common.Utils;
-import chrriis.dj.nativeswing.swtimpl.CommandMessage;
 import chrriis.dj.nativeswing.swtimpl.NSSystemPropertySWT;
 import chrriis.dj.nativeswing.swtimpl.NativeComponent;
 import chrriis.dj.nativeswing.swtimpl.components.Credentials;
@@ -74,6 +76,7 @@ import chrriis.dj.nativeswing.swtimpl.components.WebBrowserWindowFactory;
 import chrriis.dj.nativeswing.swtimpl.components.WebBrowserWindowOpeningEvent;
 import chrriis.dj.nativeswing.swtimpl.components.WebBrowserWindowWillOpenEvent;
 import chrriis.dj.nativeswing.swtimpl.components.internal.INativeWebBrowser;
+import chrriis.dj.nativeswing.swtimpl.core.BroadcastCommandMessage;
 import chrriis.dj.nativeswing.swtimpl.core.ControlCommandMessage;
 import chrriis.dj.nativeswing.swtimpl.core.SWTNativeComponent;
 
@@ -249,6 +252,37 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
     }
   }
 
+  private static class CMJ_updateNavigationState extends ControlCommandMessage {
+    @Override
+    public Object run(Object[] args) {
+      NativeWebBrowser nativeWebBrowser = (NativeWebBrowser)getNativeComponent();
+      if(nativeWebBrowser == null) {
+        return null;
+      }
+      nativeWebBrowser.mirroredResourceLocation = (String)args[0];
+      nativeWebBrowser.isMirroredBackNavigationEnabled = (Boolean)args[1];
+      nativeWebBrowser.isMirroredForwardNavigationEnabled = (Boolean)args[2];
+      nativeWebBrowser.isNavigationStateMirrored = true;
+      return null;
+    }
+  }
+
+  /**
+   * Send the location and the history state to the Swing side when they change, so that its getters do not have to wait for a round trip.
+   * @param isForced true to send the state even if it did not change, because the Swing side discarded the state it had.
+   */
+  private static void updateNavigationState(Browser browser, boolean isForced) {
+    if(browser.isDisposed()) {
+      return;
+    }
+    Object[] navigationState = new Object[] {browser.getUrl(), browser.isBackEnabled(), browser.isForwardEnabled()};
+    if(!isForced && Arrays.equals(navigationState, (Object[])browser.getData("CMJ_updateNavigationState.state"))) {
+      return;
+    }
+    browser.setData("CMJ_updateNavigationState.state", navigationState);
+    new CMJ_updateNavigationState().asyncExec(browser, navigationState);
+  }
+
   private static class CMJ_commandReceived extends ControlCommandMessage {
     @Override
     public Object run(Object[] args) {
@@ -374,6 +408,10 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
   }
 
   private static class CMJ_updateLoadingProgress extends ControlCommandMessage {
+    @Override
+    protected boolean isCoalescable() {
+      return true;
+    }
     @Override
     public Object run(Object[] args) {
       NativeWebBrowser nativeWebBrowser = (NativeWebBrowser)getNativeComponent();
@@ -484,6 +522,8 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
     browser.addLocationListener(new LocationListener() {
       public void changed(LocationEvent e) {
         browser.setData("Browser.loading", false);
+        // The state is sent first, so that the listeners get the new state.
+        updateNavigationState(browser, false);
         new CMJ_locationChanged().asyncExec(browser, e.location, e.top);
       }
       public void changing(LocationEvent e) {
@@ -606,6 +646,7 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
               "}");
         }
         browser.setData("Browser.loading", false);
+        updateNavigationState(browser, false);
         updateProgress(100);
       }
     });
@@ -722,7 +763,7 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
     }
   }
 
-  private static class CMN_clearSessionCookies extends CommandMessage {
+  private static class CMN_clearSessionCookies extends BroadcastCommandMessage {
     @Override
     public Object run(Object[] args) {
       Browser.clearSessions();
@@ -734,7 +775,7 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
     new CMN_clearSessionCookies().asyncExec(true);
   }
 
-  private static class CMN_getCookie extends CommandMessage {
+  private static class CMN_getCookie extends BroadcastCommandMessage {
     @Override
     public Object run(Object[] args) {
       return Browser.getCookie((String)args[1], (String)args[0]);
@@ -745,7 +786,7 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
     return (String)new CMN_getCookie().syncExec(true, url, name);
   }
 
-  private static class CMN_setCookie extends CommandMessage {
+  private static class CMN_setCookie extends BroadcastCommandMessage {
     @Override
     public Object run(Object[] args) {
       Browser.setCookie((String)args[1], (String)args[0]);
@@ -764,18 +805,49 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
     }
   }
 
+  private volatile boolean isNavigationStateMirrored;
+  private volatile String mirroredResourceLocation;
+  private volatile boolean isMirroredBackNavigationEnabled;
+  private volatile boolean isMirroredForwardNavigationEnabled;
+
+  /**
+   * Discard the navigation state that the native side sent, because a navigation is requested: the getters ask the native side until it sends the new state.
+   */
+  private void invalidateNavigationState() {
+    isNavigationStateMirrored = false;
+  }
+
+  private boolean isNavigationStateMirrored(boolean isFresh) {
+    return !isFresh && isNavigationStateMirrored && isNativePeerValid();
+  }
+
   public String getResourceLocation() {
+    return getResourceLocation(false);
+  }
+
+  public String getResourceLocation(boolean isFresh) {
+    if(isNavigationStateMirrored(isFresh)) {
+      return mirroredResourceLocation;
+    }
     return (String)runSync(new CMN_getResourceLocation());
   }
 
+  public CompletableFuture<String> getResourceLocationAsync() {
+    return runAsyncWithResult(new CMN_getResourceLocation()).thenApply(TO_STRING_FUNCTION);
+  }
+
   private static class CMN_navigate extends ControlCommandMessage {
     @Override
     public Object run(Object[] args) {
-      return ((Browser)getControl()).setUrl((String)args[0], (String)args[1], (String[])args[2]);
+      Browser browser = (Browser)getControl();
+      boolean result = browser.setUrl((String)args[0], (String)args[1], (String[])args[2]);
+      updateNavigationState(browser, true);
+      return result;
     }
   }
 
   public boolean navigate(String resourceLocation, WebBrowserNavigationParameters parameters) {
+    invalidateNavigationState();
     return Boolean.TRUE.equals(runSync(new CMN_navigate(), resourceLocation, parameters == null? null: parameters.getPostData(), parameters == null? null: parameters.getHeaders()));
   }
 
@@ -790,14 +862,28 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
     return (String)runSync(new CMN_getHTMLContent());
   }
 
+  public CompletableFuture<String> getHTMLContentAsync() {
+    return runAsyncWithResult(new CMN_getHTMLContent()).thenApply(TO_STRING_FUNCTION);
+  }
+
+  private static final Function<Object, String> TO_STRING_FUNCTION = new Function<Object, String>() {
+    public String apply(Object o) {
+      return (String)o;
+    }
+  };
+
   private static class CMN_setHTMLContent extends ControlCommandMessage {
     @Override
     public Object run(Object[] args) {
-      return ((Browser)getControl()).setText((String)args[0]);
+      Browser browser = (Browser)getControl();
+      boolean result = browser.setText((String)args[0]);
+      updateNavigationState(browser, true);
+      return result;
     }
   }
 
   public boolean setHTMLContent(String html) {
+    invalidateNavigationState();
     return Boolean.TRUE.equals(runSync(new CMN_setHTMLContent(), html));
   }
 
@@ -859,6 +945,14 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
     return Boolean.TRUE.equals(runSync(new CMN_executeJavascript(), script));
   }
 
+  public CompletableFuture<Boolean> executeJavascriptAndWaitAsync(String script) {
+    return runAsyncWithResult(new CMN_executeJavascript(), script).thenApply(new Function<Object, Boolean>() {
+      public Boolean apply(Object o) {
+        return Boolean.TRUE.equals(o);
+      }
+    });
+  }
+
   public void executeJavascript(String script) {
     runAsync(new CMN_executeJavascript(), script);
   }
@@ -876,6 +970,10 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
     return runSync(new CMN_executeJavascriptWithResult(), script);
   }
 
+  public CompletableFuture<Object> executeJavascriptWithResultAsync(String script) {
+    return runAsyncWithResult(new CMN_executeJavascriptWithResult(), script);
+  }
+
   private static class CMN_stopLoading extends ControlCommandMessage {
     @Override
     public Object run(Object[] args) {
@@ -908,17 +1006,28 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
   }
 
   public boolean isBackNavigationEnabled() {
+    return isBackNavigationEnabled(false);
+  }
+
+  public boolean isBackNavigationEnabled(boolean isFresh) {
+    if(isNavigationStateMirrored(isFresh)) {
+      return isMirroredBackNavigationEnabled;
+    }
     return Boolean.TRUE.equals(runSync(new CMN_isBackNavigationEnabled()));
   }
 
   private static class CMN_navigateBack extends ControlCommandMessage {
     @Override
     public Object run(Object[] args) {
-      return ((Browser)getControl()).back();
+      Browser browser = (Browser)getControl();
+      boolean result = browser.back();
+      updateNavigationState(browser, true);
+      return result;
     }
   }
 
   public void navigateBack() {
+    invalidateNavigationState();
     runAsync(new CMN_navigateBack());
   }
 
@@ -930,17 +1039,28 @@ class NativeWebBrowser extends SWTNativeComponent implements INativeWebBrowser {
   }
 
   public boolean isForwardNavigationEnabled() {
+    return isForwardNavigationEnabled(false);
+  }
+
+  public boolean isForwardNavigationEnabled(boolean isFresh) {
+    if(isNavigationStateMirrored(isFresh)) {
+      return isMirroredForwardNavigationEnabled;
+    }
     return Boolean.TRUE.equals(runSync(new CMN_isForwardNavigationEnabled()));
   }
 
   private static class CMN_navigateForward extends ControlCommandMessage {
     @Override
     public Object run(Object[] args) {
-      return ((Browser)getControl()).forward();
+      Browser browser = (Browser)getControl();
+      boolean result = browser.forward();
+      updateNavigationState(browser, true);
+      return result;
     }
   }
 
   public void navigateForward() {
+    invalidateNavigationState();
     runAsync(new CMN_navigateForward());
   }
 
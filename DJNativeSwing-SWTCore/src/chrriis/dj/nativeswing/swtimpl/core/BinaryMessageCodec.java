@@ -0,0 +1,622 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import chrriis.dj.nativeswing.swtimpl.CommandMessage;
+import chrriis.dj.nativeswing.swtimpl.Message;
+import chrriis.dj.nativeswing.swtimpl.core.MessagingInterface.CommandResultMessage;
+
+/**
+ * A codec that uses a compact tagged binary format for messages and their arguments.<br/>
+ * Message classes are registered with a numeric ID the first time they are sent on a stream, so the class name is only transmitted once.
+ * Messages that have state other than their arguments, and argument types that are not known by this codec, fall back to Java serialization.
+ * @author Christopher Deckers
+ */
+class BinaryMessageCodec extends MessageCodec {
+
+  private static final int MAGIC = 0x444A4E53;
+  private static final int VERSION = 1;
+
+  private static final byte M_NULL = 0;
+  private static final byte M_MESSAGE = 1;
+  private static final byte M_COMMAND_MESSAGE = 2;
+  private static final byte M_CONTROL_COMMAND_MESSAGE = 3;
+  private static final byte M_COMMAND_RESULT_MESSAGE = 4;
+  private static final byte M_SERIALIZED = 5;
+
+  private static final byte T_NULL = 0;
+  private static final byte T_TRUE = 1;
+  private static final byte T_FALSE = 2;
+  private static final byte T_BYTE = 3;
+  private static final byte T_SHORT = 4;
+  private static final byte T_CHAR = 5;
+  private static final byte T_INT = 6;
+  private static final byte T_LONG = 7;
+  private static final byte T_FLOAT = 8;
+  private static final byte T_DOUBLE = 9;
+  private static final byte T_STRING = 10;
+  private static final byte T_BYTE_ARRAY = 11;
+  private static final byte T_INT_ARRAY = 12;
+  private static final byte T_OBJECT_ARRAY = 13;
+  private static final byte T_RECTANGLE = 14;
+  private static final byte T_DIMENSION = 15;
+  private static final byte T_AWT_POINT = 16;
+  private static final byte T_SWT_POINT = 17;
+  private static final byte T_PROPERTIES = 18;
+  private static final byte T_MESSAGE = 19;
+  private static final byte T_SERIALIZED = 20;
+
+  private static final int MAX_RETAINED_MESSAGE_BUFFER_SIZE = 64 * 1024;
+
+  private static final byte FLAG_SYNC_EXEC = 1;
+  private static final byte FLAG_UI = 2;
+
+  private static final Map<Class<?>, Byte> messageKindMap = new HashMap<Class<?>, Byte>();
+  private static final Map<Class<?>, Constructor<?>> messageConstructorMap = new HashMap<Class<?>, Constructor<?>>();
+
+  /**
+   * Get how a message class is encoded, checking the class once.
+   */
+  private static byte getMessageKind(Class<?> clazz) {
+    synchronized(messageKindMap) {
+      Byte kind = messageKindMap.get(clazz);
+      if(kind == null) {
+        kind = computeMessageKind(clazz);
+        messageKindMap.put(clazz, kind);
+      }
+      return kind;
+    }
+  }
+
+  private static byte computeMessageKind(Class<?> clazz) {
+    if(clazz == CommandResultMessage.class) {
+      return M_COMMAND_RESULT_MESSAGE;
+    }
+    if(Modifier.isAbstract(clazz.getModifiers())) {
+      return M_SERIALIZED;
+    }
+    Class<?> stopClass;
+    byte kind;
+    if(ControlCommandMessage.class.isAssignableFrom(clazz)) {
+      stopClass = ControlCommandMessage.class;
+      kind = M_CONTROL_COMMAND_MESSAGE;
+    } else if(CommandMessage.class.isAssignableFrom(clazz)) {
+      stopClass = CommandMessage.class;
+      kind = M_COMMAND_MESSAGE;
+    } else {
+      stopClass = Message.class;
+      kind = M_MESSAGE;
+    }
+    // We can only encode the message ourselves if its state is entirely held by the classes we know.
+    for(Class<?> c = clazz; c != stopClass; c = c.getSuperclass()) {
+      for(Field field: c.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if(!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+          return M_SERIALIZED;
+        }
+      }
+      try {
+        c.getDeclaredMethod("readResolve");
+        return M_SERIALIZED;
+      } catch(Exception e) {
+      }
+    }
+    Constructor<?> constructor;
+    try {
+      constructor = clazz.getDeclaredConstructor();
+      constructor.setAccessible(true);
+    } catch(Exception e) {
+      // Inner classes and classes without a default constructor.
+      return M_SERIALIZED;
+    }
+    synchronized(messageConstructorMap) {
+      messageConstructorMap.put(clazz, constructor);
+    }
+    return kind;
+  }
+
+  private static Message createMessage(Class<?> clazz) throws IOException {
+    if(getMessageKind(clazz) == M_SERIALIZED) {
+      throw new StreamCorruptedException("The message class cannot be instanciated: " + clazz.getName());
+    }
+    Constructor<?> constructor;
+    synchronized(messageConstructorMap) {
+      constructor = messageConstructorMap.get(clazz);
+    }
+    try {
+      return (Message)constructor.newInstance();
+    } catch(Exception e) {
+      IOException ex = new StreamCorruptedException("The message class cannot be instanciated: " + clazz.getName());
+      ex.initCause(e);
+      throw ex;
+    }
+  }
+
+  private DataOutputStream out;
+  private DataInputStream in;
+
+  private Map<Class<?>, Integer> outClassMap = new HashMap<Class<?>, Integer>();
+  private List<Class<?>> inClassList = new ArrayList<Class<?>>();
+
+  /** A message is encoded in this buffer first, so that a message that fails to encode leaves nothing in the stream. */
+  private ByteArrayOutputStream messageBuffer = new ByteArrayOutputStream();
+  private DataOutputStream messageOut = new DataOutputStream(messageBuffer);
+  /** The classes that were registered while encoding the current message, which are unregistered if it fails. */
+  private List<Class<?>> newOutClassList = new ArrayList<Class<?>>();
+
+  public BinaryMessageCodec(InputStream is, OutputStream os) throws IOException {
+    out = new DataOutputStream(new BufferedOutputStream(os));
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.flush();
+    in = new DataInputStream(new BufferedInputStream(is));
+    if(in.readInt() != MAGIC) {
+      throw new StreamCorruptedException("The peer does not use the binary message codec!");
+    }
+    int version = in.readUnsignedByte();
+    if(version != VERSION) {
+      throw new StreamCorruptedException("Unsupported binary message codec version: " + version);
+    }
+  }
+
+  @Override
+  public void writeMessage(Message message) throws IOException {
+    synchronized(out) {
+      encodeMessage(message);
+      writeEncodedMessage();
+      out.flush();
+    }
+  }
+
+  @Override
+  public Exception[] writeMessages(List<Message> messageList) throws IOException {
+    Exception[] exceptions = null;
+    synchronized(out) {
+      try {
+        for(int i=0; i<messageList.size(); i++) {
+          try {
+            encodeMessage(messageList.get(i));
+          } catch(Exception e) {
+            if(exceptions == null) {
+              exceptions = new Exception[messageList.size()];
+            }
+            exceptions[i] = e;
+            continue;
+          }
+          writeEncodedMessage();
+        }
+      } finally {
+        out.flush();
+      }
+    }
+    return exceptions;
+  }
+
+  /**
+   * Encode a message in the message buffer, so that it is copied to the stream only if the encoding succeeded. Otherwise, the classes it registered are unregistered since the reader never receives them.
+   */
+  private void encodeMessage(Message message) throws IOException {
+    messageBuffer.reset();
+    newOutClassList.clear();
+    boolean isEncoded = false;
+    try {
+      writeMessage(messageOut, message);
+      messageOut.flush();
+      isEncoded = true;
+    } finally {
+      if(!isEncoded) {
+        for(Class<?> clazz: newOutClassList) {
+          outClassMap.remove(clazz);
+        }
+      }
+      newOutClassList.clear();
+    }
+  }
+
+  private void writeEncodedMessage() throws IOException {
+    messageBuffer.writeTo(out);
+    if(messageBuffer.size() > MAX_RETAINED_MESSAGE_BUFFER_SIZE) {
+      // We do not keep the memory of an occasional large message.
+      messageBuffer = new ByteArrayOutputStream();
+      messageOut = new DataOutputStream(messageBuffer);
+    }
+  }
+
+  @Override
+  public Message readMessage() throws IOException, ClassNotFoundException {
+    return readMessage(in);
+  }
+
+  private void writeMessage(DataOutputStream out, Message message) throws IOException {
+    if(message == null) {
+      out.writeByte(M_NULL);
+      return;
+    }
+    Class<?> clazz = message.getClass();
+    byte kind = getMessageKind(clazz);
+    out.writeByte(kind);
+    if(kind == M_SERIALIZED) {
+      writeSerialized(out, message);
+      return;
+    }
+    if(kind != M_COMMAND_RESULT_MESSAGE) {
+      writeClass(out, clazz);
+    }
+    out.writeInt(SWTNativeInterface.getMessageID(message));
+    byte flags = 0;
+    if(SWTNativeInterface.isMessageSyncExec(message)) {
+      flags |= FLAG_SYNC_EXEC;
+    }
+    if(SWTNativeInterface.isMessageUI(message)) {
+      flags |= FLAG_UI;
+    }
+    out.writeByte(flags);
+    switch(kind) {
+      case M_COMMAND_RESULT_MESSAGE: {
+        CommandResultMessage commandResultMessage = (CommandResultMessage)message;
+        out.writeInt(commandResultMessage.getOriginalID());
+        writeValue(out, commandResultMessage.getResult());
+        Throwable exception = commandResultMessage.getException();
+        if(exception == null) {
+          out.writeByte(T_NULL);
+        } else {
+          writeSerialized(out, exception);
+        }
+        break;
+      }
+      case M_CONTROL_COMMAND_MESSAGE:
+        out.writeInt(((ControlCommandMessage)message).getComponentID());
+        writeArgs(out, SWTNativeInterface.getMessageArgs((CommandMessage)message));
+        break;
+      case M_COMMAND_MESSAGE:
+        writeArgs(out, SWTNativeInterface.getMessageArgs((CommandMessage)message));
+        break;
+    }
+  }
+
+  private Message readMessage(DataInputStream in) throws IOException, ClassNotFoundException {
+    byte kind = in.readByte();
+    switch(kind) {
+      case M_NULL:
+        return null;
+      case M_SERIALIZED: {
+        Object o = readSerialized(in);
+        if(o instanceof Message) {
+          return (Message)o;
+        }
+        System.err.println("Unknown message: " + o);
+        return null;
+      }
+      case M_COMMAND_RESULT_MESSAGE: {
+        int id = in.readInt();
+        byte flags = in.readByte();
+        int originalID = in.readInt();
+        Object result = readValue(in);
+        Throwable exception = null;
+        if(in.readByte() != T_NULL) {
+          exception = (Throwable)readSerializedObject(in);
+        }
+        Message message = new CommandResultMessage(originalID, result, exception);
+        setMessageHeader(message, id, flags);
+        return message;
+      }
+      case M_MESSAGE:
+      case M_COMMAND_MESSAGE:
+      case M_CONTROL_COMMAND_MESSAGE: {
+        Class<?> clazz = readClass(in);
+        Message message = createMessage(clazz);
+        setMessageHeader(message, in.readInt(), in.readByte());
+        if(kind == M_CONTROL_COMMAND_MESSAGE) {
+          ((ControlCommandMessage)message).setComponentID(in.readInt());
+        }
+        if(kind != M_MESSAGE) {
+          Object[] args = readArgs(in);
+          if(args != null) {
+            SWTNativeInterface.setMessageArgs((CommandMessage)message, args);
+          }
+        }
+        return message;
+      }
+    }
+    throw new StreamCorruptedException("Unknown message kind: " + kind);
+  }
+
+  private static void setMessageHeader(Message message, int id, byte flags) {
+    SWTNativeInterface.setMessageID(message, id);
+    SWTNativeInterface.setMessageSyncExec(message, (flags & FLAG_SYNC_EXEC) != 0);
+    SWTNativeInterface.setMessageUI(message, (flags & FLAG_UI) != 0);
+  }
+
+  private void writeArgs(DataOutputStream out, Object[] args) throws IOException {
+    if(args == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(args.length);
+    for(Object arg: args) {
+      writeValue(out, arg);
+    }
+  }
+
+  private Object[] readArgs(DataInputStream in) throws IOException, ClassNotFoundException {
+    int length = in.readInt();
+    if(length < 0) {
+      return null;
+    }
+    Object[] args = new Object[length];
+    for(int i=0; i<length; i++) {
+      args[i] = readValue(in);
+    }
+    return args;
+  }
+
+  private void writeClass(DataOutputStream out, Class<?> clazz) throws IOException {
+    Integer classID = outClassMap.get(clazz);
+    if(classID != null) {
+      out.writeInt(classID);
+      return;
+    }
+    classID = outClassMap.size();
+    outClassMap.put(clazz, classID);
+    newOutClassList.add(clazz);
+    out.writeInt(classID);
+    out.writeUTF(clazz.getName());
+  }
+
+  private Class<?> readClass(DataInputStream in) throws IOException, ClassNotFoundException {
+    int classID = in.readInt();
+    if(classID < inClassList.size()) {
+      return inClassList.get(classID);
+    }
+    if(classID != inClassList.size()) {
+      throw new StreamCorruptedException("Unexpected class ID: " + classID);
+    }
+    String className = in.readUTF();
+    Class<?> clazz;
+    try {
+      clazz = Class.forName(className, false, BinaryMessageCodec.class.getClassLoader());
+    } catch(ClassNotFoundException e) {
+      ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+      if(contextClassLoader == null) {
+        throw e;
+      }
+      clazz = Class.forName(className, false, contextClassLoader);
+    }
+    inClassList.add(clazz);
+    return clazz;
+  }
+
+  private void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  private void writeValue(DataOutputStream out, Object o) throws IOException {
+    if(o == null) {
+      out.writeByte(T_NULL);
+    } else if(o instanceof Boolean) {
+      out.writeByte((Boolean)o? T_TRUE: T_FALSE);
+    } else if(o instanceof Integer) {
+      out.writeByte(T_INT);
+      out.writeInt((Integer)o);
+    } else if(o instanceof String) {
+      out.writeByte(T_STRING);
+      writeString(out, (String)o);
+    } else if(o instanceof Long) {
+      out.writeByte(T_LONG);
+      out.writeLong((Long)o);
+    } else if(o instanceof Character) {
+      out.writeByte(T_CHAR);
+      out.writeChar((Character)o);
+    } else if(o instanceof Double) {
+      out.writeByte(T_DOUBLE);
+      out.writeDouble((Double)o);
+    } else if(o instanceof Float) {
+      out.writeByte(T_FLOAT);
+      out.writeFloat((Float)o);
+    } else if(o instanceof Byte) {
+      out.writeByte(T_BYTE);
+      out.writeByte((Byte)o);
+    } else if(o instanceof Short) {
+      out.writeByte(T_SHORT);
+      out.writeShort((Short)o);
+    } else if(o instanceof byte[]) {
+      byte[] bytes = (byte[])o;
+      out.writeByte(T_BYTE_ARRAY);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    } else if(o instanceof int[]) {
+      int[] ints = (int[])o;
+      out.writeByte(T_INT_ARRAY);
+      out.writeInt(ints.length);
+      for(int i: ints) {
+        out.writeInt(i);
+      }
+    } else if(o instanceof Object[]) {
+      Object[] array = (Object[])o;
+      out.writeByte(T_OBJECT_ARRAY);
+      writeClass(out, array.getClass().getComponentType());
+      out.writeInt(array.length);
+      for(Object element: array) {
+        writeValue(out, element);
+      }
+    } else if(o.getClass() == Rectangle.class) {
+      Rectangle rectangle = (Rectangle)o;
+      out.writeByte(T_RECTANGLE);
+      out.writeInt(rectangle.x);
+      out.writeInt(rectangle.y);
+      out.writeInt(rectangle.width);
+      out.writeInt(rectangle.height);
+    } else if(o.getClass() == Dimension.class) {
+      Dimension dimension = (Dimension)o;
+      out.writeByte(T_DIMENSION);
+      out.writeInt(dimension.width);
+      out.writeInt(dimension.height);
+    } else if(o.getClass() == java.awt.Point.class) {
+      java.awt.Point point = (java.awt.Point)o;
+      out.writeByte(T_AWT_POINT);
+      out.writeInt(point.x);
+      out.writeInt(point.y);
+    } else if(o.getClass() == org.eclipse.swt.graphics.Point.class) {
+      org.eclipse.swt.graphics.Point point = (org.eclipse.swt.graphics.Point)o;
+      out.writeByte(T_SWT_POINT);
+      out.writeInt(point.x);
+      out.writeInt(point.y);
+    } else if(o.getClass() == Properties.class && isStringProperties((Properties)o)) {
+      Properties properties = (Properties)o;
+      out.writeByte(T_PROPERTIES);
+      out.writeInt(properties.size());
+      for(Object key: properties.keySet()) {
+        writeString(out, (String)key);
+        writeString(out, properties.getProperty((String)key));
+      }
+    } else if(o instanceof Message && getMessageKind(o.getClass()) != M_SERIALIZED) {
+      out.writeByte(T_MESSAGE);
+      writeMessage(out, (Message)o);
+    } else {
+      writeSerialized(out, o);
+    }
+  }
+
+  private static boolean isStringProperties(Properties properties) {
+    for(Map.Entry<Object, Object> entry: properties.entrySet()) {
+      if(!(entry.getKey() instanceof String) || !(entry.getValue() instanceof String)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Object readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+    byte type = in.readByte();
+    switch(type) {
+      case T_NULL: return null;
+      case T_TRUE: return Boolean.TRUE;
+      case T_FALSE: return Boolean.FALSE;
+      case T_BYTE: return in.readByte();
+      case T_SHORT: return in.readShort();
+      case T_CHAR: return in.readChar();
+      case T_INT: return in.readInt();
+      case T_LONG: return in.readLong();
+      case T_FLOAT: return in.readFloat();
+      case T_DOUBLE: return in.readDouble();
+      case T_STRING: return readString(in);
+      case T_BYTE_ARRAY: {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+      }
+      case T_INT_ARRAY: {
+        int[] ints = new int[in.readInt()];
+        for(int i=0; i<ints.length; i++) {
+          ints[i] = in.readInt();
+        }
+        return ints;
+      }
+      case T_OBJECT_ARRAY: {
+        Class<?> componentType = readClass(in);
+        Object[] array = (Object[])Array.newInstance(componentType, in.readInt());
+        for(int i=0; i<array.length; i++) {
+          array[i] = readValue(in);
+        }
+        return array;
+      }
+      case T_RECTANGLE: return new Rectangle(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+      case T_DIMENSION: return new Dimension(in.readInt(), in.readInt());
+      case T_AWT_POINT: return new java.awt.Point(in.readInt(), in.readInt());
+      case T_SWT_POINT: return new org.eclipse.swt.graphics.Point(in.readInt(), in.readInt());
+      case T_PROPERTIES: {
+        Properties properties = new Properties();
+        for(int i=in.readInt(); i>0; i--) {
+          String key = readString(in);
+          properties.setProperty(key, readString(in));
+        }
+        return properties;
+      }
+      case T_MESSAGE: return readMessage(in);
+      case T_SERIALIZED: return readSerializedObject(in);
+    }
+    throw new StreamCorruptedException("Unknown value type: " + type);
+  }
+
+  private void writeSerialized(DataOutputStream out, Object o) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(baos);
+    oos.writeUnshared(o);
+    oos.close();
+    out.writeByte(T_SERIALIZED);
+    out.writeInt(baos.size());
+    baos.writeTo(out);
+  }
+
+  private Object readSerialized(DataInputStream in) throws IOException, ClassNotFoundException {
+    if(in.readByte() != T_SERIALIZED) {
+      throw new StreamCorruptedException("Serialized content was expected!");
+    }
+    return readSerializedObject(in);
+  }
+
+  private Object readSerializedObject(DataInputStream in) throws IOException, ClassNotFoundException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+    try {
+      return ois.readUnshared();
+    } finally {
+      ois.close();
+    }
+  }
+
+  @Override
+  public void closeOutput() {
+    try {
+      out.close();
+    } catch(Exception e) {
+    }
+  }
+
+  @Override
+  public void closeInput() {
+    try {
+      in.close();
+    } catch(Exception e) {
+    }
+  }
+
+}
@@ -0,0 +1,25 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import chrriis.dj.nativeswing.swtimpl.CommandMessage;
+
+/**
+ * A message that changes or reads a global state of the native side, like the cookies, and that is thus run by every live peer VM when there are several of them.<br/>
+ * A synchronous execution returns the first result that is not null, in the order of the peer VMs.
+ * @author Christopher Deckers
+ */
+public abstract class BroadcastCommandMessage extends CommandMessage {
+
+  /**
+   * Construct a broadcast command message.
+   */
+  public BroadcastCommandMessage() {
+  }
+
+}
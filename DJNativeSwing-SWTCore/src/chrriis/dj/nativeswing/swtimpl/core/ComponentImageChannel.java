@@ -0,0 +1,301 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import chrriis.dj.nativeswing.common.Utils;
+import chrriis.dj.nativeswing.swtimpl.CommandMessage;
+import chrriis.dj.nativeswing.swtimpl.NativeInterface;
+import chrriis.dj.nativeswing.swtimpl.NativeInterfaceAdapter;
+
+/**
+ * The Swing side of the channel that receives the component images from the native side.<br/>
+ * There is a single server socket, and each native side connects once and keeps its connection. Each connection starts with the index of its peer VM, and carries frames made of a request ID, a byte count (-1 when there is nothing to paint) and the data, so several captures can be in flight at the same time.
+ * @author Christopher Deckers
+ */
+class ComponentImageChannel {
+
+  private static ComponentImageChannel instance;
+
+  /**
+   * Get the channel, creating its server socket if needed.
+   */
+  public static synchronized ComponentImageChannel getInstance() throws IOException {
+    if(instance == null) {
+      instance = new ComponentImageChannel();
+    }
+    return instance;
+  }
+
+  private ServerSocket serverSocket;
+  private String hostAddress;
+  private Map<Integer, ImageRequest> requestMap = new HashMap<Integer, ImageRequest>();
+  private static final AtomicInteger nextRequestID = new AtomicInteger(1);
+
+  private ComponentImageChannel() throws IOException {
+    String localHostAddress = Utils.getLocalHostAddress();
+    if(localHostAddress == null) {
+      localHostAddress = "127.0.0.1";
+    }
+    hostAddress = localHostAddress;
+    serverSocket = new ServerSocket();
+    serverSocket.setReuseAddress(false);
+    serverSocket.bind(new InetSocketAddress(InetAddress.getByName(hostAddress), 0));
+    NativeInterface.addNativeInterfaceListener(new NativeInterfaceAdapter() {
+      @Override
+      public void nativeInterfaceClosed() {
+        // The native side will not answer pending requests anymore.
+        cancelRequests(-1);
+      }
+    });
+    Thread acceptThread = new Thread("NativeSwing Component Image Channel") {
+      @Override
+      public void run() {
+        while(true) {
+          final Socket socket;
+          try {
+            socket = serverSocket.accept();
+          } catch(IOException e) {
+            e.printStackTrace();
+            return;
+          }
+          Thread readerThread = new Thread("NativeSwing Component Image Channel Reader") {
+            @Override
+            public void run() {
+              readFrames(socket);
+            }
+          };
+          readerThread.setDaemon(true);
+          readerThread.start();
+        }
+      }
+    };
+    acceptThread.setDaemon(true);
+    acceptThread.start();
+  }
+
+  public String getHostAddress() {
+    return hostAddress;
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  private void readFrames(Socket socket) {
+    int peerVMIndex = -1;
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      peerVMIndex = in.readInt();
+      while(true) {
+        int requestID = in.readInt();
+        int byteCount = in.readInt();
+        byte[] data = null;
+        if(byteCount >= 0) {
+          data = new byte[byteCount];
+          in.readFully(data);
+        }
+        ImageRequest request;
+        synchronized(requestMap) {
+          request = requestMap.remove(requestID);
+        }
+        if(request != null) {
+          request.setData(data);
+        }
+      }
+    } catch(IOException e) {
+      // The native side is gone.
+    }
+    try {
+      socket.close();
+    } catch(IOException e) {
+    }
+    if(peerVMIndex >= 0) {
+      // The requests that were sent to that native side will not be answered, but the other peer VMs still answer theirs.
+      cancelRequests(peerVMIndex);
+    }
+  }
+
+  /**
+   * Cancel the pending requests that were sent to a peer VM.
+   * @param peerVMIndex the index of the peer VM, or -1 for all the peer VMs.
+   */
+  private void cancelRequests(int peerVMIndex) {
+    List<ImageRequest> requestList = new ArrayList<ImageRequest>();
+    synchronized(requestMap) {
+      for(Iterator<ImageRequest> it=requestMap.values().iterator(); it.hasNext(); ) {
+        ImageRequest request = it.next();
+        if(peerVMIndex < 0 || request.getPeerVMIndex() == peerVMIndex) {
+          it.remove();
+          requestList.add(request);
+        }
+      }
+    }
+    for(ImageRequest request: requestList) {
+      request.fail();
+    }
+  }
+
+  private void failRequests(int[] requestIDs) {
+    List<ImageRequest> requestList = new ArrayList<ImageRequest>();
+    synchronized(requestMap) {
+      for(int requestID: requestIDs) {
+        ImageRequest request = requestMap.remove(requestID);
+        if(request != null) {
+          requestList.add(request);
+        }
+      }
+    }
+    for(ImageRequest request: requestList) {
+      request.fail();
+    }
+  }
+
+  /**
+   * Sent by the native side when it could not write the frames of some requests, because its connection could not be opened or was lost.
+   */
+  static class CMJ_failRequests extends CommandMessage {
+    @Override
+    public Object run(Object[] args) throws Exception {
+      ComponentImageChannel componentImageChannel;
+      synchronized(ComponentImageChannel.class) {
+        componentImageChannel = instance;
+      }
+      if(componentImageChannel != null) {
+        componentImageChannel.failRequests((int[])args[0]);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Get the ID of the next request. The IDs are also used by the captures that do not go through the channel, so that all the captures of a component are ordered.
+   */
+  public static int getNextRequestID() {
+    return nextRequestID.getAndIncrement();
+  }
+
+  /**
+   * Create a request, which must be passed to the native side with the host address and the port of this channel.
+   * @param peerVMIndex the index of the peer VM that the request is sent to, which identifies its connection.
+   */
+  public ImageRequest createRequest(int peerVMIndex) {
+    synchronized(requestMap) {
+      ImageRequest request = new ImageRequest(getNextRequestID(), peerVMIndex);
+      requestMap.put(request.getID(), request);
+      return request;
+    }
+  }
+
+  class ImageRequest {
+
+    private int id;
+    private int peerVMIndex;
+    private boolean isDone;
+    private boolean isFailed;
+    private byte[] data;
+
+    ImageRequest(int id, int peerVMIndex) {
+      this.id = id;
+      this.peerVMIndex = peerVMIndex;
+    }
+
+    public int getID() {
+      return id;
+    }
+
+    public int getPeerVMIndex() {
+      return peerVMIndex;
+    }
+
+    synchronized void setData(byte[] data) {
+      this.data = data;
+      isDone = true;
+      notifyAll();
+    }
+
+    synchronized void fail() {
+      isFailed = true;
+      isDone = true;
+      notifyAll();
+    }
+
+    /**
+     * Indicate whether the request did not get an answer through the channel, because the native side could not write it or because the wait timed out.
+     */
+    public synchronized boolean isFailed() {
+      return isFailed;
+    }
+
+    /**
+     * Wait for the data of the image.
+     * @param timeout the timeout in milliseconds, or 0 to wait until the native side answers.
+     * @return the data, or null if there is nothing to paint or the request failed, which can be checked with {@link #isFailed()}.
+     */
+    public byte[] waitForData(long timeout) throws InterruptedException {
+      synchronized(this) {
+        long endTime = System.currentTimeMillis() + timeout;
+        while(!isDone) {
+          if(timeout <= 0) {
+            wait();
+          } else {
+            long remaining = endTime - System.currentTimeMillis();
+            if(remaining <= 0) {
+              break;
+            }
+            wait(remaining);
+          }
+        }
+        if(isDone) {
+          return data;
+        }
+        isFailed = true;
+      }
+      synchronized(requestMap) {
+        requestMap.remove(id);
+      }
+      return null;
+    }
+
+  }
+
+  /**
+   * Paint to the image the RGB values that were sent for the rectangles, row by row.
+   */
+  public static void readPixels(byte[] data, Rectangle[] rectangles, BufferedImage image) {
+    int offset = 0;
+    for(Rectangle rectangle: rectangles) {
+      int count = rectangle.width * rectangle.height;
+      if(offset + count * 3 > data.length) {
+        return;
+      }
+      int[] pixels = new int[count];
+      for(int i=0; i<count; i++) {
+        pixels[i] = 0xFF000000 | (0xFF & data[offset]) << 16 | (0xFF & data[offset + 1]) << 8 | (0xFF & data[offset + 2]);
+        offset += 3;
+      }
+      ImageTileFrame.setPixels(image, rectangle, pixels);
+    }
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.awt.Rectangle;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.eclipse.swt.graphics.ImageData;
+
+/**
+ * The native side of the component image channel: a single connection to the Swing side and a single thread that writes the frames in order.<br/>
+ * If the connection cannot be opened or is lost, the requests whose frames are not written are failed with a message, so that the Swing side does not wait for them.
+ * @author Christopher Deckers
+ */
+class ComponentImageChannelWriter {
+
+  private static ComponentImageChannelWriter instance;
+
+  /**
+   * Get the writer connected to the given channel, replacing the current one if the channel is different or if the connection was lost.
+   * @param peerVMIndex the index of this peer VM, which the Swing side uses to cancel the requests of a connection that is lost.
+   */
+  public static synchronized ComponentImageChannelWriter getInstance(String hostAddress, int port, int peerVMIndex) {
+    if(instance == null || instance.isClosed || instance.port != port || !instance.hostAddress.equals(hostAddress) || instance.peerVMIndex != peerVMIndex) {
+      if(instance != null) {
+        instance.close();
+      }
+      instance = new ComponentImageChannelWriter(hostAddress, port, peerVMIndex);
+    }
+    return instance;
+  }
+
+  private static class Frame {
+    private int requestID;
+    private byte[] data;
+    private ImageData imageData;
+    private Rectangle[] rectangles;
+    Frame(int requestID, byte[] data, ImageData imageData, Rectangle[] rectangles) {
+      this.requestID = requestID;
+      this.data = data;
+      this.imageData = imageData;
+      this.rectangles = rectangles;
+    }
+  }
+
+  private static final Frame CLOSE_FRAME = new Frame(0, null, null, null);
+
+  private String hostAddress;
+  private int port;
+  private int peerVMIndex;
+  private volatile boolean isClosed;
+  private BlockingQueue<Frame> frameQueue = new LinkedBlockingQueue<Frame>();
+
+  private ComponentImageChannelWriter(String hostAddress, int port, int peerVMIndex) {
+    this.hostAddress = hostAddress;
+    this.port = port;
+    this.peerVMIndex = peerVMIndex;
+    Thread writerThread = new Thread("NativeSwing[" + SWTNativeInterface.getInstance().getInterfaceID(true) + "] Component Image Channel Writer") {
+      @Override
+      public void run() {
+        writeFrames();
+      }
+    };
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Send a frame that tells there is nothing to paint.
+   */
+  public void sendEmpty(int requestID) {
+    addFrame(new Frame(requestID, null, null, null));
+  }
+
+  /**
+   * Send data that is already encoded.
+   */
+  public void send(int requestID, byte[] data) {
+    addFrame(new Frame(requestID, data, null, null));
+  }
+
+  /**
+   * Send the RGB values of the rectangles, row by row. The conversion happens in the writer thread.
+   */
+  public void send(int requestID, ImageData imageData, Rectangle[] rectangles) {
+    addFrame(new Frame(requestID, null, imageData, rectangles));
+  }
+
+  private void addFrame(Frame frame) {
+    synchronized(frameQueue) {
+      if(!isFailed) {
+        frameQueue.add(frame);
+        return;
+      }
+    }
+    failRequests(new int[] {frame.requestID});
+  }
+
+  private void close() {
+    isClosed = true;
+    frameQueue.add(CLOSE_FRAME);
+  }
+
+  private boolean isFailed;
+
+  private void writeFrames() {
+    Socket socket = null;
+    Frame frame = null;
+    try {
+      socket = new Socket(hostAddress, port);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      out.writeInt(peerVMIndex);
+      while(true) {
+        frame = frameQueue.take();
+        if(frame == CLOSE_FRAME) {
+          frame = null;
+          break;
+        }
+        out.writeInt(frame.requestID);
+        if(frame.data != null) {
+          out.writeInt(frame.data.length);
+          out.write(frame.data);
+        } else if(frame.imageData != null) {
+          writePixels(out, frame.imageData, frame.rectangles);
+        } else {
+          out.writeInt(-1);
+        }
+        frame = null;
+        if(frameQueue.isEmpty()) {
+          out.flush();
+        }
+      }
+    } catch(Exception e) {
+      if(!isClosed) {
+        e.printStackTrace();
+      }
+      // The frames that were not written are lost, and so are the frames that are sent to this writer from now on.
+      List<Frame> frameList = new ArrayList<Frame>();
+      if(frame != null) {
+        frameList.add(frame);
+      }
+      synchronized(frameQueue) {
+        isFailed = true;
+        frameQueue.drainTo(frameList);
+      }
+      List<Integer> requestIDList = new ArrayList<Integer>();
+      for(Frame frame_: frameList) {
+        if(frame_ != CLOSE_FRAME) {
+          requestIDList.add(frame_.requestID);
+        }
+      }
+      if(!requestIDList.isEmpty()) {
+        int[] requestIDs = new int[requestIDList.size()];
+        for(int i=0; i<requestIDs.length; i++) {
+          requestIDs[i] = requestIDList.get(i);
+        }
+        failRequests(requestIDs);
+      }
+    }
+    isClosed = true;
+    try {
+      if(socket != null) {
+        socket.close();
+      }
+    } catch(Exception e) {
+    }
+  }
+
+  private static void failRequests(int[] requestIDs) {
+    try {
+      new ComponentImageChannel.CMJ_failRequests().asyncExec(false, requestIDs);
+    } catch(Exception e) {
+      // The interface is closed, and the Swing side cancels all its requests.
+    }
+  }
+
+  /**
+   * Get the RGB values of the rectangles, row by row, the way they are written to the channel.
+   */
+  static byte[] getPixels(ImageData imageData, Rectangle[] rectangles) {
+    int byteCount = 0;
+    int maxWidth = 0;
+    for(Rectangle rectangle: rectangles) {
+      byteCount += rectangle.width * rectangle.height * 3;
+      maxWidth = Math.max(maxWidth, rectangle.width);
+    }
+    byte[] bytes = new byte[byteCount];
+    int[] pixels = new int[maxWidth];
+    int offset = 0;
+    for(Rectangle rectangle: rectangles) {
+      for(int j=0; j<rectangle.height; j++) {
+        getRowBytes(imageData, rectangle.x, rectangle.y + j, rectangle.width, pixels, bytes, offset);
+        offset += rectangle.width * 3;
+      }
+    }
+    return bytes;
+  }
+
+  private static void writePixels(DataOutputStream out, ImageData imageData, Rectangle[] rectangles) throws IOException {
+    int byteCount = 0;
+    int maxWidth = 0;
+    for(Rectangle rectangle: rectangles) {
+      byteCount += rectangle.width * rectangle.height * 3;
+      maxWidth = Math.max(maxWidth, rectangle.width);
+    }
+    out.writeInt(byteCount);
+    int[] pixels = new int[maxWidth];
+    byte[] bytes = new byte[maxWidth * 3];
+    for(Rectangle rectangle: rectangles) {
+      for(int j=0; j<rectangle.height; j++) {
+        getRowBytes(imageData, rectangle.x, rectangle.y + j, rectangle.width, pixels, bytes, 0);
+        out.write(bytes, 0, rectangle.width * 3);
+      }
+    }
+  }
+
+  private static void getRowBytes(ImageData imageData, int x, int y, int width, int[] pixels, byte[] bytes, int offset) {
+    ImageTileFrame.getRowPixels(imageData, x, y, width, pixels, 0);
+    for(int i=0; i<width; i++) {
+      int pixel = pixels[i];
+      bytes[offset + i * 3] = (byte)(pixel >>> 16);
+      bytes[offset + i * 3 + 1] = (byte)(pixel >>> 8);
+      bytes[offset + i * 3 + 2] = (byte)pixel;
+    }
+  }
+
+}
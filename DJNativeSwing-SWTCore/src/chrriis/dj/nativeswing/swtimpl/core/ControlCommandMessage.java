@@ -33,6 +33,10 @@ public abstract class ControlCommandMessage extends CommandMessage {
     return componentID;
   }
 
+  void setComponentID(int componentID) {
+    this.componentID = componentID;
+  }
+
   /**
    * Set the control that is used to identify the control on the local side.
    * @param control the control.
@@ -177,6 +181,14 @@ public abstract class ControlCommandMessage extends CommandMessage {
     }
   }
 
+  /**
+   * Indicate whether this message only sets a state that a later message of the same class for the same component supersedes, so that a pending asynchronous message can be dropped when a new one is sent.
+   * @return true if the message can be coalesced, false otherwise.
+   */
+  protected boolean isCoalescable() {
+    return false;
+  }
+
   @Override
   protected boolean isValid() {
     SWTNativeInterface nativeInterface = SWTNativeInterface.getInstance();
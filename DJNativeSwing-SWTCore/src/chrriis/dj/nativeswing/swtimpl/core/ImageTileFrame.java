@@ -0,0 +1,260 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.RGB;
+
+/**
+ * The last frame of a component image, kept on the native side to only transfer the tiles that changed since the previous capture.<br/>
+ * Pixels are stored as opaque ARGB values, and a pixel with a zero alpha means that its value is unknown to the Swing side.
+ * @author Christopher Deckers
+ */
+class ImageTileFrame {
+
+  static final int TILE_SIZE = 32;
+
+  private static final int MAX_CHUNK_LENGTH = Short.MAX_VALUE;
+
+  private int width;
+  private int height;
+  private int[] pixels;
+
+  /**
+   * Get the opaque ARGB values of a row of pixels, which must be within the bounds of the image data.
+   */
+  static void getARGBPixels(ImageData imageData, int x, int y, int count, int[] pixels, int startIndex) {
+    imageData.getPixels(x, y, count, pixels, startIndex);
+    PaletteData palette = imageData.palette;
+    for(int i=startIndex; i<startIndex + count; i++) {
+      int pixel = pixels[i];
+      if(palette.isDirect) {
+        // We cannot use palette.getRGB() because all the creations of RGB objects make it too slow.
+        int red = pixel & palette.redMask;
+        red = (palette.redShift < 0? red >>> -palette.redShift: red << palette.redShift) & 0xFF;
+        int green = pixel & palette.greenMask;
+        green = (palette.greenShift < 0? green >>> -palette.greenShift: green << palette.greenShift) & 0xFF;
+        int blue = pixel & palette.blueMask;
+        blue = (palette.blueShift < 0? blue >>> -palette.blueShift: blue << palette.blueShift) & 0xFF;
+        pixels[i] = 0xFF000000 | red << 16 | green << 8 | blue;
+      } else {
+        RGB rgb = palette.colors[pixel];
+        pixels[i] = 0xFF000000 | rgb.red << 16 | rgb.green << 8 | rgb.blue;
+      }
+    }
+  }
+
+  /**
+   * Get the opaque ARGB values of a row of pixels, using black for the pixels that are outside of the image data.
+   */
+  static void getRowPixels(ImageData imageData, int x, int y, int count, int[] pixels, int startIndex) {
+    int validCount = y < imageData.height? Math.max(0, Math.min(count, imageData.width - x)): 0;
+    if(validCount > 0) {
+      getARGBPixels(imageData, x, y, validCount, pixels, startIndex);
+    }
+    Arrays.fill(pixels, startIndex + validCount, startIndex + count, 0xFF000000);
+  }
+
+  /**
+   * Copy the captured rectangles to the frame and return the areas that differ from what the Swing side has.
+   * @param width the width of the component.
+   * @param height the height of the component.
+   * @param isReset true if the Swing side does not have the previous frame, in which case all the rectangles are returned.
+   * @return the areas that changed, which are the parts of the rectangles that are cut by the tile grid.
+   */
+  public synchronized List<Rectangle> update(ImageData imageData, int width, int height, Rectangle[] rectangles, boolean isReset) {
+    if(pixels == null || this.width != width || this.height != height) {
+      this.width = width;
+      this.height = height;
+      pixels = new int[width * height];
+    } else if(isReset) {
+      Arrays.fill(pixels, 0);
+    }
+    List<Rectangle> areaList = new ArrayList<Rectangle>();
+    Rectangle bounds = new Rectangle(width, height);
+    int[] row = new int[TILE_SIZE];
+    for(Rectangle rectangle: rectangles) {
+      rectangle = rectangle.intersection(bounds);
+      if(rectangle.isEmpty()) {
+        continue;
+      }
+      for(int tileY = rectangle.y / TILE_SIZE * TILE_SIZE; tileY < rectangle.y + rectangle.height; tileY += TILE_SIZE) {
+        for(int tileX = rectangle.x / TILE_SIZE * TILE_SIZE; tileX < rectangle.x + rectangle.width; tileX += TILE_SIZE) {
+          Rectangle area = rectangle.intersection(new Rectangle(tileX, tileY, TILE_SIZE, TILE_SIZE));
+          boolean isChanged = false;
+          for(int y=area.y; y<area.y + area.height; y++) {
+            getRowPixels(imageData, area.x, y, area.width, row, 0);
+            int offset = y * width + area.x;
+            for(int i=0; i<area.width; i++) {
+              if(pixels[offset + i] != row[i]) {
+                System.arraycopy(row, i, pixels, offset + i, area.width - i);
+                isChanged = true;
+                break;
+              }
+            }
+          }
+          if(isChanged) {
+            areaList.add(area);
+          }
+        }
+      }
+    }
+    return areaList;
+  }
+
+  /**
+   * Encode the areas of the frame: the area count, then for each area its bounds and its RGB values, run-length encoded.<br/>
+   * A chunk starts with a short: a positive value is the length of a run of the RGB value that follows, and a negative value is the number of literal RGB values that follow.
+   */
+  public synchronized byte[] encode(List<Rectangle> areaList) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    try {
+      out.writeInt(areaList.size());
+      int[] areaPixels = new int[TILE_SIZE * TILE_SIZE];
+      for(Rectangle area: areaList) {
+        out.writeInt(area.x);
+        out.writeInt(area.y);
+        out.writeInt(area.width);
+        out.writeInt(area.height);
+        int count = area.width * area.height;
+        if(areaPixels.length < count) {
+          areaPixels = new int[count];
+        }
+        for(int j=0; j<area.height; j++) {
+          System.arraycopy(pixels, (area.y + j) * width + area.x, areaPixels, j * area.width, area.width);
+        }
+        writeRunLengthEncoded(out, areaPixels, count);
+      }
+      out.flush();
+    } catch(IOException e) {
+      // Cannot happen with a byte array.
+      throw new IllegalStateException(e);
+    }
+    return baos.toByteArray();
+  }
+
+  private static void writeRunLengthEncoded(DataOutputStream out, int[] values, int count) throws IOException {
+    int literalStart = 0;
+    int i = 0;
+    while(i < count) {
+      int runLength = 1;
+      while(i + runLength < count && values[i + runLength] == values[i] && runLength < MAX_CHUNK_LENGTH) {
+        runLength++;
+      }
+      // A run of 2 values costs as much as 2 literals.
+      if(runLength > 2) {
+        writeLiterals(out, values, literalStart, i);
+        out.writeShort(runLength);
+        writeRGB(out, values[i]);
+        i += runLength;
+        literalStart = i;
+      } else {
+        i += runLength;
+      }
+    }
+    writeLiterals(out, values, literalStart, count);
+  }
+
+  private static void writeLiterals(DataOutputStream out, int[] values, int start, int end) throws IOException {
+    while(start < end) {
+      int length = Math.min(end - start, MAX_CHUNK_LENGTH);
+      out.writeShort(-length);
+      for(int i=start; i<start + length; i++) {
+        writeRGB(out, values[i]);
+      }
+      start += length;
+    }
+  }
+
+  private static void writeRGB(DataOutputStream out, int value) throws IOException {
+    out.write(value >>> 16);
+    out.write(value >>> 8);
+    out.write(value);
+  }
+
+  /**
+   * Write the ARGB values of the areas of the frame one after the other.
+   */
+  public synchronized void writePixels(List<Rectangle> areaList, IntBuffer intBuffer) {
+    for(Rectangle area: areaList) {
+      for(int j=0; j<area.height; j++) {
+        intBuffer.put(pixels, (area.y + j) * width + area.x, area.width);
+      }
+    }
+  }
+
+  /**
+   * Read areas that were encoded by the native side and paint them to the image. This is called from the Swing side.
+   */
+  public static void readAreas(InputStream in, BufferedImage image) throws IOException {
+    DataInputStream dis = new DataInputStream(in);
+    int areaCount = dis.readInt();
+    int[] areaPixels = new int[TILE_SIZE * TILE_SIZE];
+    byte[] rgbBytes = new byte[TILE_SIZE * TILE_SIZE * 3];
+    for(int a=0; a<areaCount; a++) {
+      Rectangle area = new Rectangle(dis.readInt(), dis.readInt(), dis.readInt(), dis.readInt());
+      int count = area.width * area.height;
+      if(areaPixels.length < count) {
+        areaPixels = new int[count];
+      }
+      int i = 0;
+      while(i < count) {
+        int length = dis.readShort();
+        if(length > 0) {
+          int value = 0xFF000000 | dis.readUnsignedByte() << 16 | dis.readUnsignedByte() << 8 | dis.readUnsignedByte();
+          if(i + length > count) {
+            throw new IOException("Invalid run length: " + length);
+          }
+          Arrays.fill(areaPixels, i, i + length, value);
+          i += length;
+        } else {
+          length = -length;
+          if(length == 0 || i + length > count) {
+            throw new IOException("Invalid literal length: " + length);
+          }
+          if(rgbBytes.length < length * 3) {
+            rgbBytes = new byte[length * 3];
+          }
+          dis.readFully(rgbBytes, 0, length * 3);
+          for(int k=0; k<length; k++) {
+            areaPixels[i++] = 0xFF000000 | (0xFF & rgbBytes[k * 3]) << 16 | (0xFF & rgbBytes[k * 3 + 1]) << 8 | (0xFF & rgbBytes[k * 3 + 2]);
+          }
+        }
+      }
+      setPixels(image, area, areaPixels);
+    }
+  }
+
+  /**
+   * Set the opaque ARGB values of an area of an image.
+   */
+  static void setPixels(BufferedImage image, Rectangle area, int[] pixels) {
+    int type = image.getType();
+    if(type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE || type == BufferedImage.TYPE_INT_RGB) {
+      // For these types, pixels are copied as is, row by row, to the data buffer of the image.
+      image.getRaster().setDataElements(area.x, area.y, area.width, area.height, pixels);
+    } else {
+      image.setRGB(area.x, area.y, area.width, area.height, pixels, 0, area.width);
+    }
+  }
+
+}
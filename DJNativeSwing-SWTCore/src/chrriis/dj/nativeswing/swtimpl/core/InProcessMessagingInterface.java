@@ -7,11 +7,17 @@
  */
 package chrriis.dj.nativeswing.swtimpl.core;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
-import java.util.LinkedList;
-import java.util.List;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.SwingUtilities;
 
@@ -37,24 +43,23 @@ abstract class InProcessMessagingInterface extends MessagingInterface {
   public void destroy() {
     // Dispose all SWT controls (simulate dead peer).
     ObjectRegistry controlRegistry = SWTNativeComponent.getControlRegistry();
-    for(int instanceID: controlRegistry.getInstanceIDs()) {
-      final Control control = (Control)controlRegistry.get(instanceID);
-      controlRegistry.remove(instanceID);
-      control.getDisplay().asyncExec(new Runnable() {
-        public void run() {
-          control.getShell().dispose();
-        }
-      });
+    // The registry only exists once the native side is initialized.
+    if(controlRegistry != null) {
+      for(int instanceID: controlRegistry.getInstanceIDs()) {
+        final Control control = (Control)controlRegistry.get(instanceID);
+        controlRegistry.remove(instanceID);
+        control.getDisplay().asyncExec(new Runnable() {
+          public void run() {
+            control.getShell().dispose();
+          }
+        });
+      }
     }
     InProcessMessagingInterface mirrorMessagingInterface = getMirrorMessagingInterface();
     setAlive(false);
     mirrorMessagingInterface.setAlive(false);
-    synchronized (sentMessageList) {
-      sentMessageList.notifyAll();
-    }
-    synchronized (mirrorMessagingInterface.sentMessageList) {
-      mirrorMessagingInterface.sentMessageList.notifyAll();
-    }
+    sentMessageQueue.close();
+    mirrorMessagingInterface.sentMessageQueue.close();
   }
 
   @Override
@@ -75,27 +80,17 @@ abstract class InProcessMessagingInterface extends MessagingInterface {
     return mirrorMessagingInterface;
   }
 
-  private List<Message> sentMessageList = new LinkedList<Message>();
+  /**
+   * The messages sent by this side, which are consumed by the receiver thread of the mirror.
+   */
+  private final MessageQueue sentMessageQueue = new MessageQueue();
 
   Message getNextMessage() {
-    boolean isAlive = isAlive();
-    synchronized (sentMessageList) {
-      while(sentMessageList.isEmpty()) {
-        try {
-          sentMessageList.wait();
-        } catch(InterruptedException e) {
-        }
-        isAlive = isAlive();
-        if(!isAlive) {
-          break;
-        }
-      }
-      if(!isAlive) {
-        sentMessageList.clear();
-        throw new IllegalStateException("The interface is closed.");
-      }
-      return sentMessageList.remove(0);
+    Message message = sentMessageQueue.take();
+    if(message == null || !isAlive()) {
+      throw new IllegalStateException("The interface is closed.");
     }
+    return message;
   }
 
   @Override
@@ -106,18 +101,67 @@ abstract class InProcessMessagingInterface extends MessagingInterface {
   @Override
   protected void writeMessageToChannel(Message message) throws IOException {
     if(IS_PRINTING_NON_SERIALIZABLE_MESSAGES && !(message instanceof NoSerializationTestMessage)) {
-      ObjectOutputStream oos = new ObjectOutputStream(new ByteArrayOutputStream());
-      try {
-        oos.writeObject(message);
-      } catch(Exception e) {
-        System.err.println("Non-serializable message: " + message);
-      }
-      oos.close();
+      checkSerialization(message);
     }
-    synchronized (sentMessageList) {
-      sentMessageList.add(message);
-      sentMessageList.notifyAll();
+    sentMessageQueue.add(message);
+  }
+
+  private static final Set<Class<?>> checkedMessageClassSet = ConcurrentHashMap.newKeySet();
+  /** The number of checks that can wait for the checker thread, beyond which the checks are dropped rather than slowing down the sending threads. */
+  private static final int SERIALIZATION_CHECK_QUEUE_SIZE = 64;
+  private static volatile ExecutorService serializationCheckExecutor;
+
+  /**
+   * Check whether a message would be compatible with the out-process mode. Only the first message of each class is checked, and the check runs in a background thread, so that the check can stay enabled under load.<br/>
+   * A check that is dropped because the queue is full, or that fails because the message was modified by the receiver while it was serialized, is done again with a later message of the same class.
+   */
+  private static void checkSerialization(final Message message) {
+    final Class<?> messageClass = message.getClass();
+    if(!checkedMessageClassSet.add(messageClass)) {
+      return;
+    }
+    try {
+      getSerializationCheckExecutor().execute(new Runnable() {
+        public void run() {
+          try {
+            ObjectOutputStream oos = new ObjectOutputStream(new OutputStream() {
+              @Override
+              public void write(int b) {
+              }
+              @Override
+              public void write(byte[] b, int off, int len) {
+              }
+            });
+            oos.writeObject(message);
+            oos.close();
+          } catch(IOException e) {
+            System.err.println("Non-serializable message: " + message);
+          } catch(RuntimeException e) {
+            // The receiver uses the same instance, and may have modified it during the serialization.
+            checkedMessageClassSet.remove(messageClass);
+          }
+        }
+      });
+    } catch(RejectedExecutionException e) {
+      checkedMessageClassSet.remove(messageClass);
+    }
+  }
+
+  private static ExecutorService getSerializationCheckExecutor() {
+    if(serializationCheckExecutor == null) {
+      synchronized(InProcessMessagingInterface.class) {
+        if(serializationCheckExecutor == null) {
+          serializationCheckExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(SERIALIZATION_CHECK_QUEUE_SIZE), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+              Thread t = new Thread(r, "NativeSwing Serialization Checker");
+              t.setDaemon(true);
+              return t;
+            }
+          });
+        }
+      }
     }
+    return serializationCheckExecutor;
   }
 
   static class SWTInProcessMessagingInterface extends InProcessMessagingInterface {
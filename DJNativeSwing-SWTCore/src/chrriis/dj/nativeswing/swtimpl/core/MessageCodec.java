@@ -0,0 +1,59 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import chrriis.dj.nativeswing.swtimpl.Message;
+import chrriis.dj.nativeswing.swtimpl.NSSystemPropertySWT;
+
+/**
+ * The encoding that is used to exchange messages on the streams of an out-process messaging interface.
+ * @author Christopher Deckers
+ */
+abstract class MessageCodec {
+
+  static final String SERIALIZATION = "serialization";
+  static final String BINARY = "binary";
+
+  /**
+   * Create the codec that is configured by the system properties, and exchange the stream headers.
+   * Both sides must use the same codec, and must create the codec before reading from the input stream.
+   */
+  static MessageCodec createMessageCodec(InputStream is, OutputStream os) throws IOException {
+    if(BINARY.equals(NSSystemPropertySWT.INTERFACE_OUTPROCESS_MESSAGECODEC.get())) {
+      return new BinaryMessageCodec(is, os);
+    }
+    return new ObjectStreamMessageCodec(is, os);
+  }
+
+  /**
+   * Write a message and flush the stream. This method can be called by concurrent threads.
+   */
+  public abstract void writeMessage(Message message) throws IOException;
+
+  /**
+   * Write several messages and flush the stream once. A message that cannot be encoded is not written, and the next messages are still written. This method can be called by concurrent threads.
+   * @return the exceptions of the messages that could not be encoded, at the index of their message, or null if all the messages were written.
+   * @throws IOException if the stream failed, in which case the messages that follow were not written.
+   */
+  public abstract Exception[] writeMessages(List<Message> messageList) throws IOException;
+
+  /**
+   * Read the next message, or return null if an object was received that is not a message. This method is only called by the receiver thread.
+   */
+  public abstract Message readMessage() throws IOException, ClassNotFoundException;
+
+  public abstract void closeOutput();
+
+  public abstract void closeInput();
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import chrriis.dj.nativeswing.swtimpl.Message;
+import chrriis.dj.nativeswing.swtimpl.NSSystemPropertySWT;
+
+/**
+ * A queue of messages with many producers and a single consumer, which does not lock: producers link their node with an atomic swap, and the consumer parks when the queue is empty and is unparked by the next producer.<br/>
+ * The queue is bounded: when the consumer falls behind, producers wait for some room, but only for a short time after which they add their message anyway. This slows down producers without the risk of a deadlock when two sides wait for each other's full queue.
+ * @author Christopher Deckers
+ */
+class MessageQueue {
+
+  private static final int CAPACITY;
+  private static final long MAX_PRODUCER_WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long PRODUCER_PARK_TIME = TimeUnit.MICROSECONDS.toNanos(100);
+
+  static {
+    String capacity = NSSystemPropertySWT.INTERFACE_MESSAGEQUEUE_CAPACITY.get();
+    CAPACITY = capacity == null? 10000: Math.max(0, Integer.parseInt(capacity));
+  }
+
+  private static class Node {
+    volatile Message message;
+    volatile Node next;
+    Node(Message message) {
+      this.message = message;
+    }
+  }
+
+  /** The last node, which producers replace. */
+  private final AtomicReference<Node> tail;
+  /** The node before the first message, only accessed by the consumer. */
+  private Node head;
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicLong overflowCount = new AtomicLong();
+  private volatile Thread waitingConsumer;
+  private volatile boolean isClosed;
+
+  public MessageQueue() {
+    head = new Node(null);
+    tail = new AtomicReference<Node>(head);
+  }
+
+  /**
+   * Add a message, waiting a bit for some room if the queue is full. This method can be called by concurrent threads.
+   */
+  public void add(Message message) {
+    if(CAPACITY > 0 && size.get() >= CAPACITY) {
+      waitForRoom();
+    }
+    size.incrementAndGet();
+    Node node = new Node(message);
+    Node previousTail = tail.getAndSet(node);
+    previousTail.next = node;
+    Thread consumer = waitingConsumer;
+    if(consumer != null) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  private void waitForRoom() {
+    long deadline = System.nanoTime() + MAX_PRODUCER_WAIT;
+    while(size.get() >= CAPACITY && !isClosed) {
+      if(System.nanoTime() - deadline >= 0) {
+        overflowCount.incrementAndGet();
+        return;
+      }
+      LockSupport.parkNanos(this, PRODUCER_PARK_TIME);
+    }
+  }
+
+  /**
+   * Remove the first message, or return null if there is none or if the queue is closed. This method must only be called by the consumer.
+   */
+  public Message poll() {
+    if(isClosed) {
+      return null;
+    }
+    Node next = head.next;
+    if(next == null) {
+      return null;
+    }
+    Message message = next.message;
+    next.message = null;
+    head = next;
+    size.decrementAndGet();
+    return message;
+  }
+
+  /**
+   * Remove the first message, waiting for one if needed. This method must only be called by the consumer.
+   * @return the message, or null if the queue was closed.
+   */
+  public Message take() {
+    while(true) {
+      Message message = poll();
+      if(message != null || isClosed) {
+        return message;
+      }
+      await(0);
+    }
+  }
+
+  /**
+   * Wait until the queue has a message, is closed, or the timeout expires. This method must only be called by the consumer and may return early.
+   * @param timeout the maximum time to wait in milliseconds, or 0 to wait without a timeout.
+   */
+  public void await(long timeout) {
+    waitingConsumer = Thread.currentThread();
+    try {
+      // The check must follow the publication of the waiting thread, so that a producer either sees the thread or is seen by the check.
+      if(!isEmpty() || isClosed) {
+        return;
+      }
+      if(timeout > 0) {
+        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeout));
+      } else {
+        LockSupport.park(this);
+      }
+    } finally {
+      waitingConsumer = null;
+    }
+  }
+
+  /**
+   * Wait until one of the queues has a message or the timeout expires. This method must only be called by the consumer of all the queues and may return early.
+   * @param timeout the maximum time to wait in milliseconds, or 0 to wait without a timeout.
+   */
+  public static void await(MessageQueue[] messageQueues, long timeout) {
+    Thread currentThread = Thread.currentThread();
+    for(MessageQueue messageQueue: messageQueues) {
+      messageQueue.waitingConsumer = currentThread;
+    }
+    try {
+      for(MessageQueue messageQueue: messageQueues) {
+        if(!messageQueue.isEmpty()) {
+          return;
+        }
+      }
+      if(timeout > 0) {
+        LockSupport.parkNanos(messageQueues, TimeUnit.MILLISECONDS.toNanos(timeout));
+      } else {
+        LockSupport.park(messageQueues);
+      }
+    } finally {
+      for(MessageQueue messageQueue: messageQueues) {
+        messageQueue.waitingConsumer = null;
+      }
+    }
+  }
+
+  /**
+   * Indicate whether the queue has no message to give. A message that is being added may not be visible yet, but the producer then unparks a waiting consumer.
+   */
+  public boolean isEmpty() {
+    return isClosed || head.next == null;
+  }
+
+  /**
+   * Close the queue: the messages it contains are dropped, and a consumer that is waiting returns.
+   */
+  public void close() {
+    isClosed = true;
+    Thread consumer = waitingConsumer;
+    if(consumer != null) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  /**
+   * Get the number of messages that were added to a full queue because the consumer did not make room in time.
+   */
+  public long getOverflowCount() {
+    return overflowCount.get();
+  }
+
+}
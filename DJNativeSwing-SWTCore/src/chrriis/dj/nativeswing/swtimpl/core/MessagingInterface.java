@@ -15,11 +15,21 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import org.eclipse.swt.SWT;
 
-import chrriis.dj.nativeswing.common.ObjectRegistry;
 import chrriis.dj.nativeswing.swtimpl.CommandMessage;
+import chrriis.dj.nativeswing.swtimpl.EventDispatchUtils.Condition;
 import chrriis.dj.nativeswing.swtimpl.Message;
 import chrriis.dj.nativeswing.swtimpl.NSSystemPropertySWT;
 
@@ -55,10 +65,141 @@ abstract class MessagingInterface {
   protected void initialize(boolean exitOnEndOfStream) {
     setAlive(true);
     openChannel();
+    if(isBatchingSupported() && Boolean.parseBoolean(NSSystemPropertySWT.INTERFACE_OUTPROCESS_BATCHING.get())) {
+      batchingSender = new BatchingSender();
+    }
     createReceiverThread(exitOnEndOfStream);
   }
 
-  private static class CommandResultMessage extends Message {
+  /**
+   * Indicate whether writing several messages at once to the channel is cheaper than writing them one by one.
+   */
+  protected boolean isBatchingSupported() {
+    return false;
+  }
+
+  private BatchingSender batchingSender;
+
+  /**
+   * A sender thread that writes the queued messages to the channel with a single flush.<br/>
+   * Asynchronous messages can wait for a short delay to be grouped with the next ones, and a coalescable message replaces, at its place in the queue, a pending message of the same kind for the same component when no other message for that component or for the interface was queued in between. Any other message is written immediately, along with the messages that were queued before it, so the order is preserved.
+   */
+  private class BatchingSender {
+
+    private final LinkedList<Message> pendingMessageList = new LinkedList<Message>();
+    private final long delay;
+    private final int maxSize;
+    private int urgentMessageCount;
+
+    public BatchingSender() {
+      String delayProperty = NSSystemPropertySWT.INTERFACE_OUTPROCESS_BATCHING_DELAY.get();
+      delay = delayProperty == null? 0: Long.parseLong(delayProperty);
+      String maxSizeProperty = NSSystemPropertySWT.INTERFACE_OUTPROCESS_BATCHING_MAXSIZE.get();
+      maxSize = maxSizeProperty == null? 100: Math.max(1, Integer.parseInt(maxSizeProperty));
+      Thread senderThread = new Thread("NativeSwing[" + pid + "] " + (isNativeSide()? "SWT": "Swing") + " Sender") {
+        @Override
+        public void run() {
+          while(true) {
+            List<Message> messageList = getNextBatch();
+            if(messageList == null) {
+              return;
+            }
+            Exception[] exceptions;
+            try {
+              exceptions = writeMessagesToChannel(messageList);
+            } catch(Exception e) {
+              if(MessagingInterface.this.isAlive()) {
+                e.printStackTrace();
+              }
+              continue;
+            }
+            if(exceptions != null) {
+              for(int i=0; i<exceptions.length; i++) {
+                if(exceptions[i] != null) {
+                  processFailedMessage(messageList.get(i), exceptions[i]);
+                }
+              }
+            }
+          }
+        }
+      };
+      senderThread.setDaemon(true);
+      senderThread.start();
+    }
+
+    private boolean isUrgent(Message message) {
+      return SWTNativeInterface.isMessageSyncExec(message) || message instanceof CommandResultMessage || message instanceof CM_asyncExec || message instanceof CM_asyncExecResponse;
+    }
+
+    private boolean isCoalescable(Message message) {
+      return message instanceof ControlCommandMessage && !SWTNativeInterface.isMessageSyncExec(message) && ((ControlCommandMessage)message).isCoalescable();
+    }
+
+    public void send(Message message) {
+      synchronized(pendingMessageList) {
+        if(isCoalescable(message)) {
+          int componentID = ((ControlCommandMessage)message).getComponentID();
+          // Only the messages for other components can be passed over: the other messages may depend on the state set by the pending message, or set some state that the new message overrides.
+          for(ListIterator<Message> it = pendingMessageList.listIterator(pendingMessageList.size()); it.hasPrevious(); ) {
+            Message pendingMessage = it.previous();
+            if(isUrgent(pendingMessage) || !(pendingMessage instanceof ControlCommandMessage)) {
+              break;
+            }
+            if(((ControlCommandMessage)pendingMessage).getComponentID() != componentID) {
+              continue;
+            }
+            if(pendingMessage.getClass() == message.getClass()) {
+              it.set(message);
+              pendingMessageList.notifyAll();
+              return;
+            }
+            break;
+          }
+        }
+        pendingMessageList.add(message);
+        if(isUrgent(message)) {
+          urgentMessageCount++;
+        }
+        pendingMessageList.notifyAll();
+      }
+    }
+
+    private List<Message> getNextBatch() {
+      synchronized(pendingMessageList) {
+        try {
+          while(pendingMessageList.isEmpty()) {
+            if(!MessagingInterface.this.isAlive()) {
+              return null;
+            }
+            pendingMessageList.wait(500);
+          }
+          if(delay > 0) {
+            long endTime = System.currentTimeMillis() + delay;
+            while(urgentMessageCount == 0 && pendingMessageList.size() < maxSize) {
+              long remaining = endTime - System.currentTimeMillis();
+              if(remaining <= 0) {
+                break;
+              }
+              pendingMessageList.wait(remaining);
+            }
+          }
+        } catch(InterruptedException e) {
+        }
+        List<Message> messageList = new ArrayList<Message>(Math.min(maxSize, pendingMessageList.size()));
+        while(!pendingMessageList.isEmpty() && messageList.size() < maxSize) {
+          Message message = pendingMessageList.removeFirst();
+          if(isUrgent(message)) {
+            urgentMessageCount--;
+          }
+          messageList.add(message);
+        }
+        return messageList;
+      }
+    }
+
+  }
+
+  static class CommandResultMessage extends Message {
 
     private final int originalID;
     private final Object result;
@@ -89,21 +230,81 @@ abstract class MessagingInterface {
 
   }
 
-  private Object RECEIVER_LOCK = new Object();
+  /**
+   * Have the UI thread process the received messages, unless it is already scheduled to do so.
+   */
+  private void scheduleReceivedMessageProcessing() {
+    if(isReceivedMessageProcessingScheduled.compareAndSet(false, true)) {
+      asyncUIExec(new Runnable() {
+        public void run() {
+          // A message that is added once the processing started schedules a new processing.
+          isReceivedMessageProcessingScheduled.set(false);
+          CommandResultMessage commandResultMessage = processReceivedMessages();
+          if(commandResultMessage != null) {
+            pendingReceivedMessageList.addFirst(commandResultMessage);
+          }
+        }
+      });
+    }
+  }
 
   private CommandResultMessage processReceivedMessages() {
     while(true) {
-      Message message;
-      synchronized(RECEIVER_LOCK) {
-        if(receivedMessageList.isEmpty()) {
-          return null;
-        }
-        message = receivedMessageList.remove(0);
+      Message message = pendingReceivedMessageList.isEmpty()? receivedMessageQueue.poll(): pendingReceivedMessageList.removeFirst();
+      if(message == null) {
+        return null;
       }
       if(message instanceof CommandResultMessage) {
         return (CommandResultMessage)message;
       }
       runMessage(message);
+      if(uiMessageRunWaiterCount.get() > 0) {
+        synchronized(UI_MESSAGE_RUN_LOCK) {
+          UI_MESSAGE_RUN_LOCK.notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Run the UI messages that were received so far, like a synchronous call does while it waits. The results of the synchronous calls that are waiting are kept for them.<br/>
+   * This method must be called from the UI thread.
+   */
+  void runReceivedUIMessages() {
+    List<CommandResultMessage> commandResultMessageList = null;
+    for(CommandResultMessage commandResultMessage; (commandResultMessage = processReceivedMessages()) != null; ) {
+      if(commandResultMessageList == null) {
+        commandResultMessageList = new ArrayList<CommandResultMessage>();
+      }
+      commandResultMessageList.add(commandResultMessage);
+    }
+    if(commandResultMessageList != null) {
+      pendingReceivedMessageList.addAll(0, commandResultMessageList);
+    }
+  }
+
+  MessageQueue getReceivedMessageQueue() {
+    return receivedMessageQueue;
+  }
+
+  private static final Object UI_MESSAGE_RUN_LOCK = new Object();
+  private static final AtomicInteger uiMessageRunWaiterCount = new AtomicInteger();
+
+  /**
+   * Wait until a UI thread runs a received message or the timeout expires, unless the condition is already met. This is for the threads that are not UI threads, which cannot run the messages themselves.
+   * @param timeout the maximum time to wait in milliseconds.
+   */
+  static void awaitUIMessageRun(Condition condition, long timeout) throws InterruptedException {
+    uiMessageRunWaiterCount.incrementAndGet();
+    try {
+      synchronized(UI_MESSAGE_RUN_LOCK) {
+        // The condition is checked with the lock held, so that a message that is run after the check notifies this thread.
+        if(!condition.getValue()) {
+          UI_MESSAGE_RUN_LOCK.wait(timeout);
+        }
+      }
+    } finally {
+      uiMessageRunWaiterCount.decrementAndGet();
     }
   }
 
@@ -114,6 +315,9 @@ abstract class MessagingInterface {
     CommandResultMessage commandResultMessage;
     if(message instanceof CommandMessage) {
       CommandMessage commandMessage = (CommandMessage)message;
+      if(commandMessage instanceof InterfaceCommandMessage) {
+        ((InterfaceCommandMessage)commandMessage).receivingMessagingInterface = this;
+      }
       Object result = null;
       Throwable throwable = null;
       if(SWTNativeInterface.isMessageValid(message)) {
@@ -162,71 +366,127 @@ abstract class MessagingInterface {
     }
   }
 
-  private List<Message> receivedMessageList = new LinkedList<Message>();
-  private boolean isWaitingResponse;
+  /**
+   * The UI messages received from the other side, which are consumed by the UI thread.
+   */
+  private final MessageQueue receivedMessageQueue = new MessageQueue();
+  /**
+   * The messages that the UI thread took from the queue but has to process later, like results of outer synchronous calls. It is only accessed by the UI thread.
+   */
+  private final LinkedList<Message> pendingReceivedMessageList = new LinkedList<Message>();
+  /**
+   * The number of synchronous calls of the UI thread that are waiting for their result, during which the UI thread processes the received messages itself.
+   */
+  private volatile int syncSendDepth;
+  private final AtomicBoolean isReceivedMessageProcessingScheduled = new AtomicBoolean();
+
+  /**
+   * A command of the messaging interface itself, which runs against the interface that received it: with several peer VMs, each interface has its own pending calls.
+   */
+  private static abstract class InterfaceCommandMessage extends CommandMessage {
+    private transient MessagingInterface receivingMessagingInterface;
+    protected MessagingInterface getReceivingMessagingInterface() {
+      return receivingMessagingInterface;
+    }
+  }
 
-  private static class CM_asyncExecResponse extends CommandMessage {
+  private static class CM_asyncExecResponse extends InterfaceCommandMessage {
     @Override
     public Object run(Object[] args) {
-      int instanceID = (Integer)args[0];
-      boolean isOriginatorNativeSide = (Boolean)args[2];
-      MessagingInterface messagingInterface = SWTNativeInterface.getInstance().getMessagingInterface(!isOriginatorNativeSide);
-      ThreadLock threadLock = (ThreadLock)messagingInterface.syncThreadRegistry.get(instanceID);
-      messagingInterface.syncThreadRegistry.remove(instanceID);
-      if(threadLock == null) {
-        return null;
-      }
-      synchronized(threadLock) {
-        messagingInterface.syncThreadRegistry.add(args[1], instanceID);
-        threadLock.notify();
-      }
+      int callID = (Integer)args[0];
+      getReceivingMessagingInterface().pendingCallTable.complete(callID, args[1]);
       return null;
     }
   }
 
-  private static class CM_asyncExec extends CommandMessage {
+  private static class CM_asyncExec extends InterfaceCommandMessage {
     @Override
     public Object run(Object[] args) {
       Message message = (Message)args[1];
-      boolean isOriginatorNativeSide = (Boolean)args[2];
       SWTNativeInterface.setMessageSyncExec(message, false);
-      MessagingInterface messagingInterface = SWTNativeInterface.getInstance().getMessagingInterface(!isOriginatorNativeSide);
+      MessagingInterface messagingInterface = getReceivingMessagingInterface();
       CM_asyncExecResponse asyncExecResponse = new CM_asyncExecResponse();
-      SWTNativeInterface.setMessageArgs(asyncExecResponse, args[0], messagingInterface.runMessage(message), messagingInterface.isNativeSide());
+      SWTNativeInterface.setMessageArgs(asyncExecResponse, args[0], messagingInterface.runMessage(message));
       messagingInterface.asyncSend(asyncExecResponse);
       return null;
     }
   }
 
-  private ObjectRegistry syncThreadRegistry = new ObjectRegistry();
+  private final PendingCallTable pendingCallTable = new PendingCallTable();
+
+  private static final long NON_UI_SYNC_EXEC_TIMEOUT;
 
-  private static class ThreadLock {
+  static {
+    String timeout = NSSystemPropertySWT.INTERFACE_NONUISYNCEXEC_TIMEOUT.get();
+    NON_UI_SYNC_EXEC_TIMEOUT = timeout == null? 0: Long.parseLong(timeout);
   }
 
   private Object nonUISyncExec(Message message) {
-    ThreadLock threadLock = new ThreadLock();
-    final int instanceID = syncThreadRegistry.add(threadLock);
+    int callID = pendingCallTable.createCallID();
+    CompletableFuture<Object> future = pendingCallTable.register(callID);
     CM_asyncExec asyncExec = new CM_asyncExec();
-    SWTNativeInterface.setMessageArgs(asyncExec, instanceID, message, isNativeSide());
+    SWTNativeInterface.setMessageArgs(asyncExec, callID, message);
     asyncSend(asyncExec);
-    synchronized(threadLock) {
-      while(syncThreadRegistry.get(instanceID) instanceof ThreadLock) {
+    if(!isAlive()) {
+      // The interface may have died before the call was registered, in which case nobody would cancel it.
+      pendingCallTable.cancel(callID);
+    }
+    boolean isInterrupted = false;
+    try {
+      while(true) {
         try {
-          threadLock.wait();
-        } catch(Exception e) {
-        }
-        if(!isAlive()) {
-          syncThreadRegistry.remove(instanceID);
+          CommandResultMessage commandResultMessage;
+          if(NON_UI_SYNC_EXEC_TIMEOUT > 0) {
+            commandResultMessage = (CommandResultMessage)future.get(NON_UI_SYNC_EXEC_TIMEOUT, TimeUnit.MILLISECONDS);
+          } else {
+            commandResultMessage = (CommandResultMessage)future.get();
+          }
+          return processCommandResult(commandResultMessage);
+        } catch(InterruptedException e) {
+          // Like the UI synchronous calls, the wait is not interruptible.
+          isInterrupted = true;
+        } catch(CancellationException e) {
           printFailedInvocation(message);
           return null;
+        } catch(TimeoutException e) {
+          pendingCallTable.cancel(callID);
+          throw new IllegalStateException("The call did not complete within " + NON_UI_SYNC_EXEC_TIMEOUT + " ms: " + message, e);
+        } catch(ExecutionException e) {
+          throw new IllegalStateException(e.getCause());
         }
       }
-      CommandResultMessage commandResultMessage = (CommandResultMessage)syncThreadRegistry.get(instanceID);
-      syncThreadRegistry.remove(instanceID);
-      return processCommandResult(commandResultMessage);
+    } finally {
+      if(isInterrupted) {
+        Thread.currentThread().interrupt();
+      }
     }
   }
 
+  /**
+   * Send a message and get its result without waiting: the result is delivered by a pooled thread, so that the receiver thread never runs code that depends on the result.
+   */
+  public CompletableFuture<Object> execAsync(Message message) {
+    SWTNativeInterface.computeMessageID(message, !isNativeSide());
+    int callID = pendingCallTable.createCallID();
+    CompletableFuture<Object> future = pendingCallTable.register(callID);
+    CM_asyncExec asyncExec = new CM_asyncExec();
+    SWTNativeInterface.setMessageArgs(asyncExec, callID, message);
+    // When sent from the UI thread, the wrapper is a UI message so the message runs in the UI thread of the other side, like a synchronous call would.
+    asyncSend(asyncExec);
+    if(!isAlive()) {
+      pendingCallTable.cancel(callID);
+    }
+    return future.thenApplyAsync(new Function<Object, Object>() {
+      public Object apply(Object commandResultMessage) {
+        return processCommandResult((CommandResultMessage)commandResultMessage);
+      }
+    }, new Executor() {
+      public void execute(Runnable command) {
+        nonUIMessageExecutor.execute(null, command);
+      }
+    });
+  }
+
   private final Object LOCK = new Object();
 
   public Object syncSend(Message message) {
@@ -242,6 +502,7 @@ abstract class MessagingInterface {
         return null;
       }
       CommandResultMessage commandResultMessage = null;
+      syncSendDepth++;
       try {
         writeMessage(message);
         List<CommandResultMessage> commandResultMessageList = new ArrayList<CommandResultMessage>();
@@ -255,53 +516,49 @@ abstract class MessagingInterface {
               break;
             }
           } else {
-            synchronized(RECEIVER_LOCK) {
-              boolean isFirst = true;
-              while(receivedMessageList.isEmpty()) {
-                if(!isAlive()) {
-                  printFailedInvocation(message);
-                  return null;
-                }
-                if(!isFirst) {
-                  isFirst = true;
-                  if(isNativeSide()) {
-                    // Sometimes, AWT is synchronously waiting for the native side to pump some event.
-                    // The native side is currently waiting, so we set a timeout and do some pumping.
-                    SWTNativeInterface.getInstance().getDisplay().readAndDispatch();
-                  } else {
-                    // On Mac OS, under rare circumstances, we have a situation where SWT is waiting synchronously on AWT, while AWT is blocked here.
-                    // We have to use a similar forced dispatching trick.
-                    EventQueue eventQueue = Toolkit.getDefaultToolkit().getSystemEventQueue();
-                    AWTEvent nextEvent = eventQueue.peekEvent();
+            boolean isFirst = true;
+            while(receivedMessageQueue.isEmpty()) {
+              if(!isAlive()) {
+                printFailedInvocation(message);
+                return null;
+              }
+              if(!isFirst) {
+                isFirst = true;
+                if(isNativeSide()) {
+                  // Sometimes, AWT is synchronously waiting for the native side to pump some event.
+                  // The native side is currently waiting, so we set a timeout and do some pumping.
+                  SWTNativeInterface.getInstance().getDisplay().readAndDispatch();
+                } else {
+                  // On Mac OS, under rare circumstances, we have a situation where SWT is waiting synchronously on AWT, while AWT is blocked here.
+                  // We have to use a similar forced dispatching trick.
+                  EventQueue eventQueue = Toolkit.getDefaultToolkit().getSystemEventQueue();
+                  AWTEvent nextEvent = eventQueue.peekEvent();
+                  if(nextEvent != null) {
+                    nextEvent = eventQueue.getNextEvent();
                     if(nextEvent != null) {
-                      nextEvent = eventQueue.getNextEvent();
-                      if(nextEvent != null) {
-                        Method dispatchMethod = EventQueue.class.getDeclaredMethod("dispatchEvent", AWTEvent.class);
-                        dispatchMethod.setAccessible(true);
-                        dispatchMethod.invoke(eventQueue, nextEvent);
-                      }
+                      Method dispatchMethod = EventQueue.class.getDeclaredMethod("dispatchEvent", AWTEvent.class);
+                      dispatchMethod.setAccessible(true);
+                      dispatchMethod.invoke(eventQueue, nextEvent);
                     }
                   }
                 }
-                isFirst = false;
-                isWaitingResponse = true;
-                if(isNativeSide()) {
-                  String timeout = NSSystemPropertySWT.INTERFACE_SYNCSEND_NATIVE_TIMEOUT.get();
-                  if(timeout != null) {
-                    RECEIVER_LOCK.wait(Long.parseLong(timeout));
-                  } else {
-                    RECEIVER_LOCK.wait(500);
-                  }
+              }
+              isFirst = false;
+              if(isNativeSide()) {
+                String timeout = NSSystemPropertySWT.INTERFACE_SYNCSEND_NATIVE_TIMEOUT.get();
+                if(timeout != null) {
+                  receivedMessageQueue.await(Long.parseLong(timeout));
                 } else {
-                  // The Mac OS case is very rare, so we set a long timeout.
-                  String timeout = NSSystemPropertySWT.INTERFACE_SYNCSEND_LOCAL_TIMEOUT.get();
-                  if(timeout != null) {
-                    RECEIVER_LOCK.wait(Long.parseLong(timeout));
-                  } else {
-                    RECEIVER_LOCK.wait(5000);
-                  }
+                  receivedMessageQueue.await(500);
+                }
+              } else {
+                // The Mac OS case is very rare, so we set a long timeout.
+                String timeout = NSSystemPropertySWT.INTERFACE_SYNCSEND_LOCAL_TIMEOUT.get();
+                if(timeout != null) {
+                  receivedMessageQueue.await(Long.parseLong(timeout));
+                } else {
+                  receivedMessageQueue.await(5000);
                 }
-                isWaitingResponse = false;
               }
             }
           }
@@ -310,21 +567,16 @@ abstract class MessagingInterface {
             return null;
           }
         }
-        synchronized(RECEIVER_LOCK) {
-          if(!commandResultMessageList.isEmpty()) {
-            receivedMessageList.addAll(0, commandResultMessageList);
-          } else {
-            if(!receivedMessageList.isEmpty()) {
-              asyncUIExec(new Runnable() {
-                public void run() {
-                  processReceivedMessages();
-                }
-              });
-            }
-          }
-        }
+        // The results of outer calls are given back to them.
+        pendingReceivedMessageList.addAll(0, commandResultMessageList);
       } catch(Exception e) {
         throw new IllegalStateException(e);
+      } finally {
+        syncSendDepth--;
+      }
+      if(commandResultMessage != null && !receivedMessageQueue.isEmpty()) {
+        // Messages that arrived after the result are not processed by the receiver while a call waits.
+        scheduleReceivedMessageProcessing();
       }
       return processCommandResult(commandResultMessage);
     }
@@ -363,11 +615,50 @@ abstract class MessagingInterface {
     if(IS_DEBUGGING_MESSAGES) {
       System.err.println((SWTNativeInterface.isMessageSyncExec(message)? "SENDS": "SENDA") + ": " + SWTNativeInterface.getMessageID(message) + ", " + message);
     }
-    writeMessageToChannel(message);
+    if(batchingSender != null) {
+      batchingSender.send(message);
+    } else {
+      writeMessageToChannel(message);
+    }
   }
 
   protected abstract void writeMessageToChannel(Message message) throws IOException;
 
+  /**
+   * Write several messages to the channel.
+   * @return the exceptions of the messages that could not be encoded, at the index of their message, or null if all the messages were written.
+   * @throws IOException if the channel failed.
+   */
+  protected Exception[] writeMessagesToChannel(List<Message> messageList) throws IOException {
+    for(Message message: messageList) {
+      writeMessageToChannel(message);
+    }
+    return null;
+  }
+
+  /**
+   * Process a message of a batch that could not be sent: the exception cannot be thrown to the sender, so a call that waits for the result of that message gets the exception as its result.
+   */
+  private void processFailedMessage(Message message, Exception exception) {
+    exception.printStackTrace();
+    if(message instanceof CM_asyncExec) {
+      int callID = (Integer)SWTNativeInterface.getMessageArgs((CommandMessage)message)[0];
+      pendingCallTable.complete(callID, new CommandResultMessage(callID, null, exception));
+    } else if(SWTNativeInterface.isMessageSyncExec(message)) {
+      // The synchronous call of the UI thread processes the result as if it was received.
+      int messageID = SWTNativeInterface.getMessageID(message);
+      receivedMessageQueue.add(new CommandResultMessage(messageID, null, exception));
+    } else if(message instanceof CommandResultMessage) {
+      // The other side waits for this result, so it gets the failure instead.
+      asyncSend(new CommandResultMessage(((CommandResultMessage)message).getOriginalID(), null, exception));
+    } else if(message instanceof CM_asyncExecResponse) {
+      Object[] args = SWTNativeInterface.getMessageArgs((CommandMessage)message);
+      CM_asyncExecResponse asyncExecResponse = new CM_asyncExecResponse();
+      SWTNativeInterface.setMessageArgs(asyncExecResponse, args[0], new CommandResultMessage((Integer)args[0], null, exception));
+      asyncSend(asyncExecResponse);
+    }
+  }
+
   protected abstract Message readMessageFromChannel() throws IOException, ClassNotFoundException;
 
   private void printFailedInvocation(Message message) {
@@ -382,7 +673,24 @@ abstract class MessagingInterface {
     return pid;
   }
 
+  private NonUIMessageExecutor nonUIMessageExecutor;
+
+  /**
+   * Get the number of received non-UI messages that did not start running yet.
+   */
+  public int getNonUIMessageQueueDepth() {
+    return nonUIMessageExecutor.getQueueDepth();
+  }
+
+  /**
+   * Get the number of received non-UI messages that got their own thread because the executor was saturated.
+   */
+  public long getNonUIMessageRejectionCount() {
+    return nonUIMessageExecutor.getRejectionCount();
+  }
+
   private void createReceiverThread(final boolean exitOnEndOfStream) {
+    nonUIMessageExecutor = new NonUIMessageExecutor(pid);
     Thread receiverThread = new Thread("NativeSwing[" + pid + "] " + (isNativeSide()? "SWT": "Swing") + " Receiver") {
       @Override
       public void run() {
@@ -400,58 +708,41 @@ abstract class MessagingInterface {
               }
               e.printStackTrace();
               try {
-                isRespawned = SWTNativeInterface.getInstance().notifyKilled();
+                isRespawned = SWTNativeInterface.getInstance().notifyKilled(MessagingInterface.this);
               } catch(Exception ex) {
                 ex.printStackTrace();
               }
             }
             // Unlock all locked sync calls
-            synchronized(RECEIVER_LOCK) {
-              receivedMessageList.clear();
-              RECEIVER_LOCK.notify();
-            }
-            for(int instanceID: syncThreadRegistry.getInstanceIDs()) {
-              Object o = syncThreadRegistry.get(instanceID);
-              if(o instanceof ThreadLock) {
-                synchronized(o) {
-                  o.notify();
-                }
-              }
-            }
+            receivedMessageQueue.close();
+            pendingCallTable.cancelAll();
             if(isRespawned) {
               SWTNativeInterface.getInstance().notifyRespawned();
             }
           }
           if(message != null) {
             if(!SWTNativeInterface.isMessageUI(message)) {
-              final Message message_ = message;
-              new Thread("NativeSwing[" + getPID() + "] Non-UI Message [" + SWTNativeInterface.getMessageID(message) + "] Executor") {
-                @Override
-                public void run() {
-                  runMessage(message_);
-                }
-              }.start();
+              if(message instanceof CM_asyncExecResponse) {
+                // It only wakes up a waiting thread: running it here avoids depending on a free executor thread.
+                runMessage(message);
+              } else {
+                final Message message_ = message;
+                nonUIMessageExecutor.execute(message, new Runnable() {
+                  public void run() {
+                    runMessage(message_);
+                  }
+                });
+              }
             } else {
-              synchronized(RECEIVER_LOCK) {
-                receivedMessageList.add(message);
-                if(isWaitingResponse) {
-                  RECEIVER_LOCK.notify();
-                } else if(receivedMessageList.size() == 1) {
-                  asyncUIExec(new Runnable() {
-                    public void run() {
-                      CommandResultMessage commandResultMessage = processReceivedMessages();
-                      if(commandResultMessage != null) {
-                        synchronized(RECEIVER_LOCK) {
-                          receivedMessageList.add(0, commandResultMessage);
-                        }
-                      }
-                    }
-                  });
-                }
+              receivedMessageQueue.add(message);
+              // A waiting synchronous call is unparked by the queue and processes the message itself.
+              if(syncSendDepth == 0) {
+                scheduleReceivedMessageProcessing();
               }
             }
           }
         }
+        nonUIMessageExecutor.shutdown();
         closeChannel();
       }
     };
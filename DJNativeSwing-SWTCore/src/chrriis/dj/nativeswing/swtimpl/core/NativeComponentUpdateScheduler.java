@@ -0,0 +1,194 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import org.eclipse.swt.widgets.Control;
+
+import chrriis.dj.nativeswing.common.ObjectRegistry;
+
+/**
+ * The scheduler of the deferred reshapes and redraws of the native peers. The requests that are made during a frame are coalesced per component, and are sent at the end of the frame with one message per peer VM that lists all the components to update.<br/>
+ * A single Swing timer is used, instead of a thread per request.
+ * @author Christopher Deckers
+ */
+class NativeComponentUpdateScheduler {
+
+  private static final int FRAME_DURATION = 50;
+
+  private static final Object LOCK = new Object();
+  private static Set<SWTNativeComponent> reshapeComponentSet = new LinkedHashSet<SWTNativeComponent>();
+  private static Set<SWTNativeComponent> redrawComponentSet = new LinkedHashSet<SWTNativeComponent>();
+  private static Timer timer;
+
+  private NativeComponentUpdateScheduler() {}
+
+  /**
+   * Schedule the reshape of the native peer of a component to the size of the component at the end of the frame. This method can be called from a non-UI thread.
+   */
+  public static void scheduleReshape(SWTNativeComponent nativeComponent) {
+    synchronized(LOCK) {
+      reshapeComponentSet.add(nativeComponent);
+      startTimer();
+    }
+  }
+
+  /**
+   * Schedule the redraw of the native peer of a component at the end of the frame. This method can be called from a non-UI thread.
+   */
+  public static void scheduleRedraw(SWTNativeComponent nativeComponent) {
+    synchronized(LOCK) {
+      redrawComponentSet.add(nativeComponent);
+      startTimer();
+    }
+  }
+
+  private static void startTimer() {
+    if(timer == null) {
+      timer = new Timer(FRAME_DURATION, new ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+          sendPendingUpdates();
+        }
+      });
+      timer.setRepeats(false);
+    }
+    if(!timer.isRunning()) {
+      timer.start();
+    }
+  }
+
+  /**
+   * Reshape the native peer of a component now if a reshape is pending, for example before painting it. This method can be called from a non-UI thread, in which case the reshape happens later in the UI thread.
+   */
+  public static void applyPendingReshape(final SWTNativeComponent nativeComponent) {
+    synchronized(LOCK) {
+      if(!reshapeComponentSet.contains(nativeComponent)) {
+        return;
+      }
+    }
+    if(!SwingUtilities.isEventDispatchThread()) {
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+          applyPendingReshape(nativeComponent);
+        }
+      });
+      return;
+    }
+    synchronized(LOCK) {
+      if(!reshapeComponentSet.remove(nativeComponent)) {
+        return;
+      }
+    }
+    if(nativeComponent.isNativePeerValid()) {
+      nativeComponent.reshapeNativePeer();
+    }
+  }
+
+  /**
+   * The pending updates of the components of a peer VM.
+   */
+  private static class PeerVMUpdates {
+    SWTNativeComponent targetComponent;
+    List<Integer> reshapeComponentIDList = new ArrayList<Integer>();
+    List<Integer> widthList = new ArrayList<Integer>();
+    List<Integer> heightList = new ArrayList<Integer>();
+    List<Integer> redrawComponentIDList = new ArrayList<Integer>();
+  }
+
+  private static void sendPendingUpdates() {
+    SWTNativeComponent[] reshapeComponents;
+    SWTNativeComponent[] redrawComponents;
+    synchronized(LOCK) {
+      reshapeComponents = reshapeComponentSet.toArray(new SWTNativeComponent[0]);
+      redrawComponents = redrawComponentSet.toArray(new SWTNativeComponent[0]);
+      reshapeComponentSet.clear();
+      redrawComponentSet.clear();
+    }
+    Map<Integer, PeerVMUpdates> peerVMIndexToUpdatesMap = new LinkedHashMap<Integer, PeerVMUpdates>();
+    for(SWTNativeComponent nativeComponent: reshapeComponents) {
+      if(nativeComponent.isNativePeerValid()) {
+        PeerVMUpdates peerVMUpdates = getPeerVMUpdates(peerVMIndexToUpdatesMap, nativeComponent);
+        Dimension size = nativeComponent.getNativePeerSize();
+        peerVMUpdates.reshapeComponentIDList.add(nativeComponent.getComponentID());
+        peerVMUpdates.widthList.add(size.width);
+        peerVMUpdates.heightList.add(size.height);
+      }
+    }
+    for(SWTNativeComponent nativeComponent: redrawComponents) {
+      if(nativeComponent.isNativePeerValid() && nativeComponent.getWidth() > 0 && nativeComponent.getHeight() > 0) {
+        getPeerVMUpdates(peerVMIndexToUpdatesMap, nativeComponent).redrawComponentIDList.add(nativeComponent.getComponentID());
+      }
+    }
+    for(PeerVMUpdates peerVMUpdates: peerVMIndexToUpdatesMap.values()) {
+      // The message targets one of the components so that it goes to their peer VM.
+      new CMN_updateControls().asyncExec(peerVMUpdates.targetComponent, toIntArray(peerVMUpdates.reshapeComponentIDList), toIntArray(peerVMUpdates.widthList), toIntArray(peerVMUpdates.heightList), toIntArray(peerVMUpdates.redrawComponentIDList));
+    }
+  }
+
+  private static PeerVMUpdates getPeerVMUpdates(Map<Integer, PeerVMUpdates> peerVMIndexToUpdatesMap, SWTNativeComponent nativeComponent) {
+    int peerVMIndex = nativeComponent.getPeerVMIndex();
+    PeerVMUpdates peerVMUpdates = peerVMIndexToUpdatesMap.get(peerVMIndex);
+    if(peerVMUpdates == null) {
+      peerVMUpdates = new PeerVMUpdates();
+      peerVMUpdates.targetComponent = nativeComponent;
+      peerVMIndexToUpdatesMap.put(peerVMIndex, peerVMUpdates);
+    }
+    return peerVMUpdates;
+  }
+
+  private static int[] toIntArray(List<Integer> list) {
+    int[] values = new int[list.size()];
+    for(int i=0; i<values.length; i++) {
+      values[i] = list.get(i);
+    }
+    return values;
+  }
+
+  private static class CMN_updateControls extends ControlCommandMessage {
+    @Override
+    protected boolean isValid() {
+      // The target component is only used to reach the peer VM: each control is checked.
+      return true;
+    }
+    @Override
+    public Object run(Object[] args) {
+      ObjectRegistry controlRegistry = SWTNativeComponent.getControlRegistry();
+      int[] reshapeComponentIDs = (int[])args[0];
+      int[] widths = (int[])args[1];
+      int[] heights = (int[])args[2];
+      int[] redrawComponentIDs = (int[])args[3];
+      // Reshapes come first, so that the redraws cover the new sizes.
+      for(int i=0; i<reshapeComponentIDs.length; i++) {
+        Control control = (Control)controlRegistry.get(reshapeComponentIDs[i]);
+        if(control != null && !control.isDisposed()) {
+          SWTNativeComponent.reshapeControl(control, widths[i], heights[i]);
+        }
+      }
+      for(int componentID: redrawComponentIDs) {
+        Control control = (Control)controlRegistry.get(componentID);
+        if(control != null && !control.isDisposed()) {
+          SWTNativeComponent.redrawControl(control);
+        }
+      }
+      return null;
+    }
+  }
+
+}
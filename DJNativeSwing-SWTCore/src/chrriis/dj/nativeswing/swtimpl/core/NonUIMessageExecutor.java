@@ -0,0 +1,154 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chrriis.dj.nativeswing.swtimpl.Message;
+import chrriis.dj.nativeswing.swtimpl.NSSystemPropertySWT;
+
+/**
+ * The executor of the messages that are received with the non-UI flag.<br/>
+ * Non-UI messages may block waiting for the other side, so a message that cannot be handed to a pooled thread (pool and queue are full) is not refused: it gets a thread of its own, and this is counted as a rejection.
+ * @author Christopher Deckers
+ */
+class NonUIMessageExecutor {
+
+  private final int pid;
+  private final ExecutorService executorService;
+  private final boolean isComponentOrdered;
+  private final AtomicLong rejectionCount = new AtomicLong();
+  private final AtomicInteger pendingCount = new AtomicInteger();
+
+  public NonUIMessageExecutor(int pid) {
+    this.pid = pid;
+    isComponentOrdered = Boolean.parseBoolean(NSSystemPropertySWT.INTERFACE_NONUIEXECUTOR_COMPONENTORDERING.get());
+    ExecutorService virtualThreadExecutorService = null;
+    if(Boolean.parseBoolean(NSSystemPropertySWT.INTERFACE_NONUIEXECUTOR_VIRTUALTHREADS.get())) {
+      try {
+        // Virtual threads are only available on newer JDKs.
+        virtualThreadExecutorService = (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch(Exception e) {
+      }
+    }
+    if(virtualThreadExecutorService != null) {
+      executorService = virtualThreadExecutorService;
+      return;
+    }
+    String maxThreadsProperty = NSSystemPropertySWT.INTERFACE_NONUIEXECUTOR_MAXTHREADS.get();
+    int maxThreads = maxThreadsProperty == null? 16: Math.max(1, Integer.parseInt(maxThreadsProperty));
+    String queueSizeProperty = NSSystemPropertySWT.INTERFACE_NONUIEXECUTOR_QUEUESIZE.get();
+    int queueSize = queueSizeProperty == null? 0: Math.max(0, Integer.parseInt(queueSizeProperty));
+    BlockingQueue<Runnable> queue = queueSize == 0? new SynchronousQueue<Runnable>(): new ArrayBlockingQueue<Runnable>(queueSize);
+    final AtomicInteger threadCount = new AtomicInteger();
+    ThreadFactory threadFactory = new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "NativeSwing[" + NonUIMessageExecutor.this.pid + "] Non-UI Message Executor " + threadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    };
+    RejectedExecutionHandler rejectedExecutionHandler = new RejectedExecutionHandler() {
+      public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        rejectionCount.incrementAndGet();
+        Thread t = new Thread(r, "NativeSwing[" + NonUIMessageExecutor.this.pid + "] Non-UI Message Overflow Executor");
+        t.setDaemon(true);
+        t.start();
+      }
+    };
+    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(maxThreads, maxThreads, 30, TimeUnit.SECONDS, queue, threadFactory, rejectedExecutionHandler);
+    // Threads are created up to the maximum before messages get queued, and they die when idle.
+    threadPoolExecutor.allowCoreThreadTimeOut(true);
+    executorService = threadPoolExecutor;
+  }
+
+  private final Map<Integer, LinkedList<Runnable>> componentQueueMap = new HashMap<Integer, LinkedList<Runnable>>();
+
+  /**
+   * Execute a non-UI message.
+   * @param message the message, which is used to know the component it targets when ordering by component.
+   * @param runnable the runnable that runs the message.
+   */
+  public void execute(Message message, final Runnable runnable) {
+    pendingCount.incrementAndGet();
+    final Runnable countingRunnable = new Runnable() {
+      public void run() {
+        pendingCount.decrementAndGet();
+        runnable.run();
+      }
+    };
+    int componentID = isComponentOrdered && message instanceof ControlCommandMessage? ((ControlCommandMessage)message).getComponentID(): 0;
+    if(componentID == 0) {
+      executorService.execute(countingRunnable);
+      return;
+    }
+    final Integer key = componentID;
+    synchronized(componentQueueMap) {
+      LinkedList<Runnable> componentQueue = componentQueueMap.get(key);
+      if(componentQueue != null) {
+        // A message of that component is running: it will run this one after it.
+        componentQueue.add(countingRunnable);
+        return;
+      }
+      componentQueueMap.put(key, new LinkedList<Runnable>());
+    }
+    executorService.execute(new Runnable() {
+      public void run() {
+        Runnable r = countingRunnable;
+        while(r != null) {
+          try {
+            r.run();
+          } catch(Throwable t) {
+            t.printStackTrace();
+          }
+          synchronized(componentQueueMap) {
+            LinkedList<Runnable> componentQueue = componentQueueMap.get(key);
+            if(componentQueue.isEmpty()) {
+              componentQueueMap.remove(key);
+              r = null;
+            } else {
+              r = componentQueue.removeFirst();
+            }
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Get the number of messages that were received and did not start running yet.
+   */
+  public int getQueueDepth() {
+    return pendingCount.get();
+  }
+
+  /**
+   * Get the number of messages that got their own thread because the pool and its queue were full.
+   */
+  public long getRejectionCount() {
+    return rejectionCount.get();
+  }
+
+  public void shutdown() {
+    executorService.shutdown();
+  }
+
+}
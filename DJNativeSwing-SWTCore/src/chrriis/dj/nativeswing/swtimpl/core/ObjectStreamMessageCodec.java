@@ -0,0 +1,133 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.WriteAbortedException;
+import java.util.List;
+
+import chrriis.dj.nativeswing.swtimpl.Message;
+import chrriis.dj.nativeswing.swtimpl.NSSystemPropertySWT;
+
+/**
+ * A codec that uses Java serialization for the whole message.
+ * @author Christopher Deckers
+ */
+class ObjectStreamMessageCodec extends MessageCodec {
+
+  private static final int OOS_RESET_THRESHOLD;
+
+  static {
+    String maxByteCountProperty = NSSystemPropertySWT.INTERFACE_STREAMRESETTHRESHOLD.get();
+    if(maxByteCountProperty != null) {
+      OOS_RESET_THRESHOLD = Integer.parseInt(maxByteCountProperty);
+    } else {
+      OOS_RESET_THRESHOLD = 500000;
+    }
+  }
+
+  private ObjectOutputStream oos;
+  private ObjectInputStream ois;
+  private int oosByteCount;
+
+  public ObjectStreamMessageCodec(InputStream is, OutputStream os) throws IOException {
+    oos = new ObjectOutputStream(new BufferedOutputStream(os) {
+      @Override
+      public synchronized void write(int b) throws IOException {
+        super.write(b);
+        oosByteCount++;
+      }
+      @Override
+      public synchronized void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        oosByteCount += len;
+      }
+    });
+    oos.flush();
+    ois = new ObjectInputStream(new BufferedInputStream(is));
+  }
+
+  @Override
+  public void writeMessage(Message message) throws IOException {
+    synchronized(oos) {
+      oos.writeUnshared(message);
+      oos.flush();
+      resetIfNeeded();
+    }
+  }
+
+  @Override
+  public Exception[] writeMessages(List<Message> messageList) throws IOException {
+    Exception[] exceptions = null;
+    synchronized(oos) {
+      for(int i=0; i<messageList.size(); i++) {
+        try {
+          oos.writeUnshared(messageList.get(i));
+        } catch(ObjectStreamException e) {
+          // The object stream marks the aborted object in the stream, which the reader skips.
+          if(exceptions == null) {
+            exceptions = new Exception[messageList.size()];
+          }
+          exceptions[i] = e;
+        }
+      }
+      oos.flush();
+      resetIfNeeded();
+    }
+    return exceptions;
+  }
+
+  private void resetIfNeeded() throws IOException {
+    // Messages are cached, so we need to reset() from time to time to clean the cache, or else we get an OutOfMemoryError.
+    if(oosByteCount > OOS_RESET_THRESHOLD) {
+      oos.reset();
+      oosByteCount = 0;
+    }
+  }
+
+  @Override
+  public Message readMessage() throws IOException, ClassNotFoundException {
+    Object o;
+    try {
+      o = ois.readUnshared();
+    } catch(WriteAbortedException e) {
+      // The writer could not encode a message, and the stream continues after it.
+      System.err.println("Aborted message: " + e.getMessage());
+      return null;
+    }
+    if(o instanceof Message) {
+      return (Message)o;
+    }
+    System.err.println("Unknown message: " + o);
+    return null;
+  }
+
+  @Override
+  public void closeOutput() {
+    try {
+      oos.close();
+    } catch(Exception e) {
+    }
+  }
+
+  @Override
+  public void closeInput() {
+    try {
+      ois.close();
+    } catch(Exception e) {
+    }
+  }
+
+}
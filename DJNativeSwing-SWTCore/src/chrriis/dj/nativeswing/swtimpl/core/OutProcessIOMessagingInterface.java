@@ -7,13 +7,10 @@
  */
 package chrriis.dj.nativeswing.swtimpl.core;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.List;
 
 import javax.swing.SwingUtilities;
 
@@ -34,20 +31,13 @@ abstract class OutProcessIOMessagingInterface extends MessagingInterface {
     initialize(exitOnEndOfStream);
   }
 
-  private ObjectOutputStream oos;
-  private ObjectInputStream ois;
+  private MessageCodec messageCodec;
 
   @Override
   public void destroy() {
     setAlive(false);
-    try {
-      oos.close();
-    } catch(Exception e) {
-    }
-    try {
-      ois.close();
-    } catch(Exception e) {
-    }
+    messageCodec.closeOutput();
+    messageCodec.closeInput();
   }
 
   private InputStream is;
@@ -56,20 +46,7 @@ abstract class OutProcessIOMessagingInterface extends MessagingInterface {
   @Override
   protected void openChannel() {
     try {
-      oos = new ObjectOutputStream(new BufferedOutputStream(os) {
-        @Override
-        public synchronized void write(int b) throws IOException {
-          super.write(b);
-          oosByteCount++;
-        }
-        @Override
-        public synchronized void write(byte[] b, int off, int len) throws IOException {
-          super.write(b, off, len);
-          oosByteCount += len;
-        }
-      });
-      oos.flush();
-      ois = new ObjectInputStream(new BufferedInputStream(is));
+      messageCodec = MessageCodec.createMessageCodec(is, os);
     } catch(IOException e) {
       throw new RuntimeException(e);
     }
@@ -77,14 +54,8 @@ abstract class OutProcessIOMessagingInterface extends MessagingInterface {
 
   @Override
   protected void closeChannel() {
-    try {
-      oos.close();
-    } catch(Exception e) {
-    }
-    try {
-      ois.close();
-    } catch(Exception e) {
-    }
+    messageCodec.closeOutput();
+    messageCodec.closeInput();
     try {
       is.close();
     } catch(Exception e) {
@@ -97,43 +68,28 @@ abstract class OutProcessIOMessagingInterface extends MessagingInterface {
     os = null;
   }
 
-  private static final int OOS_RESET_THRESHOLD;
-
-  static {
-    String maxByteCountProperty = NSSystemPropertySWT.INTERFACE_STREAMRESETTHRESHOLD.get();
-    if(maxByteCountProperty != null) {
-      OOS_RESET_THRESHOLD = Integer.parseInt(maxByteCountProperty);
-    } else {
-      OOS_RESET_THRESHOLD = 500000;
-    }
+  @Override
+  protected boolean isBatchingSupported() {
+    return true;
   }
 
-  private int oosByteCount;
-
   @Override
   protected void writeMessageToChannel(Message message) throws IOException {
-    synchronized(oos) {
-      oos.writeUnshared(message);
-      oos.flush();
-      // Messages are cached, so we need to reset() from time to time to clean the cache, or else we get an OutOfMemoryError.
-      if(oosByteCount > OOS_RESET_THRESHOLD) {
-        oos.reset();
-        oosByteCount = 0;
-      }
-    }
+    messageCodec.writeMessage(message);
+  }
+
+  @Override
+  protected Exception[] writeMessagesToChannel(List<Message> messageList) throws IOException {
+    return messageCodec.writeMessages(messageList);
   }
 
   @Override
   protected Message readMessageFromChannel() throws IOException, ClassNotFoundException {
-    Object o = ois.readUnshared();
-    if(o instanceof Message) {
-      Message message = (Message)o;
-      if(IS_DEBUGGING_MESSAGES) {
-        System.err.println("RECV: " + SWTNativeInterface.getMessageID(message) + ", " + message);
-      }
-      return message;
+    Message message = messageCodec.readMessage();
+    if(message != null && IS_DEBUGGING_MESSAGES) {
+      System.err.println("RECV: " + SWTNativeInterface.getMessageID(message) + ", " + message);
     }
-    return null;
+    return message;
   }
 
   static class SWTOutProcessIOMessagingInterface extends OutProcessIOMessagingInterface {
@@ -0,0 +1,321 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import chrriis.dj.nativeswing.common.SystemProperty;
+import chrriis.dj.nativeswing.common.WebServer;
+import chrriis.dj.nativeswing.common.WebServer.HTTPRequest;
+import chrriis.dj.nativeswing.common.WebServer.WebServerContent;
+import chrriis.dj.nativeswing.common.WebServer.WebServerContentProvider;
+import chrriis.dj.nativeswing.swtimpl.NSSystemPropertySWT;
+import chrriis.dj.nativeswing.swtimpl.common.NetworkURLClassLoader;
+
+/**
+ * The archive of the classes and resources that a peer VM loads through the proxy class loader, which the peer VM downloads in one request instead of one request per class.<br/>
+ * The class path resources that the peer VMs request from the web server are recorded in an index file, so that the archive of the next run has what the peer VM needs from its start. The archive is named after the SHA-1 hash of its file, which is written the same way for the same classes: a peer VM keeps using its cached copy until the classes change. Both sides check the hash of an existing archive before using it.
+ * @author Christopher Deckers
+ */
+class PeerVMClassArchive {
+
+  private static final String ARCHIVE_PATH_PREFIX = "classarchive/";
+  private static final long STALE_ARCHIVE_AGE = TimeUnit.DAYS.toMillis(7);
+  private static final int MINIMUM_SHARED_CLASS_DATA_JAVA_VERSION = 19;
+
+  private static final File classArchiveDir = NetworkURLClassLoader.getClassArchiveDirectory();
+  private static final Object LOCK = new Object();
+
+  /** The resources that were considered for the current archive, including the ones that were not found. */
+  private static Set<String> indexedResourceSet;
+  private static String archiveHash;
+  private static Set<String> servedArchiveHashSet = new HashSet<String>();
+
+  private PeerVMClassArchive() {}
+
+  /**
+   * Get the hash of the archive of the indexed resources and of the resources that were requested so far, creating the archive if it does not exist.
+   * @return the hash, or null if there is nothing to archive yet or if the archive could not be created.
+   */
+  public static String getArchiveHash() {
+    synchronized(LOCK) {
+      WebServer webServer = WebServer.getDefaultWebServer();
+      Set<String> resourceSet = new TreeSet<String>(Arrays.asList(webServer.getRequestedClassPathResources()));
+      if(indexedResourceSet != null && indexedResourceSet.containsAll(resourceSet) && (archiveHash == null || isArchiveValid(archiveHash))) {
+        return archiveHash;
+      }
+      resourceSet.addAll(indexedResourceSet == null? loadIndex(): indexedResourceSet);
+      indexedResourceSet = resourceSet;
+      saveIndex(resourceSet);
+      try {
+        archiveHash = createArchive(webServer, resourceSet);
+      } catch(Exception e) {
+        e.printStackTrace();
+        archiveHash = null;
+      }
+      if(archiveHash != null && servedArchiveHashSet.isEmpty()) {
+        webServer.addContentProvider(new WebServerContentProvider() {
+          public WebServerContent getWebServerContent(HTTPRequest httpRequest) {
+            return getArchiveContent(httpRequest);
+          }
+        });
+      }
+      if(archiveHash != null) {
+        servedArchiveHashSet.add(archiveHash);
+      }
+      return archiveHash;
+    }
+  }
+
+  public static String getArchiveURL(String archiveHash) {
+    return WebServer.getDefaultWebServer().getURLPrefix() + "/" + ARCHIVE_PATH_PREFIX + archiveHash + ".jar";
+  }
+
+  /**
+   * Get the parameters of the peer VM to map the classes it loads to a shared archive, which is created when the peer VM exits and reused by the next peer VMs. This requires Java 19 or later and is only done when enabled.
+   */
+  public static String[] getSharedClassDataVMParams(String archiveHash) {
+    if(!Boolean.parseBoolean(NSSystemPropertySWT.PEERVM_CLASSARCHIVE_SHAREDCLASSDATA.get())) {
+      return new String[0];
+    }
+    String javaVersion = SystemProperty.JAVA_SPECIFICATION_VERSION.get();
+    int index = javaVersion.indexOf('.');
+    try {
+      if(Integer.parseInt(index == -1? javaVersion: javaVersion.substring(0, index)) < MINIMUM_SHARED_CLASS_DATA_JAVA_VERSION) {
+        return new String[0];
+      }
+    } catch(NumberFormatException e) {
+      return new String[0];
+    }
+    return new String[] {
+        "-XX:SharedArchiveFile=" + new File(classArchiveDir, archiveHash + ".jsa").getAbsolutePath(),
+        "-XX:+AutoCreateSharedArchive",
+    };
+  }
+
+  /**
+   * Add the resources that were requested since the archive was created to the index, for the archive of the next run.
+   */
+  public static void saveIndex() {
+    synchronized(LOCK) {
+      if(indexedResourceSet == null) {
+        // The proxy class loader was not used.
+        return;
+      }
+      Set<String> resourceSet = new TreeSet<String>(indexedResourceSet);
+      resourceSet.addAll(Arrays.asList(WebServer.getDefaultWebServer().getRequestedClassPathResources()));
+      if(resourceSet.size() != indexedResourceSet.size()) {
+        saveIndex(resourceSet);
+      }
+    }
+  }
+
+  private static File getIndexFile() {
+    // Applications do not load the same classes, so each class path has its own index.
+    return new File(classArchiveDir, "index-" + Integer.toHexString(String.valueOf(SystemProperty.JAVA_CLASS_PATH.get()).hashCode()) + ".txt");
+  }
+
+  private static Set<String> loadIndex() {
+    Set<String> resourceSet = new TreeSet<String>();
+    File indexFile = getIndexFile();
+    if(!indexFile.exists()) {
+      return resourceSet;
+    }
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8"));
+      try {
+        for(String line; (line = reader.readLine()) != null; ) {
+          if(line.length() > 0) {
+            resourceSet.add(line);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch(Exception e) {
+      e.printStackTrace();
+    }
+    return resourceSet;
+  }
+
+  private static void saveIndex(Set<String> resourceSet) {
+    File indexFile = getIndexFile();
+    try {
+      NetworkURLClassLoader.createClassArchiveDirectory(classArchiveDir);
+      File tmpFile = File.createTempFile("index", ".tmp", classArchiveDir);
+      try {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+        try {
+          for(String resource: resourceSet) {
+            writer.write(resource);
+            writer.write('\n');
+          }
+        } finally {
+          writer.close();
+        }
+        indexFile.delete();
+        tmpFile.renameTo(indexFile);
+      } finally {
+        tmpFile.delete();
+      }
+    } catch(Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  private static String createArchive(WebServer webServer, Set<String> resourceSet) throws Exception {
+    ByteArrayOutputStream archiveContent = new ByteArrayOutputStream();
+    ZipOutputStream out = new ZipOutputStream(archiveContent);
+    boolean isEmpty = true;
+    byte[] bytes = new byte[8192];
+    for(String resource: resourceSet) {
+      if(resource.endsWith("/")) {
+        continue;
+      }
+      InputStream in = webServer.getClassPathResourceAsStream(resource);
+      if(in == null) {
+        continue;
+      }
+      ZipEntry zipEntry = new ZipEntry(resource);
+      // The same resources must give the same archive, and thus the same hash.
+      zipEntry.setTime(0);
+      out.putNextEntry(zipEntry);
+      try {
+        for(int n; (n=in.read(bytes)) != -1; out.write(bytes, 0, n)) {
+        }
+      } finally {
+        in.close();
+      }
+      out.closeEntry();
+      isEmpty = false;
+    }
+    out.close();
+    if(isEmpty) {
+      return null;
+    }
+    byte[] archiveBytes = archiveContent.toByteArray();
+    String archiveHash = NetworkURLClassLoader.toHexString(MessageDigest.getInstance("SHA-1").digest(archiveBytes));
+    File archiveFile = new File(classArchiveDir, archiveHash + ".jar");
+    if(isArchiveValid(archiveHash)) {
+      archiveFile.setLastModified(System.currentTimeMillis());
+    } else {
+      // The archive does not exist or was altered.
+      archiveFile.delete();
+      NetworkURLClassLoader.createClassArchiveDirectory(classArchiveDir);
+      // The archive is written to a temporary file and then renamed, so that a peer VM never sees a partial archive.
+      File tmpFile = File.createTempFile(archiveHash, ".tmp", classArchiveDir);
+      try {
+        OutputStream fileOut = new FileOutputStream(tmpFile);
+        try {
+          fileOut.write(archiveBytes);
+        } finally {
+          fileOut.close();
+        }
+        if(!tmpFile.renameTo(archiveFile) && !isArchiveValid(archiveHash)) {
+          throw new IOException("Could not create the class archive " + archiveFile);
+        }
+      } finally {
+        tmpFile.delete();
+      }
+    }
+    deleteStaleArchives();
+    return archiveHash;
+  }
+
+  private static boolean isArchiveValid(String archiveHash) {
+    File archiveFile = new File(classArchiveDir, archiveHash + ".jar");
+    if(!archiveFile.isFile()) {
+      return false;
+    }
+    try {
+      return archiveHash.equals(NetworkURLClassLoader.computeSHA1(archiveFile));
+    } catch(IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Delete the archives and the shared class data of older versions, unless they were used recently, possibly by another application.
+   */
+  private static void deleteStaleArchives() {
+    File[] files = classArchiveDir.listFiles();
+    if(files == null) {
+      return;
+    }
+    long time = System.currentTimeMillis();
+    for(File file: files) {
+      String name = file.getName();
+      if((name.endsWith(".jar") || name.endsWith(".jsa") || name.endsWith(".tmp")) && time - file.lastModified() > STALE_ARCHIVE_AGE) {
+        file.delete();
+      }
+    }
+  }
+
+  private static WebServerContent getArchiveContent(HTTPRequest httpRequest) {
+    String resourcePath = httpRequest.getResourcePath();
+    if(resourcePath.startsWith("/")) {
+      resourcePath = resourcePath.substring(1);
+    }
+    if(!resourcePath.startsWith(ARCHIVE_PATH_PREFIX) || !resourcePath.endsWith(".jar")) {
+      return null;
+    }
+    String archiveHash = resourcePath.substring(ARCHIVE_PATH_PREFIX.length(), resourcePath.length() - ".jar".length());
+    synchronized(LOCK) {
+      // Only the archives that were created by this VM are served.
+      if(!servedArchiveHashSet.contains(archiveHash)) {
+        return null;
+      }
+    }
+    final File archiveFile = new File(classArchiveDir, archiveHash + ".jar");
+    if(!archiveFile.isFile()) {
+      return null;
+    }
+    return new WebServerContent() {
+      @Override
+      public String getContentType() {
+        return getDefaultMimeType(".jar");
+      }
+      @Override
+      public long getContentLength() {
+        return archiveFile.length();
+      }
+      @Override
+      public File getLocalFile() {
+        return archiveFile;
+      }
+      @Override
+      public InputStream getInputStream() {
+        try {
+          return new FileInputStream(archiveFile);
+        } catch(Exception e) {
+          e.printStackTrace();
+          return null;
+        }
+      }
+    };
+  }
+
+}
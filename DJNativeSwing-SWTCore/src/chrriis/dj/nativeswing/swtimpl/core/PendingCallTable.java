@@ -0,0 +1,77 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The table of the synchronous calls that were sent from a non-UI thread and that wait for their result.<br/>
+ * Each call has a slot keyed by a call ID that is unique to each send, since the same message instance can be sent again while a previous send is pending. The slots are completed by the receiver thread, and cancelled when the call times out or when the other side dies.
+ * @author Christopher Deckers
+ */
+class PendingCallTable {
+
+  private final ConcurrentMap<Integer, CompletableFuture<Object>> callMap = new ConcurrentHashMap<Integer, CompletableFuture<Object>>();
+  private final AtomicInteger nextCallID = new AtomicInteger(1);
+
+  /**
+   * Get a new call ID, to register a call.
+   */
+  public int createCallID() {
+    return nextCallID.getAndIncrement();
+  }
+
+  /**
+   * Create the slot of a call.
+   * @param callID the ID of the call, which was created with {@link #createCallID()}.
+   * @return the slot that gets the result.
+   * @throws IllegalStateException if a call with the same ID is already pending.
+   */
+  public CompletableFuture<Object> register(int callID) {
+    CompletableFuture<Object> future = new CompletableFuture<Object>();
+    if(callMap.putIfAbsent(callID, future) != null) {
+      throw new IllegalStateException("A call with the ID " + callID + " is already pending!");
+    }
+    return future;
+  }
+
+  /**
+   * Give its result to a call.
+   * @return true if the call was pending, false if it was cancelled or timed out.
+   */
+  public boolean complete(int callID, Object result) {
+    CompletableFuture<Object> future = callMap.remove(callID);
+    if(future == null) {
+      return false;
+    }
+    return future.complete(result);
+  }
+
+  /**
+   * Cancel a call: a result that is received afterwards is ignored.
+   */
+  public void cancel(int callID) {
+    CompletableFuture<Object> future = callMap.remove(callID);
+    if(future != null) {
+      future.cancel(false);
+    }
+  }
+
+  /**
+   * Cancel all the pending calls, which is needed when no result can be received anymore.
+   */
+  public void cancelAll() {
+    for(Integer callID: callMap.keySet()) {
+      cancel(callID);
+    }
+  }
+
+}
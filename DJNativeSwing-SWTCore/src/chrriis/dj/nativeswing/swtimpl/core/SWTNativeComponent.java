@@ -33,25 +33,27 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.awt.peer.ComponentPeer;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EventListener;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 
 import javax.swing.MenuSelectionManager;
 import javax.swing.SwingUtilities;
@@ -73,15 +75,15 @@ import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
-import org.eclipse.swt.graphics.PaletteData;
 import org.eclipse.swt.graphics.Point;
-import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.graphics.Region;
 import org.eclipse.swt.internal.DPIUtil;
 import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Shell;
 
 import com.sun.jna.Native;
@@ -140,6 +142,11 @@ public abstract class SWTNativeComponent extends NativeComponent {
       return isControlParentEnabled();
     }
 
+    @Override
+    protected void refreshNativeComponentEnabled() {
+      refreshControlParentEnabled(Utils.IS_MAC && isShowing());
+    }
+
     @Override
     protected void storeInHiddenParent() {
       if(Boolean.parseBoolean(NSSystemPropertySWT.COMPONENTS_DISABLEHIDDENPARENTREPARENTING.get())) {
@@ -236,6 +243,57 @@ public abstract class SWTNativeComponent extends NativeComponent {
     }
   }
 
+  private volatile Map<CommandMessage, CompletableFuture<Object>> initializationFutureMap = new IdentityHashMap<CommandMessage, CompletableFuture<Object>>();
+
+  /**
+   * Run the given command if the control is created, or store it to run it when the creation occurs, without waiting for its result.
+   * If the component is disposed before the command has a chance to run, the result is null.
+   * @param commandMessage the command message to run.
+   * @param args the arguments to pass to the command message.
+   * @return the future result of running the message, which is delivered in a thread that is not the UI thread.
+   */
+  @Override
+  public CompletableFuture<Object> runAsyncWithResult(final CommandMessage commandMessage, Object... args) {
+    SWTNativeInterface nativeInterface = SWTNativeInterface.getInstance();
+    if(nativeInterface.isAlive()) {
+      nativeInterface.checkUIThread(false);
+    }
+    if(commandMessage instanceof ControlCommandMessage) {
+      ((ControlCommandMessage)commandMessage).setNativeComponent(this);
+    }
+    if(initializationCommandMessageList != null) {
+      // The message is run in sequence with the other queued messages, and its result completes the future.
+      SWTNativeInterface.setMessageSyncExec(commandMessage, true);
+      SWTNativeInterface.setMessageArgs(commandMessage, args);
+      CompletableFuture<Object> future = new CompletableFuture<Object>();
+      initializationFutureMap.put(commandMessage, future);
+      initializationCommandMessageList.add(commandMessage);
+      return future;
+    }
+    if(!isNativePeerValid()) {
+      SWTNativeInterface.setMessageArgs(commandMessage, args);
+      printFailedInvocation(commandMessage);
+      return CompletableFuture.completedFuture(null);
+    }
+    return commandMessage.execAsync(true, args).handle(new BiFunction<Object, Throwable, Object>() {
+      public Object apply(Object result, Throwable t) {
+        if(t == null) {
+          return result;
+        }
+        if(t instanceof CompletionException && t.getCause() != null) {
+          t = t.getCause();
+        }
+        if(t instanceof CancellationException) {
+          // The native side died.
+          printFailedInvocation(commandMessage);
+          return null;
+        }
+        processFailedMessageException(t instanceof RuntimeException? (RuntimeException)t: new RuntimeException(t), commandMessage);
+        return null;
+      }
+    });
+  }
+
   private void printFailedInvocation(Message message) {
     if(IS_PRINTING_FAILED_MESSAGES) {
       System.err.println("Failed message to " + getComponentDescription() + ": " + message);
@@ -255,19 +313,28 @@ public abstract class SWTNativeComponent extends NativeComponent {
   }
 
   private static class CMN_reshape extends ControlCommandMessage {
+    @Override
+    protected boolean isCoalescable() {
+      return true;
+    }
     @Override
     public Object run(Object[] args) {
-      Shell shell = getControl().getShell();
-      if(!shell.isDisposed()) {
-        float factor = DPIUtil.getDeviceZoom() / 100f;
-        int width = Math.round((Integer)args[0] / factor);
-        int height = Math.round((Integer)args[1] / factor);
-        shell.setSize(width, height);
-      }
+      reshapeControl(getControl(), (Integer)args[0], (Integer)args[1]);
       return null;
     }
   }
 
+  /**
+   * Set the size of the shell of a control, with a size in device pixels.
+   */
+  static void reshapeControl(Control control, int width, int height) {
+    Shell shell = control.getShell();
+    if(!shell.isDisposed()) {
+      float factor = DPIUtil.getDeviceZoom() / 100f;
+      shell.setSize(Math.round(width / factor), Math.round(height / factor));
+    }
+  }
+
   private int componentID;
 
   /**
@@ -326,93 +393,37 @@ public abstract class SWTNativeComponent extends NativeComponent {
     super.processKeyEvent(ke);
   }
 
-  private volatile Thread resizeThread;
-
   @SuppressWarnings("deprecation")
   @Override
   public void reshape(int x, int y, int width, int height) {
-    if(resizeThread == null && (width != getWidth() || height != getHeight())) {
-      resizeThread = new Thread("NativeSwing Resize") {
-        @Override
-        public void run() {
-          try {
-            sleep(50);
-          } catch(Exception e) {
-          }
-          applyPendingReshape();
-        }
-      };
-      resizeThread.start();
+    if(width != getWidth() || height != getHeight()) {
+      NativeComponentUpdateScheduler.scheduleReshape(this);
     }
     super.reshape(x, y, width, height);
   }
 
-  private void applyPendingReshape() {
-    if(resizeThread == null) {
-      return;
-    }
-    if(!SwingUtilities.isEventDispatchThread()) {
-      SwingUtilities.invokeLater(new Runnable() {
-        @Override
-        public void run() {
-          applyPendingReshape();
-        }
-      });
-      return;
-    }
-    if(resizeThread == null) {
-      return;
-    }
-    resizeThread = null;
-    if(isNativePeerValid()) {
-      int width = getWidth();
-      int height = getHeight();
-      Point2D.Double scaledFactor = UIUtils.getScaledFactor(this);
-      if(scaledFactor.x != 1.0 || scaledFactor.y != 1.0) {
-        width = (int)(width * scaledFactor.x);
-        height = (int)(height * scaledFactor.y);
-      }
-      new CMN_reshape().asyncExec(SWTNativeComponent.this, width, height);
+  /**
+   * Get the size to give to the native peer, which is the size of this component in device pixels.
+   */
+  Dimension getNativePeerSize() {
+    int width = getWidth();
+    int height = getHeight();
+    Point2D.Double scaledFactor = UIUtils.getScaledFactor(this);
+    if(scaledFactor.x != 1.0 || scaledFactor.y != 1.0) {
+      width = (int)(width * scaledFactor.x);
+      height = (int)(height * scaledFactor.y);
     }
+    return new Dimension(width, height);
   }
 
-  private volatile Thread repaintThread;
-
-  private void repaintNativeComponent() {
-    if(repaintThread == null && getWidth() > 0 && getHeight() > 0) {
-      repaintThread = new Thread("NativeSwing Repaint") {
-        @Override
-        public void run() {
-          try {
-            sleep(50);
-          } catch(Exception e) {
-          }
-          applyPendingRepaint();
-        }
-      };
-      repaintThread.start();
-    }
+  void reshapeNativePeer() {
+    Dimension size = getNativePeerSize();
+    new CMN_reshape().asyncExec(this, size.width, size.height);
   }
 
-  private void applyPendingRepaint() {
-    if(repaintThread == null) {
-      return;
-    }
-    if(!SwingUtilities.isEventDispatchThread()) {
-      SwingUtilities.invokeLater(new Runnable() {
-        @Override
-        public void run() {
-          applyPendingRepaint();
-        }
-      });
-      return;
-    }
-    if(repaintThread == null) {
-      return;
-    }
-    repaintThread = null;
-    if(isNativePeerValid()) {
-      new CMN_redraw().asyncExec(SWTNativeComponent.this);
+  private void repaintNativeComponent() {
+    if(getWidth() > 0 && getHeight() > 0) {
+      NativeComponentUpdateScheduler.scheduleRedraw(this);
     }
   }
 
@@ -593,7 +604,10 @@ public abstract class SWTNativeComponent extends NativeComponent {
     }
   }
 
-  private static class CMN_createControl extends CommandMessage implements NoSerializationTestMessage {
+  /**
+   * The creation of the control, which is a control message so that it goes to the peer VM of the component.
+   */
+  private static class CMN_createControl extends ControlCommandMessage implements NoSerializationTestMessage {
     private static Shell createShell(Object handle) throws Exception {
       SWTNativeInterface nativeInterface = SWTNativeInterface.getInstance();
       Display display = nativeInterface.getDisplay();
@@ -647,6 +661,11 @@ public abstract class SWTNativeComponent extends NativeComponent {
       throw new IllegalStateException("Failed to create a Shell!");
     }
     @Override
+    protected boolean isValid() {
+      // The control does not exist yet.
+      return true;
+    }
+    @Override
     public Object run(Object[] args) throws Exception {
       // We need to synchronize: a non-UI thread may send a message thinking the component is valid, but the message would be invalid as the control is not yet in the registry.
       ObjectRegistry controlRegistry = SWTNativeComponent.getControlRegistry();
@@ -804,6 +823,51 @@ public abstract class SWTNativeComponent extends NativeComponent {
         new CMJ_dispatchKeyEvent().asyncExec(control, getKeyEventArgs(e, KeyEvent.KEY_TYPED));
       }
     });
+    Listener mirroredStateListener = new Listener() {
+      @Override
+      public void handleEvent(Event e) {
+        updateMirroredState(control);
+      }
+    };
+    control.addListener(SWT.FocusIn, mirroredStateListener);
+    control.addListener(SWT.FocusOut, mirroredStateListener);
+    control.addListener(SWT.Resize, mirroredStateListener);
+    updateMirroredState(control);
+  }
+
+  private static class CMJ_updateMirroredState extends ControlCommandMessage {
+    @Override
+    protected boolean isCoalescable() {
+      return true;
+    }
+    @Override
+    public Object run(Object[] args) {
+      SWTNativeComponent nativeComponent = (SWTNativeComponent)getNativeComponent();
+      if(nativeComponent == null) {
+        return null;
+      }
+      nativeComponent.mirroredPreferredSize = (Dimension)args[0];
+      nativeComponent.isMirroredFocusControl = (Boolean)args[1];
+      nativeComponent.isPreferredSizeMirrored = true;
+      nativeComponent.isStateMirrored = true;
+      return null;
+    }
+  }
+
+  /**
+   * Send the preferred size and the focus state of the control to the Swing side when they change, so that its getters do not have to wait for a round trip.
+   */
+  private static void updateMirroredState(Control control) {
+    if(control.isDisposed()) {
+      return;
+    }
+    Point cSize = control.computeSize(SWT.DEFAULT, SWT.DEFAULT);
+    Object[] mirroredState = new Object[] {new Dimension(cSize.x, cSize.y), control.isFocusControl()};
+    if(Arrays.equals(mirroredState, (Object[])control.getData("NS_MirroredState"))) {
+      return;
+    }
+    control.setData("NS_MirroredState", mirroredState);
+    new CMJ_updateMirroredState().asyncExec(control, mirroredState);
   }
 
   private static class CMN_setEventsEnabled extends ControlCommandMessage {
@@ -1029,6 +1093,8 @@ public abstract class SWTNativeComponent extends NativeComponent {
     }
     List<CommandMessage> initializationCommandMessageList_ = initializationCommandMessageList;
     initializationCommandMessageList = null;
+    Map<CommandMessage, CompletableFuture<Object>> initializationFutureMap_ = initializationFutureMap;
+    initializationFutureMap = null;
     if(isNativePeerDisposed) {
       invalidNativePeerText = "Failed to create " + getComponentDescription() + "\n\nReason:\nThe native peer was disposed!";
     } else {
@@ -1036,6 +1102,7 @@ public abstract class SWTNativeComponent extends NativeComponent {
       if(isInterfaceAlive) {
         nativeInterfaceListener = new NNativeInterfaceListener(this);
         NativeInterface.addNativeInterfaceListener(nativeInterfaceListener);
+        peerVMIndex = nativeInterface.getNewComponentPeerVMIndex(requestedPeerVMIndex);
         isNativePeerValid = true;
         try {
           runSync(new CMN_createControl(), componentID, getHandle(), SWTNativeComponent.this.getClass().getName(), getNativePeerCreationParameters());
@@ -1048,14 +1115,7 @@ public abstract class SWTNativeComponent extends NativeComponent {
           invalidNativePeerText = "Failed to create " + getComponentDescription() + "\n\nReason:\n" + sb.toString();
           e.printStackTrace();
         }
-        int width = getWidth();
-        int height = getHeight();
-        Point2D.Double scaledFactor = UIUtils.getScaledFactor(this);
-        if(scaledFactor.x != 1.0 || scaledFactor.y != 1.0) {
-          width = (int)(width * scaledFactor.x);
-          height = (int)(height * scaledFactor.y);
-        }
-        new CMN_reshape().asyncExec(this, width, height);
+        reshapeNativePeer();
       } else {
         invalidNativePeerText = "Failed to create " + getComponentDescription() + "\n\nReason:\nThe native interface is not open!";
       }
@@ -1066,16 +1126,34 @@ public abstract class SWTNativeComponent extends NativeComponent {
     } catch (InterruptedException e1) {
     }
     for(CommandMessage initCommandMessage: initializationCommandMessageList_) {
+      CompletableFuture<Object> future = initializationFutureMap_.get(initCommandMessage);
       if(!isNativePeerValid()) {
         printFailedInvocation(initCommandMessage);
+        if(future != null) {
+          future.complete(null);
+        }
       } else {
         // We have to restore the sync state, otherwise 2 sync calls (like navigation calls) would be sent
         // before processing messages generated by each of these calls (like location changing events).
         if(SWTNativeInterface.isMessageSyncExec(initCommandMessage)) {
+          Object result = null;
           try {
-            initCommandMessage.syncSend(true);
+            result = initCommandMessage.syncSend(true);
           } catch(RuntimeException e) {
-            processFailedMessageException(e, initCommandMessage);
+            if(future == null) {
+              processFailedMessageException(e, initCommandMessage);
+            } else {
+              try {
+                processFailedMessageException(e, initCommandMessage);
+              } catch(RuntimeException ex) {
+                // The caller of runAsyncWithResult() gets the exception.
+                future.completeExceptionally(ex);
+                continue;
+              }
+            }
+          }
+          if(future != null) {
+            future.complete(result);
           }
         } else {
           initCommandMessage.asyncSend(true);
@@ -1153,6 +1231,7 @@ public abstract class SWTNativeComponent extends NativeComponent {
         }
       }
       invalidateNativePeer("The native component was disposed.");
+      disposeSharedMemoryImageBuffer();
       SWTNativeComponent.getNativeComponentRegistry().remove(componentID);
       nativeComponentWrapper.disposeNativeComponent();
     }
@@ -1182,7 +1261,42 @@ public abstract class SWTNativeComponent extends NativeComponent {
    */
   @Override
   public boolean isNativePeerValid() {
-    return isNativePeerValid && SWTNativeInterface.getInstance().isAlive();
+    return isNativePeerValid && SWTNativeInterface.getInstance().isPeerVMAlive(peerVMIndex);
+  }
+
+  private int requestedPeerVMIndex = -1;
+  private volatile int peerVMIndex;
+
+  /**
+   * Get the index of the peer VM that hosts the native peer, which is 0 unless several peer VMs are used.
+   */
+  int getPeerVMIndex() {
+    return peerVMIndex;
+  }
+
+  /**
+   * Get the index of the peer VM that hosts the native peer of a component, or 0 if the component is not found.
+   */
+  static int getPeerVMIndex(int componentID) {
+    ObjectRegistry nativeComponentRegistry = getNativeComponentRegistry();
+    Object nativeComponent = nativeComponentRegistry == null? null: nativeComponentRegistry.get(componentID);
+    return nativeComponent instanceof SWTNativeComponent? ((SWTNativeComponent)nativeComponent).peerVMIndex: 0;
+  }
+
+  /**
+   * Invalidate the components of a peer VM that died while the native interface remains open.
+   */
+  static void invalidatePeerVMComponents(final int peerVMIndex) {
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        for(NativeComponent nativeComponent: getNativeComponents()) {
+          if(nativeComponent instanceof SWTNativeComponent && ((SWTNativeComponent)nativeComponent).peerVMIndex == peerVMIndex) {
+            ((SWTNativeComponent)nativeComponent).invalidateNativePeer("The native peer died unexpectedly.");
+          }
+        }
+      }
+    });
   }
 
   private void invalidateNativePeer(String invalidNativePeerText) {
@@ -1209,6 +1323,7 @@ public abstract class SWTNativeComponent extends NativeComponent {
    */
   @Override
   protected Component createEmbeddableComponent(Map<Object, Object> optionMap) {
+    requestedPeerVMIndex = getPeerVMOption(optionMap);
     return nativeComponentWrapper.createEmbeddableComponent(optionMap);
   }
 
@@ -1224,34 +1339,37 @@ public abstract class SWTNativeComponent extends NativeComponent {
         Point size = control.getParent().getSize();
         size.y -= 1;
         control.setSize(size);
-        Thread t = new Thread("Native Swing Repaint fix") {
+        // The timer of the display runs in the UI thread, without a thread per repaint fix.
+        control.getDisplay().timerExec(50, new Runnable() {
           @Override
           public void run() {
-            try {
-              Thread.sleep(50);
-            } catch (InterruptedException e) {
-            }
             if(control.isDisposed()) {
               return;
             }
-            control.getDisplay().asyncExec(new Runnable() {
-              @Override
-              public void run() {
-                if(control.isDisposed()) {
-                  return;
-                }
-                control.setSize(control.getParent().getSize());
-              }
-            });
+            control.setSize(control.getParent().getSize());
           }
-        };
-        t.setDaemon(true);
-        t.start();
+        });
       }
       return null;
     }
   }
 
+  private static class CMN_refreshControlParentEnabled extends CMN_setControlParentEnabled {
+    @Override
+    protected boolean isCoalescable() {
+      return true;
+    }
+    @Override
+    public Object run(Object[] args) {
+      Control control = getControl();
+      if(control == null || control.isDisposed()) {
+        return null;
+      }
+      control.getShell().setEnabled(false);
+      return super.run(new Object[] {true, args[0]});
+    }
+  }
+
   private boolean isControlParentEnabled = true;
 
   private boolean isControlParentEnabled() {
@@ -1269,6 +1387,19 @@ public abstract class SWTNativeComponent extends NativeComponent {
     }
   }
 
+  /**
+   * Disable and re-enable the control parent with a single message.
+   */
+  private void refreshControlParentEnabled(boolean isForcingRepaint) {
+    if(!isControlParentEnabled) {
+      return;
+    }
+    // We do not want to send this message on a disposed or dead component
+    if(!isNativePeerInitialized() || isNativePeerValid()) {
+      runAsync(new CMN_refreshControlParentEnabled(), isForcingRepaint);
+    }
+  }
+
   private static class CMN_setEnabled extends ControlCommandMessage {
     @Override
     public Object run(Object[] args) {
@@ -1308,13 +1439,37 @@ public abstract class SWTNativeComponent extends NativeComponent {
     }
   }
 
+  private volatile boolean isStateMirrored;
+  private volatile boolean isMirroredFocusControl;
+  private volatile Dimension mirroredPreferredSize;
+  /** The native peer only sends its preferred size when it is resized, so the mirrored size is dropped when the layout is invalidated, for example because the content changed. */
+  private volatile boolean isPreferredSizeMirrored;
+
+  @Override
+  public void invalidate() {
+    isPreferredSizeMirrored = false;
+    super.invalidate();
+  }
+
   /**
    * This method can be called from a non-UI thread.
    */
   @Override
   public boolean hasFocus() {
+    return hasFocus(false);
+  }
+
+  /**
+   * Indicate whether this component or its native peer has the focus. This method can be called from a non-UI thread.
+   * @param isFresh true to ask the native peer, false to use the focus state that the native peer sends when it changes, which avoids a round trip.
+   * @return true if this component or its native peer has the focus.
+   */
+  public boolean hasFocus(boolean isFresh) {
     boolean hasFocus = super.hasFocus();
     if(!hasFocus && isNativePeerValid() && !isNativePeerDisposed) {
+      if(!isFresh && isStateMirrored) {
+        return isMirroredFocusControl;
+      }
       return Boolean.TRUE.equals(new CMN_hasFocus().syncExec(this));
     }
     return hasFocus;
@@ -1348,9 +1503,27 @@ public abstract class SWTNativeComponent extends NativeComponent {
 
   @Override
   public Dimension getPreferredSize() {
+    return getPreferredSize(false);
+  }
+
+  /**
+   * Get the preferred size of this component, which is computed by its native peer if it is valid.
+   * @param isFresh true to ask the native peer, false to use the preferred size that the native peer sends when it changes or that was last asked since the layout was invalidated, which avoids a round trip for each layout.
+   * @return the preferred size.
+   */
+  public Dimension getPreferredSize(boolean isFresh) {
     Dimension result = null;
     if(isNativePeerValid() && !isNativePeerDisposed) {
-      result = (Dimension)new CMN_getPreferredSize().syncExec(this);
+      if(!isFresh && isPreferredSizeMirrored) {
+        result = new Dimension(mirroredPreferredSize);
+      } else {
+        result = (Dimension)new CMN_getPreferredSize().syncExec(this);
+        if(result != null) {
+          // The next calls use this size until the layout is invalidated again or the native peer sends a new one.
+          mirroredPreferredSize = new Dimension(result);
+          isPreferredSizeMirrored = true;
+        }
+      }
     }
     if(result == null) {
       result = super.getPreferredSize();
@@ -1362,7 +1535,7 @@ public abstract class SWTNativeComponent extends NativeComponent {
 
     @Override
     protected boolean isValid() {
-      // The message should run even if the control is disposed because the socket would not get closed otherwise and the caller be blocked.
+      // The message should run even if the control is disposed because the caller would otherwise wait for an answer on the image channel.
       return true;
     }
 
@@ -1424,7 +1597,7 @@ public abstract class SWTNativeComponent extends NativeComponent {
       return result;
     }
 
-    private ImageData getImageData(Control control, Region region) {
+    private static ImageData getImageData(Control control, Region region) {
       if(control.isDisposed()) {
         return null;
       }
@@ -1473,11 +1646,38 @@ public abstract class SWTNativeComponent extends NativeComponent {
 
     @Override
     public Object run(Object[] args) throws Exception {
-      final int port = (Integer)args[0];
-      Rectangle[] rectangles = (Rectangle[])args[1];
-      final String hostAddress = (String)args[2];
-      final Control control = getControl();
+      int port = (Integer)args[0];
+      final Rectangle[] rectangles = (Rectangle[])args[1];
+      String hostAddress = (String)args[2];
+      final boolean isDeltaEncoded = Boolean.TRUE.equals(args[3]);
+      final boolean isDeltaReset = Boolean.TRUE.equals(args[4]);
+      int requestID = (Integer)args[5];
+      int peerVMIndex = (Integer)args[6];
+      ComponentImageChannelWriter channelWriter = ComponentImageChannelWriter.getInstance(hostAddress, port, peerVMIndex);
+      Object[] capture;
+      try {
+        capture = capture(getControl(), rectangles, isDeltaEncoded, isDeltaReset);
+      } catch(Exception e) {
+        channelWriter.sendEmpty(requestID);
+        throw e;
+      }
+      if(capture == null) {
+        channelWriter.sendEmpty(requestID);
+      } else if(capture[1] != null) {
+        channelWriter.send(requestID, (byte[])capture[1]);
+      } else {
+        channelWriter.send(requestID, (ImageData)capture[0], rectangles);
+      }
+      return null;
+    }
+
+    /**
+     * Capture the areas of the control. This method can be called from a non-UI thread.
+     * @return null if there is nothing to paint, or the image data and the encoded tiles that changed, which are null when delta encoding is not used.
+     */
+    static Object[] capture(final Control control, final Rectangle[] rectangles, final boolean isDeltaEncoded, final boolean isDeltaReset) throws Exception {
       ImageData imageData;
+      byte[] encodedAreas = null;
       final Region region = new Region();
       for(Rectangle rectangle: rectangles) {
         region.add(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
@@ -1485,121 +1685,326 @@ public abstract class SWTNativeComponent extends NativeComponent {
       if(!NativeInterface.isUIThread(true)) {
         final AtomicReference<Exception> exception = new AtomicReference<Exception>();
         final AtomicReference<ImageData> result = new AtomicReference<ImageData>();
+        final AtomicReference<byte[]> encodedAreasResult = new AtomicReference<byte[]>();
         if(control == null || control.isDisposed()) {
-          new Socket(hostAddress, port).close();
+          region.dispose();
           return null;
         }
-        final AtomicReference<Boolean> isSocketClosed = new AtomicReference<Boolean>(false);
         control.getDisplay().syncExec(new Runnable() {
           @Override
           public void run() {
             if(control.isDisposed()) {
-              try {
-                new Socket(hostAddress, port).close();
-                isSocketClosed.set(true);
-              } catch(Exception e) {
-              }
               return;
             }
             try {
-              result.set(getImageData(control, region));
+              ImageData imageData = getImageData(control, region);
+              result.set(imageData);
+              if(imageData != null && isDeltaEncoded) {
+                encodedAreasResult.set(getEncodedAreas(control, imageData, rectangles, isDeltaReset));
+              }
             } catch (Exception e) {
               exception.set(e);
             }
           }
         });
-        if(!isSocketClosed.get() && control.isDisposed()) {
-          new Socket(hostAddress, port).close();
-          return null;
-        }
         if(exception.get() != null) {
-          new Socket(hostAddress, port).close();
+          region.dispose();
           throw exception.get();
         }
         imageData = result.get();
+        encodedAreas = encodedAreasResult.get();
       } else {
         imageData = getImageData(control, region);
+        if(imageData != null && isDeltaEncoded) {
+          encodedAreas = getEncodedAreas(control, imageData, rectangles, isDeltaReset);
+        }
       }
       region.dispose();
       if(imageData == null) {
-        new Socket(hostAddress, port).close();
         return null;
       }
-      sendImageData(hostAddress, port, imageData, rectangles);
-      return null;
+      return new Object[] {imageData, encodedAreas};
     }
 
-    private void sendImageData(final String hostAddress, final int port, final ImageData imageData, final Rectangle[] rectangles) {
-      if(NativeInterface.isUIThread(true)) {
-        new Thread("NativeSwing[" + SWTNativeInterface.getInstance().getInterfaceID(true) + "] Component Image Data Transfer") {
-          @Override
-          public void run() {
-            sendImageData(hostAddress, port, imageData, rectangles);
-          }
-        }.start();
-        return;
+    /**
+     * Get the tiles that changed since the previous capture, run-length encoded. This must be called from the UI thread.
+     */
+    private static byte[] getEncodedAreas(Control control, ImageData imageData, Rectangle[] rectangles, boolean isDeltaReset) {
+      ImageTileFrame imageTileFrame = getImageTileFrame(control);
+      Point size = control.getSize();
+      return imageTileFrame.encode(imageTileFrame.update(imageData, size.x, size.y, rectangles, isDeltaReset));
+    }
+
+    static ImageTileFrame getImageTileFrame(Control control) {
+      ImageTileFrame imageTileFrame = (ImageTileFrame)control.getData("CMN_getComponentImage.imageTileFrame");
+      if(imageTileFrame == null) {
+        imageTileFrame = new ImageTileFrame();
+        control.setData("CMN_getComponentImage.imageTileFrame", imageTileFrame);
+      }
+      return imageTileFrame;
+    }
+
+  }
+
+  /**
+   * Capture the component and return the data of the image in the format of the image channel, for when the channel cannot be used.
+   */
+  private static class CMN_getComponentImageData extends ControlCommandMessage {
+
+    @Override
+    public Object run(Object[] args) throws Exception {
+      Rectangle[] rectangles = (Rectangle[])args[0];
+      boolean isDeltaEncoded = Boolean.TRUE.equals(args[1]);
+      boolean isDeltaReset = Boolean.TRUE.equals(args[2]);
+      Object[] capture = CMN_getComponentImage.capture(getControl(), rectangles, isDeltaEncoded, isDeltaReset);
+      if(capture == null) {
+        return null;
+      }
+      if(capture[1] != null) {
+        return capture[1];
+      }
+      return ComponentImageChannelWriter.getPixels((ImageData)capture[0], rectangles);
+    }
+
+  }
+
+  private static class CMN_getComponentImageSharedMemory extends ControlCommandMessage {
+
+    @Override
+    public Object run(Object[] args) throws Exception {
+      String path = (String)args[0];
+      Rectangle[] rectangles = (Rectangle[])args[1];
+      boolean isDeltaEncoded = Boolean.TRUE.equals(args[2]);
+      boolean isDeltaReset = Boolean.TRUE.equals(args[3]);
+      Control control = getControl();
+      if(control == null || control.isDisposed()) {
+        return false;
+      }
+      Region region = new Region();
+      for(Rectangle rectangle: rectangles) {
+        region.add(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
       }
-      int cursor = 0;
-      // Has to be a multiple of 3
-      byte[] bytes = new byte[1024 * 3];
-      PaletteData palette = imageData.palette;
-      Socket socket = null;
-      BufferedOutputStream out = null;
-      int width = imageData.width;
-      int height = imageData.height;
+      ImageData imageData;
       try {
-        socket = new Socket(hostAddress, port);
-        out = new BufferedOutputStream(socket.getOutputStream());
-        for(Rectangle rectangle: rectangles) {
-          for(int j=0; j<rectangle.height; j++) {
-            int y = rectangle.y + j;
-            for(int i=0; i<rectangle.width; i++) {
-              int x = rectangle.x + i;
-              if(x < width && y < height) {
-                int pixel = imageData.getPixel(x, y);
-                if (palette.isDirect) {
-                  // We cannot use palette.getRGB() because all the creations of RGB objects make it too slow.
-                  int red = pixel & palette.redMask;
-                  bytes[cursor++] = (byte)(palette.redShift < 0? red >>> -palette.redShift: red << palette.redShift);
-                  int green = pixel & palette.greenMask;
-                  bytes[cursor++] = (byte)((palette.greenShift < 0)? green >>> -palette.greenShift: green << palette.greenShift);
-                  int blue = pixel & palette.blueMask;
-                  bytes[cursor++] = (byte)((palette.blueShift < 0)? blue >>> -palette.blueShift: blue << palette.blueShift);
-                } else {
-                  RGB rgb = palette.colors[pixel];
-                  bytes[cursor++] = (byte)rgb.red;
-                  bytes[cursor++] = (byte)rgb.green;
-                  bytes[cursor++] = (byte)rgb.blue;
-                }
-              } else {
-                cursor += 3;
-              }
-              if(cursor == bytes.length) {
-                out.write(bytes);
-                cursor = 0;
+        imageData = CMN_getComponentImage.getImageData(control, region);
+      } finally {
+        region.dispose();
+      }
+      if(imageData == null) {
+        return false;
+      }
+      SharedMemoryImageBuffer sharedMemoryImageBuffer = (SharedMemoryImageBuffer)control.getData("CMN_getComponentImageSharedMemory.buffer");
+      if(sharedMemoryImageBuffer == null || !sharedMemoryImageBuffer.getPath().equals(path)) {
+        if(sharedMemoryImageBuffer == null) {
+          control.addDisposeListener(new DisposeListener() {
+            @Override
+            public void widgetDisposed(DisposeEvent e) {
+              SharedMemoryImageBuffer sharedMemoryImageBuffer = (SharedMemoryImageBuffer)e.widget.getData("CMN_getComponentImageSharedMemory.buffer");
+              if(sharedMemoryImageBuffer != null) {
+                sharedMemoryImageBuffer.release();
               }
             }
-          }
+          });
+        } else {
+          // The Swing side grew the buffer: it deletes the file of the old one once we no longer map it.
+          sharedMemoryImageBuffer.release();
+          control.setData("CMN_getComponentImageSharedMemory.buffer", null);
         }
-        out.write(bytes, 0, cursor);
-        out.flush();
-      } catch(Exception e) {
-        e.printStackTrace();
+        try {
+          sharedMemoryImageBuffer = SharedMemoryImageBuffer.open(path);
+        } catch(IOException e) {
+          e.printStackTrace();
+          // Null tells the Swing side to use the socket transfer instead.
+          return null;
+        }
+        control.setData("CMN_getComponentImageSharedMemory.buffer", sharedMemoryImageBuffer);
       }
-      try {
-        if(out != null) {
-          out.close();
+      IntBuffer intBuffer = sharedMemoryImageBuffer.getIntBuffer();
+      if(isDeltaEncoded) {
+        ImageTileFrame imageTileFrame = CMN_getComponentImage.getImageTileFrame(control);
+        Point size = control.getSize();
+        List<Rectangle> areaList = imageTileFrame.update(imageData, size.x, size.y, rectangles, isDeltaReset);
+        imageTileFrame.writePixels(areaList, intBuffer);
+        return areaList.toArray(new Rectangle[0]);
+      }
+      int maxWidth = 0;
+      for(Rectangle rectangle: rectangles) {
+        maxWidth = Math.max(maxWidth, rectangle.width);
+      }
+      int[] pixels = new int[maxWidth];
+      for(Rectangle rectangle: rectangles) {
+        for(int j=0; j<rectangle.height; j++) {
+          ImageTileFrame.getRowPixels(imageData, rectangle.x, rectangle.y + j, rectangle.width, pixels, 0);
+          intBuffer.put(pixels, 0, rectangle.width);
         }
-      } catch(Exception e) {
       }
-      try {
-        if(socket != null) {
-          socket.close();
+      return rectangles;
+    }
+
+  }
+
+  private final Object imageTransferLock = new Object();
+  private SharedMemoryImageBuffer sharedMemoryImageBuffer;
+  private SharedMemoryImageBuffer obsoleteSharedMemoryImageBuffer;
+  private boolean isSharedMemoryImageBufferInUse;
+  private boolean isSharedMemoryImageTransferFailed;
+  private volatile boolean isSocketImageTransferFailed;
+  private Reference<BufferedImage> deltaImageReference;
+
+  private static final long DEFAULT_IMAGE_TRANSFER_TIMEOUT = 5000;
+
+  private static long getImageTransferTimeout() {
+    String timeout = NSSystemPropertySWT.COMPONENTS_IMAGETRANSFER_TIMEOUT.get();
+    return timeout == null? DEFAULT_IMAGE_TRANSFER_TIMEOUT: Long.parseLong(timeout);
+  }
+
+  /**
+   * Get the data of the image through a synchronous message, in the format of the image channel.
+   */
+  private byte[] getComponentImageData(BufferedImage image, Rectangle[] rectangles, boolean isDeltaEncoded) {
+    boolean isDeltaReset = isDeltaEncoded && isDeltaReset(image);
+    return (byte[])new CMN_getComponentImageData().syncExec(this, rectangles, isDeltaEncoded, isDeltaReset);
+  }
+
+  private static boolean isImageTransferDeltaEncoded() {
+    return Boolean.parseBoolean(NSSystemPropertySWT.COMPONENTS_IMAGETRANSFER_DELTA.get());
+  }
+
+  /**
+   * Indicate whether the native side has to send all the requested pixels instead of the tiles that changed, because the image is not the one that received the previous capture.
+   */
+  private boolean isDeltaReset(BufferedImage image) {
+    synchronized(imageTransferLock) {
+      boolean isDeltaReset = deltaImageReference == null || deltaImageReference.get() != image;
+      deltaImageReference = new WeakReference<BufferedImage>(image);
+      return isDeltaReset;
+    }
+  }
+
+  private final Object imageFrameLock = new Object();
+  private int lastAppliedImageRequestID;
+
+  /**
+   * Record that the delta frame of a request is about to be applied, unless the frame of a more recent request was already applied. Concurrent captures can wake up in any order.
+   * @return true if the frame can be applied, false if it is older than the last applied frame.
+   */
+  private boolean setLastAppliedImageRequestID(int requestID) {
+    synchronized(imageFrameLock) {
+      if(lastAppliedImageRequestID != 0 && requestID - lastAppliedImageRequestID < 0) {
+        return false;
+      }
+      lastAppliedImageRequestID = requestID;
+      return true;
+    }
+  }
+
+  /**
+   * Called when a transfer failed: the image may not contain what the native side believes it sent.
+   */
+  private void invalidateDeltaImage() {
+    synchronized(imageTransferLock) {
+      deltaImageReference = null;
+    }
+  }
+
+  /**
+   * Paint the component image using a memory-mapped file that the native side writes to.
+   * @return true if the image was processed, false if the socket transfer has to be used instead.
+   */
+  private boolean paintComponentUsingSharedMemory(BufferedImage image, Rectangle[] rectangles) {
+    int pixelCount = 0;
+    for(Rectangle rectangle: rectangles) {
+      pixelCount += rectangle.width * rectangle.height;
+    }
+    SharedMemoryImageBuffer sharedMemoryImageBuffer;
+    // The buffer is taken for the duration of the transfer, which happens without holding the lock.
+    synchronized(imageTransferLock) {
+      if(isSharedMemoryImageTransferFailed || isNativePeerDisposed || isSharedMemoryImageBufferInUse) {
+        // A concurrent capture uses the sockets.
+        return false;
+      }
+      if(this.sharedMemoryImageBuffer == null || !this.sharedMemoryImageBuffer.hasCapacity(pixelCount)) {
+        if(this.sharedMemoryImageBuffer != null) {
+          // The native side may still map the old buffer: it is disposed once the native side was given the new one.
+          obsoleteSharedMemoryImageBuffer = this.sharedMemoryImageBuffer;
+          this.sharedMemoryImageBuffer = null;
+        }
+        try {
+          this.sharedMemoryImageBuffer = SharedMemoryImageBuffer.create(pixelCount);
+        } catch(IOException e) {
+          e.printStackTrace();
+          isSharedMemoryImageTransferFailed = true;
+          return false;
         }
-      } catch(Exception e) {
       }
+      sharedMemoryImageBuffer = this.sharedMemoryImageBuffer;
+      isSharedMemoryImageBufferInUse = true;
     }
+    try {
+      boolean isDeltaEncoded = isImageTransferDeltaEncoded();
+      boolean isDeltaReset = isDeltaEncoded && isDeltaReset(image);
+      Object result = new CMN_getComponentImageSharedMemory().syncExec(this, sharedMemoryImageBuffer.getPath(), rectangles, isDeltaEncoded, isDeltaReset);
+      if(result == null) {
+        invalidateDeltaImage();
+        if(isNativePeerValid()) {
+          synchronized(imageTransferLock) {
+            isSharedMemoryImageTransferFailed = true;
+          }
+          return false;
+        }
+        return true;
+      }
+      disposeObsoleteSharedMemoryImageBuffer();
+      if(!(result instanceof Rectangle[])) {
+        return true;
+      }
+      // The native side returns the areas it wrote, which are only the tiles that changed when delta encoding is used.
+      IntBuffer intBuffer = sharedMemoryImageBuffer.getIntBuffer();
+      int[] pixels = null;
+      synchronized(image) {
+        for(Rectangle area: (Rectangle[])result) {
+          int count = area.width * area.height;
+          if(pixels == null || pixels.length < count) {
+            pixels = new int[count];
+          }
+          intBuffer.get(pixels, 0, count);
+          ImageTileFrame.setPixels(image, area, pixels);
+        }
+      }
+      return true;
+    } finally {
+      synchronized(imageTransferLock) {
+        isSharedMemoryImageBufferInUse = false;
+        if(this.sharedMemoryImageBuffer != sharedMemoryImageBuffer) {
+          // The buffer was disposed while it was in use.
+          sharedMemoryImageBuffer.dispose();
+        }
+      }
+    }
+  }
 
+  private void disposeObsoleteSharedMemoryImageBuffer() {
+    synchronized(imageTransferLock) {
+      if(obsoleteSharedMemoryImageBuffer != null) {
+        obsoleteSharedMemoryImageBuffer.dispose();
+        obsoleteSharedMemoryImageBuffer = null;
+      }
+    }
+  }
+
+  private void disposeSharedMemoryImageBuffer() {
+    synchronized(imageTransferLock) {
+      if(sharedMemoryImageBuffer != null) {
+        if(!isSharedMemoryImageBufferInUse) {
+          sharedMemoryImageBuffer.dispose();
+        }
+        sharedMemoryImageBuffer = null;
+      }
+      if(obsoleteSharedMemoryImageBuffer != null) {
+        obsoleteSharedMemoryImageBuffer.dispose();
+        obsoleteSharedMemoryImageBuffer = null;
+      }
+    }
   }
 
   /**
@@ -1621,7 +2026,7 @@ public abstract class SWTNativeComponent extends NativeComponent {
     if(image == null || !isNativePeerValid() || isNativePeerDisposed) {
       return;
     }
-    applyPendingReshape();
+    NativeComponentUpdateScheduler.applyPendingReshape(this);
     int width = Math.min(getWidth(), image.getWidth());
     int height = Math.min(getHeight(), image.getHeight());
     if(width <= 0 || height <= 0) {
@@ -1641,102 +2046,75 @@ public abstract class SWTNativeComponent extends NativeComponent {
       return;
     }
     rectangles = rectangleList.toArray(new Rectangle[0]);
+    if("sharedmemory".equals(NSSystemPropertySWT.COMPONENTS_IMAGETRANSFER.get()) && paintComponentUsingSharedMemory(image, rectangles)) {
+      return;
+    }
     try {
-      final ServerSocket serverSocket = new ServerSocket();
-      serverSocket.setReuseAddress(false);
-      String localHostAddress = Utils.getLocalHostAddress();
-      if(localHostAddress == null) {
-        localHostAddress = "127.0.0.1";
-      }
-      serverSocket.bind(new InetSocketAddress(InetAddress.getByName(localHostAddress), 0));
-      NativeInterfaceListener nativeInterfaceListener = new NativeInterfaceAdapter() {
-        @Override
-        public void nativeInterfaceClosed() {
-          NativeInterface.removeNativeInterfaceListener(this);
-          try {
-            serverSocket.close();
-          } catch(Exception e) {
-          }
+      boolean isDeltaEncoded = isImageTransferDeltaEncoded();
+      byte[] data;
+      int requestID;
+      ComponentImageChannel componentImageChannel = null;
+      if(!isSocketImageTransferFailed) {
+        try {
+          componentImageChannel = ComponentImageChannel.getInstance();
+        } catch(IOException e) {
+          e.printStackTrace();
+          isSocketImageTransferFailed = true;
         }
-      };
-      CMN_getComponentImage getComponentImage = new CMN_getComponentImage();
-      NativeInterface.addNativeInterfaceListener(nativeInterfaceListener);
-      final AtomicReference<Boolean> isServerSocketToBeClosed = new AtomicReference<Boolean>(true);
-      if(Boolean.parseBoolean(NSSystemPropertySWT.COMPONENTS_USECOMPONENTIMAGECLOSINGTHREAD.get())) {
-        new Thread("NativeSwing[" + SWTNativeInterface.getInstance().getInterfaceID(false) + "] Component Image Socket Closing") {
-          @Override
-          public void run() {
-            for(int i=0; i<50; i++) {
-              if(!isServerSocketToBeClosed.get()) {
-                return;
-              }
-              try {
-                sleep(100);
-              } catch (InterruptedException e) {
-              }
-            }
-            if(isServerSocketToBeClosed.get()) {
-              try {
-                serverSocket.close();
-              } catch (IOException e) {
-              }
-            }
+      }
+      if(componentImageChannel == null) {
+        requestID = ComponentImageChannel.getNextRequestID();
+        data = getComponentImageData(image, rectangles, isDeltaEncoded);
+      } else {
+        int peerVMIndex = getPeerVMIndex();
+        ComponentImageChannel.ImageRequest imageRequest = componentImageChannel.createRequest(peerVMIndex);
+        requestID = imageRequest.getID();
+        boolean isDeltaReset = isDeltaEncoded && isDeltaReset(image);
+        new CMN_getComponentImage().asyncExec(this, componentImageChannel.getPort(), rectangles, componentImageChannel.getHostAddress(), isDeltaEncoded, isDeltaReset, requestID, peerVMIndex);
+        data = imageRequest.waitForData(getImageTransferTimeout());
+        if(imageRequest.isFailed()) {
+          // The native side could not use the channel or did not answer in time: the images go through the messages from now on.
+          isSocketImageTransferFailed = true;
+          if(isDeltaEncoded) {
+            invalidateDeltaImage();
           }
-        }.start();
-      }
-      getComponentImage.asyncExec(this, serverSocket.getLocalPort(), rectangles, localHostAddress);
-      Socket socket = serverSocket.accept();
-      isServerSocketToBeClosed.set(false);
-      // Has to be a multiple of 3
-      byte[] bytes = new byte[1024 * 3];
-      int count = 0;
-      int readCount = 0;
-      try {
-        BufferedInputStream in = new BufferedInputStream(socket.getInputStream());
-        synchronized(image) {
-          for(Rectangle rectangle: rectangles) {
-            int[] pixels = new int[rectangle.width];
-            for(int y=0; y<rectangle.height && readCount != -1; y++) {
-              for(int x=0; x<rectangle.width && readCount != -1; x++) {
-                int itCount = 0;
-                while(readCount != -1 && (readCount == 0 || (readCount % 3) != 0)) {
-                  if(itCount++ == 1000) {
-                    // I don't know if such case happens but I don't want to take the risk of a loop that never exits.
-                    readCount = -1;
-                  }
-                  int c = in.read(bytes, readCount, bytes.length - readCount);
-                  if(c == -1) {
-                    readCount = -1;
-                  } else {
-                    readCount += c;
-                  }
-                }
-                if(readCount == -1) {
-                  break;
-                }
-                pixels[x] = 0xFF000000 | (0xFF & bytes[count]) << 16 | (0xFF & bytes[count + 1]) << 8 | (0xFF & bytes[count + 2]);
-                count += 3;
-                if(count == readCount) {
-                  count = 0;
-                  readCount = 0;
-                }
-              }
-              if(readCount != -1) {
-                image.setRGB(rectangle.x, rectangle.y + y, rectangle.width, 1, pixels, 0, rectangle.width);
-              }
-            }
-            if(readCount == -1) {
-              break;
+          if(!isNativePeerValid() || isNativePeerDisposed) {
+            return;
+          }
+          requestID = ComponentImageChannel.getNextRequestID();
+          data = getComponentImageData(image, rectangles, isDeltaEncoded);
+        }
+      }
+      if(data == null) {
+        if(isDeltaEncoded) {
+          invalidateDeltaImage();
+        }
+        return;
+      }
+      boolean isStaleFrame = false;
+      IOException readException = null;
+      synchronized(image) {
+        if(isDeltaEncoded) {
+          isStaleFrame = !setLastAppliedImageRequestID(requestID);
+          if(!isStaleFrame) {
+            try {
+              ImageTileFrame.readAreas(new ByteArrayInputStream(data), image);
+            } catch(IOException e) {
+              readException = e;
             }
           }
+        } else {
+          ComponentImageChannel.readPixels(data, rectangles, image);
         }
-        NativeInterface.removeNativeInterfaceListener(nativeInterfaceListener);
-        in.close();
-        socket.close();
-      } catch(Exception e) {
-        e.printStackTrace();
       }
-      serverSocket.close();
+      // The delta state is invalidated outside of the image lock, so that the image lock is never held while waiting for the transfer lock.
+      if(isStaleFrame) {
+        // A newer frame was applied: the tiles of this one would overwrite fresher pixels, and the newer frame may lack the tiles of this one, so the next capture sends everything.
+        invalidateDeltaImage();
+      } else if(readException != null) {
+        invalidateDeltaImage();
+        throw readException;
+      }
     } catch(Exception e) {
       e.printStackTrace();
     }
@@ -1769,14 +2147,7 @@ public abstract class SWTNativeComponent extends NativeComponent {
     }
     try {
       runSync(new CMN_createControl(), componentID, getHandle());
-      int width = getWidth();
-      int height = getHeight();
-      Point2D.Double scaledFactor = UIUtils.getScaledFactor(this);
-      if(scaledFactor.x != 1.0 || scaledFactor.y != 1.0) {
-        width = (int)(width * scaledFactor.x);
-        height = (int)(height * scaledFactor.y);
-      }
-      new CMN_reshape().asyncExec(this, width, height);
+      reshapeNativePeer();
     } catch(Exception e) {
       StringBuilder sb = new StringBuilder();
       for(Throwable t = e; t != null; t = t.getCause()) {
@@ -1859,17 +2230,12 @@ public abstract class SWTNativeComponent extends NativeComponent {
     return super.getLocationOnScreen();
   }
 
-  private static class CMN_redraw extends ControlCommandMessage {
-    @Override
-    public Object run(Object[] args) {
-      Control control = getControl();
-      if(control.isDisposed()) {
-        return null;
-      }
-      Point size = control.getSize();
-      control.redraw(0, 0, size.x, size.y, true);
-      return null;
-    }
+  /**
+   * Redraw a control and its children, which is done for the redraws that the Swing side schedules.
+   */
+  static void redrawControl(Control control) {
+    Point size = control.getSize();
+    control.redraw(0, 0, size.x, size.y, true);
   }
 
   /**
@@ -30,6 +30,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -37,15 +38,25 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import javax.swing.SwingUtilities;
 import javax.swing.event.EventListenerList;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
+import org.eclipse.swt.browser.Browser;
 import org.eclipse.swt.graphics.Device;
 import org.eclipse.swt.graphics.DeviceData;
 import org.eclipse.swt.widgets.Control;
@@ -61,16 +72,18 @@ import chrriis.dj.nativeswing.common.Utils;
 import chrriis.dj.nativeswing.common.WebServer;
 import chrriis.dj.nativeswing.swtimpl.ApplicationMessageHandler;
 import chrriis.dj.nativeswing.swtimpl.CommandMessage;
+import chrriis.dj.nativeswing.swtimpl.EventDispatchUtils.Condition;
 import chrriis.dj.nativeswing.swtimpl.LocalMessage;
 import chrriis.dj.nativeswing.swtimpl.Message;
 import chrriis.dj.nativeswing.swtimpl.NSSystemPropertySWT;
+import chrriis.dj.nativeswing.swtimpl.NativeComponent;
 import chrriis.dj.nativeswing.swtimpl.NativeInterface;
 import chrriis.dj.nativeswing.swtimpl.NativeInterfaceConfiguration;
+import chrriis.dj.nativeswing.swtimpl.NativeInterfaceConfiguration.PeerVMPlacementPolicy;
 import chrriis.dj.nativeswing.swtimpl.NativeInterfaceListener;
 import chrriis.dj.nativeswing.swtimpl.PeerVMProcessFactory;
 import chrriis.dj.nativeswing.swtimpl.common.NetworkURLClassLoader;
 import chrriis.dj.nativeswing.swtimpl.core.InProcessMessagingInterface.SWTInProcessMessagingInterface;
-import chrriis.dj.nativeswing.swtimpl.core.InProcessMessagingInterface.SwingInProcessMessagingInterface;
 import chrriis.dj.nativeswing.swtimpl.core.OutProcessIOMessagingInterface.SWTOutProcessIOMessagingInterface;
 import chrriis.dj.nativeswing.swtimpl.core.OutProcessIOMessagingInterface.SwingOutProcessIOMessagingInterface;
 import chrriis.dj.nativeswing.swtimpl.core.OutProcessSocketsMessagingInterface.SWTOutProcessSocketsMessagingInterface;
@@ -86,21 +99,86 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
   private static final boolean IS_SYNCING_MESSAGES = Boolean.parseBoolean(NSSystemPropertySWT.INTERFACE_SYNCMESSAGES.get());
 
   public boolean isAlive() {
-    synchronized(OPEN_STATE_LOCK) {
-      return isOpen() && messagingInterface.isAlive();
+    InterfaceState interfaceState = SWTNativeInterface.interfaceState;
+    return interfaceState.isOpen && interfaceState.messagingInterface != null && interfaceState.messagingInterface.isAlive();
+  }
+
+  /**
+   * The open state and the messaging interfaces, which are replaced as a whole when the interface is opened, closed or respawned.
+   * Readers, like the send path, get a consistent view without locking.
+   */
+  private static class InterfaceState {
+
+    final boolean isOpen;
+    final MessagingInterface messagingInterface;
+    final MessagingInterface nativeSideMessagingInterface;
+    final MessagingInterface swingSideMessagingInterface;
+    /** The Swing side messaging interfaces of the peer VMs, the first one being the Swing side messaging interface. */
+    final MessagingInterface[] peerVMMessagingInterfaces;
+
+    InterfaceState(boolean isOpen, MessagingInterface messagingInterface, MessagingInterface swingSideMessagingInterface, MessagingInterface nativeSideMessagingInterface, MessagingInterface[] peerVMMessagingInterfaces) {
+      this.isOpen = isOpen;
+      this.messagingInterface = messagingInterface;
+      this.swingSideMessagingInterface = swingSideMessagingInterface;
+      this.nativeSideMessagingInterface = nativeSideMessagingInterface;
+      this.peerVMMessagingInterfaces = peerVMMessagingInterfaces;
+    }
+
+  }
+
+  private static volatile InterfaceState interfaceState = new InterfaceState(false, null, null, null, new MessagingInterface[0]);
+
+  /**
+   * Publish a new state. Writers must hold the open state lock so that they do not lose each other's changes.
+   */
+  static void setInterfaceState(boolean isOpen, MessagingInterface messagingInterface) {
+    MessagingInterface swingSideMessagingInterface = messagingInterface;
+    MessagingInterface nativeSideMessagingInterface = messagingInterface;
+    // Out of process, each VM only has its own side. In process, the other side is the mirror.
+    if(messagingInterface instanceof InProcessMessagingInterface) {
+      InProcessMessagingInterface mirrorMessagingInterface = ((InProcessMessagingInterface)messagingInterface).getMirrorMessagingInterface();
+      if(messagingInterface.isNativeSide()) {
+        swingSideMessagingInterface = mirrorMessagingInterface;
+      } else {
+        nativeSideMessagingInterface = mirrorMessagingInterface;
+      }
     }
+    setInterfaceState(isOpen, messagingInterface, swingSideMessagingInterface, nativeSideMessagingInterface);
+  }
+
+  /**
+   * Publish a new state where both sides are in this VM, each with its own messaging interface, like for a benchmark of a channel.
+   */
+  static void setInterfaceState(boolean isOpen, MessagingInterface messagingInterface, MessagingInterface swingSideMessagingInterface, MessagingInterface nativeSideMessagingInterface) {
+    MessagingInterface[] peerVMMessagingInterfaces = swingSideMessagingInterface == null? new MessagingInterface[0]: new MessagingInterface[] {swingSideMessagingInterface};
+    interfaceState = new InterfaceState(isOpen, messagingInterface, swingSideMessagingInterface, nativeSideMessagingInterface, peerVMMessagingInterfaces);
+  }
+
+  /**
+   * Publish a new state where a peer VM other than the first one has a new messaging interface. Writers must hold the open state lock.
+   */
+  private static void setPeerVMMessagingInterface(int peerVMIndex, MessagingInterface messagingInterface) {
+    InterfaceState interfaceState = SWTNativeInterface.interfaceState;
+    MessagingInterface[] peerVMMessagingInterfaces = Arrays.copyOf(interfaceState.peerVMMessagingInterfaces, Math.max(interfaceState.peerVMMessagingInterfaces.length, peerVMIndex + 1));
+    peerVMMessagingInterfaces[peerVMIndex] = messagingInterface;
+    SWTNativeInterface.interfaceState = new InterfaceState(interfaceState.isOpen, interfaceState.messagingInterface, interfaceState.swingSideMessagingInterface, interfaceState.nativeSideMessagingInterface, peerVMMessagingInterfaces);
   }
 
-  private static boolean isOpen;
+  /**
+   * Destroy the messaging interfaces of the peer VMs other than the first one, whose messaging interface is handled with the open state.
+   */
+  private static void destroyAdditionalPeerVMMessagingInterfaces(MessagingInterface[] peerVMMessagingInterfaces) {
+    for(int i=1; i<peerVMMessagingInterfaces.length; i++) {
+      peerVMMessagingInterfaces[i].destroy();
+    }
+  }
 
   /**
    * Indicate whether the native interface is open.
    * @return true if the native interface is open, false otherwise.
    */
   public boolean isOpen_() {
-    synchronized(OPEN_STATE_LOCK) {
-      return isOpen;
-    }
+    return interfaceState.isOpen;
   }
 
   private void checkOpen() {
@@ -118,9 +196,14 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
         return;
       }
       synchronized(OPEN_STATE_LOCK) {
-        isOpen = false;
+        MessagingInterface messagingInterface = interfaceState.messagingInterface;
+        MessagingInterface[] peerVMMessagingInterfaces = interfaceState.peerVMMessagingInterfaces;
+        setInterfaceState(false, null);
         messagingInterface.destroy();
-        messagingInterface = null;
+        destroyAdditionalPeerVMMessagingInterfaces(peerVMMessagingInterfaces);
+      }
+      if(!isInProcess_()) {
+        OutProcess.invalidatePeerVMPool();
       }
       for(NativeInterfaceListener listener: getNativeInterfaceListeners()) {
         listener.nativeInterfaceClosed();
@@ -177,12 +260,10 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
     return isInitialized;
   }
 
-  private boolean isInProcess;
+  private volatile boolean isInProcess;
 
   public boolean isInProcess_() {
-    synchronized(OPEN_STATE_LOCK) {
-      return isInProcess;
-    }
+    return isInProcess;
   }
 
   private static class CMN_printStackTraces extends CommandMessage {
@@ -353,8 +434,10 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
 
   public boolean notifyKilled() {
     synchronized(OPEN_STATE_LOCK) {
-      isOpen = false;
-      messagingInterface = null;
+      MessagingInterface[] peerVMMessagingInterfaces = interfaceState.peerVMMessagingInterfaces;
+      setInterfaceState(false, null);
+      // The native side is considered dead: the other peer VMs are recreated with the first one.
+      destroyAdditionalPeerVMMessagingInterfaces(peerVMMessagingInterfaces);
     }
     try {
       for(NativeInterfaceListener listener: getNativeInterfaceListeners()) {
@@ -370,6 +453,23 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
     return false;
   }
 
+  /**
+   * Notify that the peer VM of a messaging interface died.
+   * @return true if the native side was respawned, in which case notifyRespawned() must be called.
+   */
+  boolean notifyKilled(MessagingInterface messagingInterface) {
+    int peerVMIndex = Arrays.asList(interfaceState.peerVMMessagingInterfaces).indexOf(messagingInterface);
+    if(peerVMIndex <= 0) {
+      return notifyKilled();
+    }
+    // Only the components of that peer VM are affected, and the native interface remains open.
+    SWTNativeComponent.invalidatePeerVMComponents(peerVMIndex);
+    if(nativeInterfaceConfiguration.isNativeSideRespawnedOnError()) {
+      OutProcess.respawnPeerVM(peerVMIndex, messagingInterface);
+    }
+    return false;
+  }
+
   public void notifyRespawned() {
     try {
       for(NativeInterfaceListener listener: getNativeInterfaceListeners()) {
@@ -389,7 +489,19 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
       LocalMessage localMessage = (LocalMessage)message;
       return runMessageCommand(localMessage);
     }
-    return getMessagingInterface(!isTargetNativeSide).syncSend(message);
+    MessagingInterface[] broadcastMessagingInterfaces = getBroadcastMessagingInterfaces(isTargetNativeSide, message);
+    if(broadcastMessagingInterfaces != null) {
+      Object result = null;
+      // The message instance is sent to one peer VM after the other, so that it is never used by two sends at once.
+      for(MessagingInterface messagingInterface: broadcastMessagingInterfaces) {
+        Object peerVMResult = messagingInterface.syncSend(message);
+        if(result == null) {
+          result = peerVMResult;
+        }
+      }
+      return result;
+    }
+    return getMessagingInterface(isTargetNativeSide, message).syncSend(message);
   }
 
   public void asyncSend_(boolean isTargetNativeSide, final Message message) {
@@ -402,37 +514,217 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
         runMessageCommand(localMessage);
         return;
       }
-      getMessagingInterface(!isTargetNativeSide).asyncSend(message);
+      MessagingInterface[] broadcastMessagingInterfaces = getBroadcastMessagingInterfaces(isTargetNativeSide, message);
+      if(broadcastMessagingInterfaces != null) {
+        for(MessagingInterface messagingInterface: broadcastMessagingInterfaces) {
+          messagingInterface.asyncSend(message);
+        }
+        return;
+      }
+      getMessagingInterface(isTargetNativeSide, message).asyncSend(message);
+    }
+  }
+
+  public CompletableFuture<Object> execAsync_(boolean isTargetNativeSide, Message message) {
+    if(IS_SYNCING_MESSAGES) {
+      CompletableFuture<Object> future = new CompletableFuture<Object>();
+      try {
+        future.complete(syncSend_(isTargetNativeSide, message));
+      } catch(Throwable t) {
+        future.completeExceptionally(t);
+      }
+      return future;
+    }
+    checkOpen();
+    if(message instanceof LocalMessage) {
+      LocalMessage localMessage = (LocalMessage)message;
+      CompletableFuture<Object> future = new CompletableFuture<Object>();
+      try {
+        future.complete(runMessageCommand(localMessage));
+      } catch(Throwable t) {
+        future.completeExceptionally(t);
+      }
+      return future;
+    }
+    MessagingInterface[] broadcastMessagingInterfaces = getBroadcastMessagingInterfaces(isTargetNativeSide, message);
+    if(broadcastMessagingInterfaces != null) {
+      final List<CompletableFuture<Object>> futureList = new ArrayList<CompletableFuture<Object>>(broadcastMessagingInterfaces.length);
+      for(MessagingInterface messagingInterface: broadcastMessagingInterfaces) {
+        futureList.add(messagingInterface.execAsync(message));
+      }
+      return CompletableFuture.allOf(futureList.toArray(new CompletableFuture<?>[0])).thenApply(new Function<Void, Object>() {
+        public Object apply(Void v) {
+          for(CompletableFuture<Object> future: futureList) {
+            Object result = future.join();
+            if(result != null) {
+              return result;
+            }
+          }
+          return null;
+        }
+      });
     }
+    return getMessagingInterface(isTargetNativeSide, message).execAsync(message);
   }
 
-  private static MessagingInterface messagingInterface;
+  /** The longest time between two checks of a condition that is waited for, in case it does not depend on received messages. */
+  private static final long MAX_CONDITION_CHECK_INTERVAL = 50;
+
+  public boolean waitWithMessageDispatch_(Condition condition, int timeout) {
+    long deadline = System.currentTimeMillis() + timeout;
+    MessagingInterface[] uiMessagingInterfaces = getCurrentUIThreadMessagingInterfaces();
+    MessageQueue[] receivedMessageQueues = null;
+    if(uiMessagingInterfaces != null) {
+      receivedMessageQueues = new MessageQueue[uiMessagingInterfaces.length];
+      for(int i=0; i<uiMessagingInterfaces.length; i++) {
+        receivedMessageQueues[i] = uiMessagingInterfaces[i].getReceivedMessageQueue();
+      }
+    }
+    while(true) {
+      if(uiMessagingInterfaces != null) {
+        // The messages that could meet the condition are only run by this thread, because it is the UI thread.
+        for(MessagingInterface uiMessagingInterface: uiMessagingInterfaces) {
+          uiMessagingInterface.runReceivedUIMessages();
+        }
+      }
+      if(condition.getValue()) {
+        return true;
+      }
+      long remainingTime = deadline - System.currentTimeMillis();
+      if(remainingTime <= 0) {
+        return false;
+      }
+      long waitTime = Math.min(remainingTime, MAX_CONDITION_CHECK_INTERVAL);
+      if(uiMessagingInterfaces != null) {
+        MessageQueue.await(receivedMessageQueues, waitTime);
+      } else {
+        try {
+          MessagingInterface.awaitUIMessageRun(condition, waitTime);
+        } catch(InterruptedException e) {
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the messaging interfaces whose UI messages are run by the current thread.
+   * @return the messaging interfaces, or null if the current thread is not a UI thread of an open interface.
+   */
+  private MessagingInterface[] getCurrentUIThreadMessagingInterfaces() {
+    InterfaceState interfaceState = SWTNativeInterface.interfaceState;
+    if(!interfaceState.isOpen) {
+      return null;
+    }
+    MessagingInterface swingSideMessagingInterface = interfaceState.swingSideMessagingInterface;
+    if(swingSideMessagingInterface != null && swingSideMessagingInterface.isUIThread()) {
+      // Each peer VM sends its messages through its own messaging interface.
+      MessagingInterface[] peerVMMessagingInterfaces = interfaceState.peerVMMessagingInterfaces;
+      return peerVMMessagingInterfaces.length > 0? peerVMMessagingInterfaces: new MessagingInterface[] {swingSideMessagingInterface};
+    }
+    MessagingInterface nativeSideMessagingInterface = interfaceState.nativeSideMessagingInterface;
+    if(nativeSideMessagingInterface != null && nativeSideMessagingInterface.isUIThread()) {
+      return new MessagingInterface[] {nativeSideMessagingInterface};
+    }
+    return null;
+  }
 
   MessagingInterface getMessagingInterface(boolean isNativeSide) {
-    synchronized(OPEN_STATE_LOCK) {
-      if(isInProcess_()) {
-        if(isNativeSide) {
-          SWTInProcessMessagingInterface swtInProcessMessagingInterface = (SWTInProcessMessagingInterface)((SwingInProcessMessagingInterface)messagingInterface).getMirrorMessagingInterface();
-          return swtInProcessMessagingInterface;
+    InterfaceState interfaceState = SWTNativeInterface.interfaceState;
+    return isNativeSide? interfaceState.nativeSideMessagingInterface: interfaceState.swingSideMessagingInterface;
+  }
+
+  /**
+   * Get the messaging interface that sends a message, which is the one of the peer VM of the component when a control message is sent to one of several peer VMs.
+   */
+  private MessagingInterface getMessagingInterface(boolean isTargetNativeSide, Message message) {
+    if(isTargetNativeSide && message instanceof ControlCommandMessage) {
+      MessagingInterface[] peerVMMessagingInterfaces = interfaceState.peerVMMessagingInterfaces;
+      if(peerVMMessagingInterfaces.length > 1) {
+        int peerVMIndex = SWTNativeComponent.getPeerVMIndex(((ControlCommandMessage)message).getComponentID());
+        if(peerVMIndex > 0 && peerVMIndex < peerVMMessagingInterfaces.length) {
+          return peerVMMessagingInterfaces[peerVMIndex];
+        }
+      }
+    }
+    return getMessagingInterface(!isTargetNativeSide);
+  }
+
+  /**
+   * Get the messaging interfaces of the live peer VMs that a broadcast message is sent to.
+   * @return the messaging interfaces, or null if the message is not a broadcast message to several peer VMs.
+   */
+  private MessagingInterface[] getBroadcastMessagingInterfaces(boolean isTargetNativeSide, Message message) {
+    if(!isTargetNativeSide || !(message instanceof BroadcastCommandMessage)) {
+      return null;
+    }
+    MessagingInterface[] peerVMMessagingInterfaces = interfaceState.peerVMMessagingInterfaces;
+    if(peerVMMessagingInterfaces.length <= 1) {
+      return null;
+    }
+    List<MessagingInterface> messagingInterfaceList = new ArrayList<MessagingInterface>(peerVMMessagingInterfaces.length);
+    // The first peer VM is always part of it, so that a dead native side is reported like for other messages.
+    messagingInterfaceList.add(peerVMMessagingInterfaces[0]);
+    for(int i=1; i<peerVMMessagingInterfaces.length; i++) {
+      if(peerVMMessagingInterfaces[i].isAlive()) {
+        messagingInterfaceList.add(peerVMMessagingInterfaces[i]);
+      }
+    }
+    return messagingInterfaceList.toArray(new MessagingInterface[0]);
+  }
+
+  /**
+   * Indicate whether the native interface is alive, as well as the peer VM of the given index.
+   */
+  boolean isPeerVMAlive(int peerVMIndex) {
+    if(!isAlive()) {
+      return false;
+    }
+    if(peerVMIndex == 0) {
+      return true;
+    }
+    MessagingInterface[] peerVMMessagingInterfaces = interfaceState.peerVMMessagingInterfaces;
+    return peerVMIndex < peerVMMessagingInterfaces.length && peerVMMessagingInterfaces[peerVMIndex].isAlive();
+  }
+
+  private final AtomicInteger peerVMPlacementCounter = new AtomicInteger();
+
+  /**
+   * Get the index of the peer VM that hosts the native peer of a new component.
+   * @param requestedPeerVMIndex the index that the options of the component select, or -1.
+   */
+  int getNewComponentPeerVMIndex(int requestedPeerVMIndex) {
+    int peerVMCount = interfaceState.peerVMMessagingInterfaces.length;
+    if(peerVMCount <= 1) {
+      return 0;
+    }
+    if(requestedPeerVMIndex >= 0) {
+      return requestedPeerVMIndex % peerVMCount;
+    }
+    if(nativeInterfaceConfiguration.getPeerVMPlacementPolicy() == PeerVMPlacementPolicy.ROUND_ROBIN) {
+      for(int i=0; i<peerVMCount; i++) {
+        int peerVMIndex = (peerVMPlacementCounter.getAndIncrement() & Integer.MAX_VALUE) % peerVMCount;
+        if(isPeerVMAlive(peerVMIndex)) {
+          return peerVMIndex;
         }
-        SwingInProcessMessagingInterface swingInProcessMessagingInterface = (SwingInProcessMessagingInterface)messagingInterface;
-        return swingInProcessMessagingInterface;
       }
-      if(isNativeSide) {
-        if(messagingInterface instanceof SWTOutProcessSocketsMessagingInterface) {
-          SWTOutProcessSocketsMessagingInterface swtOutProcessSocketsMessagingInterface = (SWTOutProcessSocketsMessagingInterface)messagingInterface;
-          return swtOutProcessSocketsMessagingInterface;
+      return 0;
+    }
+    int[] componentCounts = new int[peerVMCount];
+    for(NativeComponent nativeComponent: NativeComponent.getNativeComponents()) {
+      if(nativeComponent instanceof SWTNativeComponent && nativeComponent.isNativePeerValid()) {
+        int peerVMIndex = ((SWTNativeComponent)nativeComponent).getPeerVMIndex();
+        if(peerVMIndex < peerVMCount) {
+          componentCounts[peerVMIndex]++;
         }
-        SWTOutProcessIOMessagingInterface swtOutProcessIOMessagingInterface = (SWTOutProcessIOMessagingInterface)messagingInterface;
-        return swtOutProcessIOMessagingInterface;
       }
-      if(messagingInterface instanceof SwingOutProcessSocketsMessagingInterface) {
-        SwingOutProcessSocketsMessagingInterface swingOutProcessSocketsMessagingInterface = (SwingOutProcessSocketsMessagingInterface)messagingInterface;
-        return swingOutProcessSocketsMessagingInterface;
+    }
+    int leastLoadedPeerVMIndex = 0;
+    for(int i=1; i<peerVMCount; i++) {
+      if(componentCounts[i] < componentCounts[leastLoadedPeerVMIndex] && isPeerVMAlive(i)) {
+        leastLoadedPeerVMIndex = i;
       }
-      SwingOutProcessIOMessagingInterface swingOutProcessIOMessagingInterface = (SwingOutProcessIOMessagingInterface)messagingInterface;
-      return swingOutProcessIOMessagingInterface;
     }
+    return leastLoadedPeerVMIndex;
   }
 
   private static volatile Display display;
@@ -468,6 +760,30 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
     return getMessagingInterface(isNativeSide).getPID();
   }
 
+  /**
+   * Get the number of non-UI messages that were received by a side and did not start running yet.
+   * @param isNativeSide true to get the value of the native side, which is only possible in the native context or when in-process.
+   * @return the number of pending non-UI messages.
+   */
+  public int getNonUIMessageQueueDepth(boolean isNativeSide) {
+    if(!isAlive()) {
+      throw new IllegalStateException("The native interface is not alive!");
+    }
+    return getMessagingInterface(isNativeSide).getNonUIMessageQueueDepth();
+  }
+
+  /**
+   * Get the number of non-UI messages that were received by a side and were run in a dedicated thread because the executor and its queue were full.
+   * @param isNativeSide true to get the value of the native side, which is only possible in the native context or when in-process.
+   * @return the number of rejections.
+   */
+  public long getNonUIMessageRejectionCount(boolean isNativeSide) {
+    if(!isAlive()) {
+      throw new IllegalStateException("The native interface is not alive!");
+    }
+    return getMessagingInterface(isNativeSide).getNonUIMessageRejectionCount();
+  }
+
   public void checkUIThread(boolean isNativeSide) {
     if(!isAlive()) {
       throw new IllegalStateException("The native interface is not alive!");
@@ -601,8 +917,7 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
 
     static void createInProcessCommunicationChannel() {
       synchronized(OPEN_STATE_LOCK) {
-        messagingInterface = createInProcessMessagingInterface();
-        isOpen = true;
+        setInterfaceState(true, createInProcessMessagingInterface());
       }
     }
 
@@ -772,15 +1087,23 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
       Runtime.getRuntime().addShutdownHook(new Thread() {
         @Override
         public void run() {
-          boolean isOpen_;
-          synchronized(OPEN_STATE_LOCK) {
-            isOpen_ = isOpen;
-          }
-          if(isOpen_) {
-            new CMN_destroyControls().asyncExec(true);
+          if(interfaceState.isOpen) {
+            for(MessagingInterface messagingInterface: interfaceState.peerVMMessagingInterfaces) {
+              try {
+                messagingInterface.asyncSend(new CMN_destroyControls());
+              } catch(Exception e) {
+                // The peer VM may be dead, and the others still have to be notified.
+              }
+            }
           }
+          destroyPooledPeerVMs();
+          PeerVMClassArchive.saveIndex();
         }
       });
+      if(!IS_PROCESS_IO_CHANNEL_MODE && Boolean.parseBoolean(NSSystemPropertySWT.PEERVM_CREATE.get("true"))) {
+        // The pool is filled from the first spawn, so that the pooled peer VMs use the configuration of the opened interface.
+        peerVMPoolSize = Math.max(0, Integer.parseInt(NSSystemPropertySWT.PEERVM_POOL_SIZE.get("0")));
+      }
     }
 
     private static class CMN_setProperties extends CommandMessage {
@@ -805,19 +1128,68 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
     }
 
     static void createOutProcessCommunicationChannel() {
+      MessagingInterface[] peerVMMessagingInterfaces;
       synchronized(OPEN_STATE_LOCK) {
-        for(int i=2; i>=0; i--) {
+        setInterfaceState(true, createOutProcessMessagingInterfaceWithRetries());
+        for(int i=1; i<nativeInterfaceConfiguration.getPeerVMCount(); i++) {
+          MessagingInterface messagingInterface;
           try {
-            messagingInterface = createOutProcessMessagingInterface();
-            break;
+            messagingInterface = createOutProcessMessagingInterfaceWithRetries();
           } catch(RuntimeException e) {
-            if(i == 0) {
-              throw e;
-            }
+            // The components are placed on the peer VMs that could be created.
+            e.printStackTrace();
+            break;
           }
+          setPeerVMMessagingInterface(i, messagingInterface);
+        }
+        peerVMMessagingInterfaces = interfaceState.peerVMMessagingInterfaces;
+      }
+      for(MessagingInterface messagingInterface: peerVMMessagingInterfaces) {
+        sendNativeProperties(messagingInterface);
+      }
+    }
+
+    /**
+     * Create the messaging interface of a peer VM again, after it died.
+     */
+    static void respawnPeerVM(int peerVMIndex, MessagingInterface deadMessagingInterface) {
+      if(!isPeerVMRespawnNeeded(peerVMIndex, deadMessagingInterface)) {
+        return;
+      }
+      // The peer VM is spawned without the lock, which would otherwise block the opening and closing of the native interface for that long.
+      MessagingInterface messagingInterface = createOutProcessMessagingInterfaceWithRetries();
+      synchronized(OPEN_STATE_LOCK) {
+        if(!isPeerVMRespawnNeeded(peerVMIndex, deadMessagingInterface)) {
+          messagingInterface.destroy();
+          return;
         }
-        isOpen = true;
+        setPeerVMMessagingInterface(peerVMIndex, messagingInterface);
       }
+      sendNativeProperties(messagingInterface);
+    }
+
+    /**
+     * Indicate whether the peer VM of the given index still has the dead messaging interface, which is not the case if the native interface was closed or the peer VM respawned in the meantime.
+     */
+    private static boolean isPeerVMRespawnNeeded(int peerVMIndex, MessagingInterface deadMessagingInterface) {
+      InterfaceState interfaceState = SWTNativeInterface.interfaceState;
+      MessagingInterface[] peerVMMessagingInterfaces = interfaceState.peerVMMessagingInterfaces;
+      return interfaceState.isOpen && peerVMIndex < peerVMMessagingInterfaces.length && peerVMMessagingInterfaces[peerVMIndex] == deadMessagingInterface;
+    }
+
+    private static MessagingInterface createOutProcessMessagingInterfaceWithRetries() {
+      for(int i=2; ; i--) {
+        try {
+          return createOutProcessMessagingInterface();
+        } catch(RuntimeException e) {
+          if(i == 0) {
+            throw e;
+          }
+        }
+      }
+    }
+
+    private static void sendNativeProperties(MessagingInterface messagingInterface) {
       Properties nativeProperties = new Properties();
       Properties properties = System.getProperties();
       for(Object key: properties.keySet()) {
@@ -828,10 +1200,12 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
           }
         }
       }
-      new CMN_setProperties().syncExec(true, nativeProperties);
+      CMN_setProperties message = new CMN_setProperties();
+      setMessageArgs(message, nativeProperties);
+      messagingInterface.syncSend(message);
     }
 
-    private static Process createProcess(String localHostAddress, int port, int pid) {
+    private static Process createProcess(String localHostAddress, int port, int pid, boolean isPooled) {
       List<String> classPathList = new ArrayList<String>();
       List<Object> referenceList = new ArrayList<Object>();
       Class<?>[] nativeClassPathReferenceClasses = getNativeClassPathReferenceClasses(nativeInterfaceConfiguration);
@@ -959,18 +1333,58 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
           systemPropertiesMap.put(flag, "true");
         }
       }
+      NSSystemPropertySWT[] communicationProperties = new NSSystemPropertySWT[] {
+          NSSystemPropertySWT.INTERFACE_OUTPROCESS_MESSAGECODEC,
+          NSSystemPropertySWT.INTERFACE_OUTPROCESS_BATCHING,
+          NSSystemPropertySWT.INTERFACE_OUTPROCESS_BATCHING_DELAY,
+          NSSystemPropertySWT.INTERFACE_OUTPROCESS_BATCHING_MAXSIZE,
+          NSSystemPropertySWT.INTERFACE_NONUISYNCEXEC_TIMEOUT,
+          NSSystemPropertySWT.INTERFACE_MESSAGEQUEUE_CAPACITY,
+          NSSystemPropertySWT.INTERFACE_NONUIEXECUTOR_MAXTHREADS,
+          NSSystemPropertySWT.INTERFACE_NONUIEXECUTOR_QUEUESIZE,
+          NSSystemPropertySWT.INTERFACE_NONUIEXECUTOR_COMPONENTORDERING,
+          NSSystemPropertySWT.INTERFACE_NONUIEXECUTOR_VIRTUALTHREADS,
+      };
+      for(NSSystemPropertySWT communicationProperty: communicationProperties) {
+        String value = communicationProperty.get();
+        if(value != null) {
+          systemPropertiesMap.put(communicationProperty.getName(), value);
+        }
+      }
+      boolean isPreloadingBrowser = isPooled && Boolean.parseBoolean(NSSystemPropertySWT.PEERVM_POOL_PRELOADBROWSER.get("true"));
+      if(isPreloadingBrowser) {
+        // The properties are only sent when the peer VM is taken, which is too late to preload the right runtime.
+        String webBrowserRuntime = NSSystemPropertySWT.WEBBROWSER_RUNTIME.get();
+        if(webBrowserRuntime != null) {
+          systemPropertiesMap.put(NSSystemPropertySWT.WEBBROWSER_RUNTIME.getName(), webBrowserRuntime);
+        }
+      }
       systemPropertiesMap.put(NSSystemProperty.LOCALHOSTADDRESS.getName(), localHostAddress);
+      if(isProxyClassLoaderUsed && Boolean.parseBoolean(NSSystemPropertySWT.PEERVM_CLASSARCHIVE.get("true"))) {
+        String classArchiveHash = PeerVMClassArchive.getArchiveHash();
+        if(classArchiveHash != null) {
+          systemPropertiesMap.put(NetworkURLClassLoader.CLASS_ARCHIVE_URL_PROPERTY, PeerVMClassArchive.getArchiveURL(classArchiveHash));
+          systemPropertiesMap.put(NetworkURLClassLoader.CLASS_ARCHIVE_HASH_PROPERTY, classArchiveHash);
+          vmParamList.addAll(Arrays.asList(PeerVMClassArchive.getSharedClassDataVMParams(classArchiveHash)));
+        }
+      }
       String mainClass;
       List<String> mainClassParameterList = new ArrayList<String>();
       if(isProxyClassLoaderUsed) {
         mainClass = NetworkURLClassLoader.class.getName();
-        mainClassParameterList.add(WebServer.getDefaultWebServer().getClassPathResourceURL("", ""));
+        mainClassParameterList.add(WebServer.getDefaultWebServer().getClassLoaderCodebaseURL());
         mainClassParameterList.add(NativeInterface.class.getName());
       } else {
         mainClass = NativeInterface.class.getName();
       }
       mainClassParameterList.add(String.valueOf(pid));
       mainClassParameterList.add(String.valueOf(port));
+      if(port > 0) {
+        mainClassParameterList.add(PEERVM_CONNECT_FLAG);
+      }
+      if(isPreloadingBrowser) {
+        mainClassParameterList.add(PEERVM_PRELOADBROWSER_FLAG);
+      }
       PeerVMProcessFactory peerVMProcessFactory = nativeInterfaceConfiguration.getPeerVMProcessFactory();
       if(peerVMProcessFactory == null) {
         peerVMProcessFactory = new DefaultPeerVMProcessFactory();
@@ -989,65 +1403,50 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
 
     private static final boolean IS_PROCESS_IO_CHANNEL_MODE = "processio".equals(NSSystemPropertySWT.INTERFACE_OUTPROCESS_COMMUNICATION.get());
 
-    private static volatile int pid;
+    /** The flag that makes a spawned peer VM connect to the Swing side once it is ready, instead of waiting for a connection. */
+    private static final String PEERVM_CONNECT_FLAG = "connect";
+    /** The flag that makes a spawned peer VM load the web browser runtime before it connects. */
+    private static final String PEERVM_PRELOADBROWSER_FLAG = "preloadBrowser";
+
+    private static final AtomicInteger pid = new AtomicInteger();
 
     private static MessagingInterface createOutProcessMessagingInterface() {
-      String localHostAddress = Utils.getLocalHostAddress();
-      if(localHostAddress == null) {
-        throw new IllegalStateException("Failed to find a suitable local host address to communicate with a spawned VM!");
-      }
-      boolean isCreatingProcess = Boolean.parseBoolean(NSSystemPropertySWT.PEERVM_CREATE.get("true"));
-      int port;
-      boolean isProcessIOChannelMode = IS_PROCESS_IO_CHANNEL_MODE && isCreatingProcess;
-      if(isProcessIOChannelMode) {
-        port = 0;
-      } else {
-        port = Integer.parseInt(NSSystemPropertySWT.INTERFACE_PORT.get("-1"));
-        if(port <= 0) {
-          ServerSocket serverSocket;
-          try {
-            serverSocket = new ServerSocket();
-            serverSocket.setReuseAddress(false);
-            serverSocket.bind(new InetSocketAddress(InetAddress.getByName(localHostAddress), 0));
-          } catch(IOException e) {
-            throw new RuntimeException(e);
-          }
-          port = serverSocket.getLocalPort();
-          try {
-            serverSocket.close();
-          } catch(IOException e) {
-          }
-        }
+      if(!Boolean.parseBoolean(NSSystemPropertySWT.PEERVM_CREATE.get("true"))) {
+        return connectToPeerVM();
       }
-      int pid_ = ++pid;
-      Process p;
-      if(isCreatingProcess) {
-        p = createProcess(localHostAddress, port, pid_);
-        if(!isProcessIOChannelMode) {
-          connectStream(System.out, p.getInputStream(), "out", pid_);
-        }
+      if(IS_PROCESS_IO_CHANNEL_MODE) {
+        String localHostAddress = getPeerVMLocalHostAddress();
+        int pid_ = pid.incrementAndGet();
+        Process p = createProcess(localHostAddress, 0, pid_, false);
         connectStream(System.err, p.getErrorStream(), "err", pid_);
-      } else {
-        p = null;
-      }
-      if(isProcessIOChannelMode) {
-        // We need the process in this mode, so it cannot be null.
         return new SwingOutProcessIOMessagingInterface(p.getInputStream(), p.getOutputStream(), false, p, pid_);
       }
+      PeerVM peerVM = takePooledPeerVM();
+      if(peerVM == null) {
+        peerVM = spawnPeerVM(false);
+      }
+      return new SwingOutProcessSocketsMessagingInterface(peerVM.socket, false, peerVM.process, peerVM.pid);
+    }
+
+    private static String getPeerVMLocalHostAddress() {
+      String localHostAddress = Utils.getLocalHostAddress();
+      if(localHostAddress == null) {
+        throw new IllegalStateException("Failed to find a suitable local host address to communicate with a spawned VM!");
+      }
+      return localHostAddress;
+    }
+
+    /**
+     * Connect to a peer VM that was launched separately, which listens on the port of the interface.
+     */
+    private static MessagingInterface connectToPeerVM() {
+      String localHostAddress = getPeerVMLocalHostAddress();
+      int port = Integer.parseInt(NSSystemPropertySWT.INTERFACE_PORT.get("-1"));
       Exception exception = null;
       Socket socket = null;
       long peerVMConnectionTimeout = Integer.parseInt(NSSystemPropertySWT.INTERFACE_OUTPROCESS_CONNECTIONTIMEOUT.get("10000"));
       long startTime = System.currentTimeMillis();
       do {
-        if(p != null) {
-          try {
-            p.exitValue();
-            // The process is terminated so no need to try to connect to it.
-            break;
-          } catch(IllegalThreadStateException e) {
-            // Process is not terminated, which means no error
-          }
-        }
         try {
           socket = new Socket(localHostAddress, port);
           exception = null;
@@ -1061,15 +1460,212 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
         }
       } while(System.currentTimeMillis() - startTime < peerVMConnectionTimeout);
       if(socket == null) {
+        throw new IllegalStateException("Failed to connect to spawned VM!", exception);
+      }
+      return new SwingOutProcessSocketsMessagingInterface(socket, false, null, pid.incrementAndGet());
+    }
+
+    /**
+     * A spawned peer VM that is connected, with its display created.
+     */
+    private static class PeerVM {
+
+      final Process process;
+      final Socket socket;
+      final int pid;
+      /** The generation of the pool when the peer VM was spawned for it. */
+      int poolGeneration;
+
+      PeerVM(Process process, Socket socket, int pid) {
+        this.process = process;
+        this.socket = socket;
+        this.pid = pid;
+      }
+
+      boolean isAlive() {
+        if(process == null) {
+          return false;
+        }
+        try {
+          process.exitValue();
+          return false;
+        } catch(IllegalThreadStateException e) {
+          return !socket.isClosed();
+        }
+      }
+
+      void destroy() {
+        if(process == null) {
+          return;
+        }
+        try {
+          socket.close();
+        } catch(Exception e) {
+        }
+        process.destroy();
+      }
+
+    }
+
+    /**
+     * Spawn a peer VM and wait for it to connect, which it does once it is ready.
+     */
+    private static PeerVM spawnPeerVM(boolean isPooled) {
+      String localHostAddress = getPeerVMLocalHostAddress();
+      int port = Integer.parseInt(NSSystemPropertySWT.INTERFACE_PORT.get("-1"));
+      ServerSocket serverSocket;
+      try {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(port > 0);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName(localHostAddress), Math.max(port, 0)), 1);
+      } catch(IOException e) {
+        throw new RuntimeException(e);
+      }
+      int pid_ = pid.incrementAndGet();
+      Process p = null;
+      try {
+        p = createProcess(localHostAddress, serverSocket.getLocalPort(), pid_, isPooled);
+        connectStream(System.out, p.getInputStream(), "out", pid_);
+        connectStream(System.err, p.getErrorStream(), "err", pid_);
+        return new PeerVM(p, acceptPeerVMConnection(serverSocket, p), pid_);
+      } catch(RuntimeException e) {
         if(p != null) {
           p.destroy();
         }
-        if(exception == null) {
-          throw new IllegalStateException("Failed to connect to spawned VM! The native side process was already terminated.");
+        throw e;
+      } finally {
+        try {
+          serverSocket.close();
+        } catch(IOException e) {
+        }
+      }
+    }
+
+    private static Socket acceptPeerVMConnection(ServerSocket serverSocket, Process p) {
+      long peerVMConnectionTimeout = Integer.parseInt(NSSystemPropertySWT.INTERFACE_OUTPROCESS_CONNECTIONTIMEOUT.get("10000"));
+      long startTime = System.currentTimeMillis();
+      try {
+        // The accept call returns as soon as the peer VM connects. The timeout only serves to notice a peer VM that died.
+        serverSocket.setSoTimeout(500);
+        while(true) {
+          try {
+            return serverSocket.accept();
+          } catch(SocketTimeoutException e) {
+          }
+          try {
+            p.exitValue();
+            throw new IllegalStateException("Failed to connect to spawned VM! The native side process was already terminated.");
+          } catch(IllegalThreadStateException e) {
+            // Process is not terminated, which means no error
+          }
+          if(System.currentTimeMillis() - startTime >= peerVMConnectionTimeout) {
+            throw new IllegalStateException("Failed to connect to spawned VM! The native side did not connect in time.");
+          }
+        }
+      } catch(IOException e) {
+        throw new IllegalStateException("Failed to connect to spawned VM!", e);
+      }
+    }
+
+    /** The peer VMs that are ready, and markers of the ones that failed to spawn. */
+    private static final BlockingQueue<PeerVM> peerVMPool = new LinkedBlockingQueue<PeerVM>();
+    /** The number of peer VMs that are in the pool or being spawned for it. */
+    private static final AtomicInteger peerVMPoolCount = new AtomicInteger();
+    private static volatile int peerVMPoolSize;
+    /** The generation of the pool, which changes when the pooled peer VMs are invalidated. */
+    private static final AtomicInteger peerVMPoolGeneration = new AtomicInteger();
+    private static volatile ExecutorService peerVMPoolExecutor;
+
+    private static void fillPeerVMPool() {
+      while(true) {
+        int count = peerVMPoolCount.get();
+        if(count >= peerVMPoolSize) {
+          return;
+        }
+        if(peerVMPoolCount.compareAndSet(count, count + 1)) {
+          getPeerVMPoolExecutor().execute(new Runnable() {
+            public void run() {
+              int poolGeneration = peerVMPoolGeneration.get();
+              PeerVM peerVM;
+              try {
+                peerVM = spawnPeerVM(true);
+                peerVM.poolGeneration = poolGeneration;
+              } catch(Exception e) {
+                e.printStackTrace();
+                // A marker wakes up a thread that waits for this peer VM.
+                peerVM = new PeerVM(null, null, 0);
+              }
+              peerVMPool.add(peerVM);
+            }
+          });
+        }
+      }
+    }
+
+    private static ExecutorService getPeerVMPoolExecutor() {
+      if(peerVMPoolExecutor == null) {
+        synchronized(OutProcess.class) {
+          if(peerVMPoolExecutor == null) {
+            peerVMPoolExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+              public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "NativeSwing Peer VM Pool");
+                t.setDaemon(true);
+                return t;
+              }
+            });
+          }
         }
-        throw new IllegalStateException("Failed to connect to spawned VM!", exception);
       }
-      return new SwingOutProcessSocketsMessagingInterface(socket, false, p, pid_);
+      return peerVMPoolExecutor;
+    }
+
+    /**
+     * Take a peer VM from the pool, waiting for one that is being spawned if needed, and have the pool filled again.
+     * @return the peer VM, or null if the pool has none to give.
+     */
+    private static PeerVM takePooledPeerVM() {
+      if(peerVMPoolSize <= 0) {
+        return null;
+      }
+      long peerVMConnectionTimeout = Integer.parseInt(NSSystemPropertySWT.INTERFACE_OUTPROCESS_CONNECTIONTIMEOUT.get("10000"));
+      try {
+        while(peerVMPoolCount.get() > 0) {
+          PeerVM peerVM = peerVMPool.poll(peerVMConnectionTimeout, TimeUnit.MILLISECONDS);
+          if(peerVM == null) {
+            return null;
+          }
+          peerVMPoolCount.decrementAndGet();
+          // A peer VM that was spawned before the pool was invalidated may use an outdated configuration.
+          if(peerVM.isAlive() && peerVM.poolGeneration == peerVMPoolGeneration.get()) {
+            return peerVM;
+          }
+          peerVM.destroy();
+        }
+        return null;
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      } finally {
+        fillPeerVMPool();
+      }
+    }
+
+    /**
+     * Destroy the pooled peer VMs, including the ones being spawned, which were launched with a configuration that may change until the interface is opened again.
+     */
+    static void invalidatePeerVMPool() {
+      peerVMPoolGeneration.incrementAndGet();
+      for(PeerVM peerVM; (peerVM = peerVMPool.poll()) != null; ) {
+        peerVMPoolCount.decrementAndGet();
+        peerVM.destroy();
+      }
+    }
+
+    private static void destroyPooledPeerVMs() {
+      peerVMPoolSize = 0;
+      for(PeerVM peerVM; (peerVM = peerVMPool.poll()) != null; ) {
+        peerVM.destroy();
+      }
     }
 
     private static class IOStreamFormatter {
@@ -1156,13 +1752,16 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
         System.err.println("Starting peer VM #" + pid);
       }
       synchronized(OPEN_STATE_LOCK) {
-        isOpen = true;
+        setInterfaceState(true, null);
       }
       int port = Integer.parseInt(args[1]);
+      List<String> flagList = Arrays.asList(args).subList(2, args.length);
       boolean isProcessIOChannelMode = port <= 0;
+      // A spawned peer VM connects to the Swing side once it is ready, while a peer VM that is launched separately waits for a connection.
+      boolean isConnectingToSwingSide = flagList.contains(PEERVM_CONNECT_FLAG);
       Socket socket = null;
-      if(!isProcessIOChannelMode) {
-        ServerSocket serverSocket = null;
+      ServerSocket serverSocket = null;
+      if(!isProcessIOChannelMode && !isConnectingToSwingSide) {
         long startTime = System.currentTimeMillis();
         IOException exception;
         do {
@@ -1202,11 +1801,7 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
                 sleep(10000);
               } catch(Exception e) {
               }
-              boolean isNull;
-              synchronized(OPEN_STATE_LOCK) {
-                isNull = messagingInterface == null;
-              }
-              if(isNull) {
+              if(interfaceState.messagingInterface == null) {
                 try {
                   serverSocket_.close();
                 } catch(Exception e) {
@@ -1217,6 +1812,8 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
           shutdownThread.setDaemon(true);
           shutdownThread.start();
         }
+      }
+      if(!isProcessIOChannelMode) {
         Runtime.getRuntime().addShutdownHook(new Thread() {
           @Override
           public void run() {
@@ -1237,10 +1834,12 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
             destroyControls();
           }
         });
-        try {
-          socket = serverSocket.accept();
-        } catch(Exception e) {
-          throw new IllegalStateException("The native side did not receive an incoming connection!", e);
+        if(!isConnectingToSwingSide) {
+          try {
+            socket = serverSocket.accept();
+          } catch(Exception e) {
+            throw new IllegalStateException("The native side did not receive an incoming connection!", e);
+          }
         }
       }
 //      // We set up a new security manager to track exit calls.
@@ -1286,7 +1885,7 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
         InputStream sysin = System.in;
         SWTOutProcessIOMessagingInterface outInterface = new SWTOutProcessIOMessagingInterface(sysin, sysout, true, display, pid);
         synchronized(OPEN_STATE_LOCK) {
-          messagingInterface = outInterface;
+          setInterfaceState(interfaceState.isOpen, outInterface);
         }
         System.setIn(new InputStream() {
           @Override
@@ -1320,10 +1919,7 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
         }));
         if(Utils.IS_WINDOWS) {
           // TODO: remove when SWT bug 270364 is fixed.
-          final MessagingInterface messagingInterface_;
-          synchronized(OPEN_STATE_LOCK) {
-            messagingInterface_ = messagingInterface;
-          }
+          final MessagingInterface messagingInterface_ = interfaceState.messagingInterface;
           new Thread("System.in unlocker") {
             @Override
             public void run() {
@@ -1341,9 +1937,27 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
           }.start();
         }
       } else {
-        SWTOutProcessSocketsMessagingInterface outInterface = new SWTOutProcessSocketsMessagingInterface(socket, true, display, pid);
+        if(isConnectingToSwingSide) {
+          if(flagList.contains(PEERVM_PRELOADBROWSER_FLAG)) {
+            preloadBrowser();
+          }
+          socket = new Socket();
+          try {
+            socket.connect(new InetSocketAddress(Utils.getLocalHostAddress(), port));
+          } catch(IOException e) {
+            throw new IllegalStateException("The native side could not connect to the Swing side!", e);
+          }
+        }
+        SWTOutProcessSocketsMessagingInterface outInterface;
+        try {
+          outInterface = new SWTOutProcessSocketsMessagingInterface(socket, true, display, pid);
+        } catch(RuntimeException e) {
+          // A pooled peer VM waits here until it is taken, and fails if the Swing side exits before. The display is disposed so that the shutdown hook does not wait for it.
+          display.dispose();
+          throw e;
+        }
         synchronized(OPEN_STATE_LOCK) {
-          messagingInterface = outInterface;
+          setInterfaceState(interfaceState.isOpen, outInterface);
         }
       }
       while(display != null && !display.isDisposed()) {
@@ -1363,6 +1977,31 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
       }
     }
 
+    /**
+     * Load the web browser runtime by creating a web browser that is not shown.
+     */
+    private static void preloadBrowser() {
+      int style = SWT.NONE;
+      String webBrowserRuntime = NSSystemPropertySWT.WEBBROWSER_RUNTIME.get();
+      if("xulrunner".equals(webBrowserRuntime)) {
+        // XULRunner may need a path that is only known when a web browser is created.
+        return;
+      }
+      if("webkit".equals(webBrowserRuntime)) {
+        style |= SWT.WEBKIT;
+      } else if("edge".equals(webBrowserRuntime)) {
+        style |= SWT.EDGE;
+      }
+      Shell shell = new Shell(display);
+      try {
+        new Browser(shell, style);
+      } catch(Throwable t) {
+        // The runtime is not available, which is only an issue if a web browser is created.
+      } finally {
+        shell.dispose();
+      }
+    }
+
     static void runEventPump() {
       // There is nothing to be done for out process, but we want this call to be blocking.
       while(isEventPumpRunning) {
@@ -1417,6 +2056,10 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
     return NativeInterface.getMessageID(message);
   }
 
+  protected static void setMessageID(Message message, int id) {
+    NativeInterface.setMessageID(message, id);
+  }
+
   protected static boolean isMessageValid(Message message) {
     return NativeInterface.isMessageValid(message);
   }
@@ -1441,6 +2084,10 @@ public class SWTNativeInterface extends NativeInterface implements ISWTNativeInt
     NativeInterface.setMessageArgs(message, args);
   }
 
+  protected static Object[] getMessageArgs(CommandMessage message) {
+    return NativeInterface.getMessageArgs(message);
+  }
+
   protected static void computeMessageID(Message message, boolean isTargetNativeSide) {
     NativeInterface.computeMessageID(message, isTargetNativeSide);
   }
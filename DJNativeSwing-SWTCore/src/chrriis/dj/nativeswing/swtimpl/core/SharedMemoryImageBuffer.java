@@ -0,0 +1,136 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.swtimpl.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A memory-mapped file that is shared by both sides to transfer the pixels of a component image.<br/>
+ * The Swing side creates the file and grows it when needed, while the native side maps the file it is given. Pixels are stored as ARGB integers in native byte order, which is fine because both processes run on the same machine.
+ * @author Christopher Deckers
+ */
+class SharedMemoryImageBuffer {
+
+  private static final int CAPACITY_INCREMENT = 64 * 1024;
+
+  private File file;
+  private MappedByteBuffer buffer;
+
+  private SharedMemoryImageBuffer(File file, MappedByteBuffer buffer) {
+    this.file = file;
+    this.buffer = buffer;
+  }
+
+  private static MappedByteBuffer map(File file, long byteCount) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    try {
+      if(randomAccessFile.length() < byteCount) {
+        randomAccessFile.setLength(byteCount);
+      }
+      // The mapping stays valid after the channel is closed.
+      return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, byteCount);
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * Create a buffer backed by a new temporary file, from the Swing side.
+   */
+  public static SharedMemoryImageBuffer create(int pixelCount) throws IOException {
+    long byteCount = ((pixelCount * 4L) / CAPACITY_INCREMENT + 1) * CAPACITY_INCREMENT;
+    File file = File.createTempFile("nsimage", ".tmp");
+    file.deleteOnExit();
+    try {
+      return new SharedMemoryImageBuffer(file, map(file, byteCount));
+    } catch(IOException e) {
+      file.delete();
+      throw e;
+    }
+  }
+
+  /**
+   * Map an existing buffer file that was created by the other side.
+   */
+  public static SharedMemoryImageBuffer open(String path) throws IOException {
+    File file = new File(path);
+    return new SharedMemoryImageBuffer(file, map(file, file.length()));
+  }
+
+  public String getPath() {
+    return file.getAbsolutePath();
+  }
+
+  public boolean hasCapacity(int pixelCount) {
+    return buffer.capacity() >= pixelCount * 4L;
+  }
+
+  /**
+   * Get a view of the whole buffer, positioned at the start. Each call returns a new view.
+   */
+  public IntBuffer getIntBuffer() {
+    return buffer.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+  }
+
+  /**
+   * Release the mapping of the buffer, which must not be used anymore. This is what the side that did not create the file does.
+   */
+  public void release() {
+    if(buffer != null) {
+      unmap(buffer);
+      buffer = null;
+    }
+  }
+
+  /**
+   * Release the mapping of the buffer and delete its file, which must not be used anymore. Some platforms do not allow the deletion of a file that is mapped by the other side, in which case it is deleted when the VM exits.
+   */
+  public void dispose() {
+    release();
+    file.delete();
+  }
+
+  /**
+   * Unmap a buffer without waiting for its garbage collection, which is what keeps the file locked on Windows.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      // Java 9 and later.
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleanerMethod = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field theUnsafeField = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafeField.setAccessible(true);
+      invokeCleanerMethod.invoke(theUnsafeField.get(null), buffer);
+      return;
+    } catch(Exception e) {
+    }
+    try {
+      // Java 8.
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if(cleaner != null) {
+        Method cleanMethod = cleaner.getClass().getMethod("clean");
+        cleanMethod.setAccessible(true);
+        cleanMethod.invoke(cleaner);
+      }
+    } catch(Exception e) {
+      // The mapping is released when the buffer is garbage collected.
+    }
+  }
+
+}
@@ -13,6 +13,7 @@ import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 import chrriis.dj.nativeswing.common.Filter;
+import chrriis.dj.nativeswing.common.Region;
 import chrriis.dj.nativeswing.common.UIUtils;
 
 /**
@@ -45,8 +46,8 @@ class BackBufferManager {
   }
 
   protected Rectangle[] getTranslucentOverlays() {
-    Rectangle[] boundsArea = new Rectangle[] {new Rectangle(0, 0, paintingComponent.getWidth(), paintingComponent.getHeight())};
-    boundsArea = UIUtils.subtract(boundsArea, UIUtils.getComponentVisibleArea(paintingComponent, new Filter<Component>() {
+    Region region = new Region(0, 0, paintingComponent.getWidth(), paintingComponent.getHeight());
+    region.subtract(UIUtils.getComponentVisibleRegion(paintingComponent, new Filter<Component>() {
       public Acceptance accept(Component c) {
         if(c.isOpaque()) {
           return Acceptance.YES;
@@ -54,7 +55,10 @@ class BackBufferManager {
         return Acceptance.TEST_CHILDREN;
       }
     }));
-    return UIUtils.subtract(boundsArea, UIUtils.getComponentVisibleArea(paintingComponent, new Filter<Component>() {
+    if(region.isEmpty()) {
+      return new Rectangle[0];
+    }
+    region.subtract(UIUtils.getComponentVisibleRegion(paintingComponent, new Filter<Component>() {
       public Acceptance accept(Component c) {
         if(!c.isOpaque()) {
           return Acceptance.YES;
@@ -62,6 +66,7 @@ class BackBufferManager {
         return Acceptance.NO;
       }
     }));
+    return region.toRectangles();
   }
 
   public void createBackBuffer() {
@@ -86,15 +91,20 @@ class BackBufferManager {
       image = backBuffer;
     } else {
       image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      // The previous content is the base of the new image: it must not cover the areas that are about to be painted.
+      synchronized(backBufferLock) {
+        if(backBuffer != null) {
+          synchronized(backBuffer) {
+            Graphics g = image.getGraphics();
+            g.drawImage(backBuffer, 0, 0, null);
+            g.dispose();
+          }
+        }
+      }
     }
     nativeComponent.paintNativeComponent(image, rectangles);
     synchronized(backBufferLock) {
       if(backBuffer != null && backBuffer != image) {
-        synchronized(backBuffer) {
-          Graphics g = image.getGraphics();
-          g.drawImage(backBuffer, 0, 0, null);
-          g.dispose();
-        }
         backBuffer.flush();
       }
       backBuffer = image;
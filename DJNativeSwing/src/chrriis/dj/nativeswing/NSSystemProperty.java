@@ -42,6 +42,22 @@ public enum NSSystemProperty {
   LOCALHOSTADDRESS_DEBUG_PRINT("nativeswing.localhostAddress.debug.print", Type.READ_WRITE),
 
 
+  /**
+   * nativeswing.webserver.workerThreads
+   * = &lt;integer&gt; (default: 10)<br/>
+   * The maximum number of threads that process the requests of the embedded web
+   * server. Connections are read and kept alive by a single selector thread.
+   */
+  WEBSERVER_WORKERTHREADS("nativeswing.webserver.workerThreads", Type.READ_WRITE),
+
+  /**
+   * nativeswing.webserver.resourceCache.size
+   * = &lt;long&gt; (default: 16777216)<br/>
+   * The maximum number of bytes of class path and jar resources that the embedded
+   * web server keeps in memory. 0 disables the cache.
+   */
+  WEBSERVER_RESOURCECACHE_SIZE("nativeswing.webserver.resourceCache.size", Type.READ_WRITE),
+
   /**
    * nativeswing.webserver.debug.printPort
    * = true/false (default: false)<br/>
@@ -30,7 +30,10 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Point2D;
 import java.beans.PropertyVetoException;
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import javax.swing.JInternalFrame;
 import javax.swing.JLayeredPane;
@@ -38,6 +41,7 @@ import javax.swing.SwingUtilities;
 
 import chrriis.dj.nativeswing.NativeComponentWrapper.NativeComponentHolder;
 import chrriis.dj.nativeswing.common.Filter;
+import chrriis.dj.nativeswing.common.Region;
 import chrriis.dj.nativeswing.common.UIUtils;
 import chrriis.dj.nativeswing.common.UIUtils.TransparencyType;
 import chrriis.dj.nativeswing.common.Utils;
@@ -79,26 +83,30 @@ class NativeComponentProxyPanel extends NativeComponentProxy {
       shapeAdjustmentEventListener = new AWTEventListener() {
         @Override
         public void eventDispatched(AWTEvent e) {
-          boolean isAdjustingShape = false;
+          if(NativeComponentProxyPanel.this.nativeComponentWrapper.getNativeComponentProxy() != NativeComponentProxyPanel.this) {
+            return;
+          }
           switch(e.getID()) {
             case ContainerEvent.COMPONENT_ADDED:
+              // A new component can only cover the native component if it is added to a container whose children are tested.
+              if(isShapeDependency(((ContainerEvent)e).getContainer())) {
+                adjustEmbeddedPanelShape();
+              }
+              break;
             case ContainerEvent.COMPONENT_REMOVED:
+              adjustEmbeddedPanelShape(((ContainerEvent)e).getChild(), true);
+              break;
             case ComponentEvent.COMPONENT_RESIZED:
             case ComponentEvent.COMPONENT_MOVED:
-              isAdjustingShape = true;
+              adjustEmbeddedPanelShape(((ComponentEvent)e).getComponent(), false);
               break;
             case ComponentEvent.COMPONENT_SHOWN:
             case ComponentEvent.COMPONENT_HIDDEN:
               if(e.getSource() instanceof Window) {
-                isAdjustingShape = true;
+                adjustEmbeddedPanelShape();
               }
               break;
           }
-          if(isAdjustingShape) {
-            if(NativeComponentProxyPanel.this.nativeComponentWrapper.getNativeComponentProxy() == NativeComponentProxyPanel.this) {
-              adjustEmbeddedPanelShape();
-            }
-          }
         }
       };
     }
@@ -180,8 +188,68 @@ class NativeComponentProxyPanel extends NativeComponentProxy {
   }
 
   private volatile boolean isInvoking;
+  private boolean isShapeComputationRequired;
+  /** The area that may have changed since the last shape, because of the components that moved, were resized or removed. */
+  private Region damagedRegion;
 
   private void adjustEmbeddedPanelShape() {
+    isShapeComputationRequired = true;
+    scheduleEmbeddedPanelShapeAdjustment();
+  }
+
+  /**
+   * Adjust the shape after a component was moved, resized or removed. When it is a tracked covering component, only the area of its old and new bounds is computed again. Components that are not part of the hierarchy that determines the shape are ignored.
+   */
+  private void adjustEmbeddedPanelShape(Component component, boolean isRemoved) {
+    if(coveringComponentToBoundsMap == null) {
+      adjustEmbeddedPanelShape();
+      return;
+    }
+    Rectangle oldBounds = coveringComponentToBoundsMap.get(component);
+    if(oldBounds == null) {
+      if(isShapeDependency(component)) {
+        adjustEmbeddedPanelShape();
+      }
+      return;
+    }
+    if(isRemoved) {
+      coveringComponentToBoundsMap.remove(component);
+    } else {
+      Container parent = component.getParent();
+      if(parent == null || SwingUtilities.getWindowAncestor(component) != SwingUtilities.getWindowAncestor(this)) {
+        adjustEmbeddedPanelShape();
+        return;
+      }
+      Rectangle newBounds = SwingUtilities.convertRectangle(parent, component.getBounds(), this);
+      if(newBounds.equals(oldBounds)) {
+        return;
+      }
+      coveringComponentToBoundsMap.put(component, newBounds);
+      getDamagedRegion().union(newBounds);
+    }
+    getDamagedRegion().union(oldBounds);
+    scheduleEmbeddedPanelShapeAdjustment();
+  }
+
+  private Region getDamagedRegion() {
+    if(damagedRegion == null) {
+      damagedRegion = new Region();
+    }
+    return damagedRegion;
+  }
+
+  /**
+   * Indicate whether moving, resizing or removing a component, or adding a child to it, may change the shape in a way that is not known from the bounds of the tracked covering components.
+   */
+  private boolean isShapeDependency(Component component) {
+    if(testedContainerSet == null || testedContainerSet.contains(component)) {
+      return true;
+    }
+    // This panel or one of its ancestors, which changes the clip or the covering components.
+    return SwingUtilities.isDescendingFrom(this, component);
+  }
+
+  private void scheduleEmbeddedPanelShapeAdjustment() {
     if(isInvoking) {
       return;
     }
@@ -195,33 +263,73 @@ class NativeComponentProxyPanel extends NativeComponentProxy {
     });
   }
 
-  private Rectangle[] lastArea = new Rectangle[] {new Rectangle(getSize())};
+  private Region lastShape;
+  /** The components that were subtracted from the last computed shape, with their bounds in the coordinates of this panel, or null if they are not known. */
+  private Map<Component, Rectangle> coveringComponentToBoundsMap;
+  /** The transparent containers whose children were tested when computing the last shape. */
+  private Set<Component> testedContainerSet;
+  /** The bounds of this panel clipped by its ancestors when computing the last shape. */
+  private Rectangle clipBounds;
+  /** The children of the ancestors and of the tested containers in their z-order when computing the last shape, because activating an internal frame or changing a layer reorders them without any move or resize. */
+  private Map<Container, Component[]> zOrderMap;
 
   private void adjustEmbeddedPanelShape_() {
     if(embeddedPanel == null) {
       return;
     }
-    Rectangle[] rectangles = computePeerShapeArea();
-    if(Arrays.equals(lastArea, rectangles)) {
+    Region shape;
+    if(isShapeComputationRequired || lastShape == null || coveringComponentToBoundsMap == null || isZOrderChanged()) {
+      shape = computePeerShape();
+    } else if(damagedRegion != null) {
+      shape = computePeerShape(damagedRegion);
+    } else {
+      shape = lastShape;
+    }
+    isShapeComputationRequired = false;
+    damagedRegion = null;
+    if(shape.equals(lastShape)) {
       embeddedPanel.nativeComponentWrapper.getNativeComponent().repaint();
       return;
     }
-    lastArea = rectangles;
-    if(rectangles.length == 0) {
+    lastShape = shape;
+    if(shape.isEmpty()) {
       embeddedPanel.setVisible(false);
     } else {
       if(!embeddedPanel.isVisible()) {
         embeddedPanel.setVisible(true);
       }
-      embeddedPanel.applyShape(rectangles);
+      embeddedPanel.applyShape(shape.toRectangles());
+    }
+  }
+
+  /**
+   * Compute the shape again in the damaged area only, from the clip and the bounds of the covering components of the last shape.
+   */
+  private Region computePeerShape(Region damagedRegion) {
+    if(IS_DEBUGGING_SHAPE) {
+      System.err.println("Updating shape: " + damagedRegion.getBounds() + " " + nativeComponentWrapper.getComponentDescription());
+    }
+    Region damagedShape = new Region(clipBounds.x, clipBounds.y, clipBounds.width, clipBounds.height);
+    damagedShape.intersect(damagedRegion);
+    for(Rectangle bounds: coveringComponentToBoundsMap.values()) {
+      if(damagedShape.isEmpty()) {
+        break;
+      }
+      damagedShape.subtract(bounds);
     }
+    Region shape = new Region(lastShape);
+    shape.subtract(damagedRegion);
+    shape.union(damagedShape);
+    return shape;
   }
 
-  private Rectangle[] computePeerShapeArea() {
+  private Region computePeerShape() {
     if(IS_DEBUGGING_SHAPE) {
       System.err.println("Computing shape: [" + NativeComponentProxyPanel.this.getWidth() + "x" + NativeComponentProxyPanel.this.getHeight() + "] " + nativeComponentWrapper.getComponentDescription());
     }
-    Rectangle[] shape = UIUtils.getComponentVisibleArea(this, new Filter<Component>() {
+    final Map<Component, Rectangle> coveringComponentToBoundsMap = new HashMap<Component, Rectangle>();
+    final Set<Component> testedContainerSet = new HashSet<Component>();
+    Region shape = UIUtils.getComponentVisibleRegion(this, new Filter<Component>() {
       @Override
       public Acceptance accept(Component c) {
         if(c instanceof EmbeddedPanel) {
@@ -229,11 +337,15 @@ class NativeComponentProxyPanel extends NativeComponentProxy {
         }
         TransparencyType transparency = UIUtils.getComponentTransparency(c);
         switch(transparency) {
-          case TRANSPARENT_WITH_OPAQUE_CHILDREN: return Acceptance.TEST_CHILDREN;
+          case TRANSPARENT_WITH_OPAQUE_CHILDREN:
+            testedContainerSet.add(c);
+            return Acceptance.TEST_CHILDREN;
           case NOT_VISIBLE: return Acceptance.NO;
         }
+        Rectangle bounds = SwingUtilities.convertRectangle(c.getParent(), c.getBounds(), NativeComponentProxyPanel.this);
+        coveringComponentToBoundsMap.put(c, bounds);
         if(IS_DEBUGGING_SHAPE) {
-          Rectangle intersectionRectangle = SwingUtilities.convertRectangle(c, new Rectangle(c.getSize()), NativeComponentProxyPanel.this).intersection(new Rectangle(NativeComponentProxyPanel.this.getSize()));
+          Rectangle intersectionRectangle = bounds.intersection(new Rectangle(NativeComponentProxyPanel.this.getSize()));
           if(!intersectionRectangle.isEmpty()) {
             System.err.println("  -> Subtracting [" + intersectionRectangle.x + "," + intersectionRectangle.y + "," + intersectionRectangle.width + "x" + intersectionRectangle.height + "] " + c);
           }
@@ -241,19 +353,85 @@ class NativeComponentProxyPanel extends NativeComponentProxy {
         return Acceptance.YES;
       }
     });
+    // The computation stops when nothing is visible, so the covering components are only all known if something is visible.
+    if(shape.isEmpty()) {
+      this.coveringComponentToBoundsMap = null;
+      this.testedContainerSet = null;
+      this.clipBounds = null;
+      this.zOrderMap = null;
+    } else {
+      this.coveringComponentToBoundsMap = coveringComponentToBoundsMap;
+      this.testedContainerSet = testedContainerSet;
+      this.clipBounds = getClipBounds();
+      Map<Container, Component[]> zOrderMap = new HashMap<Container, Component[]>();
+      for(Container parent = getParent(); parent != null && !(parent instanceof Window); parent = parent.getParent()) {
+        zOrderMap.put(parent, parent.getComponents());
+      }
+      for(Component c: testedContainerSet) {
+        if(c instanceof Container) {
+          zOrderMap.put((Container)c, ((Container)c).getComponents());
+        }
+      }
+      this.zOrderMap = zOrderMap;
+    }
     return shape;
   }
 
+  /**
+   * Indicate whether the children of the ancestors or of the tested containers were reordered since the last shape was computed, in which case components that were behind may now cover this panel.
+   */
+  private boolean isZOrderChanged() {
+    if(zOrderMap == null) {
+      return true;
+    }
+    for(Map.Entry<Container, Component[]> entry: zOrderMap.entrySet()) {
+      Container container = entry.getKey();
+      Component[] children = entry.getValue();
+      if(container.getComponentCount() != children.length) {
+        return true;
+      }
+      for(int i=0; i<children.length; i++) {
+        if(container.getComponent(i) != children[i]) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private Rectangle getClipBounds() {
+    Rectangle clipBounds = new Rectangle(getSize());
+    for(Container parent = getParent(); parent != null && !(parent instanceof Window); parent = parent.getParent()) {
+      Point location = SwingUtilities.convertPoint(parent, 0, 0, this);
+      Dimension parentSize = parent.getSize();
+      clipBounds = clipBounds.intersection(new Rectangle(location.x, location.y, parentSize.width, parentSize.height));
+    }
+    return clipBounds;
+  }
+
+  private void clearShapeTracking() {
+    coveringComponentToBoundsMap = null;
+    testedContainerSet = null;
+    clipBounds = null;
+    zOrderMap = null;
+    damagedRegion = null;
+  }
+
   @Override
   public void paint(Graphics g) {
     super.paint(g);
     // On Linux, a JInternalFrame brought to the front may generate a paint call only to that one.
-    // We need to adjust the shape of the frames that go to the back as well.
-    for(NativeComponentWrapper ncw: NativeSwing.getNativeComponentWrappers()) {
+    // We need to adjust the shape of the frames that go to the back as well, which are in the same window.
+    // The adjustment only computes the whole shape if the z-order changed, so painting alone is cheap.
+    Window windowAncestor = SwingUtilities.getWindowAncestor(this);
+    if(windowAncestor == null) {
+      return;
+    }
+    for(NativeComponentWrapper ncw: NativeSwing.getNativeComponentWrappers(windowAncestor)) {
       NativeComponentProxy nativeComponentProxy = ncw.getNativeComponentProxy();
       if(nativeComponentProxy instanceof NativeComponentProxyPanel) {
         if(((NativeComponentProxyPanel)nativeComponentProxy).isVisibilityConstrained) {
-          ((NativeComponentProxyPanel)nativeComponentProxy).adjustEmbeddedPanelShape();
+          ((NativeComponentProxyPanel)nativeComponentProxy).scheduleEmbeddedPanelShapeAdjustment();
         }
       }
     }
@@ -461,7 +639,8 @@ class NativeComponentProxyPanel extends NativeComponentProxy {
       embeddedPanel = new EmbeddedPanel(nativeComponentWrapper, isDestructionOnFinalization);
       embeddedPanel.add(nativeComponentWrapper.getNativeComponent(), BorderLayout.CENTER);
     }
-    lastArea = null;
+    lastShape = null;
+    clearShapeTracking();
     adjustEmbeddedPanelBounds();
     SwingUtilities.invokeLater(new Runnable() {
       @Override
@@ -493,6 +672,7 @@ class NativeComponentProxyPanel extends NativeComponentProxy {
     }
     if(shapeAdjustmentEventListener != null) {
       Toolkit.getDefaultToolkit().removeAWTEventListener(shapeAdjustmentEventListener);
+      clearShapeTracking();
     }
     if(isDestructionOnFinalization) {
       SwingUtilities.invokeLater(new Runnable() {
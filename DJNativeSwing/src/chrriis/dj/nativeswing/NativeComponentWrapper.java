@@ -129,6 +129,14 @@ public class NativeComponentWrapper {
     return true;
   }
 
+  /**
+   * This method is invoked to disable and re-enable the native component at its native level, which lets Swing components of the same window gain the focus on Java 7 and later. By default it disables and enables the native component, but subclasses can do both in a single operation.
+   */
+  protected void refreshNativeComponentEnabled() {
+    setNativeComponentEnabled(false);
+    setNativeComponentEnabled(true);
+  }
+
   /**
    * Get a description of this component wrapper, which is used for example to improve debug messages.
    * @return a description of this component wrapper.
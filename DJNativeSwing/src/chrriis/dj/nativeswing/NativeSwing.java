@@ -16,6 +16,8 @@ import java.awt.Window;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.event.AWTEventListener;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ComponentEvent;
 import java.awt.event.FocusEvent;
 import java.awt.event.HierarchyEvent;
@@ -25,12 +27,15 @@ import java.awt.event.WindowEvent;
 import java.io.BufferedReader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import chrriis.dj.nativeswing.common.SystemProperty;
 import chrriis.dj.nativeswing.common.Utils;
@@ -168,6 +173,8 @@ public class NativeSwing {
       nativeComponentWrapperList = new ArrayList<NativeComponentWrapper>();
     }
     nativeComponentWrapperList.add(nativeComponentWrapper);
+    windowToNativeComponentWrapperListMap = null;
+    nativeComponentWrapper.getNativeComponent().addHierarchyListener(WINDOW_INDEX_INVALIDATOR);
     if(!isHeavyWeightForcerEnabled) {
       HeavyweightForcer.activate(nativeComponentWrapper.getNativeComponent());
     }
@@ -177,9 +184,52 @@ public class NativeSwing {
     if(nativeComponentWrapperList == null) {
       return false;
     }
+    nativeComponentWrapper.getNativeComponent().removeHierarchyListener(WINDOW_INDEX_INVALIDATOR);
+    windowToNativeComponentWrapperListMap = null;
     return nativeComponentWrapperList.remove(nativeComponentWrapper);
   }
 
+  /**
+   * The native component wrappers per window ancestor, which is built when needed and discarded when a native component changes of hierarchy.
+   */
+  private static volatile Map<Window, List<NativeComponentWrapper>> windowToNativeComponentWrapperListMap;
+
+  private static final HierarchyListener WINDOW_INDEX_INVALIDATOR = new HierarchyListener() {
+    public void hierarchyChanged(HierarchyEvent e) {
+      if((e.getChangeFlags() & (HierarchyEvent.PARENT_CHANGED | HierarchyEvent.DISPLAYABILITY_CHANGED)) != 0) {
+        windowToNativeComponentWrapperListMap = null;
+      }
+    }
+  };
+
+  /**
+   * Get the native component wrappers whose native component, or its proxy if it has one, is in a given window.
+   */
+  static NativeComponentWrapper[] getNativeComponentWrappers(Window window) {
+    Map<Window, List<NativeComponentWrapper>> windowToNativeComponentWrapperListMap = NativeSwing.windowToNativeComponentWrapperListMap;
+    if(windowToNativeComponentWrapperListMap == null) {
+      windowToNativeComponentWrapperListMap = new HashMap<Window, List<NativeComponentWrapper>>();
+      for(NativeComponentWrapper nativeComponentWrapper: getNativeComponentWrappers()) {
+        Component c = nativeComponentWrapper.getNativeComponentProxy();
+        if(c == null) {
+          c = nativeComponentWrapper.getNativeComponent();
+        }
+        Window windowAncestor = SwingUtilities.getWindowAncestor(c);
+        if(windowAncestor != null) {
+          List<NativeComponentWrapper> list = windowToNativeComponentWrapperListMap.get(windowAncestor);
+          if(list == null) {
+            list = new ArrayList<NativeComponentWrapper>();
+            windowToNativeComponentWrapperListMap.put(windowAncestor, list);
+          }
+          list.add(nativeComponentWrapper);
+        }
+      }
+      NativeSwing.windowToNativeComponentWrapperListMap = windowToNativeComponentWrapperListMap;
+    }
+    List<NativeComponentWrapper> list = windowToNativeComponentWrapperListMap.get(window);
+    return list == null? new NativeComponentWrapper[0]: list.toArray(new NativeComponentWrapper[0]);
+  }
+
   private static List<Window> windowList;
 
   static Window[] getWindows() {
@@ -353,13 +403,18 @@ public class NativeSwing {
             if(nativeComponentWrapperList == null) {
               return;
             }
-            // In Java 7, components cannot gain focus if a native component is shown.
-            // The fix is to temporary disable the native component hierarchy.
-            for(int i=nativeComponentWrapperList.size()-1; i>=0; i--) {
-              final NativeComponentWrapper nativeComponentWrapper = nativeComponentWrapperList.get(i);
+            // In Java 7, components cannot gain focus if a native component of their window is shown.
+            // The fix is to temporary disable the native component hierarchy of that window.
+            Object source = e.getSource();
+            Window window = source instanceof Window? (Window)source: source instanceof Component? SwingUtilities.getWindowAncestor((Component)source): null;
+            if(window == null) {
+              return;
+            }
+            NativeComponentWrapper[] nativeComponentWrappers = getNativeComponentWrappers(window);
+            for(int i=nativeComponentWrappers.length-1; i>=0; i--) {
+              NativeComponentWrapper nativeComponentWrapper = nativeComponentWrappers[i];
               if(nativeComponentWrapper.isNativeComponentEnabled()) {
-                nativeComponentWrapper.setNativeComponentEnabled(false);
-                nativeComponentWrapper.setNativeComponentEnabled(true);
+                nativeComponentWrapper.refreshNativeComponentEnabled();
               }
             }
             return;
@@ -428,22 +483,14 @@ public class NativeSwing {
             final Dialog d = (Dialog)e.getSource();
             if(d.getFocusableWindowState()) {
               d.setFocusableWindowState(false);
-              Thread t = new Thread("Dialog focus fixer") {
-                @Override
-                public void run() {
-                  try {
-                    sleep(125);
-                  } catch (InterruptedException e) {
-                  }
-                  SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                      d.setFocusableWindowState(true);
-                    }
-                  });
+              // The shared thread of the Swing timers does the wait, and the state is restored in the event dispatch thread.
+              Timer timer = new Timer(125, new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                  d.setFocusableWindowState(true);
                 }
-              };
-              t.setDaemon(true);
-              t.start();
+              });
+              timer.setRepeats(false);
+              timer.start();
             }
             break;
         }
@@ -0,0 +1,558 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.common;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * An area made of rectangles, stored as horizontal bands sorted from top to bottom, each band having the same vertical extent for all its rectangles which are sorted from left to right and do not touch. Two adjacent bands with the same rectangles are merged, so an area has a single representation.<br/>
+ * The operations are done in place and reuse the internal arrays, so that a shape can be computed from many rectangles without creating objects for each of them.
+ * @author Christopher Deckers
+ */
+public class Region {
+
+  private static final int UNION = 0;
+  private static final int SUBTRACT = 1;
+  private static final int INTERSECT = 2;
+
+  /** The rectangles, as (x1, y1, x2, y2) values. */
+  private int[] data;
+  private int count;
+  /** The array in which an operation writes its result, which is then swapped with the data. */
+  private int[] result;
+  private int resultCount;
+  private int previousBandIndex;
+  private final int[] rectangleData = new int[4];
+  private int boundsX1;
+  private int boundsY1;
+  private int boundsX2;
+  private int boundsY2;
+
+  /**
+   * Create an empty region.
+   */
+  public Region() {
+    data = new int[16];
+    result = new int[16];
+  }
+
+  /**
+   * Create a region made of a rectangle.
+   */
+  public Region(int x, int y, int width, int height) {
+    this();
+    set(x, y, width, height);
+  }
+
+  /**
+   * Create a region made of the union of rectangles.
+   */
+  public Region(Rectangle[] rectangles) {
+    this();
+    for(Rectangle rectangle: rectangles) {
+      union(rectangle);
+    }
+  }
+
+  /**
+   * Create a region with the same area as another region.
+   */
+  public Region(Region region) {
+    this();
+    set(region);
+  }
+
+  /**
+   * Make this region empty.
+   */
+  public void clear() {
+    count = 0;
+    updateBounds();
+  }
+
+  /**
+   * Set the area of this region to a rectangle.
+   */
+  public void set(int x, int y, int width, int height) {
+    count = 0;
+    if(width > 0 && height > 0) {
+      data[0] = x;
+      data[1] = y;
+      data[2] = x + width;
+      data[3] = y + height;
+      count = 1;
+    }
+    updateBounds();
+  }
+
+  /**
+   * Set the area of this region to the area of another region.
+   */
+  public void set(Region region) {
+    if(region == this) {
+      return;
+    }
+    int length = region.count * 4;
+    if(data.length < length) {
+      data = new int[length];
+    }
+    System.arraycopy(region.data, 0, data, 0, length);
+    count = region.count;
+    updateBounds();
+  }
+
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /**
+   * Get the number of rectangles that make this region.
+   */
+  public int getRectangleCount() {
+    return count;
+  }
+
+  /**
+   * Get the bounds of this region.
+   * @return the bounds, which is an empty rectangle if the region is empty.
+   */
+  public Rectangle getBounds() {
+    return new Rectangle(boundsX1, boundsY1, boundsX2 - boundsX1, boundsY2 - boundsY1);
+  }
+
+  /**
+   * Test whether a rectangle has some area in common with this region.
+   */
+  public boolean intersects(int x, int y, int width, int height) {
+    if(!intersectsBounds(x, y, x + width, y + height) || width <= 0 || height <= 0) {
+      return false;
+    }
+    int x2 = x + width;
+    int y2 = y + height;
+    for(int i=0; i<count; i++) {
+      int index = i * 4;
+      if(data[index + 1] >= y2) {
+        break;
+      }
+      if(data[index] < x2 && data[index + 2] > x && data[index + 3] > y) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Get the rectangles that make this region, which do not overlap.
+   */
+  public Rectangle[] toRectangles() {
+    Rectangle[] rectangles = new Rectangle[count];
+    for(int i=0; i<count; i++) {
+      int index = i * 4;
+      rectangles[i] = new Rectangle(data[index], data[index + 1], data[index + 2] - data[index], data[index + 3] - data[index + 1]);
+    }
+    return rectangles;
+  }
+
+  public void translate(int dx, int dy) {
+    for(int i=count*4-1; i>=0; i-=2) {
+      data[i] += dy;
+      data[i - 1] += dx;
+    }
+    updateBounds();
+  }
+
+  public void union(Rectangle rectangle) {
+    union(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+  }
+
+  public void union(int x, int y, int width, int height) {
+    if(width <= 0 || height <= 0) {
+      return;
+    }
+    if(count == 0 || x <= boundsX1 && y <= boundsY1 && x + width >= boundsX2 && y + height >= boundsY2) {
+      set(x, y, width, height);
+      return;
+    }
+    apply(UNION, getRectangleData(x, y, width, height), 1);
+  }
+
+  public void union(Region region) {
+    if(region.count == 0 || region == this) {
+      return;
+    }
+    if(count == 0) {
+      set(region);
+      return;
+    }
+    apply(UNION, region.data, region.count);
+  }
+
+  public void subtract(Rectangle rectangle) {
+    subtract(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+  }
+
+  public void subtract(int x, int y, int width, int height) {
+    if(width <= 0 || height <= 0 || !intersectsBounds(x, y, x + width, y + height)) {
+      return;
+    }
+    apply(SUBTRACT, getRectangleData(x, y, width, height), 1);
+  }
+
+  public void subtract(Region region) {
+    if(region == this) {
+      clear();
+      return;
+    }
+    if(region.count == 0 || !intersectsBounds(region.boundsX1, region.boundsY1, region.boundsX2, region.boundsY2)) {
+      return;
+    }
+    apply(SUBTRACT, region.data, region.count);
+  }
+
+  public void intersect(Rectangle rectangle) {
+    intersect(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+  }
+
+  public void intersect(int x, int y, int width, int height) {
+    if(count == 0) {
+      return;
+    }
+    if(width <= 0 || height <= 0 || !intersectsBounds(x, y, x + width, y + height)) {
+      clear();
+      return;
+    }
+    if(x <= boundsX1 && y <= boundsY1 && x + width >= boundsX2 && y + height >= boundsY2) {
+      return;
+    }
+    apply(INTERSECT, getRectangleData(x, y, width, height), 1);
+  }
+
+  public void intersect(Region region) {
+    if(count == 0 || region == this) {
+      return;
+    }
+    if(region.count == 0 || !intersectsBounds(region.boundsX1, region.boundsY1, region.boundsX2, region.boundsY2)) {
+      clear();
+      return;
+    }
+    apply(INTERSECT, region.data, region.count);
+  }
+
+  private boolean intersectsBounds(int x1, int y1, int x2, int y2) {
+    return count > 0 && x1 < boundsX2 && x2 > boundsX1 && y1 < boundsY2 && y2 > boundsY1;
+  }
+
+  private int[] getRectangleData(int x, int y, int width, int height) {
+    rectangleData[0] = x;
+    rectangleData[1] = y;
+    rectangleData[2] = x + width;
+    rectangleData[3] = y + height;
+    return rectangleData;
+  }
+
+  private void updateBounds() {
+    if(count == 0) {
+      boundsX1 = 0;
+      boundsY1 = 0;
+      boundsX2 = 0;
+      boundsY2 = 0;
+      return;
+    }
+    boundsY1 = data[1];
+    boundsY2 = data[count * 4 - 1];
+    boundsX1 = Integer.MAX_VALUE;
+    boundsX2 = Integer.MIN_VALUE;
+    for(int i=0; i<count; i++) {
+      int index = i * 4;
+      boundsX1 = Math.min(boundsX1, data[index]);
+      boundsX2 = Math.max(boundsX2, data[index + 2]);
+    }
+  }
+
+  /**
+   * Get the index of the first rectangle whose bottom is below a vertical position, or the count if there is none.
+   */
+  private static int getFirstIndexEndingAfter(int[] data, int count, int y) {
+    int low = 0;
+    int high = count;
+    while(low < high) {
+      int middle = (low + high) >>> 1;
+      if(data[middle * 4 + 3] <= y) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Get the index of the first rectangle whose top is at or below a vertical position, or the count if there is none.
+   */
+  private static int getFirstIndexStartingFrom(int[] data, int count, int y) {
+    int low = 0;
+    int high = count;
+    while(low < high) {
+      int middle = (low + high) >>> 1;
+      if(data[middle * 4 + 1] < y) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private static int getBandStart(int[] data, int index) {
+    int y1 = data[index * 4 + 1];
+    while(index > 0 && data[(index - 1) * 4 + 1] == y1) {
+      index--;
+    }
+    return index;
+  }
+
+  private static int getBandEnd(int[] data, int count, int index) {
+    int y1 = data[index * 4 + 1];
+    int end = index + 1;
+    while(end < count && data[end * 4 + 1] == y1) {
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * Combine the bands of this region with the bands of the other rectangles, one vertical interval at a time: an interval is either covered by a band of only one side, or by a band of each side whose rectangles are then merged.
+   */
+  private void apply(int operation, int[] otherData, int otherCount) {
+    int[] thisData = data;
+    int thisCount = count;
+    // The bands above and below the other rectangles are not affected by them: they are copied as a whole, or dropped by an intersection.
+    int start = getFirstIndexEndingAfter(thisData, thisCount, otherData[1]);
+    int end = getFirstIndexStartingFrom(thisData, thisCount, otherData[otherCount * 4 - 1]);
+    resultCount = 0;
+    previousBandIndex = -1;
+    if(operation != INTERSECT && start > 0) {
+      ensureResultCapacity(start);
+      System.arraycopy(thisData, 0, result, 0, start * 4);
+      resultCount = start;
+      previousBandIndex = getBandStart(thisData, start - 1);
+    }
+    int i = start;
+    int j = 0;
+    int yBottom = Integer.MIN_VALUE;
+    while(i < end && j < otherCount) {
+      int iEnd = getBandEnd(thisData, thisCount, i);
+      int jEnd = getBandEnd(otherData, otherCount, j);
+      int thisTop = Math.max(thisData[i * 4 + 1], yBottom);
+      int thisBottom = thisData[i * 4 + 3];
+      int otherTop = Math.max(otherData[j * 4 + 1], yBottom);
+      int otherBottom = otherData[j * 4 + 3];
+      int bottom;
+      if(thisTop < otherTop) {
+        bottom = Math.min(thisBottom, otherTop);
+        if(operation != INTERSECT) {
+          addBand(thisData, i, iEnd, thisTop, bottom);
+        }
+      } else if(otherTop < thisTop) {
+        bottom = Math.min(otherBottom, thisTop);
+        if(operation == UNION) {
+          addBand(otherData, j, jEnd, otherTop, bottom);
+        }
+      } else {
+        bottom = Math.min(thisBottom, otherBottom);
+        addMergedBand(operation, thisData, i, iEnd, otherData, j, jEnd, thisTop, bottom);
+      }
+      yBottom = bottom;
+      if(thisBottom == bottom) {
+        i = iEnd;
+      }
+      if(otherBottom == bottom) {
+        j = jEnd;
+      }
+    }
+    if(operation != INTERSECT) {
+      while(i < end) {
+        int iEnd = getBandEnd(thisData, thisCount, i);
+        addBand(thisData, i, iEnd, Math.max(thisData[i * 4 + 1], yBottom), thisData[i * 4 + 3]);
+        i = iEnd;
+      }
+    }
+    if(operation == UNION) {
+      while(j < otherCount) {
+        int jEnd = getBandEnd(otherData, otherCount, j);
+        addBand(otherData, j, jEnd, Math.max(otherData[j * 4 + 1], yBottom), otherData[j * 4 + 3]);
+        j = jEnd;
+      }
+    }
+    if(operation != INTERSECT && end < thisCount) {
+      // The first band may be merged with the last band of the result, but not the next ones which were already merged if they could.
+      int iEnd = getBandEnd(thisData, thisCount, end);
+      addBand(thisData, end, iEnd, thisData[end * 4 + 1], thisData[end * 4 + 3]);
+      int length = thisCount - iEnd;
+      ensureResultCapacity(resultCount + length);
+      System.arraycopy(thisData, iEnd * 4, result, resultCount * 4, length * 4);
+      resultCount += length;
+    }
+    data = result;
+    count = resultCount;
+    result = thisData;
+    updateBounds();
+  }
+
+  private void ensureResultCapacity(int rectangleCount) {
+    if(rectangleCount * 4 > result.length) {
+      result = Arrays.copyOf(result, Math.max(result.length * 2, rectangleCount * 4));
+    }
+  }
+
+  private void addRectangle(int x1, int y1, int x2, int y2) {
+    ensureResultCapacity(resultCount + 1);
+    int index = resultCount * 4;
+    result[index] = x1;
+    result[index + 1] = y1;
+    result[index + 2] = x2;
+    result[index + 3] = y2;
+    resultCount++;
+  }
+
+  private void addBand(int[] sourceData, int start, int end, int top, int bottom) {
+    int bandIndex = resultCount;
+    for(int i=start; i<end; i++) {
+      addRectangle(sourceData[i * 4], top, sourceData[i * 4 + 2], bottom);
+    }
+    closeBand(bandIndex);
+  }
+
+  private void addMergedBand(int operation, int[] data1, int i, int iEnd, int[] data2, int j, int jEnd, int top, int bottom) {
+    int bandIndex = resultCount;
+    switch(operation) {
+      case UNION:
+        while(i < iEnd || j < jEnd) {
+          int x1;
+          int x2;
+          if(j >= jEnd || i < iEnd && data1[i * 4] <= data2[j * 4]) {
+            x1 = data1[i * 4];
+            x2 = data1[i * 4 + 2];
+            i++;
+          } else {
+            x1 = data2[j * 4];
+            x2 = data2[j * 4 + 2];
+            j++;
+          }
+          int lastX2Index = resultCount * 4 - 2;
+          if(resultCount > bandIndex && result[lastX2Index] >= x1) {
+            result[lastX2Index] = Math.max(result[lastX2Index], x2);
+          } else {
+            addRectangle(x1, top, x2, bottom);
+          }
+        }
+        break;
+      case SUBTRACT:
+        for(; i<iEnd; i++) {
+          int x1 = data1[i * 4];
+          int x2 = data1[i * 4 + 2];
+          while(j < jEnd && data2[j * 4 + 2] <= x1) {
+            j++;
+          }
+          // An other rectangle that goes past this rectangle may cover the next one too, so it is kept.
+          while(j < jEnd && data2[j * 4] < x2) {
+            if(data2[j * 4] > x1) {
+              addRectangle(x1, top, data2[j * 4], bottom);
+            }
+            x1 = data2[j * 4 + 2];
+            if(x1 >= x2) {
+              break;
+            }
+            j++;
+          }
+          if(x1 < x2) {
+            addRectangle(x1, top, x2, bottom);
+          }
+        }
+        break;
+      case INTERSECT:
+        while(i < iEnd && j < jEnd) {
+          int x1 = Math.max(data1[i * 4], data2[j * 4]);
+          int x2 = Math.min(data1[i * 4 + 2], data2[j * 4 + 2]);
+          if(x1 < x2) {
+            addRectangle(x1, top, x2, bottom);
+          }
+          int x2Data1 = data1[i * 4 + 2];
+          int x2Data2 = data2[j * 4 + 2];
+          if(x2Data1 <= x2Data2) {
+            i++;
+          }
+          if(x2Data2 <= x2Data1) {
+            j++;
+          }
+        }
+        break;
+    }
+    closeBand(bandIndex);
+  }
+
+  /**
+   * Merge the band that starts at the given index with the previous band if they are adjacent and have the same rectangles.
+   */
+  private void closeBand(int bandIndex) {
+    int bandCount = resultCount - bandIndex;
+    if(bandCount == 0) {
+      return;
+    }
+    if(previousBandIndex >= 0 && bandIndex - previousBandIndex == bandCount && result[previousBandIndex * 4 + 3] == result[bandIndex * 4 + 1]) {
+      boolean isSame = true;
+      for(int k=0; k<bandCount && isSame; k++) {
+        int previousIndex = (previousBandIndex + k) * 4;
+        int index = (bandIndex + k) * 4;
+        isSame = result[previousIndex] == result[index] && result[previousIndex + 2] == result[index + 2];
+      }
+      if(isSame) {
+        int bottom = result[bandIndex * 4 + 3];
+        for(int k=previousBandIndex; k<bandIndex; k++) {
+          result[k * 4 + 3] = bottom;
+        }
+        resultCount = bandIndex;
+        return;
+      }
+    }
+    previousBandIndex = bandIndex;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if(!(o instanceof Region)) {
+      return false;
+    }
+    Region region = (Region)o;
+    if(count != region.count) {
+      return false;
+    }
+    for(int i=count*4-1; i>=0; i--) {
+      if(data[i] != region.data[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hashCode = count;
+    for(int i=count*4-1; i>=0; i--) {
+      hashCode = hashCode * 31 + data[i];
+    }
+    return hashCode;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + Arrays.toString(toRectangles());
+  }
+
+}
@@ -11,12 +11,12 @@ import java.awt.Component;
 import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.GraphicsConfiguration;
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Window;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import javax.swing.JComponent;
@@ -48,155 +48,53 @@ public class UIUtils {
    * Subtracts the area specified by the rectangles in rects2 from each of the areas specified by the rectangles in rects1.
    * @param rects1 The rectangles to substract from.
    * @param rects2 The rectangles to substract.
-   * @return an array of rectangles, which may not have the same number of rectangles as in rects1.
+   * @return an array of rectangles that do not overlap, which may not have the same number of rectangles as in rects1.
    */
   public static Rectangle[] subtract(Rectangle[] rects1, Rectangle[] rects2) {
-    List<Rectangle> rectangleList = new ArrayList<Rectangle>(Arrays.asList(rects1));
-    List<Rectangle> newRectangleList = new ArrayList<Rectangle>();
-    for(int i=0; i<rects2.length; i++) {
-      Rectangle r2 = rects2[i];
-      for(Rectangle r1: rectangleList) {
-        if(r1.intersects(r2)) {
-          subtract(r1, r2, newRectangleList);
-        } else {
-          newRectangleList.add((Rectangle)r1.clone());
-        }
-      }
-      rectangleList.clear();
-      if(newRectangleList.isEmpty()) {
-        break;
-      }
-      rectangleList.addAll(newRectangleList);
-      newRectangleList.clear();
+    Region region = new Region(rects1);
+    for(int i=0; i<rects2.length && !region.isEmpty(); i++) {
+      region.subtract(rects2[i]);
     }
-    return rectangleList.toArray(new Rectangle[0]);
+    return region.toRectangles();
   }
 
   /**
-   * Subtracts the area of r2 from r1, appending the new rectangle(s) to the
-   * list of results.
+   * Get the area that is not covered by components obeying the condition imposed by the visitor. Usually, the filter focuses on all components, or opaque components.
+   * @param component the component for which to find the visible areas.
+   * @param filter the filter to consider when determining if an area is hidden.
+   * @return an array of rectangles specify the visible area.
    */
-  private static void subtract(Rectangle r1, Rectangle r2, List<Rectangle> resultList) {
-    // discover the edges of r1 that are covered by r2
-    boolean left = r2.x <= r1.x && r2.x + r2.width > r1.x;
-    boolean right = r2.x < r1.x + r1.width && r2.x + r2.width >= r1.x + r1.width;
-    boolean top = r2.y <= r1.y && r2.y + r2.height > r1.y;
-    boolean bottom = r2.y < r1.y + r1.height && r2.y + r2.height >= r1.y + r1.height;
-    if(left && right && top && bottom) {
-      // r2 fully obscures r1; no results
-    } else if(left && right && top) {
-      // r2 across top edge
-      int y = r2.y + r2.height;
-      int height = r1.y + r1.height - y;
-      resultList.add(new Rectangle(r1.x, y, r1.width, height));
-    } else if(left && right && bottom) {
-      // r2 across bottom edge
-      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
-    } else if(top && bottom && left) {
-      // r2 across left edge
-      int x = r2.x + r2.width;
-      int width = r1.x + r1.width - x;
-      resultList.add(new Rectangle(x, r1.y, width, r1.height));
-    } else if(top && bottom && right) {
-      // r2 across right edge
-      resultList.add(new Rectangle(r1.x, r1.y, r2.x - r1.x, r1.height));
-    } else if(left && top) {
-      // r2 covers top-left corner
-      int x = r2.x + r2.width;
-      int y = r2.y + r2.height;
-      resultList.add(new Rectangle(x, r1.y, r1.x + r1.width - x, y - r1.y));
-      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
-    } else if(left && bottom) {
-      // r2 covers bottom-left corner
-      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
-      int x = r2.x + r2.width;
-      resultList.add(new Rectangle(x, r2.y, r1.x + r1.width - x, r1.y + r1.height - r2.y));
-    } else if(right && top) {
-      // r2 covers top-right corner
-      int y = r2.y + r2.height;
-      resultList.add(new Rectangle(r1.x, r1.y, r2.x - r1.x, y - r1.y));
-      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
-    } else if(right && bottom) {
-      // r2 covers bottom-right corner
-      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
-      resultList.add(new Rectangle(r1.x, r2.y, r2.x - r1.x, r1.y + r1.height - r2.y));
-    } else if(left && right) {
-      // r2 divides r1 into 2 horizontal rectangles
-      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
-      int y = r2.y + r2.height;
-      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
-    } else if(top && bottom) {
-      // r2 divides r1 into 2 vertical rectangles
-      resultList.add(new Rectangle(r1.x, r1.y, r2.x - r1.x, r1.height));
-      int x = r2.x + r2.width;
-      resultList.add(new Rectangle(x, r1.y, r1.x + r1.width - x, r1.height));
-    } else if(left) {
-      // r2 crosses left edge only, dividing r1 into 3 rectangles
-      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
-      int y = r2.y + r2.height;
-      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
-      int x = r2.x + r2.width;
-      resultList.add(new Rectangle(x, r2.y, r1.x + r1.width - x, r2.height));
-    } else if(right) {
-      // r2 crosses right edge only, dividing r1 into 3 rectangles
-      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
-      int y = r2.y + r2.height;
-      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
-      resultList.add(new Rectangle(r1.x, r2.y, r2.x - r1.x, r2.height));
-    } else if(top) {
-      // r2 crosses top edge only, dividing r1 into 3 rectangles
-      resultList.add(new Rectangle(r1.x, r1.y, r2.x - r1.x, r1.height));
-      int x = r2.x + r2.width;
-      resultList.add(new Rectangle(x, r1.y, r1.x + r1.width - x, r1.height));
-      int y = r2.y + r2.height;
-      resultList.add(new Rectangle(r2.x, y, r2.width, r1.y + r1.height - y));
-    } else if(bottom) {
-      // r2 crosses bottom edge only, dividing r1 into 3 rectangles
-      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
-      int height = r1.y + r1.height - r2.y;
-      resultList.add(new Rectangle(r1.x, r2.y, r2.x - r1.x, height));
-      int x = r2.x + r2.width;
-      resultList.add(new Rectangle(x, r2.y, r1.x + r1.width - x, height));
-    } else {
-      // r2 is completely contained within r1, dividing r1 into 4 rectangles
-      resultList.add(new Rectangle(r1.x, r1.y, r1.width, r2.y - r1.y));
-      int y = r2.y + r2.height;
-      resultList.add(new Rectangle(r1.x, y, r1.width, r1.y + r1.height - y));
-      resultList.add(new Rectangle(r1.x, r2.y, r2.x - r1.x, r2.height));
-      int x = r2.x + r2.width;
-      resultList.add(new Rectangle(x, r2.y, r1.x + r1.width - x, r2.height));
-    }
+  public static Rectangle[] getComponentVisibleArea(Component component, Filter<Component> filter) {
+    return getComponentVisibleRegion(component, filter).toRectangles();
   }
 
   /**
-   * Get the area that is not covered by components obeying the condition imposed by the visitor. Usually, the filter focuses on all components, or opaque components.
+   * Get the area that is not covered by components obeying the condition imposed by the visitor, as a region that can be further combined without creating rectangles.
    * @param component the component for which to find the visible areas.
    * @param filter the filter to consider when determining if an area is hidden.
-   * @return an array of rectangles specify the visible area.
+   * @return the region of the visible area, in the coordinates of the component.
    */
-  public static Rectangle[] getComponentVisibleArea(Component component, Filter<Component> filter) {
+  public static Region getComponentVisibleRegion(Component component, Filter<Component> filter) {
     Window windowAncestor = SwingUtilities.getWindowAncestor(component);
     int width = component.getWidth();
     int height = component.getHeight();
     if(windowAncestor == null || !component.isShowing() || width <= 0 || height <= 0) {
-      return new Rectangle[0];
+      return new Region();
     }
-    Rectangle tempRectangle = new Rectangle(0, 0, width, height);
-    Rectangle[] shape = new Rectangle[] {new Rectangle(width, height)};
+    Region shape = new Region(0, 0, width, height);
     if(component instanceof Container) {
       Container container = (Container)component;
-      for(int i=container.getComponentCount()-1; i>=0; i--) {
+      for(int i=container.getComponentCount()-1; i>=0 && !shape.isEmpty(); i--) {
         Component c = container.getComponent(i);
         if(c.isVisible()) {
           switch(filter.accept(c)) {
             case YES: {
-              tempRectangle.setBounds(c.getX(), c.getY(), c.getWidth(), c.getHeight());
-              shape = UIUtils.subtract(shape, tempRectangle);
+              shape.subtract(c.getX(), c.getY(), c.getWidth(), c.getHeight());
               break;
             }
             case TEST_CHILDREN: {
               if(c instanceof Container) {
-                shape = getChildrenVisibleArea(component, filter, shape, (Container)c, null);
+                subtractChildrenArea(component, filter, shape, (Container)c, null);
               }
               break;
             }
@@ -204,7 +102,7 @@ public class UIUtils {
         }
       }
     }
-    if(shape.length == 0) {
+    if(shape.isEmpty()) {
       return shape;
     }
     Component c = component;
@@ -213,20 +111,12 @@ public class UIUtils {
       // I was using parent.getWidth() and parent.getHeight(), but they return wrong value for applet Panel containers.
       // parent.getSize() returns the right value though...
       Dimension parentSize = parent.getSize();
-      tempRectangle.setBounds(0, 0, parentSize.width, parentSize.height);
-      Rectangle parentBounds = SwingUtilities.convertRectangle(parent, tempRectangle, component);
-      List<Rectangle> newRectangleList = new ArrayList<Rectangle>();
-      for(Rectangle rectangle: shape) {
-        Rectangle r = rectangle.intersection(parentBounds);
-        if(!r.isEmpty()) {
-          newRectangleList.add(r);
-        }
-      }
-      shape = newRectangleList.toArray(new Rectangle[0]);
+      Point parentLocation = SwingUtilities.convertPoint(parent, 0, 0, component);
+      shape.intersect(parentLocation.x, parentLocation.y, parentSize.width, parentSize.height);
       if(parent instanceof JComponent && !((JComponent)parent).isOptimizedDrawingEnabled()) {
-        shape = getChildrenVisibleArea(component, filter, shape, parent, c);
+        subtractChildrenArea(component, filter, shape, parent, c);
       }
-      if(shape.length == 0) {
+      if(shape.isEmpty()) {
         return shape;
       }
       c = parent;
@@ -273,7 +163,7 @@ public class UIUtils {
     return TransparencyType.OPAQUE;
   }
 
-  private static Rectangle[] getChildrenVisibleArea(Component component, Filter<Component> filter, Rectangle[] shape, Container parent, Component c) {
+  private static void subtractChildrenArea(Component component, Filter<Component> filter, Region shape, Container parent, Component c) {
     Component[] children;
     if(parent instanceof JLayeredPane) {
       JLayeredPane layeredPane = (JLayeredPane)parent;
@@ -292,8 +182,9 @@ public class UIUtils {
     } else {
       children = parent.getComponents();
     }
-    Rectangle tempRectangle = new Rectangle();
-    for(int i=0; i<children.length; i++) {
+    // The children share the same offset to the component, which is computed once.
+    Point offset = null;
+    for(int i=0; i<children.length && !shape.isEmpty(); i++) {
       Component child = children[i];
       if(child == c) {
         break;
@@ -301,14 +192,15 @@ public class UIUtils {
       if(child.isVisible()) {
         Acceptance accept = filter.accept(child);
         if(accept == Acceptance.YES) {
-          tempRectangle.setBounds(child.getX(), child.getY(), child.getWidth(), child.getHeight());
-          shape = UIUtils.subtract(shape, SwingUtilities.convertRectangle(parent, tempRectangle, component));
+          if(offset == null) {
+            offset = SwingUtilities.convertPoint(parent, 0, 0, component);
+          }
+          shape.subtract(offset.x + child.getX(), offset.y + child.getY(), child.getWidth(), child.getHeight());
         } else if(accept == Acceptance.TEST_CHILDREN && child instanceof Container) {
-          shape = getChildrenVisibleArea(component, filter, shape, (Container)child, null);
+          subtractChildrenArea(component, filter, shape, (Container)child, null);
         }
       }
     }
-    return shape;
   }
 
   /**
@@ -8,7 +8,6 @@
 package chrriis.dj.nativeswing.common;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -16,18 +15,39 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import chrriis.dj.nativeswing.NSSystemProperty;
 
@@ -164,56 +184,303 @@ public class WebServer {
     public long getLastModified() {
       return System.currentTimeMillis();
     }
+    /**
+     * Get the local file that has the content, which lets the web server send it without copying it in memory.
+     * @return the file, or null to use the input stream.
+     */
+    public File getLocalFile() {
+      return null;
+    }
+    /**
+     * Get the entity tag of the content, which lets clients revalidate the content they already have instead of downloading it again.
+     * @return the entity tag, including its quotes, or null if the content cannot be validated.
+     */
+    public String getETag() {
+      return null;
+    }
 
   }
 
-  private static class WebServerConnectionThread extends Thread {
+  private static final String CRLF = "\r\n";
 
-    private static int threadInitNumber;
-    private static Semaphore semaphore = new Semaphore(10);
+  /**
+   * A connection to the web server. Its requests are read by the selector thread and processed by a worker thread. When the connection is kept alive, it goes back to the selector thread to wait for the next request.
+   */
+  private static class WebServerConnection implements Runnable {
 
-    private static synchronized int nextThreadNumber() {
-      return threadInitNumber++;
-    }
+    private static final long WRITE_TIMEOUT = 10000;
+    /** The maximum length of the header of a request, beyond which the request is rejected rather than buffered. */
+    private static final int MAX_HEADER_LENGTH = 64 * 1024;
+    /** The maximum length of the content of a POST request. */
+    private static final int MAX_CONTENT_LENGTH = 16 * 1024 * 1024;
 
-    private Socket socket;
+    private WebServer webServer;
+    private SocketChannel socketChannel;
+    private SelectionKey selectionKey;
+    private byte[] requestData = new byte[1024];
+    private int requestDataLength;
+    private int requestLength;
+    /** The index where the search of the end of the header resumes when more data is read. */
+    private int headerScanIndex;
+    /** The length of the header of the current request, or -1 if its end was not read yet. */
+    private int headerLength = -1;
+    private int contentLength;
+    /** The code of the error to reply instead of processing the request, or 0. */
+    private int errorCode;
+    private boolean isEndOfStream;
+    private volatile long lastActivityTime;
+    private Selector writeSelector;
 
-    public WebServerConnectionThread(Socket socket) {
-      super("WebServer Connection-" + nextThreadNumber());
-      this.socket = socket;
-      setDaemon(true);
+    WebServerConnection(WebServer webServer, SocketChannel socketChannel) {
+      this.webServer = webServer;
+      this.socketChannel = socketChannel;
+      lastActivityTime = System.currentTimeMillis();
     }
 
-    private static final String LS = Utils.LINE_SEPARATOR;
+    /**
+     * Read the bytes that are available without blocking. This is called by the selector thread.
+     */
+    void readAvailableBytes(ByteBuffer buffer) throws IOException {
+      lastActivityTime = System.currentTimeMillis();
+      // The data is not read beyond the limits, which isRequestComplete() then reports.
+      while(requestDataLength <= (headerLength == -1? MAX_HEADER_LENGTH: headerLength + MAX_CONTENT_LENGTH)) {
+        buffer.clear();
+        int n = socketChannel.read(buffer);
+        if(n <= 0) {
+          if(n == -1) {
+            isEndOfStream = true;
+          }
+          return;
+        }
+        if(requestDataLength + n > requestData.length) {
+          byte[] newRequestData = new byte[Math.max(requestData.length * 2, requestDataLength + n)];
+          System.arraycopy(requestData, 0, newRequestData, 0, requestDataLength);
+          requestData = newRequestData;
+        }
+        System.arraycopy(buffer.array(), 0, requestData, requestDataLength, n);
+        requestDataLength += n;
+      }
+    }
 
-    static void writeHTTPHeaders(BufferedOutputStream out, int code, String contentType, long contentLength, long lastModified) {
-      StringBuilder sb = new StringBuilder();
-      sb.append("HTTP/1.0 " + code + " OK" + LS);
-      sb.append("Content-Type: " + contentType + LS);
-      sb.append("Server: WebServer/1.0" + LS);
-      sb.append("Date: " + new Date() + LS);
-//      sb.append("Expires: " + new Date() + LS);
-//      sb.append("Last-modified: " + new Date(lastModified) + LS);
-      if(contentLength != -1) {
-        sb.append("Content-Length: " + contentLength + LS);
+    /**
+     * Indicate whether the data that was read contains a complete request, and compute its length.
+     */
+    boolean isRequestComplete() throws IOException {
+      if(headerLength == -1) {
+        // The data that was already scanned is not scanned again.
+        for(int i=headerScanIndex; i<requestDataLength - 1; i++) {
+          if(requestData[i] == '\n') {
+            if(requestData[i + 1] == '\n') {
+              headerLength = i + 2;
+              break;
+            }
+            if(i + 2 < requestDataLength && requestData[i + 1] == '\r' && requestData[i + 2] == '\n') {
+              headerLength = i + 3;
+              break;
+            }
+          }
+        }
+        if(headerLength == -1) {
+          if(requestDataLength > MAX_HEADER_LENGTH) {
+            return setRequestError(431);
+          }
+          // The last bytes may start the end of the header, so they are scanned again.
+          headerScanIndex = Math.max(0, requestDataLength - 2);
+          return false;
+        }
+        if(headerLength > MAX_HEADER_LENGTH) {
+          return setRequestError(431);
+        }
+        contentLength = 0;
+        String header = new String(requestData, 0, headerLength, "UTF-8");
+        if(header.startsWith("POST ")) {
+          contentLength = -1;
+          for(String line: header.split("\r?\n")) {
+            if(line.toLowerCase(Locale.ENGLISH).startsWith("content-length:")) {
+              long length = Long.parseLong(line.substring("content-length:".length()).trim());
+              if(length > MAX_CONTENT_LENGTH) {
+                return setRequestError(413);
+              }
+              contentLength = (int)length;
+              break;
+            }
+          }
+        }
+      }
+      if(contentLength < 0) {
+        if(requestDataLength - headerLength > MAX_CONTENT_LENGTH) {
+          return setRequestError(413);
+        }
+        // Without a length, the data ends with the stream.
+        if(isEndOfStream) {
+          requestLength = requestDataLength;
+          return true;
+        }
+        return false;
       }
-      sb.append(LS);
+      if(requestDataLength - headerLength < contentLength) {
+        return false;
+      }
+      requestLength = headerLength + contentLength;
+      return true;
+    }
+
+    /**
+     * Mark the request as one that is replied with an error, after which the connection is closed.
+     * @return true, as the request is then complete.
+     */
+    private boolean setRequestError(int errorCode) {
+      this.errorCode = errorCode;
+      requestLength = requestDataLength;
+      return true;
+    }
+
+    public void run() {
+      boolean isKeepingAlive = false;
       try {
-        out.write(sb.toString().getBytes("UTF-8"));
-      } catch(IOException e) {
-        e.printStackTrace();
+        if(errorCode != 0) {
+          writeHTTPError(new ChannelOutputStream(), errorCode, errorCode == 431? "Request Header Fields Too Large.": "Payload Too Large.", false);
+        } else {
+          byte[] request = new byte[requestLength];
+          System.arraycopy(requestData, 0, request, 0, requestLength);
+          // Pipelined requests may follow.
+          System.arraycopy(requestData, requestLength, requestData, 0, requestDataLength - requestLength);
+          requestDataLength -= requestLength;
+          headerScanIndex = 0;
+          headerLength = -1;
+          isKeepingAlive = processRequest(request) && !isEndOfStream;
+        }
+      } catch(Exception e) {
+//        e.printStackTrace();
+      }
+      if(isKeepingAlive) {
+        webServer.resumeConnection(this);
+      } else {
+        close();
       }
     }
 
-    static void writeHTTPError(BufferedOutputStream out, int code, String message) {
-      writeHTTPHeaders(out, code, "text/html", message.length(), System.currentTimeMillis());
+    void close() {
       try {
-        out.write(message.getBytes("UTF-8"));
-        out.flush();
-        out.close();
+        socketChannel.close();
       } catch(IOException e) {
-//        e.printStackTrace();
       }
+      if(writeSelector != null) {
+        try {
+          writeSelector.close();
+        } catch(IOException e) {
+        }
+      }
+    }
+
+    private void waitForWritable() throws IOException {
+      if(writeSelector == null) {
+        writeSelector = Selector.open();
+        socketChannel.register(writeSelector, SelectionKey.OP_WRITE);
+      }
+      if(writeSelector.select(WRITE_TIMEOUT) == 0) {
+        throw new IOException("Timeout while writing to the connection.");
+      }
+      writeSelector.selectedKeys().clear();
+    }
+
+    /**
+     * A buffered output stream to the non-blocking channel, which also allows to send file content without copying it.
+     */
+    private class ChannelOutputStream extends OutputStream {
+
+      private ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+      @Override
+      public void write(int b) throws IOException {
+        if(!buffer.hasRemaining()) {
+          flush();
+        }
+        buffer.put((byte)b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        while(len > 0) {
+          if(!buffer.hasRemaining()) {
+            flush();
+          }
+          int count = Math.min(len, buffer.remaining());
+          buffer.put(b, off, count);
+          off += count;
+          len -= count;
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+          if(socketChannel.write(buffer) == 0) {
+            waitForWritable();
+          }
+        }
+        buffer.clear();
+      }
+
+      /**
+       * Send the content of a file, which is done by the system without copying it to the Java heap when possible.
+       */
+      public void transferFrom(FileChannel fileChannel, long count) throws IOException {
+        flush();
+        for(long position = 0; position < count; ) {
+          long n = fileChannel.transferTo(position, count - position, socketChannel);
+          if(n > 0) {
+            position += n;
+          } else if(position >= fileChannel.size()) {
+            throw new IOException("The file was truncated.");
+          } else {
+            waitForWritable();
+          }
+        }
+      }
+
+    }
+
+    private static DateFormat createHTTPDateFormat() {
+      DateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+      dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+      return dateFormat;
+    }
+
+    /**
+     * Write the headers of a response.
+     * @param eTag the entity tag of the content, or null if the content cannot be validated, in which case the last modification time is not sent either.
+     */
+    static void writeHTTPHeaders(OutputStream out, int code, String contentType, long contentLength, long lastModified, String eTag, boolean isKeepingAlive, boolean isChunked) throws IOException {
+      DateFormat dateFormat = createHTTPDateFormat();
+      StringBuilder sb = new StringBuilder();
+      sb.append("HTTP/1.1 " + code + " " + (code == 200? "OK": code == 304? "Not Modified": code == 404? "Not Found": code == 413? "Payload Too Large": code == 431? "Request Header Fields Too Large": "Internal Server Error") + CRLF);
+      if(contentType != null) {
+        sb.append("Content-Type: " + contentType + CRLF);
+      }
+      sb.append("Server: WebServer/1.1" + CRLF);
+      sb.append("Date: " + dateFormat.format(new Date()) + CRLF);
+//      sb.append("Expires: " + dateFormat.format(new Date()) + CRLF);
+      if(eTag != null) {
+        sb.append("ETag: " + eTag + CRLF);
+        sb.append("Last-Modified: " + dateFormat.format(new Date(lastModified)) + CRLF);
+      }
+      if(contentLength != -1) {
+        sb.append("Content-Length: " + contentLength + CRLF);
+      } else if(isChunked) {
+        sb.append("Transfer-Encoding: chunked" + CRLF);
+      }
+      sb.append("Connection: " + (isKeepingAlive? "keep-alive": "close") + CRLF);
+      sb.append(CRLF);
+      out.write(sb.toString().getBytes("UTF-8"));
+    }
+
+    static void writeHTTPError(OutputStream out, int code, String message, boolean isKeepingAlive) throws IOException {
+      byte[] bytes = message.getBytes("UTF-8");
+      writeHTTPHeaders(out, code, "text/html", bytes.length, System.currentTimeMillis(), null, isKeepingAlive, false);
+      out.write(bytes);
+      out.flush();
     }
 
     private static class HTTPInputStream extends InputStream {
@@ -304,180 +571,291 @@ public class WebServer {
       }
     }
 
-    @Override
-    public void run() {
-      try {
-        HTTPInputStream in = new HTTPInputStream(new BufferedInputStream(socket.getInputStream()));
-        BufferedOutputStream out = new BufferedOutputStream(socket.getOutputStream());
+    private static String getHeader(Map<String, String> headerMap, String name) {
+      for(Map.Entry<String, String> entry: headerMap.entrySet()) {
+        if(name.equalsIgnoreCase(entry.getKey())) {
+          return entry.getValue();
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Indicate whether the client has the current version of the content, following the conditional headers of the request.
+     */
+    private static boolean isNotModified(Map<String, String> headerMap, String eTag, long lastModified) {
+      String ifNoneMatch = getHeader(headerMap, "If-None-Match");
+      if(ifNoneMatch != null) {
+        // When present, entity tags take precedence over dates.
+        for(String tag: ifNoneMatch.split(",")) {
+          tag = tag.trim();
+          if(tag.startsWith("W/")) {
+            tag = tag.substring("W/".length());
+          }
+          if("*".equals(tag) || eTag.equals(tag)) {
+            return true;
+          }
+        }
+        return false;
+      }
+      String ifModifiedSince = getHeader(headerMap, "If-Modified-Since");
+      if(ifModifiedSince != null) {
         try {
-          String request = in.readAsciiLine();
-          if(request == null || !(request.endsWith(" HTTP/1.0") || request.endsWith("HTTP/1.1"))) {
-            writeHTTPError(out, 500, "Invalid Method.");
-            return;
-          }
-          boolean isPostMethod = false;
-          if(request.startsWith("POST ")) {
-            isPostMethod = true;
-          } else if(!request.startsWith("GET ")) {
-            writeHTTPError(out, 500, "Invalid Method.");
-            return;
-          }
-          String resourcePath = request.substring((isPostMethod? "POST ": "GET ").length(), request.length() - " HTTP/1.0".length());
-          Map<String, String> headerMap = new HashMap<String, String>();
-          for(String header; (header = in.readAsciiLine()).length() > 0; ) {
-            int index = header.indexOf(": ");
-            if(index > 0) {
-              headerMap.put(header.substring(0, index), header.substring(index + ": ".length()));
+          // HTTP dates have a precision of one second.
+          return lastModified / 1000 <= createHTTPDateFormat().parse(ifModifiedSince).getTime() / 1000;
+        } catch(ParseException e) {
+        }
+      }
+      return false;
+    }
+
+    private static void writeHTTPNotModified(ChannelOutputStream out, long lastModified, String eTag, boolean isKeepingAlive) throws IOException {
+      writeHTTPHeaders(out, 304, null, -1, lastModified, eTag, isKeepingAlive, false);
+      out.flush();
+    }
+
+    /**
+     * Process a request and write the response.
+     * @return true if the connection can be kept alive for the next request.
+     */
+    private boolean processRequest(byte[] requestBytes) throws IOException {
+      HTTPInputStream in = new HTTPInputStream(new ByteArrayInputStream(requestBytes));
+      ChannelOutputStream out = new ChannelOutputStream();
+      String request = in.readAsciiLine();
+      if(request == null || !(request.endsWith(" HTTP/1.0") || request.endsWith("HTTP/1.1"))) {
+        writeHTTPError(out, 500, "Invalid Method.", false);
+        return false;
+      }
+      boolean isHTTP11 = request.endsWith("HTTP/1.1");
+      boolean isPostMethod = false;
+      if(request.startsWith("POST ")) {
+        isPostMethod = true;
+      } else if(!request.startsWith("GET ")) {
+        writeHTTPError(out, 500, "Invalid Method.", false);
+        return false;
+      }
+      String resourcePath = request.substring((isPostMethod? "POST ": "GET ").length(), request.length() - " HTTP/1.0".length());
+      Map<String, String> headerMap = new HashMap<String, String>();
+      for(String header; (header = in.readAsciiLine()).length() > 0; ) {
+        int index = header.indexOf(": ");
+        if(index > 0) {
+          headerMap.put(header.substring(0, index), header.substring(index + ": ".length()));
+        }
+      }
+      HTTPRequest httpRequest = new HTTPRequest(resourcePath, headerMap);
+      httpRequest.setPostMethod(isPostMethod);
+      if(isPostMethod) {
+        HTTPData[] httpDataArray;
+        String contentType = headerMap.get("Content-Type");
+        String contentLengthString = headerMap.get("Content-Length");
+        int contentLength = contentLengthString == null? -1: Integer.parseInt(contentLengthString);
+        if(contentType != null && contentType.startsWith("multipart/")) {
+          byte[] dataBytes;
+          if(contentLength > 0) {
+            dataBytes = new byte[contentLength];
+            in.read(dataBytes);
+          } else {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] bytes = new byte[1024];
+            for(int i; (i=in.read(bytes)) != -1; baos.write(bytes, 0, i)) {
             }
+            dataBytes = baos.toByteArray();
           }
-          HTTPRequest httpRequest = new HTTPRequest(resourcePath, headerMap);
-          httpRequest.setPostMethod(isPostMethod);
-          if(isPostMethod) {
-            HTTPData[] httpDataArray;
-            String contentType = headerMap.get("Content-Type");
-            String contentLengthString = headerMap.get("Content-Length");
-            int contentLength = contentLengthString == null? -1: Integer.parseInt(contentLengthString);
-            if(contentType != null && contentType.startsWith("multipart/")) {
-              byte[] dataBytes;
-              if(contentLength > 0) {
-                dataBytes = new byte[contentLength];
-                in.read(dataBytes);
-              } else {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                byte[] bytes = new byte[1024];
-                for(int i; (i=in.read(bytes)) != -1; baos.write(bytes, 0, i)) {
-                }
-                dataBytes = baos.toByteArray();
-              }
-              String boundary = "--" + contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
-              byte[] boundaryBytes = boundary.getBytes("UTF-8");
-              List<Integer> indexList = new ArrayList<Integer>();
-              for(int i=0; i<dataBytes.length - boundaryBytes.length; i++) {
-                boolean isFound = true;
-                for(int j=0; j<boundaryBytes.length; j++) {
-                  if(dataBytes[i + j] != boundaryBytes[j]) {
-                    isFound = false;
-                    break;
-                  }
-                }
-                if(isFound) {
-                  indexList.add(i);
-                  i += boundaryBytes.length;
-                }
-              }
-              httpDataArray = new HTTPData[indexList.size() - 1];
-              for(int i=0; i<httpDataArray.length; i++) {
-                HTTPData httpData = new HTTPData();
-                httpDataArray[i] = httpData;
-                int start = indexList.get(i);
-                ByteArrayInputStream bais = new ByteArrayInputStream(dataBytes, start, indexList.get(i + 1) - start - in.getLineSeparator().length());
-                HTTPInputStream din = new HTTPInputStream(bais);
-                din.readAsciiLine();
-                Map<String, String> dataHeaderMap = httpData.getHeaderMap();
-                for(String header; (header = din.readAsciiLine()).length() > 0; ) {
-                  String key = header.substring(header.indexOf(": "));
-                  String value = header.substring(key.length() + ": ".length());
-                  dataHeaderMap.put(key, value);
-                }
-                ByteArrayOutputStream aos = new ByteArrayOutputStream();
-                for(int n; (n=din.read()) != -1; aos.write(n)) {
-                }
-                httpData.setBytes(aos.toByteArray());
-              }
-            } else {
-              InputStreamReader reader = new InputStreamReader(in, "UTF-8");
-              String dataContent;
-              if(contentLength > 0) {
-                char[] chars = new char[contentLength];
-                int offset = 0;
-                while(chars.length > offset) {
-                  int n = reader.read(chars, offset, chars.length - offset);
-                  offset = n == -1? chars.length: offset + n;
-                }
-                dataContent = new String(chars);
-              } else {
-                StringBuilder sb = new StringBuilder();
-                char[] chars = new char[1024];
-                for(int i; (i=reader.read(chars)) != -1; sb.append(chars, 0, i)) {
-                }
-                dataContent = sb.toString();
-              }
-              HTTPData httpData = new HTTPData();
-              Map<String, String> dataHeaderMap = httpData.getHeaderMap();
-              for(String content: dataContent.split("&")) {
-                int eqIndex = content.indexOf('=');
-                if(eqIndex > 0) {
-                  String key = content.substring(0, eqIndex);
-                  String value = Utils.decodeURL(content.substring(eqIndex + 1));
-                  dataHeaderMap.put(key, value);
-                } else {
-                  dataHeaderMap.put(content, "");
-                }
+          String boundary = "--" + contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+          byte[] boundaryBytes = boundary.getBytes("UTF-8");
+          List<Integer> indexList = new ArrayList<Integer>();
+          for(int i=0; i<dataBytes.length - boundaryBytes.length; i++) {
+            boolean isFound = true;
+            for(int j=0; j<boundaryBytes.length; j++) {
+              if(dataBytes[i + j] != boundaryBytes[j]) {
+                isFound = false;
+                break;
               }
-              httpDataArray = new HTTPData[] {httpData};
             }
-            httpRequest.setHTTPPostDataArray(httpDataArray);
-          }
-          WebServerContent webServerContent = getWebServerContent(httpRequest);
-          InputStream resourceStream_ = null;
-          if(webServerContent != null) {
-            try {
-              resourceStream_ = webServerContent.getInputStream();
-            } catch(Exception e) {
-              e.printStackTrace();
+            if(isFound) {
+              indexList.add(i);
+              i += boundaryBytes.length;
             }
           }
-          boolean isPrintRequestsDebug = Boolean.parseBoolean(NSSystemProperty.WEBSERVER_DEBUG_PRINTREQUESTS.get());
-          String printDataProperty = NSSystemProperty.WEBSERVER_DEBUG_PRINTDATA.get();
-          boolean isPrintDataDebug = false;
-          long printDataCount = -1;
-          if(printDataProperty != null) {
-            try {
-              printDataCount = Long.parseLong(printDataProperty);
-              isPrintDataDebug = true;
-            } catch(Exception e) {
-              isPrintDataDebug = Boolean.parseBoolean(printDataProperty);
-              printDataCount = Integer.MAX_VALUE;
+          httpDataArray = new HTTPData[indexList.size() - 1];
+          for(int i=0; i<httpDataArray.length; i++) {
+            HTTPData httpData = new HTTPData();
+            httpDataArray[i] = httpData;
+            int start = indexList.get(i);
+            ByteArrayInputStream bais = new ByteArrayInputStream(dataBytes, start, indexList.get(i + 1) - start - in.getLineSeparator().length());
+            HTTPInputStream din = new HTTPInputStream(bais);
+            din.readAsciiLine();
+            Map<String, String> dataHeaderMap = httpData.getHeaderMap();
+            for(String header; (header = din.readAsciiLine()).length() > 0; ) {
+              String key = header.substring(header.indexOf(": "));
+              String value = header.substring(key.length() + ": ".length());
+              dataHeaderMap.put(key, value);
+            }
+            ByteArrayOutputStream aos = new ByteArrayOutputStream();
+            for(int n; (n=din.read()) != -1; aos.write(n)) {
             }
+            httpData.setBytes(aos.toByteArray());
           }
-          if(resourceStream_ == null) {
-            if(isPrintRequestsDebug) {
-              System.err.println("Web Server " + (isPostMethod? "POST": "GET") + ": " + resourcePath + " -> 404 (not found)");
+        } else {
+          InputStreamReader reader = new InputStreamReader(in, "UTF-8");
+          String dataContent;
+          if(contentLength > 0) {
+            char[] chars = new char[contentLength];
+            int offset = 0;
+            while(chars.length > offset) {
+              int n = reader.read(chars, offset, chars.length - offset);
+              offset = n == -1? chars.length: offset + n;
             }
-            writeHTTPError(out, 404, "File Not Found.");
-            return;
-          }
-          if(isPrintRequestsDebug || isPrintDataDebug) {
-            System.err.println("Web Server " + (isPostMethod? "POST": "GET") + ": " + resourcePath + " -> 200 (OK)");
-          }
-          BufferedInputStream resourceStream = new BufferedInputStream(resourceStream_);
-          writeHTTPHeaders(out, 200, webServerContent.getContentType(), webServerContent.getContentLength(), webServerContent.getLastModified());
-          byte[] bytes = new byte[4096];
-          for(int i; (i=resourceStream.read(bytes)) != -1; out.write(bytes, 0, i)) {
-            if(isPrintDataDebug && i > 0 && printDataCount > 0) {
-              System.err.print(new String(bytes, 0, (int)Math.min(i, printDataCount), "UTF-8"));
-              printDataCount -= i;
+            dataContent = new String(chars);
+          } else {
+            StringBuilder sb = new StringBuilder();
+            char[] chars = new char[1024];
+            for(int i; (i=reader.read(chars)) != -1; sb.append(chars, 0, i)) {
             }
+            dataContent = sb.toString();
           }
-          if(isPrintDataDebug) {
-            System.err.println();
+          HTTPData httpData = new HTTPData();
+          Map<String, String> dataHeaderMap = httpData.getHeaderMap();
+          for(String content: dataContent.split("&")) {
+            int eqIndex = content.indexOf('=');
+            if(eqIndex > 0) {
+              String key = content.substring(0, eqIndex);
+              String value = Utils.decodeURL(content.substring(eqIndex + 1));
+              dataHeaderMap.put(key, value);
+            } else {
+              dataHeaderMap.put(content, "");
+            }
           }
-          try {
-            resourceStream.close();
-          } catch(Exception e) {
-            e.printStackTrace();
+          httpDataArray = new HTTPData[] {httpData};
+        }
+        httpRequest.setHTTPPostDataArray(httpDataArray);
+      }
+      // HTTP/1.1 connections are persistent unless specified otherwise, HTTP/1.0 connections are not unless specified otherwise.
+      String connectionHeader = getHeader(headerMap, "Connection");
+      boolean isKeepingAlive = isHTTP11? !"close".equalsIgnoreCase(connectionHeader): "keep-alive".equalsIgnoreCase(connectionHeader);
+      WebServerContent webServerContent = getWebServerContent(httpRequest);
+      boolean isPrintRequestsDebug = Boolean.parseBoolean(NSSystemProperty.WEBSERVER_DEBUG_PRINTREQUESTS.get());
+      String printDataProperty = NSSystemProperty.WEBSERVER_DEBUG_PRINTDATA.get();
+      boolean isPrintDataDebug = false;
+      long printDataCount = -1;
+      if(printDataProperty != null) {
+        try {
+          printDataCount = Long.parseLong(printDataProperty);
+          isPrintDataDebug = true;
+        } catch(Exception e) {
+          isPrintDataDebug = Boolean.parseBoolean(printDataProperty);
+          printDataCount = Integer.MAX_VALUE;
+        }
+      }
+      File localFile = null;
+      if(webServerContent != null && !isPrintDataDebug) {
+        try {
+          localFile = webServerContent.getLocalFile();
+        } catch(Exception e) {
+          e.printStackTrace();
+        }
+      }
+      if(localFile != null && localFile.isFile()) {
+        long lastModified = localFile.lastModified();
+        String eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(localFile.length()) + "\"";
+        if(!isPostMethod && isNotModified(headerMap, eTag, lastModified)) {
+          if(isPrintRequestsDebug) {
+            System.err.println("Web Server GET: " + resourcePath + " -> 304 (not modified)");
           }
+          writeHTTPNotModified(out, lastModified, eTag, isKeepingAlive);
+          return isKeepingAlive;
+        }
+        if(isPrintRequestsDebug) {
+          System.err.println("Web Server " + (isPostMethod? "POST": "GET") + ": " + resourcePath + " -> 200 (OK)");
+        }
+        FileInputStream fileInputStream = new FileInputStream(localFile);
+        try {
+          FileChannel fileChannel = fileInputStream.getChannel();
+          long size = fileChannel.size();
+          writeHTTPHeaders(out, 200, webServerContent.getContentType(), size, lastModified, eTag, isKeepingAlive, false);
+          out.transferFrom(fileChannel, size);
         } finally {
-          out.flush();
-          out.close();
-          in.close();
-          socket.close();
+          fileInputStream.close();
         }
-      } catch(Exception e) {
-//        e.printStackTrace();
+        return isKeepingAlive;
+      }
+      String eTag = null;
+      if(webServerContent != null) {
+        try {
+          eTag = webServerContent.getETag();
+        } catch(Exception e) {
+          e.printStackTrace();
+        }
+      }
+      if(eTag != null && !isPostMethod && isNotModified(headerMap, eTag, webServerContent.getLastModified())) {
+        if(isPrintRequestsDebug) {
+          System.err.println("Web Server GET: " + resourcePath + " -> 304 (not modified)");
+        }
+        writeHTTPNotModified(out, webServerContent.getLastModified(), eTag, isKeepingAlive);
+        return isKeepingAlive;
+      }
+      InputStream resourceStream_ = null;
+      if(webServerContent != null) {
+        try {
+          resourceStream_ = webServerContent.getInputStream();
+        } catch(Exception e) {
+          e.printStackTrace();
+        }
+      }
+      if(resourceStream_ == null) {
+        if(isPrintRequestsDebug) {
+          System.err.println("Web Server " + (isPostMethod? "POST": "GET") + ": " + resourcePath + " -> 404 (not found)");
+        }
+        writeHTTPError(out, 404, "File Not Found.", isKeepingAlive);
+        return isKeepingAlive;
+      }
+      if(isPrintRequestsDebug || isPrintDataDebug) {
+        System.err.println("Web Server " + (isPostMethod? "POST": "GET") + ": " + resourcePath + " -> 200 (OK)");
+      }
+      long contentLength = webServerContent.getContentLength();
+      // Without a length, the end of the content is marked by chunks or, with old clients, by closing the connection.
+      boolean isChunked = contentLength == -1 && isHTTP11 && isKeepingAlive;
+      if(contentLength == -1 && !isChunked) {
+        isKeepingAlive = false;
+      }
+      BufferedInputStream resourceStream = new BufferedInputStream(resourceStream_);
+      long byteCount = 0;
+      try {
+        writeHTTPHeaders(out, 200, webServerContent.getContentType(), contentLength, webServerContent.getLastModified(), eTag, isKeepingAlive, isChunked);
+        byte[] bytes = new byte[4096];
+        for(int i; (i=resourceStream.read(bytes)) != -1; ) {
+          if(i == 0) {
+            continue;
+          }
+          if(isChunked) {
+            out.write((Integer.toHexString(i) + CRLF).getBytes("UTF-8"));
+          }
+          out.write(bytes, 0, i);
+          if(isChunked) {
+            out.write(CRLF.getBytes("UTF-8"));
+          }
+          byteCount += i;
+          if(isPrintDataDebug && printDataCount > 0) {
+            System.err.print(new String(bytes, 0, (int)Math.min(i, printDataCount), "UTF-8"));
+            printDataCount -= i;
+          }
+        }
+        if(isChunked) {
+          out.write(("0" + CRLF + CRLF).getBytes("UTF-8"));
+        }
+        out.flush();
       } finally {
-        semaphore.release();
+        try {
+          resourceStream.close();
+        } catch(Exception e) {
+          e.printStackTrace();
+        }
+      }
+      if(isPrintDataDebug) {
+        System.err.println();
       }
+      // If the content did not have the length it announced, the client cannot find the next response.
+      return isKeepingAlive && (contentLength == -1 || byteCount == contentLength);
     }
 
   }
@@ -496,14 +874,18 @@ public class WebServer {
 
   public void stop() {
     isRunning = false;
-    if(serverSocket != null) {
-      ServerSocket serverSocket = this.serverSocket;
-      this.serverSocket = null;
+    if(serverSocketChannel != null) {
+      ServerSocketChannel serverSocketChannel = this.serverSocketChannel;
+      this.serverSocketChannel = null;
       try {
-        serverSocket.close();
+        serverSocketChannel.close();
       } catch (IOException e) {
       }
     }
+    Selector selector = this.selector;
+    if(selector != null) {
+      selector.wakeup();
+    }
   }
 
   public boolean isRunning() {
@@ -514,8 +896,31 @@ public class WebServer {
     start(true);
   }
 
-  private volatile ServerSocket serverSocket;
+  private static final long KEEP_ALIVE_TIMEOUT = 10000;
+
+  private static final WebServerResourceCache resourceCache = new WebServerResourceCache();
+
+  /**
+   * Get the number of requests of class path or jar resources that were served from the resource cache.
+   * @return the number of cache hits.
+   */
+  public static long getResourceCacheHitCount() {
+    return resourceCache.getHitCount();
+  }
+
+  /**
+   * Get the number of requests of class path or jar resources that had to be loaded because they were not in the resource cache.
+   * @return the number of cache misses.
+   */
+  public static long getResourceCacheMissCount() {
+    return resourceCache.getMissCount();
+  }
+
+  private volatile ServerSocketChannel serverSocketChannel;
+  private volatile Selector selector;
   private volatile int instanceID;
+  private ExecutorService workerExecutor;
+  private Queue<WebServerConnection> resumedConnectionQueue = new ConcurrentLinkedQueue<WebServerConnection>();
 
   public void start(boolean isDaemon) throws IOException {
     if(isRunning) {
@@ -523,42 +928,140 @@ public class WebServer {
     }
     isRunning = true;
     instanceID = ObjectRegistry.getInstance().add(this);
-    serverSocket = new ServerSocket();
-    serverSocket.bind(new InetSocketAddress(InetAddress.getByName(getHostAddress()), port));
-    port = serverSocket.getLocalPort();
+    serverSocketChannel = ServerSocketChannel.open();
+    serverSocketChannel.socket().bind(new InetSocketAddress(InetAddress.getByName(getHostAddress()), port));
+    serverSocketChannel.configureBlocking(false);
+    port = serverSocketChannel.socket().getLocalPort();
     if(Boolean.parseBoolean(NSSystemProperty.WEBSERVER_DEBUG_PRINTPORT.get())) {
       System.err.println("Web Server port: " + port);
     }
-    Thread listenerThread = new Thread("WebServer") {
+    selector = Selector.open();
+    serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+    String workerThreadsProperty = NSSystemProperty.WEBSERVER_WORKERTHREADS.get();
+    int workerThreads = workerThreadsProperty == null? 10: Math.max(1, Integer.parseInt(workerThreadsProperty));
+    final AtomicInteger threadCount = new AtomicInteger();
+    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(workerThreads, workerThreads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "WebServer Worker-" + threadCount.getAndIncrement());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    threadPoolExecutor.allowCoreThreadTimeOut(true);
+    workerExecutor = threadPoolExecutor;
+    Thread selectorThread = new Thread("WebServer") {
       @Override
       public void run() {
-        while(isRunning) {
+        runSelectorLoop();
+      }
+    };
+    selectorThread.setDaemon(isDaemon);
+    selectorThread.start();
+  }
+
+  private void runSelectorLoop() {
+    Selector selector = this.selector;
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    while(isRunning) {
+      try {
+        selector.select(1000);
+      } catch(IOException e) {
+        e.printStackTrace();
+        break;
+      }
+      for(Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+        SelectionKey selectionKey = it.next();
+        it.remove();
+        if(!selectionKey.isValid()) {
+          continue;
+        }
+        if(selectionKey.isAcceptable()) {
           try {
-            Socket socket = serverSocket.accept();
-            // Too risky if there are multiple network interfaces. Need to find a better way...
-//            String hostAddress = socket.getInetAddress().getHostAddress();
-//            if(!HOST_ADDRESS.equals(hostAddress) && !"127.0.0.1".equals(hostAddress)) {
-//              throw new IllegalStateException("Illegal connection from host " + hostAddress);
-//            }
-            socket.setSoTimeout(10000);
-            try {
-              WebServerConnectionThread.semaphore.acquire();
-            } catch(InterruptedException e) {
+            SocketChannel socketChannel = ((ServerSocketChannel)selectionKey.channel()).accept();
+            if(socketChannel != null) {
+              // Too risky if there are multiple network interfaces. Need to find a better way...
+//              String hostAddress = socketChannel.socket().getInetAddress().getHostAddress();
+//              if(!HOST_ADDRESS.equals(hostAddress) && !"127.0.0.1".equals(hostAddress)) {
+//                throw new IllegalStateException("Illegal connection from host " + hostAddress);
+//              }
+              socketChannel.configureBlocking(false);
+              WebServerConnection connection = new WebServerConnection(this, socketChannel);
+              connection.selectionKey = socketChannel.register(selector, SelectionKey.OP_READ, connection);
             }
-            WebServerConnectionThread webServerConnectionThread = new WebServerConnectionThread(socket);
-            webServerConnectionThread.start();
           } catch(Exception e) {
-            if(serverSocket != null) {
+            if(serverSocketChannel != null) {
               e.printStackTrace();
             }
           }
+        } else if(selectionKey.isReadable()) {
+          WebServerConnection connection = (WebServerConnection)selectionKey.attachment();
+          try {
+            connection.readAvailableBytes(buffer);
+            processConnection(connection);
+          } catch(Exception e) {
+            connection.close();
+          }
         }
-        serverSocket = null;
-        ObjectRegistry.getInstance().remove(instanceID);
       }
-    };
-    listenerThread.setDaemon(isDaemon);
-    listenerThread.start();
+      for(WebServerConnection connection; (connection = resumedConnectionQueue.poll()) != null; ) {
+        connection.lastActivityTime = System.currentTimeMillis();
+        try {
+          processConnection(connection);
+        } catch(Exception e) {
+          connection.close();
+        }
+      }
+      // Close the connections that are waiting for a request for too long.
+      long time = System.currentTimeMillis();
+      for(SelectionKey selectionKey: selector.keys()) {
+        if(selectionKey.isValid() && selectionKey.interestOps() == SelectionKey.OP_READ && selectionKey.attachment() instanceof WebServerConnection) {
+          WebServerConnection connection = (WebServerConnection)selectionKey.attachment();
+          if(time - connection.lastActivityTime > KEEP_ALIVE_TIMEOUT) {
+            connection.close();
+          }
+        }
+      }
+    }
+    for(SelectionKey selectionKey: selector.keys()) {
+      if(selectionKey.attachment() instanceof WebServerConnection) {
+        ((WebServerConnection)selectionKey.attachment()).close();
+      }
+    }
+    try {
+      selector.close();
+    } catch(IOException e) {
+    }
+    workerExecutor.shutdown();
+    this.selector = null;
+    serverSocketChannel = null;
+    ObjectRegistry.getInstance().remove(instanceID);
+  }
+
+  /**
+   * Hand the connection to a worker if a complete request was received, or wait for more data. This is called by the selector thread.
+   */
+  private void processConnection(WebServerConnection connection) throws IOException {
+    if(connection.isRequestComplete()) {
+      connection.selectionKey.interestOps(0);
+      workerExecutor.execute(connection);
+    } else if(connection.isEndOfStream) {
+      connection.close();
+    } else {
+      connection.selectionKey.interestOps(SelectionKey.OP_READ);
+    }
+  }
+
+  /**
+   * Give back a connection that is kept alive to the selector thread. This is called by the worker threads.
+   */
+  private void resumeConnection(WebServerConnection connection) {
+    Selector selector = this.selector;
+    if(!isRunning || selector == null) {
+      connection.close();
+      return;
+    }
+    resumedConnectionQueue.add(connection);
+    selector.wakeup();
   }
 
   public int getPort() {
@@ -596,6 +1099,14 @@ public class WebServer {
     return getURLPrefix() + "/classpath/" + instanceID + Utils.simplifyPath(resourcePath);
   }
 
+  /**
+   * Get the codebase URL of a class loader that loads its classes through this web server. It serves the class path resources like the class path resource URLs, but the resources that are requested through it are recorded.
+   * @see #getRequestedClassPathResources()
+   */
+  public String getClassLoaderCodebaseURL() {
+    return getURLPrefix() + "/classloader/" + instanceID + "/";
+  }
+
   public String getResourcePathURL(String codeBase, String resourcePath) {
     if(codeBase == null) {
       codeBase = new File(SystemProperty.USER_DIR.get()).getAbsolutePath();
@@ -622,19 +1133,62 @@ public class WebServer {
   }
 
   private List<ClassLoader> referenceClassLoaderList = new ArrayList<ClassLoader>(1);
+  /** The number of changes of the reference class loaders, which is part of the keys of the cached class path resources. */
+  private volatile int referenceClassLoaderGeneration;
 
   public void addReferenceClassLoader(ClassLoader referenceClassLoader) {
     if(referenceClassLoader == null || referenceClassLoader == getClass().getClassLoader()) {
       return;
     }
+    int index = referenceClassLoaderList.indexOf(referenceClassLoader);
+    if(index == 0) {
+      // Adding the class loader again, like at each spawn of a peer VM, must not drop the cached resources.
+      return;
+    }
+    if(index > 0) {
+      referenceClassLoaderList.remove(index);
+    }
     referenceClassLoaderList.add(0, referenceClassLoader);
+    referenceClassLoaderGeneration++;
   }
 
   public void removeReferenceClassLoader(ClassLoader referenceClassLoader) {
     if(referenceClassLoader == null || referenceClassLoader == getClass().getClassLoader()) {
       return;
     }
-    referenceClassLoaderList.remove(referenceClassLoader);
+    if(referenceClassLoaderList.remove(referenceClassLoader)) {
+      referenceClassLoaderGeneration++;
+    }
+  }
+
+  private Set<String> requestedClassPathResourceSet = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * Get the paths of the class path resources that were requested from this web server by a class loader that loads its classes through the web server, using the codebase URL of this web server for class loaders.
+   * @return the resource paths, without a leading slash.
+   */
+  public String[] getRequestedClassPathResources() {
+    return requestedClassPathResourceSet.toArray(new String[0]);
+  }
+
+  /**
+   * Get a class path resource the way it is served by this web server, looking in the reference class loaders first.
+   * @param resourcePath the path of the resource, without a leading slash.
+   * @return the stream of the resource, or null if it is not found.
+   */
+  public InputStream getClassPathResourceAsStream(String resourcePath) {
+    try {
+      for(ClassLoader referenceClassLoader: referenceClassLoaderList) {
+        InputStream in = referenceClassLoader.getResourceAsStream(resourcePath);
+        if(in != null) {
+          return in;
+        }
+      }
+      return Utils.getResourceAsStreamWithinJavaModules(WebServer.class, '/' + resourcePath);
+    } catch(Exception e) {
+      e.printStackTrace();
+      return null;
+    }
   }
 
   /**
@@ -709,36 +1263,56 @@ public class WebServer {
           return null;
         }
       }
-      if("classpath".equals(type)) {
+      boolean isClassLoaderRequest = "classloader".equals(type);
+      if("classpath".equals(type) || isClassLoaderRequest) {
         index = parameter.indexOf('/');
-        final WebServer webServer = (WebServer)ObjectRegistry.getInstance().get(Integer.parseInt(parameter.substring(0, index)));
+        String instanceID = parameter.substring(0, index);
+        final WebServer webServer = (WebServer)ObjectRegistry.getInstance().get(Integer.parseInt(instanceID));
         if(webServer == null) {
           return null;
         }
         parameter = parameter.substring(index + 1);
         final String resourcePath = Utils.decodeURL(removeHTMLAnchor(parameter));
-        return new WebServerContent() {
+        WebServerContent classPathContent = new WebServerContent() {
           @Override
           public String getContentType() {
             int index = resourcePath.lastIndexOf('.');
             return getDefaultMimeType(index == -1? null: resourcePath.substring(index));
           }
-          @Override
-          public InputStream getInputStream() {
-            try {
-              for(ClassLoader referenceClassLoader: webServer.referenceClassLoaderList) {
-                InputStream in = referenceClassLoader.getResourceAsStream(resourcePath);
-                if(in != null) {
-                  return in;
-                }
+          private URL getResourceURL() {
+            for(ClassLoader referenceClassLoader: webServer.referenceClassLoaderList) {
+              URL url = referenceClassLoader.getResource(resourcePath);
+              if(url != null) {
+                return url;
               }
-              return Utils.getResourceAsStreamWithinJavaModules(WebServer.class, '/' + resourcePath);
-            } catch(Exception e) {
-              e.printStackTrace();
+            }
+            ClassLoader classLoader = WebServer.class.getClassLoader();
+            return classLoader == null? null: classLoader.getResource(resourcePath);
+          }
+          @Override
+          public File getLocalFile() {
+            // Resources of class path directories are files, but resources of jars are usually compressed and have to be streamed.
+            URL url = getResourceURL();
+            if(url == null || !"file".equals(url.getProtocol())) {
               return null;
             }
+            return Utils.getLocalFile(url.toExternalForm());
+          }
+          @Override
+          public long getLastModified() {
+            URL url = getResourceURL();
+            return url == null? super.getLastModified(): getResourceLastModified(url.toExternalForm());
+          }
+          @Override
+          public InputStream getInputStream() {
+            return webServer.getClassPathResourceAsStream(resourcePath);
           }
         };
+        if(isClassLoaderRequest) {
+          webServer.requestedClassPathResourceSet.add(resourcePath);
+        }
+        // The reference class loaders are part of the key, so that the resources they had provided are not served once they change.
+        return resourceCache.getContent("classpath/" + instanceID + "/" + webServer.referenceClassLoaderGeneration + "/" + resourcePath, classPathContent);
       }
       if("location".equals(type)) {
         index = parameter.indexOf('/');
@@ -766,7 +1340,7 @@ public class WebServer {
           }
         }
         final String resourceURL_ = resourceURL;
-        return new WebServerContent() {
+        WebServerContent urlContent = new WebServerContent() {
           @Override
           public long getContentLength() {
             File file = Utils.getLocalFile(resourceURL_);
@@ -776,6 +1350,14 @@ public class WebServer {
             return super.getContentLength();
           }
           @Override
+          public File getLocalFile() {
+            return Utils.getLocalFile(resourceURL_);
+          }
+          @Override
+          public long getLastModified() {
+            return getResourceLastModified(resourceURL_);
+          }
+          @Override
           public String getContentType() {
             int index = resourceURL_.lastIndexOf('.');
             return getDefaultMimeType(index == -1? null: resourceURL_.substring(index));
@@ -794,6 +1376,8 @@ public class WebServer {
             return null;
           }
         };
+        // Resources of jars do not change, unlike remote resources.
+        return resourceURL_.startsWith("jar:")? resourceCache.getContent("url/" + resourceURL_, urlContent): urlContent;
       }
       if("resource".equals(type)) {
         index = parameter.indexOf('/');
@@ -826,7 +1410,7 @@ public class WebServer {
           }
         }
         final String resourceURL_ = resourceURL;
-        return new WebServerContent() {
+        WebServerContent urlContent = new WebServerContent() {
           @Override
           public long getContentLength() {
             File file = Utils.getLocalFile(resourceURL_);
@@ -836,6 +1420,14 @@ public class WebServer {
             return super.getContentLength();
           }
           @Override
+          public File getLocalFile() {
+            return Utils.getLocalFile(resourceURL_);
+          }
+          @Override
+          public long getLastModified() {
+            return getResourceLastModified(resourceURL_);
+          }
+          @Override
           public String getContentType() {
             int index = resourceURL_.lastIndexOf('.');
             return getDefaultMimeType(index == -1? null: resourceURL_.substring(index));
@@ -854,6 +1446,8 @@ public class WebServer {
             return null;
           }
         };
+        // Resources of jars do not change, unlike remote resources.
+        return resourceURL_.startsWith("jar:")? resourceCache.getContent("url/" + resourceURL_, urlContent): urlContent;
       }
     }
     for(WebServerContentProvider contentProvider: webServer.contentProviderList) {
@@ -865,6 +1459,25 @@ public class WebServer {
     return null;
   }
 
+  /**
+   * Get the time when a local resource was last modified, which is the time of the file or of the jar entry.
+   * @param resourceURL the URL or the path of the resource.
+   * @return the time, or the current time if it is unknown.
+   */
+  private static long getResourceLastModified(String resourceURL) {
+    long lastModified = 0;
+    File file = Utils.getLocalFile(resourceURL);
+    if(file != null) {
+      lastModified = file.lastModified();
+    } else if(resourceURL.startsWith("jar:")) {
+      try {
+        lastModified = new URL(resourceURL).openConnection().getLastModified();
+      } catch(Exception e) {
+      }
+    }
+    return lastModified > 0? lastModified: System.currentTimeMillis();
+  }
+
   private static String removeHTMLAnchor(String location) {
     int anchorIndex = location.indexOf('#');
     if(anchorIndex > 0) {
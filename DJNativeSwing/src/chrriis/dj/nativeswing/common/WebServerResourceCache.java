@@ -0,0 +1,234 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package chrriis.dj.nativeswing.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import chrriis.dj.nativeswing.NSSystemProperty;
+import chrriis.dj.nativeswing.common.WebServer.WebServerContent;
+
+/**
+ * A cache of the bytes of the resources that do not change while the application runs, like the resources of the class path, which are otherwise inflated from their jar at each request.<br/>
+ * The cache is bounded by the total size of its entries and evicts the least recently used ones. The resources that are too large for an entry are streamed instead.
+ * @author Christopher Deckers
+ */
+class WebServerResourceCache {
+
+  private static class Entry {
+    private byte[] data;
+    private long lastModified;
+    private String eTag;
+    Entry(byte[] data, long lastModified) {
+      this.data = data;
+      this.lastModified = lastModified;
+      CRC32 crc32 = new CRC32();
+      crc32.update(data);
+      eTag = "\"" + Long.toHexString(crc32.getValue()) + "-" + Integer.toHexString(data.length) + "\"";
+    }
+  }
+
+  private final long maxSize;
+  private final long maxEntrySize;
+  private long size;
+  private final Map<String, Entry> entryMap = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  /** The keys of the resources that are too large for an entry, which are not read again to find it out. */
+  private final Set<String> streamedKeySet = new HashSet<String>();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  public WebServerResourceCache() {
+    String sizeProperty = NSSystemProperty.WEBSERVER_RESOURCECACHE_SIZE.get();
+    maxSize = sizeProperty == null? 16 * 1024 * 1024: Math.max(0, Long.parseLong(sizeProperty));
+    // A single resource must not evict most of the others.
+    maxEntrySize = maxSize / 4;
+  }
+
+  /**
+   * Get a content that serves the bytes of the given content from the cache, loading them when they are not cached.
+   * @param key the key of the resource, which must identify its bytes.
+   * @param webServerContent the content that provides the bytes.
+   * @return the caching content, or the content itself when the cache is disabled.
+   */
+  public WebServerContent getContent(String key, WebServerContent webServerContent) {
+    if(maxSize == 0) {
+      return webServerContent;
+    }
+    return new CachingWebServerContent(key, webServerContent);
+  }
+
+  /**
+   * Load the entry of a caching content, or mark the content as streamed if it is too large for an entry.
+   */
+  private void loadEntry(CachingWebServerContent cachingWebServerContent) {
+    String key = cachingWebServerContent.key;
+    synchronized(entryMap) {
+      Entry entry = entryMap.get(key);
+      if(entry != null) {
+        hitCount.incrementAndGet();
+        cachingWebServerContent.entry = entry;
+        return;
+      }
+      if(streamedKeySet.contains(key)) {
+        cachingWebServerContent.isStreamed = true;
+        return;
+      }
+    }
+    missCount.incrementAndGet();
+    WebServerContent webServerContent = cachingWebServerContent.webServerContent;
+    if(webServerContent.getContentLength() > maxEntrySize) {
+      addStreamedKey(key);
+      cachingWebServerContent.isStreamed = true;
+      return;
+    }
+    InputStream in = webServerContent.getInputStream();
+    if(in == null) {
+      return;
+    }
+    boolean isClosing = true;
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try {
+      byte[] bytes = new byte[4096];
+      for(int i; (i=in.read(bytes)) != -1; ) {
+        baos.write(bytes, 0, i);
+        if(baos.size() > maxEntrySize) {
+          addStreamedKey(key);
+          cachingWebServerContent.isStreamed = true;
+          // The bytes that were read are sent before the rest of the stream, which is not read in memory.
+          cachingWebServerContent.streamedInputStream = new SequenceInputStream(new ByteArrayInputStream(baos.toByteArray()), in);
+          isClosing = false;
+          return;
+        }
+      }
+    } catch(Exception e) {
+      e.printStackTrace();
+      return;
+    } finally {
+      if(isClosing) {
+        try {
+          in.close();
+        } catch(Exception e) {
+        }
+      }
+    }
+    Entry entry = new Entry(baos.toByteArray(), webServerContent.getLastModified());
+    synchronized(entryMap) {
+      Entry oldEntry = entryMap.put(key, entry);
+      if(oldEntry != null) {
+        size -= oldEntry.data.length;
+      }
+      size += entry.data.length;
+      for(Iterator<Entry> it = entryMap.values().iterator(); size > maxSize && it.hasNext(); ) {
+        size -= it.next().data.length;
+        it.remove();
+      }
+    }
+    cachingWebServerContent.entry = entry;
+  }
+
+  private void addStreamedKey(String key) {
+    synchronized(entryMap) {
+      streamedKeySet.add(key);
+    }
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  private class CachingWebServerContent extends WebServerContent {
+
+    private String key;
+    private WebServerContent webServerContent;
+    private boolean isLoaded;
+    private Entry entry;
+    private boolean isStreamed;
+    private InputStream streamedInputStream;
+
+    CachingWebServerContent(String key, WebServerContent webServerContent) {
+      this.key = key;
+      this.webServerContent = webServerContent;
+    }
+
+    private synchronized void load() {
+      if(!isLoaded) {
+        isLoaded = true;
+        loadEntry(this);
+      }
+    }
+
+    @Override
+    public File getLocalFile() {
+      // Files are sent without copying, so they do not need to be cached.
+      return webServerContent.getLocalFile();
+    }
+
+    @Override
+    public String getContentType() {
+      return webServerContent.getContentType();
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() {
+      load();
+      if(isStreamed) {
+        InputStream in = streamedInputStream;
+        if(in != null) {
+          // The stream that was started while loading is used once.
+          streamedInputStream = null;
+          return in;
+        }
+        return webServerContent.getInputStream();
+      }
+      return entry == null? null: new ByteArrayInputStream(entry.data);
+    }
+
+    @Override
+    public synchronized long getContentLength() {
+      load();
+      if(isStreamed) {
+        return webServerContent.getContentLength();
+      }
+      return entry == null? -1: entry.data.length;
+    }
+
+    @Override
+    public synchronized long getLastModified() {
+      load();
+      if(isStreamed) {
+        return webServerContent.getLastModified();
+      }
+      return entry == null? super.getLastModified(): entry.lastModified;
+    }
+
+    @Override
+    public synchronized String getETag() {
+      load();
+      if(isStreamed) {
+        return webServerContent.getETag();
+      }
+      return entry == null? null: entry.eTag;
+    }
+
+  }
+
+}